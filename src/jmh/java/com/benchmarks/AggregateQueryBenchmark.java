@@ -0,0 +1,86 @@
+package com.benchmarks;
+
+import com.data_management.Aggregate;
+import com.data_management.Patient;
+import com.data_management.RecordType;
+import com.data_management.SampleCursor;
+import com.data_management.SeriesView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the minimum, maximum, mean and count of the ECG samples within a
+ * random range spanning up to the whole history of a patient holding 10^3 to
+ * 10^7 records: {@code aggregate} combines precomputed summaries with
+ * {@link Patient#aggregate}, {@code scan} reads every sample with a cursor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class AggregateQueryBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int records;
+
+    private Patient patient;
+    private long lastTimestamp;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        patient = SyntheticData.patientWith(records);
+        SeriesView ecg = patient.getRecords(RecordType.ECG, 0L, Long.MAX_VALUE);
+        lastTimestamp = ecg.getTimestamp(ecg.size() - 1);
+    }
+
+    private long nextTime() {
+        return SyntheticData.START_TIME + random.nextLong(Math.max(1, lastTimestamp - SyntheticData.START_TIME));
+    }
+
+    @Benchmark
+    public void aggregate(Blackhole blackhole) {
+        long a = nextTime();
+        long b = nextTime();
+        Aggregate result = patient.aggregate(RecordType.ECG, Math.min(a, b), Math.max(a, b));
+        blackhole.consume(result.getMin());
+        blackhole.consume(result.getMax());
+        blackhole.consume(result.getMean());
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        long a = nextTime();
+        long b = nextTime();
+        SampleCursor cursor = patient.cursor(RecordType.ECG, Math.min(a, b), Math.max(a, b));
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        long count = 0;
+        while (cursor.next()) {
+            double value = cursor.getValue();
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            count++;
+        }
+        blackhole.consume(min);
+        blackhole.consume(max);
+        blackhole.consume(sum / count);
+    }
+}
@@ -0,0 +1,90 @@
+package com.benchmarks;
+
+import com.alerts.AlertGenerator;
+import com.alerts.strategies.AlertStrategy;
+import com.alerts.strategies.BloodPressureStrategy;
+import com.alerts.strategies.FusedStrategyExecutor;
+import com.alerts.strategies.HeartRateStrategy;
+import com.alerts.strategies.OxygenSaturationStrategy;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to evaluate one patient's history, with each {@link AlertStrategy} on
+ * its own, with all of them in one pass of a {@link FusedStrategyExecutor}, and
+ * with the full {@link AlertGenerator#evaluateData}. Alerts are still raised,
+ * but their console and log output is discarded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlertEvaluationBenchmark {
+    @Param({"1000", "100000"})
+    public int records;
+
+    private Patient patient;
+    private AlertGenerator alertGenerator;
+    private final AlertStrategy bloodPressure = new BloodPressureStrategy();
+    private final AlertStrategy heartRate = new HeartRateStrategy();
+    private final AlertStrategy oxygenSaturation = new OxygenSaturationStrategy();
+    private final FusedStrategyExecutor fused = new FusedStrategyExecutor(Arrays.asList(
+            new BloodPressureStrategy(), new HeartRateStrategy(), new OxygenSaturationStrategy()));
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        originalOut = SyntheticData.silenceOutput();
+        patient = SyntheticData.patientWith(records);
+        alertGenerator = new AlertGenerator(DataStorage.getInstance());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticData.restoreOutput(originalOut);
+    }
+
+    @Benchmark
+    public boolean bloodPressureStrategy() {
+        return bloodPressure.checkAlert(patient);
+    }
+
+    @Benchmark
+    public boolean heartRateStrategy() {
+        return heartRate.checkAlert(patient);
+    }
+
+    @Benchmark
+    public boolean oxygenSaturationStrategy() {
+        return oxygenSaturation.checkAlert(patient);
+    }
+
+    @Benchmark
+    public boolean[] fusedStrategies() {
+        return fused.evaluate(patient);
+    }
+
+    @Benchmark
+    public void evaluateData() {
+        alertGenerator.evaluateData(patient);
+    }
+}
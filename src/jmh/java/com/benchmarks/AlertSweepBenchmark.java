@@ -0,0 +1,76 @@
+package com.benchmarks;
+
+import com.alerts.AlertGenerator;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of a full alert sweep over all patients with
+ * {@link AlertGenerator#evaluateAll(java.util.Collection, ForkJoinPool)}, on a
+ * pool of 1 to 8 workers. On a machine with enough cores the time should fall
+ * close to linearly with the workers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class AlertSweepBenchmark {
+    private static final int RECORDS_PER_PATIENT = 300;
+
+    @Param({"1000", "5000"})
+    public int patients;
+
+    @Param({"1", "2", "4", "8"})
+    public int workers;
+
+    private List<Patient> allPatients;
+    private AlertGenerator alertGenerator;
+    private ForkJoinPool pool;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        originalOut = SyntheticData.silenceOutput();
+        SyntheticData data = SyntheticData.generate(patients, patients * RECORDS_PER_PATIENT, false);
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        for (int i = 0; i < data.size(); i++) {
+            storage.addPatientData(data.patientIds[i], data.measurementValues[i], data.recordTypeCodes[i],
+                    data.timestamps[i]);
+        }
+        allPatients = storage.getAllPatients();
+        alertGenerator = new AlertGenerator(storage);
+        pool = new ForkJoinPool(workers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+        SyntheticData.restoreOutput(originalOut);
+    }
+
+    @Benchmark
+    public int evaluateAll() {
+        return alertGenerator.evaluateAll(allPatients, pool).size();
+    }
+}
@@ -0,0 +1,114 @@
+package com.benchmarks;
+
+import com.data_management.BinaryDataReader;
+import com.data_management.BinaryRecordWriter;
+import com.data_management.DataReader;
+import com.data_management.DataReaderImplementation;
+import com.data_management.DataStorage;
+import com.data_management.RecordType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to replay the same records from the text files read by
+ * {@link DataReaderImplementation} and from a binary record file read by
+ * {@link BinaryDataReader}, with and without delta-encoded timestamps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileReplayBenchmark {
+    @Param({"1000000"})
+    public int records;
+
+    private Path textDirectory;
+    private Path binaryDirectory;
+    private Path deltaDirectory;
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        SyntheticData data = SyntheticData.generate(16, records, false);
+        textDirectory = Files.createTempDirectory("replay-text");
+        binaryDirectory = Files.createTempDirectory("replay-binary");
+        deltaDirectory = Files.createTempDirectory("replay-delta");
+
+        Map<Integer, BufferedWriter> textFiles = new HashMap<>();
+        try (BinaryRecordWriter binary = new BinaryRecordWriter(binaryDirectory.resolve("records.bin"), false);
+             BinaryRecordWriter delta = new BinaryRecordWriter(deltaDirectory.resolve("records.bin"), true)) {
+            for (int i = 0; i < data.size(); i++) {
+                int code = data.recordTypeCodes[i];
+                BufferedWriter text = textFiles.get(code);
+                if (text == null) {
+                    text = Files.newBufferedWriter(textDirectory.resolve(RecordType.labelOf(code) + ".txt"));
+                    textFiles.put(code, text);
+                }
+                text.write(data.patientIds[i] + "," + data.measurementValues[i] + "," + RecordType.labelOf(code)
+                        + "," + data.timestamps[i]);
+                text.newLine();
+                binary.write(data.patientIds[i], code, data.measurementValues[i], data.timestamps[i]);
+                delta.write(data.patientIds[i], code, data.measurementValues[i], data.timestamps[i]);
+            }
+        } finally {
+            for (BufferedWriter text : textFiles.values()) {
+                text.close();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        for (Path directory : new Path[] {textDirectory, binaryDirectory, deltaDirectory}) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public DataStorage text() throws IOException {
+        return replay(new DataReaderImplementation(textDirectory));
+    }
+
+    @Benchmark
+    public DataStorage binary() throws IOException {
+        return replay(new BinaryDataReader(binaryDirectory));
+    }
+
+    @Benchmark
+    public DataStorage binaryDeltaTimestamps() throws IOException {
+        return replay(new BinaryDataReader(deltaDirectory));
+    }
+
+    private static DataStorage replay(DataReader reader) throws IOException {
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        reader.readData(storage);
+        return storage;
+    }
+}
@@ -0,0 +1,103 @@
+package com.benchmarks;
+
+import com.data_management.DataStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link DataStorage#addPatientData} with 1 to 64 writer threads.
+ * Each writer streams the same synthetic records into its own group of
+ * patients, with timestamps that keep increasing, so every record is an append
+ * as it is during live ingestion. The storage is replaced before every
+ * iteration to keep the heap from growing across iterations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestionBenchmark {
+    private static final int PATIENTS_PER_WRITER = 8;
+    private static final int RECORDS = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class StorageState {
+        SyntheticData data;
+        DataStorage storage;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            data = SyntheticData.generate(PATIENTS_PER_WRITER, RECORDS, false);
+        }
+
+        @Setup(Level.Iteration)
+        public void resetStorage() {
+            DataStorage.resetInstance();
+            storage = DataStorage.getInstance();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WriterState {
+        int patientOffset;
+        int next;
+        long round;
+
+        @Setup(Level.Iteration)
+        public void reset(ThreadParams threadParams) {
+            patientOffset = threadParams.getThreadIndex() * PATIENTS_PER_WRITER;
+            next = 0;
+            round = 0;
+        }
+    }
+
+    private static void addNext(StorageState state, WriterState writer) {
+        SyntheticData data = state.data;
+        int i = writer.next;
+        // Shift each pass over the data past the previous one, so records stay in time order
+        long timestamp = data.timestamps[i] + writer.round * RECORDS * SyntheticData.TICK_MILLIS;
+        state.storage.addPatientData(writer.patientOffset + data.patientIds[i], data.measurementValues[i],
+                data.recordTypeCodes[i], timestamp);
+        if (++writer.next == data.size()) {
+            writer.next = 0;
+            writer.round++;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void writers1(StorageState state, WriterState writer) {
+        addNext(state, writer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void writers4(StorageState state, WriterState writer) {
+        addNext(state, writer);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void writers16(StorageState state, WriterState writer) {
+        addNext(state, writer);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void writers64(StorageState state, WriterState writer) {
+        addNext(state, writer);
+    }
+}
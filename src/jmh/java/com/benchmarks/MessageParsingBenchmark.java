@@ -0,0 +1,70 @@
+package com.benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.WebSocketClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link WebSocketClient#onMessage}: parsing one message of the
+ * WebSocket output and storing its record. The client is never connected; the
+ * messages are handed to it directly. When the messages run out, the storage
+ * is replaced before they are replayed, so records are always appended rather
+ * than inserted between existing ones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageParsingBenchmark {
+    private static final int PATIENTS = 16;
+    private static final int RECORDS = 1 << 17;
+
+    private String[] messages;
+    private WebSocketClient client;
+    private int next;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        originalOut = SyntheticData.silenceOutput();
+        messages = SyntheticData.generate(PATIENTS, RECORDS, true).messages;
+    }
+
+    @Setup(Level.Iteration)
+    public void resetClient() throws URISyntaxException {
+        DataStorage.resetInstance();
+        client = new WebSocketClient(new URI("ws://localhost:8080"), DataStorage.getInstance());
+        next = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticData.restoreOutput(originalOut);
+    }
+
+    @Benchmark
+    public void onMessage() throws URISyntaxException {
+        client.onMessage(messages[next]);
+        if (++next == messages.length) {
+            resetClient();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.StoragePersistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of durability: ingest throughput with {@link StoragePersistence}
+ * logging every record, and the time to recover a storage from a snapshot
+ * plus a log tail.
+ */
+@Fork(1)
+public class PersistenceBenchmark {
+    private static final int RECORDS = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class IngestState {
+        SyntheticData data;
+        DataStorage storage;
+        StoragePersistence persistence;
+        Path directory;
+        int next;
+        long round;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            data = SyntheticData.generate(16, RECORDS, false);
+        }
+
+        @Setup(Level.Iteration)
+        public void open() throws IOException {
+            directory = Files.createTempDirectory("wal-benchmark");
+            DataStorage.resetInstance();
+            storage = DataStorage.getInstance();
+            persistence = StoragePersistence.open(storage, directory);
+            next = 0;
+            round = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() throws IOException {
+            persistence.close();
+            deleteDirectory(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RecoveryState {
+        @Param({"100000", "1000000"})
+        public int records;
+        /** Share of the records written after the snapshot, which recovery replays from the log. */
+        @Param({"0.1"})
+        public double tailFraction;
+
+        Path directory;
+        StoragePersistence recovered;
+
+        @Setup(Level.Trial)
+        public void write() throws IOException {
+            directory = Files.createTempDirectory("recovery-benchmark");
+            SyntheticData data = SyntheticData.generate(16, records, false);
+            DataStorage.resetInstance();
+            DataStorage storage = DataStorage.getInstance();
+            int snapshotAt = (int) (records * (1 - tailFraction));
+            try (StoragePersistence persistence = StoragePersistence.open(storage, directory)) {
+                for (int i = 0; i < data.size(); i++) {
+                    if (i == snapshotAt) {
+                        persistence.snapshot();
+                    }
+                    storage.addPatientData(data.patientIds[i], data.measurementValues[i], data.recordTypeCodes[i],
+                            data.timestamps[i]);
+                }
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void closeRecovered() throws IOException {
+            if (recovered != null) {
+                recovered.close();
+                recovered = null;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public void ingestWithPersistence(IngestState state) {
+        SyntheticData data = state.data;
+        int i = state.next;
+        long timestamp = data.timestamps[i] + state.round * RECORDS * SyntheticData.TICK_MILLIS;
+        state.storage.addPatientData(data.patientIds[i], data.measurementValues[i], data.recordTypeCodes[i],
+                timestamp);
+        if (++state.next == data.size()) {
+            state.next = 0;
+            state.round++;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public long recover(RecoveryState state) throws IOException {
+        DataStorage.resetInstance();
+        // Opening leaves a new, empty segment behind; it is not counted by later recoveries
+        state.recovered = StoragePersistence.open(DataStorage.getInstance(), state.directory);
+        return state.recovered.getRecoveredRecordCount();
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import com.data_management.RecordType;
+import com.data_management.SampleCursor;
+import com.data_management.SeriesView;
+import com.data_management.StorageBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link Patient#getRecords} range queries on a patient holding
+ * 10^3 to 10^7 records. Each query reads a window of one minute, starting at a
+ * random position, and touches every returned record so that lazily built
+ * results are measured in full. The samples are kept on the heap or off it,
+ * see {@link StorageBackend}; {@code cursor} reads them in place.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RangeQueryBenchmark {
+    private static final long WINDOW_MILLIS = 60_000L;
+
+    @Param({"1000", "100000", "10000000"})
+    public int records;
+
+    @Param({"heap", "offheap"})
+    public String backend;
+
+    private Patient patient;
+    private long lastStart;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DataStorage.setBackend("offheap".equals(backend)
+                ? StorageBackend.offHeap(StorageBackend.DEFAULT_SLAB_BYTES)
+                : StorageBackend.heap());
+        patient = SyntheticData.patientWith(records);
+        // ECG is recorded on every generator tick, so its last sample marks the end of the data
+        SeriesView ecg = patient.getRecords(RecordType.ECG, 0L, Long.MAX_VALUE);
+        lastStart = ecg.getTimestamp(ecg.size() - 1) - WINDOW_MILLIS;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DataStorage.setBackend(null);
+    }
+
+    private long nextStart() {
+        return SyntheticData.START_TIME + random.nextLong(Math.max(1, lastStart - SyntheticData.START_TIME));
+    }
+
+    @Benchmark
+    public void allTypes(Blackhole blackhole) {
+        long start = nextStart();
+        List<PatientRecord> result = patient.getRecords(start, start + WINDOW_MILLIS);
+        for (PatientRecord record : result) {
+            blackhole.consume(record.getMeasurementValue());
+        }
+    }
+
+    @Benchmark
+    public void singleType(Blackhole blackhole) {
+        long start = nextStart();
+        SeriesView result = patient.getRecords(RecordType.ECG, start, start + WINDOW_MILLIS);
+        for (int i = 0; i < result.size(); i++) {
+            blackhole.consume(result.getValue(i));
+        }
+    }
+
+    @Benchmark
+    public void cursor(Blackhole blackhole) {
+        long start = nextStart();
+        SampleCursor cursor = patient.cursor(RecordType.ECG, start, start + WINDOW_MILLIS);
+        while (cursor.next()) {
+            blackhole.consume(cursor.getValue());
+        }
+    }
+}
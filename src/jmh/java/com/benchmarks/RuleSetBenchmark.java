@@ -0,0 +1,123 @@
+package com.benchmarks;
+
+import com.alerts.incremental.BloodPressureRule;
+import com.alerts.incremental.HypotensiveHypoxemiaRule;
+import com.alerts.incremental.IncrementalAlertEngine;
+import com.alerts.incremental.IncrementalRule;
+import com.alerts.incremental.SaturationRule;
+import com.alerts.rules.RuleSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Time per record of an {@link IncrementalAlertEngine} running the
+ * hand-written blood pressure, saturation and hypotensive hypoxemia rules, the
+ * same rules compiled from the default rule file, and the default rules plus
+ * 200 generated ward rules of every kind.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleSetBenchmark {
+    private static final int PATIENTS = 100;
+    private static final int RECORDS = 1 << 16;
+    private static final int WARD_RULES = 200;
+
+    @Param({"handWritten", "compiled", "compiledWard"})
+    public String rules;
+
+    private SyntheticData data;
+    private IncrementalAlertEngine engine;
+    private int next;
+    private long round;
+    private long alerts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = SyntheticData.generate(PATIENTS, RECORDS, false);
+        List<Supplier<? extends IncrementalRule>> factories;
+        switch (rules) {
+            case "handWritten":
+                factories = Arrays.asList(BloodPressureRule::new, SaturationRule::new, HypotensiveHypoxemiaRule::new);
+                break;
+            case "compiled":
+                factories = RuleSet.loadDefault().ruleFactories();
+                break;
+            default:
+                factories = RuleSet.parse(new StringReader(wardRules()), "ward").ruleFactories();
+                break;
+        }
+        engine = new IncrementalAlertEngine(factories, alert -> alerts++);
+    }
+
+    /**
+     * Returns the default rules plus generated thresholds, deltas, windowed
+     * changes and conjunctions on the saturation and blood pressure.
+     */
+    private static String wardRules() throws IOException {
+        StringBuilder rules = new StringBuilder();
+        try (InputStream in = RuleSet.class.getResourceAsStream("default-alert-rules.txt")) {
+            rules.append(new String(in.readAllBytes(), StandardCharsets.UTF_8)).append('\n');
+        }
+        // Like real ward rules, the generated ones look for abnormal readings of each type
+        String[] types = {"Saturation", "SystolicPressure", "DiastolicPressure"};
+        int[] low = {85, 85, 55};
+        int[] high = {99, 170, 110};
+        for (int i = 0; i < WARD_RULES; i++) {
+            int t = i % types.length;
+            String type = types[t];
+            String condition;
+            switch (i / types.length % 4) {
+                case 0:
+                    condition = type + " < " + (low[t] - i % 10);
+                    break;
+                case 1:
+                    condition = "delta(" + type + ", " + (1 + i % 5) + ") > " + (10 + i % 10);
+                    break;
+                case 2:
+                    condition = "rate(" + type + ", " + (1 + i % 10) + "m) < -" + (2 + i % 3);
+                    break;
+                default:
+                    condition = type + " > " + (high[t] + i % 10) + " and Saturation < " + (90 + i % 5);
+                    break;
+            }
+            rules.append("BloodPressure \"ward rule ").append(i).append("\" when ").append(condition).append('\n');
+        }
+        return rules.toString();
+    }
+
+    @Benchmark
+    public long onRecord() {
+        int i = next;
+        // Shift the timestamps on every pass, so the records keep arriving in order
+        engine.onRecord(data.patientIds[i], data.recordTypeCodes[i], data.measurementValues[i],
+                data.timestamps[i] + round);
+        if (++next == data.size()) {
+            next = 0;
+            round += data.timestamps[data.size() - 1] - data.timestamps[0] + SyntheticData.TICK_MILLIS;
+        }
+        return alerts;
+    }
+}
@@ -0,0 +1,81 @@
+package com.benchmarks;
+
+import com.cardio_generator.SimulationClock;
+import com.cardio_generator.SimulationEngine;
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of one {@link SimulationEngine} tick with all five generators scheduled
+ * at the simulator's periods, for 10^3 to 10^5 patients. The output only
+ * consumes the samples, so the measurement is the generation work; a tick has
+ * to stay well below one second for the simulation to keep up in real time.
+ * <p>
+ * The {@code threads} parameter compares the platform mode, batches of 256
+ * patients on one thread per processor, with the virtual mode, one virtual
+ * thread per patient; the virtual mode needs Java 21 and fails on older
+ * versions. Run with {@code -prof gc} to compare the memory allocated per tick.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SimulationTickBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int patients;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private SimulationEngine engine;
+    private PrintStream originalOutput;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        originalOutput = SyntheticData.silenceOutput();
+        OutputStrategy output = (patientId, timestamp, label, data) -> blackhole.consume(data);
+        SimulationEngine.ThreadMode threadMode = SimulationEngine.ThreadMode.valueOf(threads.toUpperCase());
+        int batchSize = threadMode == SimulationEngine.ThreadMode.VIRTUAL ? 1 : SimulationEngine.DEFAULT_BATCH_SIZE;
+        engine = new SimulationEngine(output, Runtime.getRuntime().availableProcessors(), 1000L, batchSize,
+                SimulationClock.system(), 1L, threadMode);
+        engine.schedule(new ECGDataGenerator(patients), 1, patients, 1);
+        engine.schedule(new BloodSaturationDataGenerator(patients), 1, patients, 1);
+        engine.schedule(new BloodPressureDataGenerator(patients), 1, patients, 60);
+        engine.schedule(new BloodLevelsDataGenerator(patients), 1, patients, 120);
+        engine.schedule(new AlertGenerator(patients), 1, patients, 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+        SyntheticData.restoreOutput(originalOutput);
+    }
+
+    @Benchmark
+    public void tick() throws InterruptedException {
+        engine.tick();
+    }
+}
@@ -0,0 +1,161 @@
+package com.benchmarks;
+
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import com.data_management.RecordParser;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Synthetic patient data for the benchmarks, produced by the simulator's own
+ * generators. The generators stamp their output with the wall clock, so the
+ * records are re-stamped with evenly spaced timestamps: one generator tick per
+ * second, starting inside the window that {@code AlertGenerator.evaluateData}
+ * reads.
+ * <p>
+ * Every tick produces ECG, saturation and blood pressure records; blood levels
+ * and alerts are produced every tenth tick, roughly following the simulator's
+ * schedule.
+ */
+final class SyntheticData {
+    /** Timestamp of the first generated record. */
+    static final long START_TIME = 1714376789050L;
+    /** Time between two generator ticks, in milliseconds. */
+    static final long TICK_MILLIS = 1000L;
+
+    final int[] patientIds;
+    final long[] timestamps;
+    final int[] recordTypeCodes;
+    final double[] measurementValues;
+    /**
+     * The records as the WebSocket output sends them, {@code patientId,timestamp,label,data},
+     * or null if the messages were not kept.
+     */
+    final String[] messages;
+
+    private SyntheticData(int size, boolean keepMessages) {
+        patientIds = new int[size];
+        timestamps = new long[size];
+        recordTypeCodes = new int[size];
+        measurementValues = new double[size];
+        messages = keepMessages ? new String[size] : null;
+    }
+
+    int size() {
+        return patientIds.length;
+    }
+
+    /**
+     * Generates records for the given patients, tick by tick, until {@code size}
+     * records exist.
+     *
+     * @param patientCount the number of patients, with IDs 1 to patientCount
+     * @param size         the number of records to generate
+     * @param keepMessages whether to keep the text form of every record
+     * @return the generated records, in timestamp order
+     */
+    static SyntheticData generate(int patientCount, int size, boolean keepMessages) {
+        SyntheticData data = new SyntheticData(size, keepMessages);
+        Collector collector = new Collector(data);
+        ECGDataGenerator ecg = new ECGDataGenerator(patientCount);
+        BloodSaturationDataGenerator saturation = new BloodSaturationDataGenerator(patientCount);
+        BloodPressureDataGenerator bloodPressure = new BloodPressureDataGenerator(patientCount);
+        BloodLevelsDataGenerator bloodLevels = new BloodLevelsDataGenerator(patientCount);
+        AlertGenerator alerts = new AlertGenerator(patientCount);
+
+        for (long tick = 0; !collector.isFull(); tick++) {
+            collector.timestamp = START_TIME + tick * TICK_MILLIS;
+            for (int patientId = 1; patientId <= patientCount && !collector.isFull(); patientId++) {
+                ecg.generate(patientId, collector);
+                saturation.generate(patientId, collector);
+                bloodPressure.generate(patientId, collector);
+                if (tick % 10 == 0) {
+                    bloodLevels.generate(patientId, collector);
+                    alerts.generate(patientId, collector);
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Generates records for a single patient and stores them in a fresh storage.
+     *
+     * @param size the number of records to generate
+     * @return the patient holding the records
+     */
+    static Patient patientWith(int size) {
+        SyntheticData data = generate(1, size, false);
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        for (int i = 0; i < data.size(); i++) {
+            storage.addPatientData(data.patientIds[i], data.measurementValues[i], data.recordTypeCodes[i],
+                    data.timestamps[i]);
+        }
+        return storage.getAllPatients().get(0);
+    }
+
+    /**
+     * Silences the console output and alert logging that the measured code
+     * performs, so the benchmarks measure the work rather than the terminal.
+     *
+     * @return the original standard output, to be restored with {@link #restoreOutput}
+     */
+    static PrintStream silenceOutput() {
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Logger.getLogger(com.alerts.AlertGenerator.class.getName()).setLevel(Level.OFF);
+        return original;
+    }
+
+    static void restoreOutput(PrintStream original) {
+        System.setOut(original);
+        Logger.getLogger(com.alerts.AlertGenerator.class.getName()).setLevel(null);
+    }
+
+    /**
+     * Receives the generators' output and appends it to the data arrays.
+     */
+    private static final class Collector implements OutputStrategy {
+        private final SyntheticData data;
+        private final RecordParser parser = new RecordParser();
+        private int count;
+        long timestamp;
+
+        Collector(SyntheticData data) {
+            this.data = data;
+        }
+
+        boolean isFull() {
+            return count == data.size();
+        }
+
+        @Override
+        public void output(int patientId, long ignoredTimestamp, String label, String value) {
+            if (isFull()) {
+                return;
+            }
+            String message = patientId + "," + timestamp + "," + label + "," + value;
+            if (!parser.parseWireRecord(message)) {
+                throw new IllegalStateException("Generator produced an unparsable record: " + message);
+            }
+            data.patientIds[count] = parser.getPatientId();
+            data.timestamps[count] = parser.getTimestamp();
+            data.recordTypeCodes[count] = parser.getRecordTypeCode();
+            data.measurementValues[count] = parser.getMeasurementValue();
+            if (data.messages != null) {
+                data.messages[count] = message;
+            }
+            count++;
+        }
+    }
+}
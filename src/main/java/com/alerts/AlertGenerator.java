@@ -1,22 +1,40 @@
 package com.alerts;
 
+import com.alerts.incremental.IncrementalAlertEngine;
+import com.alerts.incremental.IncrementalRule;
+import com.alerts.incremental.RPeakDetector;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordFilter;
+import com.data_management.RecordSubscription;
+import com.data_management.RecordType;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * The AlertGenerator class is responsible for evaluating patient data and triggering alerts
  * based on specific conditions such as blood pressure, oxygen saturation, ECG data, and combined conditions.
  */
 public class AlertGenerator {
+    // Patients are cut into this many chunks per worker, so that idle workers have chunks to steal
+    private static final int CHUNKS_PER_WORKER = 8;
+
     private DataStorage dataStorage;
     private List<Alert> triggeredAlerts;
+    private IncrementalAlertEngine incrementalEngine;
+    private RecordSubscription incrementalSubscription;
 
     /**
      * Constructor to initialize AlertGenerator with a DataStorage instance.
@@ -28,49 +46,178 @@ public class AlertGenerator {
         this.triggeredAlerts = new ArrayList<>();
     }
 
+    /**
+     * Switches on incremental mode: every record added to the data storage is
+     * passed to per-patient rule state as it arrives, and each alert is triggered
+     * once, when its condition becomes true. Unlike {@link #evaluateData(Patient)}
+     * the cost per record does not grow with the length of the history.
+     * Records are received through a storage subscription, so the rules run on
+     * the subscription's thread rather than on the ingesting thread. The
+     * subscription blocks rather than drops when the rules fall behind, since
+     * every record counts for the state they keep.
+     *
+     * @return the engine evaluating the incoming records
+     */
+    public IncrementalAlertEngine enableIncrementalMode() {
+        return enableIncrementalMode(IncrementalAlertEngine.defaultRules());
+    }
+
+    /**
+     * Switches on incremental mode with the given rules, e.g. those of a
+     * {@link com.alerts.rules.RuleSet} loaded from a rule file. Does nothing if
+     * incremental mode is already on.
+     *
+     * @param rules creates the rule instances of a new patient
+     * @return the engine evaluating the incoming records
+     */
+    public synchronized IncrementalAlertEngine enableIncrementalMode(List<Supplier<? extends IncrementalRule>> rules) {
+        if (incrementalEngine == null) {
+            IncrementalAlertEngine engine = new IncrementalAlertEngine(rules, this::triggerAlert);
+            // A lost record would leave edge and trend state wrong, so ingestion waits for the rules
+            // through a burst; it stops waiting if they get stuck, as stalling every patient is worse
+            incrementalSubscription = dataStorage.subscribe(RecordFilter.all(), batch -> batch.forEach(engine),
+                    8192, 512, RecordSubscription.OverflowPolicy.BLOCK_THEN_DROP);
+            incrementalEngine = engine;
+        }
+        return incrementalEngine;
+    }
+
+    /**
+     * Switches off incremental mode and discards the per-patient rule state.
+     */
+    public synchronized void disableIncrementalMode() {
+        if (incrementalEngine != null) {
+            incrementalSubscription.close();
+            incrementalSubscription = null;
+            incrementalEngine = null;
+        }
+    }
+
     /**
      * Evaluates the data for a given patient and triggers alerts if conditions are met.
      *
      * @param patient the patient whose data is to be evaluated
      */
     public void evaluateData(Patient patient) {
+        evaluateData(patient, this::triggerAlert);
+    }
+
+    /**
+     * Evaluates the data of many patients in parallel on the common fork-join pool
+     * and triggers their alerts.
+     *
+     * @param patients the patients whose data is to be evaluated
+     * @return the triggered alerts, see {@link #evaluateAll(Collection, ForkJoinPool)}
+     */
+    public List<Alert> evaluateAll(Collection<Patient> patients) {
+        return evaluateAll(patients, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Evaluates the data of many patients in parallel and triggers their alerts.
+     * <p>
+     * The patients are sorted by ID and cut into chunks of consecutive patients,
+     * which the workers of the pool split among themselves by work stealing. Each
+     * chunk collects its alerts in a buffer of its own, so the workers share
+     * nothing while they evaluate. The buffers are then joined in chunk order and
+     * the alerts triggered on the calling thread, so they come out in the same
+     * order as from {@link #evaluateData(Patient)} called patient by patient in
+     * ascending ID order, however many workers there are.
+     *
+     * @param patients the patients whose data is to be evaluated
+     * @param pool     the pool whose workers evaluate the patients
+     * @return the triggered alerts, patient by patient in ascending ID order
+     */
+    public List<Alert> evaluateAll(Collection<Patient> patients, ForkJoinPool pool) {
+        Patient[] sorted = patients.toArray(new Patient[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(Patient::getPatientId));
+        int chunkCount = Math.min(sorted.length, pool.getParallelism() * CHUNKS_PER_WORKER);
+        // Each chunk sets its own element; the fork-join invoke publishes them to this thread
+        List<List<Alert>> buffers = new ArrayList<>(Collections.nCopies(chunkCount, null));
+        if (chunkCount > 0) {
+            pool.invoke(new Sweep(sorted, buffers, 0, chunkCount));
+        }
+
+        List<Alert> alerts = new ArrayList<>();
+        for (List<Alert> buffer : buffers) {
+            alerts.addAll(buffer);
+        }
+        alerts.forEach(this::triggerAlert);
+        return alerts;
+    }
+
+    /**
+     * Evaluates the data for a given patient and passes the alerts whose
+     * conditions are met to a consumer, in the order they are found.
+     *
+     * @param patient the patient whose data is to be evaluated
+     * @param alerts  receives the alerts
+     */
+    private void evaluateData(Patient patient, Consumer<Alert> alerts) {
         // Retrieve records for the specified time range
         List<PatientRecord> patientRecords = patient.getRecords(1700000000000L, 1800000000000L);
-        evaluateBloodPressure(patientRecords);
-        evaluateOxygenSaturation(patientRecords);
-        evaluateHypotensiveHypoxemia(patientRecords);
-        evaluateECG(patientRecords);
+        RecordsByType records = new RecordsByType(patientRecords);
+        evaluateBloodPressure(records, alerts);
+        evaluateOxygenSaturation(records, alerts);
+        evaluateHypotensiveHypoxemia(records, alerts);
+        evaluateECG(records, alerts);
     }
 
     /**
-     * Evaluates blood pressure data and triggers alerts based on trends and thresholds.
-     *
-     * @param patientRecords the list of patient records to evaluate
+     * The records of a patient split by the evaluators that read them, in one
+     * pass over the records instead of one filter per evaluator. Each list keeps
+     * the timestamp order of the records.
      */
-    private void evaluateBloodPressure(List<PatientRecord> patientRecords) {
-        List<PatientRecord> patientsBloodPressure = patientRecords.stream()
-                .filter(x -> x.getRecordType().equals("DiastolicPressure") || x.getRecordType().equals("SystolicPressure"))
-                .collect(Collectors.toList());
+    private static final class RecordsByType {
+        final List<PatientRecord> bloodPressure = new ArrayList<>();
+        final List<PatientRecord> diastolicPressure = new ArrayList<>();
+        final List<PatientRecord> systolicPressure = new ArrayList<>();
+        final List<PatientRecord> saturation = new ArrayList<>();
+        final List<PatientRecord> saturationAndSystolicPressure = new ArrayList<>();
+        final List<PatientRecord> ecg = new ArrayList<>();
 
-        List<PatientRecord> patientsDiastolicPressure = patientRecords.stream()
-                .filter(x -> x.getRecordType().equals("DiastolicPressure"))
-                .collect(Collectors.toList());
+        RecordsByType(List<PatientRecord> records) {
+            for (PatientRecord record : records) {
+                int type = record.getRecordTypeCode();
+                if (type == RecordType.DIASTOLIC_PRESSURE) {
+                    bloodPressure.add(record);
+                    diastolicPressure.add(record);
+                } else if (type == RecordType.SYSTOLIC_PRESSURE) {
+                    bloodPressure.add(record);
+                    systolicPressure.add(record);
+                    saturationAndSystolicPressure.add(record);
+                } else if (type == RecordType.SATURATION) {
+                    saturation.add(record);
+                    saturationAndSystolicPressure.add(record);
+                } else if (type == RecordType.ECG) {
+                    ecg.add(record);
+                }
+            }
+        }
+    }
 
-        List<PatientRecord> patientsSystolicPressure = patientRecords.stream()
-                .filter(x -> x.getRecordType().equals("SystolicPressure"))
-                .collect(Collectors.toList());
+    /**
+     * Evaluates blood pressure data and triggers alerts based on trends and thresholds.
+     *
+     * @param patientRecords the patient's records, split by type
+     * @param alerts receives the triggered alerts
+     */
+    private void evaluateBloodPressure(RecordsByType patientRecords, Consumer<Alert> alerts) {
+        List<PatientRecord> patientsBloodPressure = patientRecords.bloodPressure;
+        List<PatientRecord> patientsDiastolicPressure = patientRecords.diastolicPressure;
+        List<PatientRecord> patientsSystolicPressure = patientRecords.systolicPressure;
 
         // Trend Alert: Check for increasing or decreasing trends
         for (int i = 0; i < patientsBloodPressure.size() - 2; i++) {
             if (patientsBloodPressure.get(i + 1).getMeasurementValue() > patientsBloodPressure.get(i).getMeasurementValue() + 10
                     && patientsBloodPressure.get(i + 2).getMeasurementValue() > patientsBloodPressure.get(i + 1).getMeasurementValue() + 10) {
                 Alert alert = new Alert(String.valueOf(patientsBloodPressure.get(i).getPatientId()), "triggered Increasing Blood Pressure Trend Problem", System.currentTimeMillis());
-                triggerAlert(alert);
+                alerts.accept(alert);
             }
             if (patientsBloodPressure.get(i + 1).getMeasurementValue() < patientsBloodPressure.get(i).getMeasurementValue() - 10
                     && patientsBloodPressure.get(i + 2).getMeasurementValue() < patientsBloodPressure.get(i + 1).getMeasurementValue() - 10) {
                 Alert alert = new Alert(String.valueOf(patientsBloodPressure.get(i).getPatientId()), "triggered Decreasing Blood Pressure Trend Problem", System.currentTimeMillis());
-                triggerAlert(alert);
+                alerts.accept(alert);
             }
         }
 
@@ -78,22 +225,22 @@ public class AlertGenerator {
         for (PatientRecord patientRecord : patientsDiastolicPressure) {
             if (patientRecord.getMeasurementValue() > 120) {
                 Alert alert = new Alert(String.valueOf(patientRecord.getPatientId()), "triggered Diastolic Pressure higher than 120", System.currentTimeMillis());
-                triggerAlert(alert);
+                alerts.accept(alert);
             }
             if (patientRecord.getMeasurementValue() < 60) {
                 Alert alert = new Alert(String.valueOf(patientRecord.getPatientId()), "triggered Diastolic Pressure lower than 60", System.currentTimeMillis());
-                triggerAlert(alert);
+                alerts.accept(alert);
             }
         }
 
         for (PatientRecord patientRecord : patientsSystolicPressure) {
             if (patientRecord.getMeasurementValue() > 180) {
                 Alert alert = new Alert(String.valueOf(patientRecord.getPatientId()), "triggered Systolic Pressure higher than 180", System.currentTimeMillis());
-                triggerAlert(alert);
+                alerts.accept(alert);
             }
             if (patientRecord.getMeasurementValue() < 90) {
                 Alert alert = new Alert(String.valueOf(patientRecord.getPatientId()), "triggered Systolic Pressure lower than 90", System.currentTimeMillis());
-                triggerAlert(alert);
+                alerts.accept(alert);
             }
         }
     }
@@ -101,18 +248,17 @@ public class AlertGenerator {
     /**
      * Evaluates oxygen saturation levels and triggers alerts based on thresholds and rapid drops.
      *
-     * @param patientRecords the list of patient records to evaluate
+     * @param patientRecords the patient's records, split by type
+     * @param alerts receives the triggered alerts
      */
-    private void evaluateOxygenSaturation(List<PatientRecord> patientRecords) {
-        List<PatientRecord> patientsSaturationLevel = patientRecords.stream()
-                .filter(x -> x.getRecordType().equals("Saturation"))
-                .collect(Collectors.toList());
+    private void evaluateOxygenSaturation(RecordsByType patientRecords, Consumer<Alert> alerts) {
+        List<PatientRecord> patientsSaturationLevel = patientRecords.saturation;
 
         // Low Saturation Alert
         for (PatientRecord patientRecord : patientsSaturationLevel) {
             if (patientRecord.getMeasurementValue() < 92) {
                 Alert alert = new Alert(String.valueOf(patientRecord.getPatientId()), "triggered Saturation level lower than 92.0%", System.currentTimeMillis());
-                triggerAlert(alert);
+                alerts.accept(alert);
             }
         }
 
@@ -121,7 +267,7 @@ public class AlertGenerator {
             if (patientsSaturationLevel.get(i + 1).getTimestamp() - patientsSaturationLevel.get(i).getTimestamp() < 600000) {
                 if (patientsSaturationLevel.get(i).getMeasurementValue() - patientsSaturationLevel.get(i + 1).getMeasurementValue() >= 5) {
                     Alert alert = new Alert(String.valueOf(patientsSaturationLevel.get(i).getPatientId()), "triggered Rapid Saturation Drop Alert", System.currentTimeMillis());
-                    triggerAlert(alert);
+                    alerts.accept(alert);
                 }
             }
         }
@@ -130,29 +276,28 @@ public class AlertGenerator {
     /**
      * Evaluates combined conditions for hypotensive hypoxemia and triggers alerts.
      *
-     * @param patientRecords the list of patient records to evaluate
+     * @param patientRecords the patient's records, split by type
+     * @param alerts receives the triggered alerts
      */
-    private void evaluateHypotensiveHypoxemia(List<PatientRecord> patientRecords) {
-        List<PatientRecord> patientsSaturationSystolicPressure = patientRecords.stream()
-                .filter(x -> x.getRecordType().equals("Saturation") || x.getRecordType().equals("SystolicPressure"))
-                .collect(Collectors.toList());
+    private void evaluateHypotensiveHypoxemia(RecordsByType patientRecords, Consumer<Alert> alerts) {
+        List<PatientRecord> patientsSaturationSystolicPressure = patientRecords.saturationAndSystolicPressure;
 
         boolean saturationAlert = false;
         boolean systolicAlert = false;
 
         // Check for combined condition of low saturation and low systolic pressure
         for (PatientRecord patientRecord : patientsSaturationSystolicPressure) {
-            if (patientRecord.getRecordType().equals("Saturation") && patientRecord.getMeasurementValue() < 92) {
+            if (patientRecord.getRecordTypeCode() == RecordType.SATURATION && patientRecord.getMeasurementValue() < 92) {
                 saturationAlert = true;
             }
 
-            if (patientRecord.getRecordType().equals("SystolicPressure") && patientRecord.getMeasurementValue() < 90) {
+            if (patientRecord.getRecordTypeCode() == RecordType.SYSTOLIC_PRESSURE && patientRecord.getMeasurementValue() < 90) {
                 systolicAlert = true;
             }
 
             if (saturationAlert && systolicAlert) {
                 Alert alert = new Alert(String.valueOf(patientRecord.getPatientId()), "triggered Hypotensive Hypoxemia Alert", System.currentTimeMillis());
-                triggerAlert(alert);
+                alerts.accept(alert);
             }
         }
     }
@@ -160,13 +305,11 @@ public class AlertGenerator {
     /**
      * Evaluates ECG data for abnormalities and triggers alerts based on heart rate and irregularities.
      *
-     * @param patientRecords the list of patient records to evaluate
+     * @param patientRecords the patient's records, split by type
+     * @param alerts receives the triggered alerts
      */
-    private void evaluateECG(List<PatientRecord> patientRecords) {
-        // Filter ECG records
-        List<PatientRecord> ecgRecords = patientRecords.stream()
-                .filter(x -> x.getRecordType().equals("ECG"))
-                .collect(Collectors.toList());
+    private void evaluateECG(RecordsByType patientRecords, Consumer<Alert> alerts) {
+        List<PatientRecord> ecgRecords = patientRecords.ecg;
 
         // Process ECG records for each patient
         String currentPatientId = "";
@@ -174,71 +317,48 @@ public class AlertGenerator {
         for (PatientRecord record : ecgRecords) {
             String patientId = String.valueOf(record.getPatientId());
             if (!patientId.equals(currentPatientId) && !currentPatientEcgRecords.isEmpty()) {
-                processECGRecords(currentPatientId, currentPatientEcgRecords);
+                processECGRecords(currentPatientId, currentPatientEcgRecords, alerts);
                 currentPatientEcgRecords.clear();
             }
             currentPatientId = patientId;
             currentPatientEcgRecords.add(record);
         }
         if (!currentPatientEcgRecords.isEmpty()) {
-            processECGRecords(currentPatientId, currentPatientEcgRecords);
+            processECGRecords(currentPatientId, currentPatientEcgRecords, alerts);
         }
     }
 
     /**
-     * Processes ECG records to calculate heart rate and detect irregularities.
+     * Processes ECG records to calculate heart rate and detect irregularities,
+     * from the beats an {@link RPeakDetector} finds in them.
      *
      * @param patientId the ID of the patient
      * @param patientEcgRecords the list of ECG records for the patient
+     * @param alerts receives the triggered alerts
      */
-    private void processECGRecords(String patientId, List<PatientRecord> patientEcgRecords) {
-        double totalRRInterval = 0.0;
-        int beatCount = 0;
-        List<Double> rrIntervals = new ArrayList<>();
-
-        // Calculate RR intervals and heart rate
-        for (int i = 1; i < patientEcgRecords.size(); i++) {
-            double previousData = patientEcgRecords.get(i - 1).getMeasurementValue();
-            double currentData = patientEcgRecords.get(i).getMeasurementValue();
-            if (previousData < 0 && currentData > 0) {
-                long previousTimestamp = patientEcgRecords.get(i - 1).getTimestamp();
-                long currentTimestamp = patientEcgRecords.get(i).getTimestamp();
-                double rrInterval = (currentTimestamp - previousTimestamp) / 1000.0; // convert ms to seconds
-                rrIntervals.add(rrInterval);
-                totalRRInterval += rrInterval;
-                beatCount++;
-            }
+    private void processECGRecords(String patientId, List<PatientRecord> patientEcgRecords, Consumer<Alert> alerts) {
+        RPeakDetector detector = new RPeakDetector();
+        for (PatientRecord record : patientEcgRecords) {
+            detector.update(record.getMeasurementValue(), record.getTimestamp());
         }
 
-        if (beatCount > 0) {
-            double averageRRInterval = totalRRInterval / beatCount;
-            double heartRate = 60 / averageRRInterval;
-
-            // Logging for debugging
-            System.out.println("Patient ID: " + patientId);
-            System.out.println("Total RR Interval: " + totalRRInterval);
-            System.out.println("Beat Count: " + beatCount);
-            System.out.println("Average RR Interval: " + averageRRInterval);
-            System.out.println("Heart Rate: " + heartRate);
+        if (detector.getIntervalCount() > 0) {
+            double heartRate = detector.getHeartRate();
 
             // Trigger alerts for abnormal heart rate
             if (heartRate < 50) {
                 Alert alert = new Alert(patientId, "triggered Abnormal Heart Rate Lower Than 50", System.currentTimeMillis());
-                triggerAlert(alert);
+                alerts.accept(alert);
             }
             if (heartRate > 100) {
                 Alert alert = new Alert(patientId, "triggered Abnormal Heart Rate Higher Than 100", System.currentTimeMillis());
-                triggerAlert(alert);
+                alerts.accept(alert);
             }
 
-            // Calculate standard deviation of RR intervals to detect irregular beats
-            double averageRRIntervalSum = rrIntervals.stream().mapToDouble(Double::doubleValue).sum() / rrIntervals.size();
-            double sumOfSquaredDifferences = rrIntervals.stream().mapToDouble(interval -> Math.pow(interval - averageRRIntervalSum, 2)).sum();
-            double standardDeviation = Math.sqrt(sumOfSquaredDifferences / rrIntervals.size());
-
-            if (standardDeviation > 0.1) {
+            // A large standard deviation of the RR intervals means irregular beats
+            if (detector.getIntervalStandardDeviation() > 0.1) {
                 Alert alert = new Alert(patientId, "triggered Irregular Beat Detected", System.currentTimeMillis());
-                triggerAlert(alert);
+                alerts.accept(alert);
             }
         }
     }
@@ -259,4 +379,39 @@ public class AlertGenerator {
         System.out.println(alert.getPatientId() + ": " + alert.getCondition() + ", at " + alert.getTimestamp());
     }
 
+    /**
+     * Evaluates a range of chunks of patients, splitting it in halves down to
+     * single chunks.
+     */
+    @SuppressWarnings("serial") // Never serialized; holds the non-serializable generator
+    private final class Sweep extends RecursiveAction {
+        private final Patient[] patients;
+        private final List<List<Alert>> buffers;
+        private final int fromChunk;
+        private final int toChunk;
+
+        Sweep(Patient[] patients, List<List<Alert>> buffers, int fromChunk, int toChunk) {
+            this.patients = patients;
+            this.buffers = buffers;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new Sweep(patients, buffers, fromChunk, middle),
+                        new Sweep(patients, buffers, middle, toChunk));
+                return;
+            }
+            List<Alert> buffer = new ArrayList<>();
+            int from = (int) ((long) fromChunk * patients.length / buffers.size());
+            int to = (int) ((long) toChunk * patients.length / buffers.size());
+            for (int i = from; i < to; i++) {
+                evaluateData(patients[i], buffer::add);
+            }
+            buffers.set(fromChunk, buffer);
+        }
+    }
 }
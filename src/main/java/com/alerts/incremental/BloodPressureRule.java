@@ -0,0 +1,75 @@
+package com.alerts.incremental;
+
+import com.alerts.Alert;
+import com.alerts.factories.AlertFactory;
+import com.alerts.factories.BloodPressureAlertFactory;
+import com.data_management.RecordType;
+
+import java.util.function.Consumer;
+
+/**
+ * Raises threshold and trend alerts for systolic and diastolic pressure. Each
+ * pressure keeps only its two previous readings, which is all the three-reading
+ * trend check needs.
+ */
+public class BloodPressureRule implements IncrementalRule {
+    private static final int[] RECORD_TYPES = {RecordType.SYSTOLIC_PRESSURE, RecordType.DIASTOLIC_PRESSURE};
+    private static final double TREND_STEP = 10;
+
+    private final AlertFactory alertFactory = new BloodPressureAlertFactory();
+    private final PressureState systolic = new PressureState("Systolic", 90, 180);
+    private final PressureState diastolic = new PressureState("Diastolic", 60, 120);
+
+    @Override
+    public int[] recordTypes() {
+        return RECORD_TYPES;
+    }
+
+    @Override
+    public void update(int patientId, int recordTypeCode, double measurementValue, long timestamp, Consumer<Alert> alerts) {
+        PressureState state = recordTypeCode == RecordType.SYSTOLIC_PRESSURE ? systolic : diastolic;
+        String patient = String.valueOf(patientId);
+
+        if (state.high.update(measurementValue > state.max)) {
+            alerts.accept(alertFactory.createAlert(patient, "triggered " + state.name + " Pressure higher than " + (int) state.max, timestamp));
+        }
+        if (state.low.update(measurementValue < state.min)) {
+            alerts.accept(alertFactory.createAlert(patient, "triggered " + state.name + " Pressure lower than " + (int) state.min, timestamp));
+        }
+
+        boolean trendKnown = state.count >= 2;
+        boolean increasing = trendKnown && state.previous > state.beforePrevious + TREND_STEP
+                && measurementValue > state.previous + TREND_STEP;
+        boolean decreasing = trendKnown && state.previous < state.beforePrevious - TREND_STEP
+                && measurementValue < state.previous - TREND_STEP;
+        if (state.increasing.update(increasing)) {
+            alerts.accept(alertFactory.createAlert(patient, "triggered Increasing Blood Pressure Trend Problem", timestamp));
+        }
+        if (state.decreasing.update(decreasing)) {
+            alerts.accept(alertFactory.createAlert(patient, "triggered Decreasing Blood Pressure Trend Problem", timestamp));
+        }
+
+        state.beforePrevious = state.previous;
+        state.previous = measurementValue;
+        state.count++;
+    }
+
+    private static final class PressureState {
+        final String name;
+        final double min;
+        final double max;
+        final EdgeTrigger high = new EdgeTrigger();
+        final EdgeTrigger low = new EdgeTrigger();
+        final EdgeTrigger increasing = new EdgeTrigger();
+        final EdgeTrigger decreasing = new EdgeTrigger();
+        double previous;
+        double beforePrevious;
+        int count;
+
+        PressureState(String name, double min, double max) {
+            this.name = name;
+            this.min = min;
+            this.max = max;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.alerts.incremental;
+
+import com.alerts.Alert;
+import com.alerts.factories.AlertFactory;
+import com.alerts.factories.ECGAlertFactory;
+import com.data_management.RecordType;
+
+import java.util.function.Consumer;
+
+/**
+ * Raises abnormal heart rate and irregular beat alerts from the ECG signal. The
+ * beats are found by an {@link RPeakDetector}, which keeps the mean and variance
+ * of the last eight intervals between them, so the alerts follow a change of
+ * rhythm however long the patient has been monitored.
+ */
+public class EcgRhythmRule implements IncrementalRule {
+    private static final int[] RECORD_TYPES = {RecordType.ECG};
+    // Number of RR intervals needed before the rate is trusted
+    private static final int MIN_INTERVALS = 2;
+
+    private final AlertFactory alertFactory = new ECGAlertFactory();
+    private final EdgeTrigger slow = new EdgeTrigger();
+    private final EdgeTrigger fast = new EdgeTrigger();
+    private final EdgeTrigger irregular = new EdgeTrigger();
+    private final RPeakDetector detector = new RPeakDetector();
+
+    @Override
+    public int[] recordTypes() {
+        return RECORD_TYPES;
+    }
+
+    @Override
+    public void update(int patientId, int recordTypeCode, double measurementValue, long timestamp, Consumer<Alert> alerts) {
+        if (!detector.update(measurementValue, timestamp) || detector.getIntervalCount() < MIN_INTERVALS
+                || detector.getMeanInterval() <= 0) {
+            return;
+        }
+
+        String patient = String.valueOf(patientId);
+        double heartRate = detector.getHeartRate();
+        double standardDeviation = detector.getIntervalStandardDeviation();
+        if (slow.update(heartRate < 50)) {
+            alerts.accept(alertFactory.createAlert(patient, "triggered Abnormal Heart Rate Lower Than 50", timestamp));
+        }
+        if (fast.update(heartRate > 100)) {
+            alerts.accept(alertFactory.createAlert(patient, "triggered Abnormal Heart Rate Higher Than 100", timestamp));
+        }
+        if (irregular.update(standardDeviation > 0.1)) {
+            alerts.accept(alertFactory.createAlert(patient, "triggered Irregular Beat Detected", timestamp));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.alerts.incremental;
+
+/**
+ * Tracks whether an alert condition currently holds, so that an alert is raised
+ * once when the condition becomes true rather than on every matching record.
+ */
+final class EdgeTrigger {
+    private boolean active;
+
+    /**
+     * Records the current state of the condition.
+     *
+     * @param condition whether the condition holds for the latest record
+     * @return true only if the condition was false before and is true now
+     */
+    boolean update(boolean condition) {
+        boolean fired = condition && !active;
+        active = condition;
+        return fired;
+    }
+}
@@ -0,0 +1,38 @@
+package com.alerts.incremental;
+
+import com.alerts.Alert;
+import com.alerts.factories.AlertFactory;
+import com.alerts.factories.BloodOxygenAlertFactory;
+import com.data_management.RecordType;
+
+import java.util.function.Consumer;
+
+/**
+ * Raises an alert when the latest systolic pressure is below 90 and the latest
+ * saturation is below 92% at the same time.
+ */
+public class HypotensiveHypoxemiaRule implements IncrementalRule {
+    private static final int[] RECORD_TYPES = {RecordType.SATURATION, RecordType.SYSTOLIC_PRESSURE};
+
+    private final AlertFactory alertFactory = new BloodOxygenAlertFactory();
+    private final EdgeTrigger combined = new EdgeTrigger();
+    private boolean lowSaturation;
+    private boolean lowSystolic;
+
+    @Override
+    public int[] recordTypes() {
+        return RECORD_TYPES;
+    }
+
+    @Override
+    public void update(int patientId, int recordTypeCode, double measurementValue, long timestamp, Consumer<Alert> alerts) {
+        if (recordTypeCode == RecordType.SATURATION) {
+            lowSaturation = measurementValue < 92;
+        } else {
+            lowSystolic = measurementValue < 90;
+        }
+        if (combined.update(lowSaturation && lowSystolic)) {
+            alerts.accept(alertFactory.createAlert(String.valueOf(patientId), "triggered Hypotensive Hypoxemia Alert", timestamp));
+        }
+    }
+}
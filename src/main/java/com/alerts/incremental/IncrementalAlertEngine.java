@@ -0,0 +1,109 @@
+package com.alerts.incremental;
+
+import com.alerts.Alert;
+import com.data_management.RecordListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates alert rules incrementally as records arrive, instead of re-running
+ * them over a patient's whole history. Every patient gets its own instance of
+ * each rule, and a record is only passed to the rules registered for its type.
+ * Subscribe the engine with
+ * {@link com.data_management.DataStorage#subscribe(com.data_management.RecordFilter,
+ * com.data_management.RecordBatchListener, int, int, com.data_management.RecordSubscription.OverflowPolicy)},
+ * passing {@code batch -> batch.forEach(engine)}, to have it follow ingestion.
+ * <p>
+ * Records of one patient are processed one at a time, in the order they are
+ * received; records of different patients are processed concurrently.
+ */
+public class IncrementalAlertEngine implements RecordListener {
+    private final List<Supplier<? extends IncrementalRule>> ruleFactories;
+    private final Consumer<Alert> alertSink;
+    private final ConcurrentMap<Integer, IncrementalRule[]> rulesByPatient = new ConcurrentHashMap<>();
+    // Record type code -> indices of the rules interested in that type
+    private final int[][] rulesByType;
+
+    /**
+     * Constructs an engine running the given rules.
+     *
+     * @param ruleFactories creates the rule instances of a new patient
+     * @param alertSink     receives every alert raised by the rules
+     */
+    public IncrementalAlertEngine(List<Supplier<? extends IncrementalRule>> ruleFactories, Consumer<Alert> alertSink) {
+        this.ruleFactories = new ArrayList<>(ruleFactories);
+        this.alertSink = alertSink;
+        this.rulesByType = indexRecordTypes(this.ruleFactories);
+    }
+
+    /**
+     * Returns factories for the built-in blood pressure, saturation,
+     * hypotensive hypoxemia and ECG rhythm rules.
+     *
+     * @return the default rule factories
+     */
+    public static List<Supplier<? extends IncrementalRule>> defaultRules() {
+        List<Supplier<? extends IncrementalRule>> rules = new ArrayList<>();
+        rules.add(BloodPressureRule::new);
+        rules.add(SaturationRule::new);
+        rules.add(HypotensiveHypoxemiaRule::new);
+        rules.add(EcgRhythmRule::new);
+        return rules;
+    }
+
+    @Override
+    public void onRecord(int patientId, int recordTypeCode, double measurementValue, long timestamp) {
+        if (recordTypeCode >= rulesByType.length || rulesByType[recordTypeCode].length == 0) {
+            return;
+        }
+        IncrementalRule[] rules = rulesByPatient.get(patientId);
+        if (rules == null) {
+            rules = rulesByPatient.computeIfAbsent(patientId, id -> createRules());
+        }
+        synchronized (rules) {
+            for (int index : rulesByType[recordTypeCode]) {
+                rules[index].update(patientId, recordTypeCode, measurementValue, timestamp, alertSink);
+            }
+        }
+    }
+
+    /**
+     * Discards the rule state of a patient, e.g. when the patient is discharged.
+     *
+     * @param patientId the unique identifier of the patient
+     */
+    public void reset(int patientId) {
+        rulesByPatient.remove(patientId);
+    }
+
+    private IncrementalRule[] createRules() {
+        IncrementalRule[] rules = new IncrementalRule[ruleFactories.size()];
+        for (int i = 0; i < rules.length; i++) {
+            rules[i] = ruleFactories.get(i).get();
+        }
+        return rules;
+    }
+
+    private static int[][] indexRecordTypes(List<Supplier<? extends IncrementalRule>> ruleFactories) {
+        int[][] index = new int[0][];
+        for (int rule = 0; rule < ruleFactories.size(); rule++) {
+            for (int type : ruleFactories.get(rule).get().recordTypes()) {
+                if (type >= index.length) {
+                    int oldLength = index.length;
+                    index = Arrays.copyOf(index, type + 1);
+                    Arrays.fill(index, oldLength, index.length, new int[0]);
+                }
+                int[] rules = Arrays.copyOf(index[type], index[type].length + 1);
+                rules[rules.length - 1] = rule;
+                index[type] = rules;
+            }
+        }
+        return index;
+    }
+}
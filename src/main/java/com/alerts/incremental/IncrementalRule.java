@@ -0,0 +1,33 @@
+package com.alerts.incremental;
+
+import com.alerts.Alert;
+
+import java.util.function.Consumer;
+
+/**
+ * An alert rule that is evaluated one record at a time. Each patient gets its
+ * own rule instance, so implementations keep whatever per-patient state they
+ * need (recent readings, running statistics) in plain fields and update it in
+ * constant time per record.
+ */
+public interface IncrementalRule {
+
+    /**
+     * Returns the record types this rule wants to receive.
+     *
+     * @return the record type codes, see {@link com.data_management.RecordType}
+     */
+    int[] recordTypes();
+
+    /**
+     * Updates the rule with the next record of the patient and reports every
+     * alert whose condition became true with this record.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordTypeCode   the record type code, one of {@link #recordTypes()}
+     * @param measurementValue the measurement value of the record
+     * @param timestamp        the time of the measurement, in milliseconds since epoch
+     * @param alerts           receives the alerts raised by this record
+     */
+    void update(int patientId, int recordTypeCode, double measurementValue, long timestamp, Consumer<Alert> alerts);
+}
@@ -0,0 +1,403 @@
+package com.alerts.incremental;
+
+/**
+ * Detects heart beats (R peaks) in a patient's ECG signal one sample at a time,
+ * after Pan and Tompkins:
+ * <ol>
+ * <li>band-pass filtering: a moving-average low-pass, then the removal of a
+ * slower moving average as high-pass, which takes out baseline wander;</li>
+ * <li>a five-point derivative, which brings out the steep slopes of the QRS complex;</li>
+ * <li>squaring, which makes all values positive and stresses large slopes;</li>
+ * <li>moving-window integration over about the width of a QRS complex;</li>
+ * <li>peak detection on the integrated signal: a peak is the highest value
+ * within one integration window, and it is a beat if it clears an adaptive
+ * threshold between running estimates of the signal and the noise peak levels.
+ * The levels are learnt over the first two seconds; after a beat there is a
+ * 200 ms refractory period, and when the next beat is overdue the largest
+ * noise peak since the last one is searched back for a missed beat.</li>
+ * <li>the beat is timed at the largest band-passed value around the peak,
+ * since the integrated signal has a flat top as wide as its window.</li>
+ * </ol>
+ * Every stage keeps its samples in a primitive ring buffer and its sum as a
+ * running sum, recomputed from the samples each time the buffer wraps around so
+ * that rounding errors cannot build up; the work per sample stays constant on
+ * average, and only timing a beat looks back over two windows of samples, once
+ * per beat.
+ * <p>
+ * The heart rate and the regularity of the rhythm are taken over the last eight
+ * intervals between beats, the span of Pan and Tompkins' RR average, so they
+ * follow a change of rhythm within a few beats however long the detector has
+ * run. Their mean and variance are updated with Welford's method as intervals
+ * enter and leave the window, and recomputed from it whenever it wraps around.
+ * <p>
+ * The windows are set in time and converted to samples with the sampling rate,
+ * which is taken from the first two samples. A window shorter than two samples
+ * leaves its stage out, so at the low rates of the simulator the detector
+ * reduces to finding the peaks of the squared signal.
+ * <p>
+ * A detector is used by one thread at a time.
+ */
+public final class RPeakDetector {
+    private static final double LOW_PASS_SECONDS = 0.025;
+    private static final double HIGH_PASS_SECONDS = 0.16;
+    private static final double DERIVATIVE_STEP_SECONDS = 0.005;
+    private static final double INTEGRATION_SECONDS = 0.15;
+    private static final long LEARNING_MILLIS = 2000;
+    private static final long REFRACTORY_MILLIS = 200;
+    // A beat that comes 66% later than usual makes the detector search back for a missed one
+    private static final double SEARCH_BACK_FACTOR = 1.66;
+    // Number of the latest RR intervals the rate and its deviation are taken over
+    private static final int RR_WINDOW = 8;
+
+    private boolean started;
+    private boolean configured;
+    private double firstValue;
+    private long firstTimestamp;
+
+    // Filter stages; null when the window is shorter than two samples
+    private RingBuffer lowPass;
+    private RingBuffer highPass;
+    private RingBuffer derivative;
+    private int derivativeStep;
+    private RingBuffer integration;
+    private RingBuffer bandPassed;
+    private double sampleMillis;
+
+    // Peak detection on the integrated signal
+    private double previousFeature;
+    private long previousTimestamp;
+    private boolean rising;
+    private int confirmSamples;
+    private double candidatePeak;
+    private long candidateTimestamp = -1;
+    private int candidateAge;
+    private long learningEnd;
+    private double learningMax;
+    private double learningSum;
+    private long learningCount;
+    private boolean learning = true;
+    private double signalLevel;
+    private double noiseLevel;
+    private double missedPeak;
+    private long missedPeakTimestamp = -1;
+
+    // Beats and the statistics of the last intervals between them, in seconds
+    private long lastBeat = -1;
+    private long beatCount;
+    private long intervalCount;
+    private final double[] intervals = new double[RR_WINDOW];
+    private int nextInterval;
+    private double meanInterval;
+    private double squaredDeviations;
+
+    /**
+     * Passes the next ECG sample of the patient through the detector.
+     *
+     * @param value     the ECG value
+     * @param timestamp the time of the sample, in milliseconds since epoch
+     * @return true if a beat was detected with this sample
+     */
+    public boolean update(double value, long timestamp) {
+        if (!configured) {
+            if (!started) {
+                // The sampling rate is not known before the second sample
+                started = true;
+                firstValue = value;
+                firstTimestamp = timestamp;
+                return false;
+            }
+            configure(timestamp - firstTimestamp);
+            configured = true;
+            learningEnd = firstTimestamp + LEARNING_MILLIS;
+            feed(firstValue, firstTimestamp);
+        }
+        return feed(value, timestamp);
+    }
+
+    private void configure(long firstSampleMillis) {
+        sampleMillis = firstSampleMillis > 0 ? firstSampleMillis : 1000.0;
+        double rate = 1000.0 / sampleMillis;
+        lowPass = RingBuffer.forWindow(rate, LOW_PASS_SECONDS);
+        highPass = RingBuffer.forWindow(rate, HIGH_PASS_SECONDS);
+        derivativeStep = (int) Math.round(rate * DERIVATIVE_STEP_SECONDS);
+        derivative = derivativeStep > 0 ? new RingBuffer(4 * derivativeStep + 1) : null;
+        integration = RingBuffer.forWindow(rate, INTEGRATION_SECONDS);
+        confirmSamples = Math.max(1, (int) Math.round(rate * INTEGRATION_SECONDS));
+        bandPassed = new RingBuffer(2 * confirmSamples + 1);
+    }
+
+    private boolean feed(double value, long timestamp) {
+        double filtered = value;
+        if (lowPass != null) {
+            lowPass.add(filtered);
+            filtered = lowPass.mean();
+        }
+        if (highPass != null) {
+            highPass.add(filtered);
+            filtered -= highPass.mean();
+        }
+        bandPassed.add(filtered);
+        if (derivative != null) {
+            derivative.add(filtered);
+            filtered = (2 * filtered + derivative.get(derivativeStep)
+                    - derivative.get(3 * derivativeStep) - 2 * derivative.get(4 * derivativeStep)) / 8;
+        }
+        double feature = filtered * filtered;
+        if (integration != null) {
+            integration.add(feature);
+            feature = integration.mean();
+        }
+
+        if (learning) {
+            if (timestamp < learningEnd) {
+                learningMax = Math.max(learningMax, feature);
+                learningSum += feature;
+                learningCount++;
+            } else {
+                learning = false;
+                signalLevel = learningMax / 3;
+                noiseLevel = learningCount > 0 ? learningSum / learningCount / 2 : 0.0;
+            }
+        }
+
+        boolean beat = false;
+        if (candidateTimestamp >= 0) {
+            // A higher value within one window replaces the candidate peak
+            if (feature > candidatePeak) {
+                candidatePeak = feature;
+                candidateTimestamp = timestamp;
+                candidateAge = 0;
+            } else {
+                candidateAge++;
+            }
+        } else if (feature < previousFeature && rising) {
+            candidatePeak = previousFeature;
+            candidateTimestamp = previousTimestamp;
+            candidateAge = 1;
+        }
+        if (candidateTimestamp >= 0 && candidateAge >= confirmSamples) {
+            beat = !learning && onPeak(candidatePeak, rPeakTimestamp(timestamp));
+            candidateTimestamp = -1;
+        }
+        if (!beat && !learning) {
+            beat = searchBack(timestamp);
+        }
+        if (feature != previousFeature) {
+            rising = feature > previousFeature;
+        }
+        previousFeature = feature;
+        previousTimestamp = timestamp;
+        return beat;
+    }
+
+    /**
+     * Returns the time of the largest band-passed value of the last two windows,
+     * which hold the QRS complex of a peak confirmed now.
+     */
+    private long rPeakTimestamp(long timestamp) {
+        int largestLag = 0;
+        double largest = -1.0;
+        for (int lag = 0; lag < bandPassed.size(); lag++) {
+            double value = Math.abs(bandPassed.get(lag));
+            if (value > largest) {
+                largest = value;
+                largestLag = lag;
+            }
+        }
+        return timestamp - Math.round(largestLag * sampleMillis);
+    }
+
+    /**
+     * Classifies a peak of the integrated signal as a beat or as noise.
+     */
+    private boolean onPeak(double peak, long timestamp) {
+        if (lastBeat >= 0 && timestamp - lastBeat < REFRACTORY_MILLIS) {
+            return false;
+        }
+        double threshold = noiseLevel + 0.25 * (signalLevel - noiseLevel);
+        if (peak > threshold) {
+            signalLevel = 0.125 * peak + 0.875 * signalLevel;
+            return onBeat(timestamp);
+        }
+        noiseLevel = 0.125 * peak + 0.875 * noiseLevel;
+        if (peak > missedPeak) {
+            missedPeak = peak;
+            missedPeakTimestamp = timestamp;
+        }
+        return false;
+    }
+
+    /**
+     * Searches back when a beat is overdue: the largest noise peak since the last
+     * beat is taken for a missed beat if it clears half the threshold.
+     */
+    private boolean searchBack(long timestamp) {
+        if (intervalCount == 0 || missedPeakTimestamp < 0
+                || (timestamp - lastBeat) / 1000.0 <= SEARCH_BACK_FACTOR * meanInterval) {
+            return false;
+        }
+        double threshold = noiseLevel + 0.25 * (signalLevel - noiseLevel);
+        if (missedPeak <= threshold / 2) {
+            return false;
+        }
+        signalLevel = 0.25 * missedPeak + 0.75 * signalLevel;
+        return onBeat(missedPeakTimestamp);
+    }
+
+    private boolean onBeat(long timestamp) {
+        if (lastBeat >= 0) {
+            addInterval((timestamp - lastBeat) / 1000.0); // convert ms to seconds
+        }
+        lastBeat = timestamp;
+        beatCount++;
+        missedPeak = 0.0;
+        missedPeakTimestamp = -1;
+        return true;
+    }
+
+    private void addInterval(double interval) {
+        intervalCount++;
+        if (intervalCount <= RR_WINDOW) {
+            double delta = interval - meanInterval;
+            meanInterval += delta / intervalCount;
+            squaredDeviations += delta * (interval - meanInterval);
+        } else {
+            // The oldest interval leaves the window as the new one enters it
+            double oldest = intervals[nextInterval];
+            double previousMean = meanInterval;
+            meanInterval += (interval - oldest) / RR_WINDOW;
+            squaredDeviations += (interval - oldest) * (interval - meanInterval + oldest - previousMean);
+        }
+        intervals[nextInterval] = interval;
+        nextInterval = nextInterval + 1 == RR_WINDOW ? 0 : nextInterval + 1;
+        if (nextInterval == 0) {
+            double sum = 0.0;
+            for (double value : intervals) {
+                sum += value;
+            }
+            meanInterval = sum / RR_WINDOW;
+            squaredDeviations = 0.0;
+            for (double value : intervals) {
+                squaredDeviations += (value - meanInterval) * (value - meanInterval);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of beats detected so far.
+     *
+     * @return the beat count
+     */
+    public long getBeatCount() {
+        return beatCount;
+    }
+
+    /**
+     * Returns the number of intervals between beats, one less than the beats.
+     *
+     * @return the interval count
+     */
+    public long getIntervalCount() {
+        return intervalCount;
+    }
+
+    /**
+     * Returns the time of the last beat.
+     *
+     * @return the timestamp of the last beat, or -1 before the first beat
+     */
+    public long getLastBeatTimestamp() {
+        return lastBeat;
+    }
+
+    /**
+     * Returns the mean of the last eight intervals between beats, or of all of
+     * them before the ninth beat.
+     *
+     * @return the mean RR interval in seconds, 0 before the second beat
+     */
+    public double getMeanInterval() {
+        return meanInterval;
+    }
+
+    /**
+     * Returns the population standard deviation of the last eight intervals
+     * between beats, or of all of them before the ninth beat.
+     *
+     * @return the standard deviation in seconds, 0 before the second beat
+     */
+    public double getIntervalStandardDeviation() {
+        if (intervalCount == 0) {
+            return 0.0;
+        }
+        // Rounding can take a sliding update just below zero
+        return Math.sqrt(Math.max(0.0, squaredDeviations) / Math.min(intervalCount, RR_WINDOW));
+    }
+
+    /**
+     * Returns the mean heart rate over the last eight intervals between beats.
+     *
+     * @return the heart rate in beats per minute, or NaN before the second beat
+     */
+    public double getHeartRate() {
+        return intervalCount > 0 && meanInterval > 0 ? 60 / meanInterval : Double.NaN;
+    }
+
+    /**
+     * The last samples of a filter stage, with their running sum.
+     */
+    private static final class RingBuffer {
+        private final double[] values;
+        private int next;
+        private int count;
+        private double sum;
+
+        RingBuffer(int capacity) {
+            values = new double[capacity];
+        }
+
+        /**
+         * Returns a buffer for a window of the given length, or null if the
+         * window holds fewer than two samples.
+         */
+        static RingBuffer forWindow(double rate, double seconds) {
+            int samples = (int) Math.round(rate * seconds);
+            return samples >= 2 ? new RingBuffer(samples) : null;
+        }
+
+        void add(double value) {
+            sum += value - values[next];
+            values[next] = value;
+            next = next + 1 == values.length ? 0 : next + 1;
+            if (count < values.length) {
+                count++;
+            }
+            if (next == 0) {
+                // Once per lap, so the running sum does not drift from the samples
+                sum = 0.0;
+                for (double sample : values) {
+                    sum += sample;
+                }
+            }
+        }
+
+        /**
+         * Returns the value added lag samples before the last one, 0 before it was added.
+         */
+        double get(int lag) {
+            if (lag >= count) {
+                return 0.0;
+            }
+            int index = next - 1 - lag;
+            return values[index < 0 ? index + values.length : index];
+        }
+
+        double mean() {
+            return sum / count;
+        }
+
+        int size() {
+            return count;
+        }
+    }
+}
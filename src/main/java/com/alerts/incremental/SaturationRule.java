@@ -0,0 +1,49 @@
+package com.alerts.incremental;
+
+import com.alerts.Alert;
+import com.alerts.factories.AlertFactory;
+import com.alerts.factories.BloodOxygenAlertFactory;
+import com.data_management.RecordType;
+
+import java.util.function.Consumer;
+
+/**
+ * Raises low saturation and rapid saturation drop alerts, comparing each
+ * reading only with the previous one.
+ */
+public class SaturationRule implements IncrementalRule {
+    private static final int[] RECORD_TYPES = {RecordType.SATURATION};
+    private static final double LOW_SATURATION = 92;
+    private static final double RAPID_DROP = 5;
+    private static final long RAPID_DROP_WINDOW = 10 * 60 * 1000;
+
+    private final AlertFactory alertFactory = new BloodOxygenAlertFactory();
+    private final EdgeTrigger low = new EdgeTrigger();
+    private final EdgeTrigger rapidDrop = new EdgeTrigger();
+    private boolean hasPrevious;
+    private double previousValue;
+    private long previousTimestamp;
+
+    @Override
+    public int[] recordTypes() {
+        return RECORD_TYPES;
+    }
+
+    @Override
+    public void update(int patientId, int recordTypeCode, double measurementValue, long timestamp, Consumer<Alert> alerts) {
+        String patient = String.valueOf(patientId);
+        if (low.update(measurementValue < LOW_SATURATION)) {
+            alerts.accept(alertFactory.createAlert(patient, "triggered Saturation level lower than 92.0%", timestamp));
+        }
+
+        boolean dropped = hasPrevious && timestamp - previousTimestamp < RAPID_DROP_WINDOW
+                && previousValue - measurementValue >= RAPID_DROP;
+        if (rapidDrop.update(dropped)) {
+            alerts.accept(alertFactory.createAlert(patient, "triggered Rapid Saturation Drop Alert", timestamp));
+        }
+
+        hasPrevious = true;
+        previousValue = measurementValue;
+        previousTimestamp = timestamp;
+    }
+}
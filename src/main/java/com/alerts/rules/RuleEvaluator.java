@@ -0,0 +1,393 @@
+package com.alerts.rules;
+
+import com.alerts.Alert;
+import com.alerts.incremental.IncrementalRule;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The state of a {@link RuleSet} for one patient, in a few primitive arrays:
+ * the recent readings of each record type, which conditions of each condition
+ * group hold and how many conditions of each rule do not.
+ * <p>
+ * Signals are compared as soon as they are computed and are not kept: what a
+ * later record needs of them is which conditions held, kept per group as the
+ * boundary between the conditions that hold and those that do not, and per
+ * signal as the range of values that moves no boundary.
+ * <p>
+ * What a record reads and writes in the common case, a record that crosses no
+ * threshold, is kept together per record type, as the records of many patients
+ * interleave and each record finds little of its patient's state in the cache:
+ * the ring position and the time windows of a type in one array, and the
+ * ranges of its signals, a copy of the oldest reading of each time window and
+ * its readings in another. Each ring's
+ * capacity is a power of two, so finding a reading is a mask rather than a
+ * wrap-around branch. A ring keeps the readings its signals read and grows only
+ * for a time window holding more readings.
+ */
+final class RuleEvaluator implements IncrementalRule {
+    // Per record type, from positions[t]: offset of the ranges of its signals, followed
+    // by the oldest reading of each time window, ring offset, ring capacity - 1, index
+    // of the latest reading, number of readings kept and the lag of the oldest reading
+    // of each time window
+    private static final int RANGES = 0;
+    private static final int OFFSET = 1;
+    private static final int MASK = 2;
+    private static final int HEAD = 3;
+    private static final int SIZE = 4;
+    private static final int LAGS = 5;
+
+    private final RuleSet ruleSet;
+    private final int[] positions;
+    private final int[] rings;
+    // Ranges, oldest readings of the time windows and readings, and at the same indices
+    // the time of each reading if any signal of the type reads it
+    private double[] values;
+    private long[] timestamps;
+    // Per condition group, the index of its first condition that does not hold
+    private final int[] boundaries;
+    // Per rule, the number of its conditions that do not hold, and whether all did
+    // after the previous record
+    private final int[] failingConditions;
+    private final boolean[] holding;
+    // The rules whose conditions changed with the current record, with repeats
+    private final int[] changed;
+    private int changes;
+
+    RuleEvaluator(RuleSet ruleSet) {
+        this.ruleSet = ruleSet;
+        TypeProgram[] programs = ruleSet.programs;
+        positions = new int[programs.length];
+        rings = new int[LAGS * programs.length + ruleSet.windowCount];
+        int length = 0;
+        for (int t = 0; t < programs.length; t++) {
+            int ring = LAGS * t + programs[t].firstWindow;
+            int capacity = programs[t].initialCapacity();
+            positions[t] = ring;
+            rings[ring + RANGES] = length;
+            length += 2 * programs[t].signalCount() + programs[t].windowCount();
+            rings[ring + OFFSET] = length;
+            rings[ring + MASK] = capacity - 1;
+            rings[ring + HEAD] = capacity - 1;
+            length += capacity;
+        }
+        values = new double[length];
+        timestamps = new long[length];
+
+        boundaries = new int[ruleSet.groupCount];
+        int mostConditions = 0;
+        for (int t = 0; t < programs.length; t++) {
+            TypeProgram program = programs[t];
+            for (int g = 0; g < program.groupCount(); g++) {
+                boundaries[program.firstGroup + g] = program.groupStarts[g];
+            }
+            for (int signal = 0; signal < program.signalCount(); signal++) {
+                updateRange(program, positions[t], signal);
+            }
+            mostConditions = Math.max(mostConditions, program.ruleIds.length);
+        }
+        failingConditions = new int[ruleSet.rules.length];
+        for (int r = 0; r < failingConditions.length; r++) {
+            failingConditions[r] = ruleSet.rules[r].slots.length;
+        }
+        holding = new boolean[ruleSet.rules.length];
+        changed = new int[mostConditions];
+    }
+
+    @Override
+    public int[] recordTypes() {
+        return ruleSet.recordTypes;
+    }
+
+    @Override
+    public void update(int patientId, int recordTypeCode, double measurementValue, long timestamp, Consumer<Alert> alerts) {
+        process(patientId, recordTypeCode, measurementValue, timestamp, alerts);
+    }
+
+    /**
+     * Updates the state with a record and reports the alerts of the rules that
+     * became true with it.
+     *
+     * @param alerts receives the alerts, or null to only report whether any rule fired
+     * @return true if any rule became true
+     */
+    boolean process(int patientId, int recordTypeCode, double measurementValue, long timestamp, Consumer<Alert> alerts) {
+        int t = recordTypeCode < ruleSet.typeIndex.length ? ruleSet.typeIndex[recordTypeCode] : -1;
+        if (t < 0) {
+            return false;
+        }
+        TypeProgram program = ruleSet.programs[t];
+        int ring = positions[t];
+        if (program.keepMillis > 0) {
+            dropOldReadings(program, ring, timestamp);
+        }
+        changes = 0;
+        add(program, ring, measurementValue, timestamp);
+        if (program.windowMillis.length > 0) {
+            compareWindows(program, ring, measurementValue, timestamp);
+        }
+        // A record that crosses no threshold ends here, having changed nothing
+        return changes > 0 && fire(patientId, timestamp, alerts);
+    }
+
+    /**
+     * Adds a reading to the ring of its record type and compares the latest
+     * reading, the deltas and the steps with their ranges.
+     */
+    private void add(TypeProgram program, int ring, double latest, long timestamp) {
+        double[] values = this.values;
+        long[] timestamps = this.timestamps;
+        int offset = rings[ring + OFFSET];
+        int mask = rings[ring + MASK];
+        int head = (rings[ring + HEAD] + 1) & mask;
+        // Without a time window, the oldest reading is overwritten, or only no longer counted
+        int size = program.keepMillis == 0
+                ? Math.min(rings[ring + SIZE] + 1, program.keepSamples) : rings[ring + SIZE] + 1;
+        values[offset + head] = latest;
+        if (program.readsTimestamps) {
+            timestamps[offset + head] = timestamp;
+        }
+        rings[ring + HEAD] = head;
+        rings[ring + SIZE] = size;
+
+        int range = rings[ring + RANGES];
+        // Each signal, NaN where it is not defined, is compared as soon as it is computed
+        // with the range that moves no boundary; a NaN value is in no range
+        int signal = 0;
+        compare(program, ring, signal++, range, latest);
+        range += 2;
+
+        for (int d = 0; d < program.deltaSamples.length; d++) {
+            int n = program.deltaSamples[d];
+            long windowMillis = program.deltaWindows[d];
+            double delta = Double.NaN;
+            if (size > n) {
+                int earlier = offset + ((head - n) & mask);
+                if (windowMillis == 0 || timestamp - timestamps[earlier] < windowMillis) {
+                    delta = latest - values[earlier];
+                }
+            }
+            compare(program, ring, signal++, range, delta);
+            range += 2;
+        }
+
+        for (int s = 0; s < program.stepSamples.length; s++) {
+            int n = program.stepSamples[s];
+            double largest = Double.NaN;
+            double smallest = Double.NaN;
+            if (size > n) {
+                double later = values[offset + ((head - 1) & mask)];
+                largest = latest - later;
+                smallest = largest;
+                for (int lag = 2; lag <= n; lag++) {
+                    double earlier = values[offset + ((head - lag) & mask)];
+                    double step = later - earlier;
+                    largest = step > largest ? step : largest;
+                    smallest = step < smallest ? step : smallest;
+                    later = earlier;
+                }
+            }
+            compare(program, ring, signal++, range, largest);
+            compare(program, ring, signal++, range + 2, smallest);
+            range += 4;
+        }
+    }
+
+    /**
+     * Compares the change or the rate of change over each time window with its range.
+     */
+    private void compareWindows(TypeProgram program, int ring, double latest, long timestamp) {
+        double[] values = this.values;
+        long[] timestamps = this.timestamps;
+        int offset = rings[ring + OFFSET];
+        int mask = rings[ring + MASK];
+        int head = rings[ring + HEAD];
+        int size = rings[ring + SIZE];
+        int signal = program.signalCount() - program.windowMillis.length;
+        int range = rings[ring + RANGES] + 2 * signal;
+        for (int w = 0, oldest = offset - program.windowMillis.length; w < program.windowMillis.length;
+                w++, oldest++) {
+            // The oldest reading within the window only moves forward, so follow it
+            // from the previous record rather than searching for it, with a copy of it
+            // that saves reading back into the ring unless the window moved past it
+            int lag = rings[ring + LAGS + w] + 1;
+            if (lag >= size) {
+                lag = size - 1;
+                values[oldest] = values[offset + ((head - lag) & mask)];
+                timestamps[oldest] = timestamps[offset + ((head - lag) & mask)];
+            }
+            long from = timestamp - program.windowMillis[w];
+            while (lag > 0 && timestamps[oldest] <= from) {
+                lag--;
+                values[oldest] = values[offset + ((head - lag) & mask)];
+                timestamps[oldest] = timestamps[offset + ((head - lag) & mask)];
+            }
+            rings[ring + LAGS + w] = lag;
+            double change = Double.NaN;
+            if (lag > 0) {
+                change = latest - values[oldest];
+                if (program.windowRates[w]) {
+                    // Readings taken at the same time have no rate of change
+                    long elapsed = timestamp - timestamps[oldest];
+                    change = elapsed > 0 ? change * 60_000 / elapsed : Double.NaN;
+                }
+            }
+            compare(program, ring, signal++, range, change);
+            range += 2;
+        }
+    }
+
+    /**
+     * Raises the alerts of the rules whose conditions changed and now all hold.
+     */
+    private boolean fire(int patientId, long timestamp, Consumer<Alert> alerts) {
+        // A rule fires when all its conditions hold after the record but not before,
+        // whichever groups its conditions moved in; in rule order
+        int[] changed = this.changed;
+        if (changes > 1) {
+            Arrays.sort(changed, 0, changes);
+        }
+        boolean fired = false;
+        for (int i = 0; i < changes; i++) {
+            int r = changed[i];
+            boolean holds = failingConditions[r] == 0;
+            if (holds != holding[r]) {
+                holding[r] = holds;
+                fired |= raise(r, holds, patientId, timestamp, alerts);
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * Moves the boundaries of the groups of a signal if its value left its range,
+     * at the given index, where no boundary moves. A NaN value is in no range.
+     */
+    private void compare(TypeProgram program, int ring, int signal, int range, double value) {
+        if (!(value > values[range]) || value > values[range + 1]) {
+            cross(program, ring, signal, value);
+        }
+    }
+
+    /**
+     * Moves the boundary of each group of a signal over the thresholds its value
+     * crossed, counting the conditions that changed against their rules.
+     */
+    private void cross(TypeProgram program, int ring, int signal, double value) {
+        double[] thresholds = program.thresholds;
+        int[] ruleIds = program.ruleIds;
+        for (int g = program.signalGroups[signal]; g < program.signalGroups[signal + 1]; g++) {
+            double signed = program.groupSigns[g] * value;
+            int start = program.groupStarts[g];
+            int end = program.groupStarts[g + 1];
+            int boundary = boundaries[program.firstGroup + g];
+            while (boundary < end && thresholds[boundary] < signed) {
+                int r = ruleIds[boundary++];
+                failingConditions[r]--;
+                changed[changes++] = r;
+            }
+            while (boundary > start && !(thresholds[boundary - 1] < signed)) {
+                int r = ruleIds[--boundary];
+                failingConditions[r]++;
+                changed[changes++] = r;
+            }
+            boundaries[program.firstGroup + g] = boundary;
+        }
+        updateRange(program, ring, signal);
+    }
+
+    /**
+     * Sets the range of a signal to the values between the thresholds on either
+     * side of each boundary of its groups.
+     */
+    private void updateRange(TypeProgram program, int ring, int signal) {
+        double low = Double.NEGATIVE_INFINITY;
+        double high = Double.POSITIVE_INFINITY;
+        for (int g = program.signalGroups[signal]; g < program.signalGroups[signal + 1]; g++) {
+            int start = program.groupStarts[g];
+            int end = program.groupStarts[g + 1];
+            int boundary = boundaries[program.firstGroup + g];
+            // The group is unchanged while its signed value is above lower and up to upper
+            double lower = boundary > start ? program.thresholds[boundary - 1] : Double.NEGATIVE_INFINITY;
+            double upper = boundary < end ? program.thresholds[boundary] : Double.POSITIVE_INFINITY;
+            if (program.groupSigns[g] > 0) {
+                low = Math.max(low, lower);
+                high = Math.min(high, upper);
+            } else {
+                // -upper <= value < -lower, with the same open and closed ends as above
+                low = Math.max(low, Math.nextDown(-upper));
+                high = Math.min(high, Math.nextDown(-lower));
+            }
+        }
+        int range = rings[ring + RANGES] + 2 * signal;
+        values[range] = low;
+        values[range + 1] = high;
+    }
+
+    private boolean raise(int r, boolean rising, int patientId, long timestamp, Consumer<Alert> alerts) {
+        if (rising && alerts != null) {
+            RuleSet.Rule rule = ruleSet.rules[r];
+            alerts.accept(rule.alertFactory.createAlert(String.valueOf(patientId), rule.condition, timestamp));
+        }
+        return rising;
+    }
+
+    /**
+     * Drops the readings older than every time window of a record type, and
+     * makes room for one more reading.
+     */
+    private void dropOldReadings(TypeProgram program, int ring, long timestamp) {
+        int offset = rings[ring + OFFSET];
+        int mask = rings[ring + MASK];
+        int head = rings[ring + HEAD];
+        int size = rings[ring + SIZE];
+        while (size >= program.keepSamples
+                && timestamps[offset + ((head - size + 1) & mask)] <= timestamp - program.keepMillis) {
+            size--;
+        }
+        if (size > mask) {
+            grow(ring, size);
+        }
+        rings[ring + SIZE] = size;
+    }
+
+    /**
+     * Doubles the capacity of a full ring, moving the ranges and rings after it.
+     */
+    private void grow(int ring, int size) {
+        int oldCapacity = rings[ring + MASK] + 1;
+        double[] newValues = new double[values.length + oldCapacity];
+        long[] newTimestamps = new long[timestamps.length + oldCapacity];
+        int offset = 0;
+        for (int t = 0; t < positions.length; t++) {
+            int other = positions[t];
+            int oldOffset = rings[other + OFFSET];
+            int capacity = rings[other + MASK] + 1;
+            // The ranges and the oldest readings of the time windows first
+            int ranges = oldOffset - rings[other + RANGES];
+            System.arraycopy(values, rings[other + RANGES], newValues, offset, ranges);
+            System.arraycopy(timestamps, rings[other + RANGES], newTimestamps, offset, ranges);
+            rings[other + RANGES] = offset;
+            offset += ranges;
+            if (other == ring) {
+                // Oldest reading first, so the latest is at size - 1
+                int head = rings[other + HEAD];
+                for (int lag = size - 1, i = offset; lag >= 0; lag--, i++) {
+                    newValues[i] = values[oldOffset + ((head - lag) & (capacity - 1))];
+                    newTimestamps[i] = timestamps[oldOffset + ((head - lag) & (capacity - 1))];
+                }
+                capacity *= 2;
+                rings[other + MASK] = capacity - 1;
+                rings[other + HEAD] = size - 1;
+            } else {
+                System.arraycopy(values, oldOffset, newValues, offset, capacity);
+                System.arraycopy(timestamps, oldOffset, newTimestamps, offset, capacity);
+            }
+            rings[other + OFFSET] = offset;
+            offset += capacity;
+        }
+        values = newValues;
+        timestamps = newTimestamps;
+    }
+}
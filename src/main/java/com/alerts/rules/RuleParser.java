@@ -0,0 +1,314 @@
+package com.alerts.rules;
+
+import com.alerts.factories.AlertFactory;
+import com.alerts.factories.BloodOxygenAlertFactory;
+import com.alerts.factories.BloodPressureAlertFactory;
+import com.alerts.factories.ECGAlertFactory;
+import com.data_management.RecordType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses alert rule definitions, one rule per line; see {@link RuleSet} for the
+ * format. Blank lines and everything after a {@code #} are ignored.
+ */
+final class RuleParser {
+    private static final Map<String, AlertFactory> KINDS = Map.of(
+            "BloodPressure", new BloodPressureAlertFactory(),
+            "BloodOxygen", new BloodOxygenAlertFactory(),
+            "ECG", new ECGAlertFactory());
+
+    private final String source;
+    private int lineNumber;
+    private List<Token> tokens;
+    private int position;
+
+    private RuleParser(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Parses all rules of a reader.
+     *
+     * @param reader the rule definitions
+     * @param source the name of the source, for error messages
+     * @return the rules, in the order they are defined
+     * @throws IOException if the rules cannot be read or a line is not a valid rule
+     */
+    static List<RuleDefinition> parse(BufferedReader reader, String source) throws IOException {
+        RuleParser parser = new RuleParser(source);
+        List<RuleDefinition> rules = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            parser.lineNumber++;
+            parser.tokens = parser.tokenize(line);
+            parser.position = 0;
+            if (!parser.tokens.isEmpty()) {
+                rules.add(parser.parseRule());
+            }
+        }
+        return rules;
+    }
+
+    private RuleDefinition parseRule() throws IOException {
+        String kind = expect(TokenType.WORD, "an alert kind").text;
+        AlertFactory alertFactory = KINDS.get(kind);
+        if (alertFactory == null) {
+            throw error("unknown alert kind '" + kind + "', expected one of " + KINDS.keySet());
+        }
+        String condition = expect(TokenType.STRING, "the quoted alert condition").text;
+        expectWord("when");
+        List<ConditionDefinition> conditions = new ArrayList<>();
+        conditions.add(parseCondition());
+        while (position < tokens.size()) {
+            expectWord("and");
+            conditions.add(parseCondition());
+        }
+        return new RuleDefinition(alertFactory, condition, conditions, lineNumber);
+    }
+
+    private ConditionDefinition parseCondition() throws IOException {
+        String name = expect(TokenType.WORD, "a record type or function").text;
+        String function = "value";
+        String label = name;
+        int samples = 0;
+        long millis = 0;
+        if (peekSymbol("(")) {
+            position++;
+            function = name;
+            label = expect(TokenType.WORD, "a record type").text;
+            List<Token> arguments = new ArrayList<>();
+            while (peekSymbol(",")) {
+                position++;
+                if (position < tokens.size() && tokens.get(position).type != TokenType.SYMBOL) {
+                    arguments.add(tokens.get(position++));
+                } else {
+                    throw error("expected an argument");
+                }
+            }
+            expectSymbol(")");
+            switch (function) {
+                case "delta":
+                    checkArguments(function, arguments, "(type, samples) or (type, samples, duration)",
+                            TokenType.NUMBER, TokenType.DURATION);
+                    samples = sampleCount(arguments.get(0));
+                    millis = arguments.size() > 1 ? (long) arguments.get(1).value : 0;
+                    break;
+                case "steps":
+                    checkArguments(function, arguments, "(type, samples)", TokenType.NUMBER);
+                    samples = sampleCount(arguments.get(0));
+                    break;
+                case "change":
+                case "rate":
+                    checkArguments(function, arguments, "(type, duration)", TokenType.DURATION);
+                    millis = (long) arguments.get(0).value;
+                    break;
+                default:
+                    throw error("unknown function '" + function + "', expected delta, steps, change or rate");
+            }
+        }
+        Token operator = expect(TokenType.SYMBOL, "a comparison");
+        if (!operator.text.startsWith("<") && !operator.text.startsWith(">")) {
+            throw error("expected <, <=, > or >=, found '" + operator.text + "'");
+        }
+        double threshold = expect(TokenType.NUMBER, "a number").value;
+        return new ConditionDefinition(function, RecordType.codeOf(label), samples, millis, operator.text, threshold);
+    }
+
+    private void checkArguments(String function, List<Token> arguments, String usage, TokenType... types)
+            throws IOException {
+        boolean valid = arguments.size() >= 1 && arguments.size() <= types.length;
+        for (int i = 0; valid && i < arguments.size(); i++) {
+            valid = arguments.get(i).type == types[i];
+        }
+        if (!valid) {
+            throw error(function + " takes " + usage);
+        }
+    }
+
+    private int sampleCount(Token token) throws IOException {
+        if (token.value < 1 || token.value != Math.rint(token.value) || token.value > Integer.MAX_VALUE) {
+            throw error("the number of samples must be a positive integer, got " + token.text);
+        }
+        return (int) token.value;
+    }
+
+    private Token expect(TokenType type, String expected) throws IOException {
+        if (position >= tokens.size()) {
+            throw error("expected " + expected + " at the end of the line");
+        }
+        Token token = tokens.get(position);
+        if (token.type != type) {
+            throw error("expected " + expected + ", found '" + token.text + "'");
+        }
+        position++;
+        return token;
+    }
+
+    private void expectWord(String word) throws IOException {
+        Token token = expect(TokenType.WORD, "'" + word + "'");
+        if (!token.text.equals(word)) {
+            throw error("expected '" + word + "', found '" + token.text + "'");
+        }
+    }
+
+    private void expectSymbol(String symbol) throws IOException {
+        if (!peekSymbol(symbol)) {
+            throw error("expected '" + symbol + "'");
+        }
+        position++;
+    }
+
+    private boolean peekSymbol(String symbol) {
+        return position < tokens.size() && tokens.get(position).type == TokenType.SYMBOL
+                && tokens.get(position).text.equals(symbol);
+    }
+
+    private List<Token> tokenize(String line) throws IOException {
+        List<Token> result = new ArrayList<>();
+        int i = 0;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '#') {
+                break;
+            } else if (c == '"') {
+                int end = line.indexOf('"', i + 1);
+                if (end < 0) {
+                    throw error("unterminated string");
+                }
+                result.add(new Token(TokenType.STRING, line.substring(i + 1, end), 0));
+                i = end + 1;
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < line.length() && (Character.isLetterOrDigit(line.charAt(i)) || line.charAt(i) == '_')) {
+                    i++;
+                }
+                result.add(new Token(TokenType.WORD, line.substring(start, i), 0));
+            } else if (Character.isDigit(c) || c == '.' || c == '-' || c == '+') {
+                int start = i;
+                i++;
+                while (i < line.length() && (Character.isDigit(line.charAt(i)) || line.charAt(i) == '.')) {
+                    i++;
+                }
+                double value;
+                try {
+                    value = Double.parseDouble(line.substring(start, i));
+                } catch (NumberFormatException e) {
+                    throw error("invalid number '" + line.substring(start, i) + "'");
+                }
+                int unitStart = i;
+                while (i < line.length() && Character.isLetter(line.charAt(i))) {
+                    i++;
+                }
+                if (unitStart == i) {
+                    result.add(new Token(TokenType.NUMBER, line.substring(start, i), value));
+                } else {
+                    result.add(duration(line.substring(start, i), value, line.substring(unitStart, i)));
+                }
+            } else if (c == '<' || c == '>') {
+                boolean orEqual = i + 1 < line.length() && line.charAt(i + 1) == '=';
+                result.add(new Token(TokenType.SYMBOL, orEqual ? c + "=" : String.valueOf(c), 0));
+                i += orEqual ? 2 : 1;
+            } else if (c == '(' || c == ')' || c == ',') {
+                result.add(new Token(TokenType.SYMBOL, String.valueOf(c), 0));
+                i++;
+            } else {
+                throw error("unexpected character '" + c + "'");
+            }
+        }
+        return result;
+    }
+
+    private Token duration(String text, double value, String unit) throws IOException {
+        long unitMillis;
+        switch (unit) {
+            case "ms":
+                unitMillis = 1;
+                break;
+            case "s":
+                unitMillis = 1000;
+                break;
+            case "m":
+                unitMillis = 60_000;
+                break;
+            case "h":
+                unitMillis = 3_600_000;
+                break;
+            default:
+                throw error("unknown time unit in '" + text + "', expected ms, s, m or h");
+        }
+        long millis = Math.round(value * unitMillis);
+        if (millis <= 0) {
+            throw error("durations must be positive, got " + text);
+        }
+        return new Token(TokenType.DURATION, text, millis);
+    }
+
+    private IOException error(String message) {
+        return new IOException(source + ", line " + lineNumber + ": " + message);
+    }
+
+    private enum TokenType {
+        WORD, STRING, NUMBER, DURATION, SYMBOL
+    }
+
+    private static final class Token {
+        final TokenType type;
+        final String text;
+        // The number, or the duration in milliseconds
+        final double value;
+
+        Token(TokenType type, String text, double value) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A parsed rule: the alert it raises, and the conditions that must all hold.
+     */
+    static final class RuleDefinition {
+        final AlertFactory alertFactory;
+        final String condition;
+        final List<ConditionDefinition> conditions;
+        final int lineNumber;
+
+        RuleDefinition(AlertFactory alertFactory, String condition, List<ConditionDefinition> conditions,
+                int lineNumber) {
+            this.alertFactory = alertFactory;
+            this.condition = condition;
+            this.conditions = conditions;
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    /**
+     * A parsed condition: a function of one record type compared with a number.
+     */
+    static final class ConditionDefinition {
+        // value, delta, steps, change or rate
+        final String function;
+        final int recordTypeCode;
+        final int samples;
+        final long millis;
+        final String operator;
+        final double threshold;
+
+        ConditionDefinition(String function, int recordTypeCode, int samples, long millis, String operator,
+                double threshold) {
+            this.function = function;
+            this.recordTypeCode = recordTypeCode;
+            this.samples = samples;
+            this.millis = millis;
+            this.operator = operator;
+            this.threshold = threshold;
+        }
+    }
+}
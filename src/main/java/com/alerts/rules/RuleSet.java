@@ -0,0 +1,299 @@
+package com.alerts.rules;
+
+import com.alerts.factories.AlertFactory;
+import com.alerts.incremental.IncrementalAlertEngine;
+import com.alerts.incremental.IncrementalRule;
+import com.alerts.strategies.RecordAlertStrategy;
+import com.data_management.RecordType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A set of alert rules loaded from a text definition and compiled into
+ * evaluators that work on primitive per-patient state.
+ * <p>
+ * Each line defines one rule: the kind of alert ({@code BloodPressure},
+ * {@code BloodOxygen} or {@code ECG}), the quoted alert condition, and after
+ * {@code when} one or more conditions joined by {@code and}. A condition
+ * compares a signal of one record type with a number using {@code <},
+ * {@code <=}, {@code >} or {@code >=}. The signals are:
+ * <ul>
+ * <li>{@code Type}: the latest reading;</li>
+ * <li>{@code delta(Type, n)}: the latest reading minus the one n readings
+ * earlier, and {@code delta(Type, n, 10m)} the same if that reading is less than
+ * 10 minutes older;</li>
+ * <li>{@code steps(Type, n)}: each of the last n changes from one reading to the
+ * next, so {@code steps(SystolicPressure, 2) > 10} holds after two rises of more
+ * than 10 in a row;</li>
+ * <li>{@code change(Type, 10m)}: the latest reading minus the oldest reading of
+ * the last 10 minutes;</li>
+ * <li>{@code rate(Type, 10m)}: the same change per minute, not defined while
+ * that oldest reading has the same timestamp as the latest.</li>
+ * </ul>
+ * Durations are written with a unit of {@code ms}, {@code s}, {@code m} or
+ * {@code h}. Conditions on different record types compare the latest signal of
+ * each, so {@code Saturation < 92 and SystolicPressure < 90} holds while both
+ * latest readings are low. Blank lines and text after {@code #} are ignored.
+ * For example:
+ * <pre>
+ * BloodOxygen "triggered Rapid Saturation Drop Alert" when delta(Saturation, 1, 10m) &lt;= -5
+ * </pre>
+ * Compiling resolves record types to codes and operators to one form of
+ * comparison, gives every distinct signal one slot, shared by all rules that
+ * read it, and lays out what each record type triggers in flat primitive
+ * arrays. A record then updates the recent readings and the signals of its own
+ * type, and only looks at the conditions on that type whose threshold the new
+ * signal values crossed (see {@link TypeProgram}), so a large rule set costs
+ * about as much per record as a small one reading the same signals.
+ * <p>
+ * A rule raises its alert once, when its conditions become true, like the
+ * rules of {@link IncrementalAlertEngine}. A rule set is immutable and may be
+ * shared; the per-patient state lives in the instances of {@link #newRule()}.
+ */
+public final class RuleSet {
+    private static final String DEFAULT_RULES = "default-alert-rules.txt";
+
+    // Record types read by the rules, and the index of each in the tables below
+    final int[] recordTypes;
+    final int[] typeIndex;
+    final TypeProgram[] programs;
+    final int groupCount;
+    final int windowCount;
+    final Rule[] rules;
+
+    private RuleSet(List<RuleParser.RuleDefinition> definitions) {
+        Map<String, Signal> signals = new LinkedHashMap<>();
+        List<Integer> types = new ArrayList<>();
+        rules = new Rule[definitions.size()];
+        for (int r = 0; r < rules.length; r++) {
+            RuleParser.RuleDefinition definition = definitions.get(r);
+            int count = definition.conditions.size();
+            int[] recordTypeCodes = new int[count];
+            int[] slots = new int[count];
+            double[] signs = new double[count];
+            double[] thresholds = new double[count];
+            for (int c = 0; c < count; c++) {
+                RuleParser.ConditionDefinition condition = definition.conditions.get(c);
+                Signal signal = signals.computeIfAbsent(signalKey(condition),
+                        key -> createSignal(condition, signals.size()));
+                // Every comparison becomes sign * value > threshold: a < c is -a > -c, and
+                // a >= c is a > the next double below c
+                recordTypeCodes[c] = condition.recordTypeCode;
+                slots[c] = signal.slot;
+                signs[c] = condition.operator.startsWith("<") ? -1.0 : 1.0;
+                thresholds[c] = condition.operator.endsWith("=")
+                        ? Math.nextDown(signs[c] * condition.threshold) : signs[c] * condition.threshold;
+                if (!types.contains(condition.recordTypeCode)) {
+                    types.add(condition.recordTypeCode);
+                }
+            }
+            rules[r] = new Rule(definition.alertFactory, definition.condition, recordTypeCodes, slots, signs,
+                    thresholds);
+        }
+
+        recordTypes = types.stream().mapToInt(Integer::intValue).toArray();
+        typeIndex = new int[types.stream().mapToInt(Integer::intValue).max().orElse(-1) + 1];
+        Arrays.fill(typeIndex, -1);
+        programs = new TypeProgram[recordTypes.length];
+        int groups = 0;
+        int windows = 0;
+        for (int t = 0; t < recordTypes.length; t++) {
+            int type = recordTypes[t];
+            typeIndex[type] = t;
+            Signal[] typeSignals = signals.values().stream()
+                    .filter(signal -> signal.recordTypeCode == type)
+                    .toArray(Signal[]::new);
+            programs[t] = new TypeProgram(type, typeSignals, rules, groups, windows);
+            groups += programs[t].groupCount();
+            windows += programs[t].windowCount();
+        }
+        groupCount = groups;
+        windowCount = windows;
+    }
+
+    private static String signalKey(RuleParser.ConditionDefinition condition) {
+        String key = condition.function + ":" + condition.recordTypeCode + ":" + condition.samples + ":" + condition.millis;
+        // The steps of one rise and one fall condition need the smallest and the largest step
+        return condition.function.equals("steps") ? key + ":" + condition.operator.charAt(0) : key;
+    }
+
+    private static Signal createSignal(RuleParser.ConditionDefinition condition, int slot) {
+        int kind;
+        switch (condition.function) {
+            case "delta":
+                kind = Signal.DELTA;
+                break;
+            case "steps":
+                kind = condition.operator.startsWith("<") ? Signal.LARGEST_STEP : Signal.SMALLEST_STEP;
+                break;
+            case "change":
+                kind = Signal.CHANGE;
+                break;
+            case "rate":
+                kind = Signal.RATE;
+                break;
+            default:
+                kind = Signal.LATEST;
+                break;
+        }
+        return new Signal(kind, condition.recordTypeCode, slot, condition.samples, condition.millis);
+    }
+
+    /**
+     * Parses and compiles rules.
+     *
+     * @param reader the rule definitions
+     * @param source the name of the definitions, for error messages
+     * @return the compiled rules
+     * @throws IOException if the rules cannot be read or a line is not a valid rule
+     */
+    public static RuleSet parse(Reader reader, String source) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        return new RuleSet(RuleParser.parse(lines, source));
+    }
+
+    /**
+     * Loads and compiles the rules of a file.
+     *
+     * @param file the rule file, in UTF-8
+     * @return the compiled rules
+     * @throws IOException if the file cannot be read or a line is not a valid rule
+     */
+    public static RuleSet load(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader, file.toString());
+        }
+    }
+
+    /**
+     * Loads the built-in threshold, trend, saturation drop and hypotensive
+     * hypoxemia rules, the same as the hand-written blood pressure, saturation
+     * and hypotensive hypoxemia rules of {@link IncrementalAlertEngine#defaultRules()}.
+     *
+     * @return the compiled default rules
+     * @throws IOException if the rules cannot be read
+     */
+    public static RuleSet loadDefault() throws IOException {
+        InputStream in = RuleSet.class.getResourceAsStream(DEFAULT_RULES);
+        if (in == null) {
+            throw new IOException("Missing resource " + DEFAULT_RULES);
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return parse(reader, DEFAULT_RULES);
+        }
+    }
+
+    /**
+     * Returns the number of rules.
+     *
+     * @return the rule count
+     */
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * Returns the record types the rules read.
+     *
+     * @return the record type codes, see {@link RecordType}
+     */
+    public int[] recordTypes() {
+        return recordTypes.clone();
+    }
+
+    /**
+     * Creates the rule state of one patient, for an {@link IncrementalAlertEngine}.
+     *
+     * @return an incremental rule evaluating all rules of this set
+     */
+    public IncrementalRule newRule() {
+        return new RuleEvaluator(this);
+    }
+
+    /**
+     * Returns the factory of the rule state, for the constructor of an
+     * {@link IncrementalAlertEngine}.
+     *
+     * @return a list holding one rule factory
+     */
+    public List<Supplier<? extends IncrementalRule>> ruleFactories() {
+        return Collections.singletonList(this::newRule);
+    }
+
+    /**
+     * Returns a strategy whose alert condition is met when any rule raises its
+     * alert, e.g. to run the rules in a
+     * {@link com.alerts.strategies.FusedStrategyExecutor}. The executor passes
+     * the record types one after the other, so a condition on another record
+     * type then sees that type's first or last reading rather than the one at
+     * the same time; {@link RecordAlertStrategy#checkAlert} passes the records
+     * in time order.
+     *
+     * @return the rule set as a strategy
+     */
+    public RecordAlertStrategy asStrategy() {
+        return new RecordAlertStrategy() {
+            @Override
+            public int[] recordTypes() {
+                return RuleSet.this.recordTypes();
+            }
+
+            @Override
+            public Evaluation newEvaluation() {
+                RuleEvaluator evaluator = new RuleEvaluator(RuleSet.this);
+                return new Evaluation() {
+                    private boolean alert;
+
+                    @Override
+                    public boolean update(int recordTypeCode, double measurementValue, long timestamp) {
+                        alert = evaluator.process(0, recordTypeCode, measurementValue, timestamp, null);
+                        return alert;
+                    }
+
+                    @Override
+                    public boolean isAlert() {
+                        return alert;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * A compiled rule: the alert it raises and the conditions that must all hold,
+     * each a comparison {@code signs[i] * value > thresholds[i]} of the signal in
+     * {@code slots[i]}, so testing a rule needs no dispatch on the operator.
+     */
+    static final class Rule {
+        final AlertFactory alertFactory;
+        final String condition;
+        final int[] recordTypeCodes;
+        final int[] slots;
+        final double[] signs;
+        final double[] thresholds;
+
+        Rule(AlertFactory alertFactory, String condition, int[] recordTypeCodes, int[] slots, double[] signs,
+             double[] thresholds) {
+            this.alertFactory = alertFactory;
+            this.condition = condition;
+            this.recordTypeCodes = recordTypeCodes;
+            this.slots = slots;
+            this.signs = signs;
+            this.thresholds = thresholds;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.alerts.rules;
+
+/**
+ * A value computed from the recent readings of one record type, such as the
+ * latest reading or its change over a time window. Each distinct signal of a
+ * rule set is computed once per record of its type, whatever the number of
+ * rules that read it; its slot identifies it among the signals of the set.
+ * <p>
+ * A signal that is not defined yet, e.g. a change before the second reading,
+ * is NaN, which every comparison treats as false.
+ */
+final class Signal {
+    /** The latest reading. */
+    static final int LATEST = 0;
+    /** The latest reading minus the one n readings earlier, if that one is younger than the window. */
+    static final int DELTA = 1;
+    /** The smallest of the last n changes from one reading to the next. */
+    static final int SMALLEST_STEP = 2;
+    /** The largest of the last n changes from one reading to the next. */
+    static final int LARGEST_STEP = 3;
+    /** The latest reading minus the oldest reading within the window. */
+    static final int CHANGE = 4;
+    /** The same change per minute. */
+    static final int RATE = 5;
+
+    final int kind;
+    final int recordTypeCode;
+    final int slot;
+    final int n;
+    final long windowMillis;
+
+    Signal(int kind, int recordTypeCode, int slot, int n, long windowMillis) {
+        this.kind = kind;
+        this.recordTypeCode = recordTypeCode;
+        this.slot = slot;
+        this.n = n;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Returns the number of readings the signal reads.
+     */
+    int samples() {
+        return kind == CHANGE || kind == RATE ? 2 : n + 1;
+    }
+
+    /**
+     * Returns the time window of readings the signal reads, 0 for none.
+     */
+    long windowMillis() {
+        return kind == CHANGE || kind == RATE ? windowMillis : 0;
+    }
+}
@@ -0,0 +1,207 @@
+package com.alerts.rules;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * What a record of one type does to a patient's rule state, compiled into flat
+ * primitive arrays: how many of its readings to keep, the signals to compute
+ * from them, and the conditions on them, each a comparison
+ * {@code sign * value > threshold}. The conditions of a rule on other record
+ * types are not tested again; their outcome is kept from their own records.
+ * <p>
+ * The signals are listed by kind, so computing them needs no dispatch on the
+ * kind, and the largest and the smallest step over the same readings come from
+ * one pass. The conditions on a signal are grouped by sign, and each group is
+ * sorted by threshold, so the conditions of a group that hold are always a
+ * prefix of it: those whose threshold is below the signed value. A patient
+ * keeps the length of that prefix per group, and with it the range of values
+ * of the signal that would leave every prefix as it is. A record only moves
+ * the prefixes when a value leaves its range, so a record that crosses no
+ * threshold, nearly all of them, costs two comparisons per signal however many
+ * rules read it.
+ * <p>
+ * The signals, and after them their groups, are numbered in the order the
+ * signals are computed: the latest reading, each delta, each largest then
+ * smallest step, and each time window.
+ */
+final class TypeProgram {
+    /** Readings to keep, at least. */
+    final int keepSamples;
+    /** Age of the oldest reading to keep, 0 if only the count matters. */
+    final long keepMillis;
+    /** Whether any signal reads the time of a reading. */
+    final boolean readsTimestamps;
+
+    // The signals, computed in this order: the latest reading, each delta, the largest
+    // and the smallest step over each number of readings, and each time window
+    final int[] deltaSamples;
+    final long[] deltaWindows;
+    final int[] stepSamples;
+    final long[] windowMillis;
+    final boolean[] windowRates;
+    /** Number of the first time window of this type among those of the rule set. */
+    final int firstWindow;
+
+    /** Number of the first group of this type among the groups of the rule set. */
+    final int firstGroup;
+    // The groups of signal i run from signalGroups[i] to signalGroups[i + 1]; per
+    // group, its sign, and its conditions run from groupStarts[g] to
+    // groupStarts[g + 1], by ascending threshold
+    final int[] signalGroups;
+    final double[] groupSigns;
+    final int[] groupStarts;
+    final double[] thresholds;
+    final int[] ruleIds;
+
+    TypeProgram(int recordTypeCode, Signal[] signals, RuleSet.Rule[] rules, int firstGroup, int firstWindow) {
+        this.firstGroup = firstGroup;
+        this.firstWindow = firstWindow;
+        int samples = 1;
+        long millis = 0;
+        Signal latest = null;
+        List<Signal> deltas = new ArrayList<>();
+        // Steps by the number of readings, each as {largest, smallest}
+        Map<Integer, Signal[]> steps = new TreeMap<>();
+        List<Signal> windows = new ArrayList<>();
+        for (Signal signal : signals) {
+            samples = Math.max(samples, signal.samples());
+            millis = Math.max(millis, signal.windowMillis());
+            switch (signal.kind) {
+                case Signal.LATEST:
+                    latest = signal;
+                    break;
+                case Signal.DELTA:
+                    deltas.add(signal);
+                    break;
+                case Signal.LARGEST_STEP:
+                    steps.computeIfAbsent(signal.n, n -> new Signal[2])[0] = signal;
+                    break;
+                case Signal.SMALLEST_STEP:
+                    steps.computeIfAbsent(signal.n, n -> new Signal[2])[1] = signal;
+                    break;
+                default:
+                    windows.add(signal);
+                    break;
+            }
+        }
+        keepSamples = samples;
+        keepMillis = millis;
+        readsTimestamps = millis > 0 || deltas.stream().anyMatch(delta -> delta.windowMillis > 0);
+
+        Groups groups = new Groups(recordTypeCode, rules);
+        groups.add(latest);
+        deltaSamples = new int[deltas.size()];
+        deltaWindows = new long[deltas.size()];
+        for (int d = 0; d < deltas.size(); d++) {
+            deltaSamples[d] = deltas.get(d).n;
+            deltaWindows[d] = deltas.get(d).windowMillis;
+            groups.add(deltas.get(d));
+        }
+        stepSamples = new int[steps.size()];
+        int s = 0;
+        for (Map.Entry<Integer, Signal[]> step : steps.entrySet()) {
+            stepSamples[s++] = step.getKey();
+            groups.add(step.getValue()[0]);
+            groups.add(step.getValue()[1]);
+        }
+        windowMillis = new long[windows.size()];
+        windowRates = new boolean[windows.size()];
+        for (int w = 0; w < windows.size(); w++) {
+            windowMillis[w] = windows.get(w).windowMillis;
+            windowRates[w] = windows.get(w).kind == Signal.RATE;
+            groups.add(windows.get(w));
+        }
+
+        groups.signalStarts.add(groups.signs.size());
+        signalGroups = groups.signalStarts.stream().mapToInt(Integer::intValue).toArray();
+        groupSigns = groups.signs.stream().mapToDouble(Double::doubleValue).toArray();
+        groups.starts.add(groups.conditions.size());
+        groupStarts = groups.starts.stream().mapToInt(Integer::intValue).toArray();
+        thresholds = new double[groups.conditions.size()];
+        ruleIds = new int[groups.conditions.size()];
+        for (int c = 0; c < thresholds.length; c++) {
+            int r = groups.conditions.get(c)[0];
+            thresholds[c] = rules[r].thresholds[groups.conditions.get(c)[1]];
+            ruleIds[c] = r;
+        }
+    }
+
+    /**
+     * Returns the number of condition groups.
+     */
+    int groupCount() {
+        return groupSigns.length;
+    }
+
+    /**
+     * Returns the number of signals, counting those that no condition reads.
+     */
+    int signalCount() {
+        return signalGroups.length - 1;
+    }
+
+    /**
+     * Returns the number of time windows.
+     */
+    int windowCount() {
+        return windowMillis.length;
+    }
+
+    /**
+     * The condition groups of a record type, built up signal by signal in the
+     * order the signals are computed.
+     */
+    private static final class Groups {
+        private final int recordTypeCode;
+        private final RuleSet.Rule[] rules;
+        final List<Integer> signalStarts = new ArrayList<>();
+        final List<Double> signs = new ArrayList<>();
+        final List<Integer> starts = new ArrayList<>();
+        // Each condition as {rule, index in the rule}, in group order
+        final List<int[]> conditions = new ArrayList<>();
+
+        Groups(int recordTypeCode, RuleSet.Rule[] rules) {
+            this.recordTypeCode = recordTypeCode;
+            this.rules = rules;
+        }
+
+        /**
+         * Adds the groups of the conditions on the next signal, one per sign, none
+         * if the signal is null.
+         */
+        void add(Signal signal) {
+            signalStarts.add(signs.size());
+            if (signal == null) {
+                return;
+            }
+            Map<Double, List<int[]>> bySign = new LinkedHashMap<>();
+            for (int r = 0; r < rules.length; r++) {
+                for (int k = 0; k < rules[r].slots.length; k++) {
+                    if (rules[r].recordTypeCodes[k] == recordTypeCode && rules[r].slots[k] == signal.slot) {
+                        bySign.computeIfAbsent(rules[r].signs[k], sign -> new ArrayList<>()).add(new int[]{r, k});
+                    }
+                }
+            }
+            for (Map.Entry<Double, List<int[]>> group : bySign.entrySet()) {
+                // Stable, so conditions with the same threshold stay in rule order
+                group.getValue().sort(Comparator.comparingDouble(
+                        condition -> rules[condition[0]].thresholds[condition[1]]));
+                signs.add(group.getKey());
+                starts.add(conditions.size());
+                conditions.addAll(group.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the initial ring capacity, a power of two that holds the readings to keep.
+     */
+    int initialCapacity() {
+        return Integer.highestOneBit(Math.max(2, keepSamples) * 2 - 1);
+    }
+}
@@ -1,49 +1,74 @@
 package com.alerts.strategies;
 
-import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.data_management.RecordType;
 
 /**
  * A strategy class to check for blood pressure alerts.
  */
-public class BloodPressureStrategy implements AlertStrategy {
+public class BloodPressureStrategy implements RecordAlertStrategy {
+
+    @Override
+    public int[] recordTypes() {
+        return new int[]{RecordType.SYSTOLIC_PRESSURE, RecordType.DIASTOLIC_PRESSURE};
+    }
 
     /**
-     * Checks if there is a blood pressure alert for the given patient.
-     * @param patient The patient object containing the records.
-     * @return True if there is a blood pressure alert, otherwise false.
+     * Starts a blood pressure check: a pressure out of range, or a change of more
+     * than 10 between the first and the third reading of the same pressure, is an alert.
+     * @return the evaluation of one patient
      */
     @Override
-    public boolean checkAlert(Patient patient) {
-        List<PatientRecord> records = patient.getRecords(1700000000000L, 1800000000000L);
+    public Evaluation newEvaluation() {
+        return new Evaluation() {
+            private final PressureCheck systolic = new PressureCheck(90, 180);
+            private final PressureCheck diastolic = new PressureCheck(60, 120);
 
-        return checkPressure(records, "SystolicPressure", 90, 180) || checkPressure(records, "DiastolicPressure", 60, 120);
-    }
+            @Override
+            public boolean update(int recordTypeCode, double measurementValue, long timestamp) {
+                PressureCheck check = recordTypeCode == RecordType.SYSTOLIC_PRESSURE ? systolic : diastolic;
+                check.update(measurementValue);
+                return isAlert() || (systolic.done && diastolic.done);
+            }
 
-    private boolean checkPressure(List<PatientRecord> records, String type, double min, double max) {
-        List<PatientRecord> lastThreeRecords = new ArrayList<>();
-        int count = 0;
-
-        for (PatientRecord record : records) {
-            if (record.getRecordType().equals(type)) {
-                if (record.getMeasurementValue() > max || record.getMeasurementValue() < min) {
-                    return true;
-                }
-                lastThreeRecords.add(record);
-                count++;
-                if (count == 3) {
-                    break;
-                }
+            @Override
+            public boolean isAlert() {
+                return systolic.alert || diastolic.alert;
             }
-        }
+        };
+    }
 
-        if (count == 3) {
-            return Math.abs(lastThreeRecords.get(0).getMeasurementValue() - lastThreeRecords.get(2).getMeasurementValue()) > 10;
+    /**
+     * The check of one pressure, which only looks at its first three readings.
+     */
+    private static final class PressureCheck {
+        private final double min;
+        private final double max;
+        private double first;
+        private int count;
+        private boolean alert;
+        private boolean done;
+
+        PressureCheck(double min, double max) {
+            this.min = min;
+            this.max = max;
         }
 
-        return false;
+        void update(double value) {
+            if (done) {
+                return;
+            }
+            if (value > max || value < min) {
+                alert = true;
+                done = true;
+                return;
+            }
+            count++;
+            if (count == 1) {
+                first = value;
+            } else if (count == 3) {
+                alert = Math.abs(first - value) > 10;
+                done = true;
+            }
+        }
     }
 }
@@ -0,0 +1,149 @@
+package com.alerts.strategies;
+
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import com.data_management.SampleCursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates a set of {@link RecordAlertStrategy} instances together, in one
+ * scan of a patient's records, instead of one fetch and scan per strategy.
+ * <p>
+ * Only the record types some strategy reads are scanned, each once, through a
+ * {@link SampleCursor}, so nothing is copied and the other types are never
+ * touched. Every sample goes to the strategies reading its type, through a
+ * dispatch table built once. A strategy drops out as soon as its outcome is
+ * decided, and the scan stops when all are decided, so the cost per patient is
+ * at most one pass over the relevant records, however many strategies there are.
+ * <p>
+ * An executor holds no per-patient state and may be shared between threads.
+ */
+public final class FusedStrategyExecutor {
+    private final RecordAlertStrategy[] strategies;
+    private final int[] recordTypes;
+    // For each entry of recordTypes, the indexes of the strategies that read it
+    private final int[][] strategiesByType;
+
+    /**
+     * Creates an executor for the given strategies.
+     *
+     * @param strategies the strategies, in the order of the results
+     */
+    public FusedStrategyExecutor(List<? extends RecordAlertStrategy> strategies) {
+        this.strategies = strategies.toArray(new RecordAlertStrategy[0]);
+        List<Integer> types = new ArrayList<>();
+        List<List<Integer>> readers = new ArrayList<>();
+        for (int s = 0; s < this.strategies.length; s++) {
+            for (int type : this.strategies[s].recordTypes()) {
+                int index = types.indexOf(type);
+                if (index < 0) {
+                    index = types.size();
+                    types.add(type);
+                    readers.add(new ArrayList<>());
+                }
+                if (!readers.get(index).contains(s)) {
+                    readers.get(index).add(s);
+                }
+            }
+        }
+        recordTypes = types.stream().mapToInt(Integer::intValue).toArray();
+        strategiesByType = readers.stream()
+                .map(list -> list.stream().mapToInt(Integer::intValue).toArray())
+                .toArray(int[][]::new);
+    }
+
+    /**
+     * Evaluates every strategy for a patient.
+     *
+     * @param patient the patient
+     * @return for each strategy, in order, whether its alert condition is met
+     */
+    public boolean[] evaluate(Patient patient) {
+        RecordAlertStrategy.Evaluation[] evaluations = new RecordAlertStrategy.Evaluation[strategies.length];
+        for (int s = 0; s < strategies.length; s++) {
+            evaluations[s] = strategies[s].newEvaluation();
+        }
+        boolean[] decided = new boolean[strategies.length];
+        int undecided = strategies.length;
+
+        for (int t = 0; t < recordTypes.length && undecided > 0; t++) {
+            int type = recordTypes[t];
+            int[] readers = strategiesByType[t];
+            int readersLeft = 0;
+            for (int s : readers) {
+                if (!decided[s]) {
+                    readersLeft++;
+                }
+            }
+            SampleCursor cursor = readersLeft > 0
+                    ? patient.cursor(type, RecordAlertStrategy.WINDOW_START, RecordAlertStrategy.WINDOW_END)
+                    : null;
+            while (readersLeft > 0 && cursor.next()) {
+                double value = cursor.getValue();
+                long timestamp = cursor.getTimestamp();
+                for (int s : readers) {
+                    if (!decided[s] && evaluations[s].update(type, value, timestamp)) {
+                        decided[s] = true;
+                        undecided--;
+                        readersLeft--;
+                    }
+                }
+            }
+        }
+
+        boolean[] alerts = new boolean[strategies.length];
+        for (int s = 0; s < strategies.length; s++) {
+            alerts[s] = evaluations[s].isAlert();
+        }
+        return alerts;
+    }
+
+    /**
+     * Returns whether any strategy's alert condition is met for a patient.
+     *
+     * @param patient the patient
+     * @return true if at least one strategy raises an alert
+     */
+    public boolean anyAlert(Patient patient) {
+        boolean[] alerts = evaluate(patient);
+        for (boolean alert : alerts) {
+            if (alert) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates one strategy over a list of records of any types, skipping the
+     * types it does not read.
+     *
+     * @param strategy the strategy
+     * @param records  the records, in timestamp order
+     * @return whether the alert condition is met
+     */
+    static boolean evaluate(RecordAlertStrategy strategy, List<PatientRecord> records) {
+        int[] types = strategy.recordTypes();
+        RecordAlertStrategy.Evaluation evaluation = strategy.newEvaluation();
+        for (PatientRecord record : records) {
+            int type = record.getRecordTypeCode();
+            if (contains(types, type)
+                    && evaluation.update(type, record.getMeasurementValue(), record.getTimestamp())) {
+                break;
+            }
+        }
+        return evaluation.isAlert();
+    }
+
+    // A strategy reads one to a few types, so a scan beats any lookup structure
+    private static boolean contains(int[] types, int type) {
+        for (int code : types) {
+            if (code == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
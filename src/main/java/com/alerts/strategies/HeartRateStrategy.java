@@ -1,41 +1,42 @@
 package com.alerts.strategies;
 
-import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.List;
+import com.data_management.RecordType;
 
 /**
  * A strategy class to check for heart rate alerts.
  */
-public class HeartRateStrategy implements AlertStrategy {
+public class HeartRateStrategy implements RecordAlertStrategy {
+
+    @Override
+    public int[] recordTypes() {
+        return new int[]{RecordType.HEART_RATE};
+    }
 
     /**
-     * Checks if there is a heart rate alert for the given patient.
-     * @param patient The patient object containing the records.
-     * @return True if there is a heart rate alert, otherwise false.
+     * Starts a heart rate check: a rate below 50 or above 100, or a change of more
+     * than 10 from the previous rate, is an alert.
+     * @return the evaluation of one patient
      */
     @Override
-    public boolean checkAlert(Patient patient) {
-        List<PatientRecord> records = patient.getRecords(1700000000000L, 1800000000000L);
-        PatientRecord previousRecord = null;
-
-        for (PatientRecord record : records) {
-            String recordType = record.getRecordType();
-            double measurementValue = record.getMeasurementValue();
+    public Evaluation newEvaluation() {
+        return new Evaluation() {
+            private boolean alert;
+            private boolean hasPrevious;
+            private double previous;
 
-            if (recordType.equals("HeartRate")) {
-                if (measurementValue < 50 || measurementValue > 100) {
-                    return true;
-                }
+            @Override
+            public boolean update(int recordTypeCode, double measurementValue, long timestamp) {
+                alert = measurementValue < 50 || measurementValue > 100
+                        || (hasPrevious && Math.abs(measurementValue - previous) > 10);
+                previous = measurementValue;
+                hasPrevious = true;
+                return alert;
             }
-            if (previousRecord != null && previousRecord.getRecordType().equals("HeartRate")) {
-                if (Math.abs(measurementValue - previousRecord.getMeasurementValue()) > 10) {
-                    return true;
-                }
+
+            @Override
+            public boolean isAlert() {
+                return alert;
             }
-            previousRecord = record;
-        }
-        return false;
+        };
     }
 }
@@ -1,44 +1,43 @@
 package com.alerts.strategies;
 
-import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.List;
+import com.data_management.RecordType;
 
 /**
  * A strategy class to check for oxygen saturation alerts.
  */
-public class OxygenSaturationStrategy implements AlertStrategy {
+public class OxygenSaturationStrategy implements RecordAlertStrategy {
+
+    @Override
+    public int[] recordTypes() {
+        return new int[]{RecordType.SATURATION};
+    }
 
     /**
-     * Checks if there is an oxygen saturation alert for the given patient.
-     * @param patient The patient object containing the records.
-     * @return True if there is an oxygen saturation alert, otherwise false.
+     * Starts an oxygen saturation check: a saturation below 92, or a drop of 5 or
+     * more from the previous saturation within 10 minutes, is an alert.
+     * @return the evaluation of one patient
      */
     @Override
-    public boolean checkAlert(Patient patient) {
-        List<PatientRecord> records = patient.getRecords(1700000000000L, 1800000000000L);
-        PatientRecord previousRecord = null;
-
-        for (PatientRecord record : records) {
-            String recordType = record.getRecordType();
-            double measurementValue = record.getMeasurementValue();
+    public Evaluation newEvaluation() {
+        return new Evaluation() {
+            private boolean alert;
+            private long previousTimestamp = -1;
+            private double previous;
 
-            if (recordType.equals("Saturation")) {
-                if (measurementValue < 92) {
-                    return true;
-                }
-                if (previousRecord != null && previousRecord.getRecordType().equals("Saturation")) {
-                    long timeDifference = record.getTimestamp() - previousRecord.getTimestamp();
-                    double valueDifference = previousRecord.getMeasurementValue() - measurementValue;
+            @Override
+            public boolean update(int recordTypeCode, double measurementValue, long timestamp) {
+                alert = measurementValue < 92 || (previousTimestamp >= 0
+                        && timestamp - previousTimestamp <= 1000 * 60 * 10
+                        && previous - measurementValue >= 5);
+                previous = measurementValue;
+                previousTimestamp = timestamp;
+                return alert;
+            }
 
-                    if (timeDifference <= 1000 * 60 * 10 && valueDifference >= 5) {
-                        return true;
-                    }
-                }
+            @Override
+            public boolean isAlert() {
+                return alert;
             }
-            previousRecord = record;
-        }
-        return false;
+        };
     }
 }
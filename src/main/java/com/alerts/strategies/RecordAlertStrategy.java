@@ -0,0 +1,68 @@
+package com.alerts.strategies;
+
+import com.data_management.Patient;
+
+/**
+ * An alert strategy that is evaluated one record at a time, so that a
+ * {@link FusedStrategyExecutor} can evaluate any number of them in a single
+ * scan of a patient's records.
+ * <p>
+ * A strategy declares the record types it reads. Its evaluation receives the
+ * records of each type in timestamp order, but the records of different types
+ * may come in any order relative to each other, so a strategy must judge each
+ * type on its own.
+ */
+public interface RecordAlertStrategy extends AlertStrategy {
+    /** Start of the time range the strategies evaluate. */
+    long WINDOW_START = 1700000000000L;
+    /** End of the time range the strategies evaluate. */
+    long WINDOW_END = 1800000000000L;
+
+    /**
+     * Returns the record types this strategy reads.
+     *
+     * @return the record type codes, see {@link com.data_management.RecordType}
+     */
+    int[] recordTypes();
+
+    /**
+     * Starts the evaluation of one patient.
+     *
+     * @return the per-patient state of the evaluation
+     */
+    Evaluation newEvaluation();
+
+    /**
+     * Checks for an alert by passing the patient's records one by one to a new
+     * evaluation.
+     *
+     * @param patient The patient object for which the alert is being checked.
+     * @return True if the alert condition is met, otherwise false.
+     */
+    @Override
+    default boolean checkAlert(Patient patient) {
+        return FusedStrategyExecutor.evaluate(this, patient.getRecords(WINDOW_START, WINDOW_END));
+    }
+
+    /**
+     * The state of a strategy while it evaluates one patient.
+     */
+    interface Evaluation {
+        /**
+         * Updates the evaluation with the next record of one of the strategy's types.
+         *
+         * @param recordTypeCode   the record type code, one of {@link #recordTypes()}
+         * @param measurementValue the measurement value of the record
+         * @param timestamp        the time of the measurement, in milliseconds since epoch
+         * @return true once the outcome is decided and no more records are needed
+         */
+        boolean update(int recordTypeCode, double measurementValue, long timestamp);
+
+        /**
+         * Returns the outcome after the last record.
+         *
+         * @return true if the alert condition is met
+         */
+        boolean isAlert();
+    }
+}
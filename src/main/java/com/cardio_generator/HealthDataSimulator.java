@@ -1,9 +1,5 @@
 package com.cardio_generator;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-
 import com.cardio_generator.generators.AlertGenerator;
 
 import com.cardio_generator.generators.BloodPressureDataGenerator;
@@ -11,29 +7,41 @@ import com.cardio_generator.generators.BloodSaturationDataGenerator;
 import com.cardio_generator.generators.BloodLevelsDataGenerator;
 import com.cardio_generator.generators.ECGDataGenerator;
 import com.cardio_generator.outputs.ConsoleOutputStrategy;
-import com.cardio_generator.outputs.FileOutputStrategy;
+import com.cardio_generator.outputs.AsyncFileOutputStrategy;
+import com.cardio_generator.outputs.BinaryFileOutputStrategy;
 import com.cardio_generator.outputs.OutputStrategy;
 import com.cardio_generator.outputs.TcpOutputStrategy;
 import com.cardio_generator.outputs.WebSocketOutputStrategy;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Random;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
 /**
 * This class simulates patients' data. It intializes patients' Ids and throws exceptions when needed, schecdules tasks and
 * health information.
 */
 public class HealthDataSimulator {
 
+    /** Start of a seeded simulation without --start, 2023-11-14T22:13:20Z, so that its timestamps repeat. */
+    private static final long SEEDED_START_MILLIS = 1_700_000_000_000L;
+    private static final long TICK_MILLIS = 1000L;
+
     private static int patientCount = 50; // Default number of patients
-    private static ScheduledExecutorService scheduler;
+    private static SimulationEngine engine;
+    // Any of these options runs the simulation on a simulated clock instead of the wall clock
+    private static boolean simulatedTime = false;
+    private static double speed = 1.0;
+    private static long durationMillis = -1L; // Runs until stopped
+    private static long startMillis = -1L;
+    private static boolean seeded = false;
+    private static long seed = ThreadLocalRandom.current().nextLong();
+    private static SimulationEngine.ThreadMode threadMode = SimulationEngine.ThreadMode.PLATFORM;
     private static OutputStrategy outputStrategy = new ConsoleOutputStrategy(); // Default output strategy
-    private static final Random random = new Random();
     private static HealthDataSimulator instance;
     /**
      * Private constructor to prevent instantiation.
@@ -59,14 +67,50 @@ public class HealthDataSimulator {
     */
     public static void main(String[] args) throws IOException {
 
+        try {
+            threadMode = SimulationEngine.ThreadMode.fromSystemProperty();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown thread mode in " + SimulationEngine.THREADS_PROPERTY + ". Using platform threads.");
+        }
         parseArguments(args);
+        if (!threadMode.isSupported()) {
+            System.err.println("Error: Virtual threads need Java 21. Using platform threads.");
+            threadMode = SimulationEngine.ThreadMode.PLATFORM;
+        }
 
-        scheduler = Executors.newScheduledThreadPool(patientCount * 4);
-
-        List<Integer> patientIds = initializePatientIds(patientCount);
-        Collections.shuffle(patientIds); // Randomize the order of patient IDs
+        // In the platform mode all patients share one thread per processor, however many there are;
+        // in the virtual mode every patient of every generator runs on a virtual thread of its own
+        int batchSize = threadMode == SimulationEngine.ThreadMode.VIRTUAL ? 1 : SimulationEngine.DEFAULT_BATCH_SIZE;
+        if (!simulatedTime) {
+            engine = new SimulationEngine(outputStrategy, Runtime.getRuntime().availableProcessors(), TICK_MILLIS,
+                    batchSize, SimulationClock.system(), seed, threadMode);
+            scheduleTasksForPatients(patientCount, engine.getClock(), seed);
+            // The engine's ticker keeps the process running until it is interrupted
+            Runtime.getRuntime().addShutdownHook(new Thread(engine::close, "simulation-shutdown"));
+            engine.start();
+            return;
+        }
 
-        scheduleTasksForPatients(patientIds);
+        if (startMillis < 0) {
+            startMillis = seeded ? SEEDED_START_MILLIS : System.currentTimeMillis();
+        }
+        SimulationClock clock = SimulationClock.simulated(startMillis);
+        engine = new SimulationEngine(outputStrategy, Runtime.getRuntime().availableProcessors(), TICK_MILLIS,
+                batchSize, clock, seed, threadMode);
+        scheduleTasksForPatients(patientCount, clock, seed);
+        long ticks = durationMillis < 0 ? Long.MAX_VALUE : durationMillis / TICK_MILLIS;
+        long began = System.nanoTime();
+        try {
+            engine.run(ticks, speed);
+        } catch (InterruptedException e) {
+            ticks = engine.getTickCount();
+        }
+        engine.close();
+        System.err.printf("Simulated %s for %d patients from %s in %.1f s%n",
+                Duration.ofMillis(ticks * TICK_MILLIS), patientCount, Instant.ofEpochMilli(startMillis),
+                (System.nanoTime() - began) / 1e9);
+        // Runs the shutdown hooks, which write out the samples the outputs still hold
+        System.exit(0);
     }
     
     /** 
@@ -102,31 +146,112 @@ public class HealthDataSimulator {
                             if (!Files.exists(outputPath)) {
                                 Files.createDirectories(outputPath);
                             }
-                            outputStrategy = new FileOutputStrategy(baseDirectory);
+                            AsyncFileOutputStrategy fileOutput = new AsyncFileOutputStrategy(baseDirectory);
+                            // Writes out the samples still queued when the simulator is stopped
+                            Runtime.getRuntime().addShutdownHook(new Thread(fileOutput::close));
+                            outputStrategy = fileOutput;
+                        } else if (outputArg.startsWith("binary:")) {
+                            BinaryFileOutputStrategy binaryOutput = new BinaryFileOutputStrategy(outputArg.substring(7));
+                            Runtime.getRuntime().addShutdownHook(new Thread(binaryOutput::close));
+                            outputStrategy = binaryOutput;
                         } else if (outputArg.startsWith("websocket:")) {
+                            // websocket:<port>[:<coalescing window in ms>[:binary]]
+                            String[] parts = outputArg.substring(10).split(":", 3);
                             try {
-                                int port = Integer.parseInt(outputArg.substring(10));
+                                int port = Integer.parseInt(parts[0]);
+                                long coalesceMillis = parts.length > 1 ? Long.parseLong(parts[1]) : 0L;
+                                WebSocketOutputStrategy.FrameMode frameMode = parts.length > 2 && parts[2].equals("binary")
+                                        ? WebSocketOutputStrategy.FrameMode.BINARY
+                                        : WebSocketOutputStrategy.FrameMode.TEXT;
                                 // Initialize your WebSocket output strategy here
-                                outputStrategy = new WebSocketOutputStrategy(port);
+                                outputStrategy = new WebSocketOutputStrategy(port, coalesceMillis, frameMode);
                                 System.out.println("WebSocket output will be on port: " + port);
                             } catch (NumberFormatException e) {
-                                System.err.println(
-                                        "Invalid port for WebSocket output. Please specify a valid port number.");
+                                System.err.println("Invalid port or window for WebSocket output. "
+                                        + "Please specify valid numbers.");
                             }
                         } else if (outputArg.startsWith("tcp:")) {
+                            // tcp:<port> or tcp:<port>:<overflow policy>
+                            String[] parts = outputArg.substring(4).split(":", 2);
                             try {
-                                int port = Integer.parseInt(outputArg.substring(4));
-                                // Initialize your TCP socket output strategy here
-                                outputStrategy = new TcpOutputStrategy(port);
+                                int port = Integer.parseInt(parts[0]);
+                                TcpOutputStrategy.OverflowPolicy overflowPolicy = parts.length > 1
+                                        ? TcpOutputStrategy.OverflowPolicy.valueOf(parts[1].toUpperCase().replace('-', '_'))
+                                        : TcpOutputStrategy.OverflowPolicy.DROP_OLDEST;
+                                TcpOutputStrategy tcpOutput = new TcpOutputStrategy(port, overflowPolicy,
+                                        TcpOutputStrategy.DEFAULT_QUEUE_BYTES);
+                                Runtime.getRuntime().addShutdownHook(new Thread(tcpOutput::close));
+                                outputStrategy = tcpOutput;
                                 System.out.println("TCP socket output will be on port: " + port);
                             } catch (NumberFormatException e) {
                                 System.err.println("Invalid port for TCP output. Please specify a valid port number.");
+                            } catch (IllegalArgumentException e) {
+                                System.err.println("Unknown overflow policy for TCP output. "
+                                        + "Use drop-oldest, disconnect or block.");
                             }
                         } else {
                             System.err.println("Unknown output type. Using default (console).");
                         }
                     }
                     break;
+                case "--speed":
+                    if (i + 1 < args.length) {
+                        try {
+                            speed = Double.parseDouble(args[++i]);
+                            if (!(speed > 0)) {
+                                throw new NumberFormatException();
+                            }
+                            simulatedTime = true;
+                        } catch (NumberFormatException e) {
+                            speed = 1.0;
+                            System.err.println("Error: Invalid speed. Using real time.");
+                        }
+                    }
+                    break;
+                case "--as-fast-as-possible":
+                    speed = Double.POSITIVE_INFINITY;
+                    simulatedTime = true;
+                    break;
+                case "--duration":
+                    if (i + 1 < args.length) {
+                        try {
+                            durationMillis = parseDurationMillis(args[++i]);
+                            simulatedTime = true;
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid duration. Running until stopped.");
+                        }
+                    }
+                    break;
+                case "--start":
+                    if (i + 1 < args.length) {
+                        try {
+                            startMillis = Instant.parse(args[++i]).toEpochMilli();
+                            simulatedTime = true;
+                        } catch (DateTimeParseException e) {
+                            System.err.println("Error: Invalid start time. Using the default start time.");
+                        }
+                    }
+                    break;
+                case "--seed":
+                    if (i + 1 < args.length) {
+                        try {
+                            seed = Long.parseLong(args[++i]);
+                            seeded = true;
+                            simulatedTime = true;
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid seed. Using a random seed.");
+                        }
+                    }
+                    break;
+                case "--threads":
+                    if (i + 1 < args.length) {
+                        try {
+                            threadMode = SimulationEngine.ThreadMode.valueOf(args[++i].toUpperCase());
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("Unknown thread mode. Use platform or virtual.");
+                        }
+                    }
+                    break;
                 default:
                     System.err.println("Unknown option '" + args[i] + "'");
                     printHelp();
@@ -147,53 +272,81 @@ public class HealthDataSimulator {
         System.out.println("  --output <type>          Define the output method. Options are:");
         System.out.println("                             'console' for console output,");
         System.out.println("                             'file:<directory>' for file output,");
-        System.out.println("                             'websocket:<port>' for WebSocket output,");
-        System.out.println("                             'tcp:<port>' for TCP socket output.");
+        System.out.println("                             'binary:<directory>' for compact binary file output,");
+        System.out.println("                             'websocket:<port>[:<window ms>[:binary]]' for WebSocket output,");
+        System.out.println("                             sending the samples of each window together,");
+        System.out.println("                             'tcp:<port>[:drop-oldest|disconnect|block]' for TCP socket output,");
+        System.out.println("                             with what to do when a client falls behind.");
+        System.out.println("  --speed <factor>         Run on a simulated clock, <factor> times faster than real time.");
+        System.out.println("  --as-fast-as-possible    Run on a simulated clock, with no pause between ticks.");
+        System.out.println("  --duration <time>        Stop after <time> of simulated time, e.g. 90s, 30m, 6h or 2d.");
+        System.out.println("  --start <instant>        Start the simulated clock at an ISO-8601 instant,");
+        System.out.println("                           e.g. 2024-01-01T00:00:00Z (default: now).");
+        System.out.println("  --seed <number>          Generate the same data on every run, starting at");
+        System.out.println("                           2023-11-14T22:13:20Z unless --start is given.");
+        System.out.println("  --threads <mode>         Run the generators on 'platform' threads, one per processor,");
+        System.out.println("                           or on a 'virtual' thread per patient (Java 21 or later).");
         System.out.println("Example:");
         System.out.println("  java HealthDataSimulator --patient-count 100 --output websocket:8080");
         System.out.println(
                 "  This command simulates data for 100 patients and sends the output to WebSocket clients connected to port 8080.");
+        System.out.println("  java HealthDataSimulator --seed 42 --duration 1d --as-fast-as-possible --output binary:./output");
+        System.out.println("  This command writes the same day of data for 50 patients on every run, in seconds.");
     }
 
-    /** 
-    * Intializes a list from 1 to the value of patientCount of patient ids
-    * @param patientCount which int of number of patients
-    * @returns initializePatientIds which is list of Integer patient ids
+    /**
+    * Parses a duration such as 90s, 30m, 6h or 2d; a plain number is in seconds
+    * @param text the duration
+    * @return the duration in milliseconds
+    * @throws NumberFormatException if the text is no valid duration
     */
-    private static List<Integer> initializePatientIds(int patientCount) {
-        List<Integer> patientIds = new ArrayList<>();
-        for (int i = 1; i <= patientCount; i++) {
-            patientIds.add(i);
+    private static long parseDurationMillis(String text) {
+        long unitMillis;
+        String number = text.substring(0, Math.max(0, text.length() - 1));
+        switch (text.isEmpty() ? ' ' : text.charAt(text.length() - 1)) {
+            case 's':
+                unitMillis = 1000L;
+                break;
+            case 'm':
+                unitMillis = 60_000L;
+                break;
+            case 'h':
+                unitMillis = 3_600_000L;
+                break;
+            case 'd':
+                unitMillis = 86_400_000L;
+                break;
+            default:
+                unitMillis = 1000L;
+                number = text;
         }
-        return patientIds;
-    }
-    
-    /** 
-    * Schedule tasks for patients to create data
-    * @param patientIds which is list of Integer patient ids
-    */
-    private static void scheduleTasksForPatients(List<Integer> patientIds) {
-        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount);
-        BloodSaturationDataGenerator bloodSaturationDataGenerator = new BloodSaturationDataGenerator(patientCount);
-        BloodPressureDataGenerator bloodPressureDataGenerator = new BloodPressureDataGenerator(patientCount);
-        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount);
-        AlertGenerator alertGenerator = new AlertGenerator(patientCount);
-
-        for (int patientId : patientIds) {
-            scheduleTask(() -> ecgDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodSaturationDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodPressureDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.MINUTES);
-            scheduleTask(() -> bloodLevelsDataGenerator.generate(patientId, outputStrategy), 2, TimeUnit.MINUTES);
-            scheduleTask(() -> alertGenerator.generate(patientId, outputStrategy), 20, TimeUnit.SECONDS);
+        long value = Long.parseLong(number);
+        if (value < 0) {
+            throw new NumberFormatException("Negative duration: " + text);
         }
+        return value * unitMillis;
     }
+
     /** 
-    * Schedule tasks for a time period and time unit at a fixed rate
-    * @param task is a Runnable which a task that needs to be done
-    * @param period is a long which tells the time that is being measured
-    * param timeUnit is a TimeUnit which informs which timeUnit is used
+    * Schedules the generators of all patients on the simulation engine, each at its own
+    * period: ECG and saturation every second, alerts every 20 seconds, blood pressure
+    * every minute and blood levels every two minutes
+    * @param patientCount which int of number of patients, with ids 1 to patientCount
+    * @param clock which is the SimulationClock the samples are stamped with
+    * @param seed which is a long that fixes the random values of the generators
     */
-    private static void scheduleTask(Runnable task, long period, TimeUnit timeUnit) {
-        scheduler.scheduleAtFixedRate(task, random.nextInt(5), period, timeUnit);
+    private static void scheduleTasksForPatients(int patientCount, SimulationClock clock, long seed) {
+        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount, clock, seed);
+        BloodSaturationDataGenerator bloodSaturationDataGenerator =
+                new BloodSaturationDataGenerator(patientCount, clock, seed);
+        BloodPressureDataGenerator bloodPressureDataGenerator = new BloodPressureDataGenerator(patientCount, clock, seed);
+        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount, clock, seed);
+        AlertGenerator alertGenerator = new AlertGenerator(patientCount, clock, seed);
+
+        engine.schedule(ecgDataGenerator, 1, patientCount, 1);
+        engine.schedule(bloodSaturationDataGenerator, 1, patientCount, 1);
+        engine.schedule(bloodPressureDataGenerator, 1, patientCount, 60);
+        engine.schedule(bloodLevelsDataGenerator, 1, patientCount, 120);
+        engine.schedule(alertGenerator, 1, patientCount, 20);
     }
 }
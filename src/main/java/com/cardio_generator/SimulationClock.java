@@ -0,0 +1,75 @@
+package com.cardio_generator;
+
+/**
+ * The time the generators stamp their samples with:
+ * <ul>
+ * <li>{@link #system()}: the wall clock, for live simulation (the default)</li>
+ * <li>{@link #simulated(long)}: a clock that starts at a given instant and only
+ * moves when the {@link SimulationEngine} finishes a tick, by one tick length</li>
+ * </ul>
+ * With a simulated clock the samples carry the same timestamps however fast the
+ * ticks are run, so hours of data can be generated in seconds.
+ */
+public final class SimulationClock {
+    private static final SimulationClock SYSTEM = new SimulationClock(false, 0L);
+
+    private final boolean simulated;
+    private volatile long currentTimeMillis;
+
+    private SimulationClock(boolean simulated, long startMillis) {
+        this.simulated = simulated;
+        this.currentTimeMillis = startMillis;
+    }
+
+    /**
+     * Returns the clock that reads the wall clock.
+     *
+     * @return the system clock
+     */
+    public static SimulationClock system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Returns a new simulated clock.
+     *
+     * @param startMillis the time of the first tick, in milliseconds since the epoch
+     * @return the simulated clock
+     */
+    public static SimulationClock simulated(long startMillis) {
+        return new SimulationClock(true, startMillis);
+    }
+
+    /**
+     * Returns the current time of this clock.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long currentTimeMillis() {
+        return simulated ? currentTimeMillis : System.currentTimeMillis();
+    }
+
+    /**
+     * Returns whether this clock is simulated rather than the wall clock.
+     *
+     * @return true for a simulated clock
+     */
+    public boolean isSimulated() {
+        return simulated;
+    }
+
+    /**
+     * Moves a simulated clock forward; the system clock ignores it. Only the
+     * engine moves the clock, between two ticks.
+     */
+    void advance(long millis) {
+        if (simulated) {
+            currentTimeMillis += millis;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return simulated ? "simulated@" + currentTimeMillis : "system";
+    }
+}
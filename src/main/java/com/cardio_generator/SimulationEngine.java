@@ -0,0 +1,365 @@
+package com.cardio_generator;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+
+/**
+ * Runs the data generators of any number of patients on a small thread pool,
+ * in discrete ticks.
+ * <p>
+ * The patients of each generator are split into batches of consecutive patient
+ * IDs, and each batch is a task in a {@link TimingWheel} that fires once per
+ * period of its generator. On every tick the batches due are run in parallel on
+ * the pool, each generating the data of all its patients in one sweep, and the
+ * tick ends when they are all done. A batch therefore never runs twice at the
+ * same time, and a tick that takes longer than the tick length delays the
+ * following ticks, which then run back to back to catch up.
+ * <p>
+ * The engine can run in real time with {@link #start()}, or at any speed with
+ * {@link #run(long, double)}. With a {@link SimulationClock#simulated simulated
+ * clock}, the clock moves by one tick length at the end of every tick, so the
+ * samples are stamped with simulated time however fast the ticks run; with a
+ * seed as well, the start offsets of the batches are fixed, and a simulation
+ * whose generators are seeded generates the same samples on every run. Only
+ * their order across patients may change from run to run with more than one
+ * worker thread.
+ * <p>
+ * The batches run on a fixed pool of platform threads, or, on Java 21 and
+ * later, each on a virtual thread of its own; see {@link ThreadMode}.
+ */
+public class SimulationEngine implements AutoCloseable {
+    /** Name of the system property that selects the thread mode of the default engine. */
+    public static final String THREADS_PROPERTY = "cardio.threads";
+    /** Default number of patients generated together as one task. */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    /** Each batch starts at a random tick among the first ones, to spread the load. */
+    private static final int MAX_START_OFFSET_TICKS = 5;
+    private static final int WHEEL_SLOTS = 512;
+
+    private final OutputStrategy outputStrategy;
+    private final long tickMillis;
+    private final int batchSize;
+    private final SimulationClock clock;
+    private final ExecutorService workers;
+    private final TimingWheel<Batch> wheel = new TimingWheel<>(WHEEL_SLOTS);
+    private final Random random;
+    private final List<Batch> due = new ArrayList<>();
+    private volatile ScheduledExecutorService ticker;
+    private int batchCount;
+
+    /**
+     * How the batches of a tick are run.
+     */
+    public enum ThreadMode {
+        /** On a fixed pool of platform threads, a few batches per thread. */
+        PLATFORM,
+        /**
+         * Each on a new virtual thread, which needs Java 21. With a batch size
+         * of one, every patient of every generator runs on its own virtual thread.
+         */
+        VIRTUAL;
+
+        /**
+         * Returns whether the running Java version supports this mode.
+         *
+         * @return true if the mode can be used
+         */
+        public boolean isSupported() {
+            return this == PLATFORM || VirtualThreads.FACTORY_BUILDER != null;
+        }
+
+        /**
+         * Returns the mode named by the {@value SimulationEngine#THREADS_PROPERTY} system property,
+         * {@code platform} or {@code virtual}, or {@link #PLATFORM} if it is not set.
+         *
+         * @return the configured mode
+         * @throws IllegalArgumentException if the property names no mode
+         */
+        public static ThreadMode fromSystemProperty() {
+            return valueOf(System.getProperty(THREADS_PROPERTY, "platform").trim().toUpperCase());
+        }
+    }
+
+    /**
+     * Creates an engine with one-second ticks, in the thread mode of the
+     * {@value #THREADS_PROPERTY} system property, with one worker thread per
+     * processor in the platform mode.
+     *
+     * @param outputStrategy the strategy the generated data is output with
+     * @throws UnsupportedOperationException if the property selects virtual threads before Java 21
+     */
+    public SimulationEngine(OutputStrategy outputStrategy) {
+        this(outputStrategy, Runtime.getRuntime().availableProcessors(), 1000L, DEFAULT_BATCH_SIZE,
+                SimulationClock.system(), new Random().nextLong(), ThreadMode.fromSystemProperty());
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param outputStrategy the strategy the generated data is output with
+     * @param threads        the number of worker threads
+     * @param tickMillis     the length of a tick in real time
+     * @param batchSize      the number of patients generated together as one task
+     */
+    public SimulationEngine(OutputStrategy outputStrategy, int threads, long tickMillis, int batchSize) {
+        this(outputStrategy, threads, tickMillis, batchSize, SimulationClock.system(), new Random().nextLong());
+    }
+
+    /**
+     * Creates an engine that moves a clock and spreads the batches reproducibly.
+     *
+     * @param outputStrategy the strategy the generated data is output with
+     * @param threads        the number of worker threads
+     * @param tickMillis     the length of a tick, in real or simulated time
+     * @param batchSize      the number of patients generated together as one task
+     * @param clock          the clock the generators stamp their samples with
+     * @param seed           the seed of the start offsets of the batches
+     */
+    public SimulationEngine(OutputStrategy outputStrategy, int threads, long tickMillis, int batchSize,
+                            SimulationClock clock, long seed) {
+        this(outputStrategy, threads, tickMillis, batchSize, clock, seed, ThreadMode.PLATFORM);
+    }
+
+    /**
+     * Creates an engine that runs its batches in the given thread mode.
+     *
+     * @param outputStrategy the strategy the generated data is output with
+     * @param threads        the number of worker threads in the platform mode
+     * @param tickMillis     the length of a tick, in real or simulated time
+     * @param batchSize      the number of patients generated together as one task
+     * @param clock          the clock the generators stamp their samples with
+     * @param seed           the seed of the start offsets of the batches
+     * @param threadMode     how the batches are run
+     * @throws UnsupportedOperationException if the Java version does not support the thread mode
+     */
+    public SimulationEngine(OutputStrategy outputStrategy, int threads, long tickMillis, int batchSize,
+                            SimulationClock clock, long seed, ThreadMode threadMode) {
+        if (!threadMode.isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later, running on "
+                    + System.getProperty("java.version"));
+        }
+        this.outputStrategy = outputStrategy;
+        this.tickMillis = tickMillis;
+        this.batchSize = batchSize;
+        this.clock = clock;
+        this.random = new Random(seed);
+        if (threadMode == ThreadMode.VIRTUAL) {
+            this.workers = VirtualThreads.newThreadPerTaskExecutor("simulation-worker-");
+        } else {
+            AtomicInteger threadIds = new AtomicInteger();
+            this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "simulation-worker-" + threadIds.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Runs a generator for a range of patients once every period.
+     *
+     * @param generator      the generator
+     * @param firstPatientId the first patient ID
+     * @param lastPatientId  the last patient ID, inclusive
+     * @param periodTicks    the number of ticks between two runs for the same patient
+     */
+    public synchronized void schedule(PatientDataGenerator generator, int firstPatientId, int lastPatientId,
+                                      int periodTicks) {
+        if (periodTicks < 1) {
+            throw new IllegalArgumentException("Period must be at least one tick, got " + periodTicks);
+        }
+        for (int from = firstPatientId; from <= lastPatientId; from += batchSize) {
+            Batch batch = new Batch(generator, from, Math.min(lastPatientId, from + batchSize - 1), periodTicks);
+            wheel.schedule(batch, random.nextInt(Math.min(MAX_START_OFFSET_TICKS, periodTicks)));
+            batchCount++;
+        }
+    }
+
+    /**
+     * Starts ticking in real time, one tick per tick length, on a timer thread.
+     * The timer thread is not a daemon, so it keeps the process running after
+     * the caller returns, until {@link #close()}.
+     */
+    public synchronized void start() {
+        if (ticker != null) {
+            throw new IllegalStateException("SimulationEngine is already started");
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "simulation-ticker"));
+        ticker.scheduleAtFixedRate(this::tickQuietly, 0L, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a number of ticks on the calling thread, paced at a multiple of real
+     * time: at speed 60, an hour of ticks takes a minute. At an infinite speed
+     * the ticks run back to back, as fast as the generators and the output go.
+     * A tick that runs late is caught up on at once, as with {@link #start()}.
+     *
+     * @param ticks the number of ticks to run
+     * @param speed the number of ticks per tick length of real time
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public void run(long ticks, double speed) throws InterruptedException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive, got " + speed);
+        }
+        long startNanos = System.nanoTime();
+        double nanosPerTick = tickMillis * 1_000_000.0 / speed;
+        for (long i = 0; i < ticks; i++) {
+            if (Double.isFinite(speed)) {
+                long waitNanos = startNanos + (long) (i * nanosPerTick) - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+            }
+            tick();
+        }
+    }
+
+    /**
+     * Runs one tick: generates the data of every batch due, waits until all
+     * of them are done and moves a simulated clock on by one tick length.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized void tick() throws InterruptedException {
+        due.clear();
+        wheel.advance(batch -> {
+            due.add(batch);
+            wheel.schedule(batch, batch.periodTicks - 1);
+        });
+        if (!due.isEmpty()) {
+            for (Future<Void> result : workers.invokeAll(due)) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    System.err.println("A generator batch failed: " + e.getCause());
+                }
+            }
+        }
+        clock.advance(tickMillis);
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of ticks run so far.
+     *
+     * @return the tick count
+     */
+    public synchronized long getTickCount() {
+        return wheel.getCurrentTick();
+    }
+
+    /**
+     * Returns the clock the engine moves.
+     *
+     * @return the clock
+     */
+    public SimulationClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Returns the number of scheduled batches, over all generators.
+     *
+     * @return the batch count
+     */
+    public synchronized int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Stops ticking and shuts the worker threads down.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService running = ticker;
+        if (running != null) {
+            running.shutdownNow();
+        }
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Access to the virtual thread API of Java 21, looked up at run time since
+     * the project is built for Java 11.
+     */
+    private static final class VirtualThreads {
+        /** Thread.ofVirtual(), or null before Java 21. */
+        static final Method FACTORY_BUILDER = lookUp();
+
+        private static Method lookUp() {
+            try {
+                Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return Thread.class.getMethod("ofVirtual");
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Returns an executor that starts a new virtual thread, named with the
+         * prefix and a counter, for every task.
+         */
+        static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+            try {
+                Object builder = FACTORY_BUILDER.invoke(null);
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+                ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+                return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                        .invoke(null, factory);
+            } catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException("Cannot create virtual threads", e);
+            }
+        }
+    }
+
+    /**
+     * The patients of one generator in a range of consecutive IDs.
+     */
+    private final class Batch implements Callable<Void> {
+        final PatientDataGenerator generator;
+        final int firstPatientId;
+        final int lastPatientId;
+        final int periodTicks;
+
+        Batch(PatientDataGenerator generator, int firstPatientId, int lastPatientId, int periodTicks) {
+            this.generator = generator;
+            this.firstPatientId = firstPatientId;
+            this.lastPatientId = lastPatientId;
+            this.periodTicks = periodTicks;
+        }
+
+        @Override
+        public Void call() {
+            generator.generate(firstPatientId, lastPatientId, outputStrategy);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.cardio_generator;
+
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel: a ring of slots, one per tick, each holding the tasks
+ * due in that slot. Scheduling and expiring a task take constant time, however
+ * many tasks there are. A task due more than one revolution ahead waits in its
+ * slot for the remaining number of revolutions.
+ * <p>
+ * The wheel is used by a single thread.
+ *
+ * @param <T> the type of the tasks
+ */
+final class TimingWheel<T> {
+    private final Entry<T>[] slots;
+    private final int mask;
+    private long currentTick;
+    private int size;
+
+    /**
+     * Creates a wheel.
+     *
+     * @param slotCount the number of slots, rounded up to a power of two
+     */
+    TimingWheel(int slotCount) {
+        int slots = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+        // A generic array cannot be created directly; the array never leaves this
+        // class and only ever holds entries of T
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Entry<T>[] table = (Entry<T>[]) new Entry[slots];
+        this.slots = table;
+        this.mask = slots - 1;
+    }
+
+    /**
+     * Schedules a task to expire a number of ticks from now; 0 is the tick that
+     * the next call to {@link #advance} processes.
+     */
+    void schedule(T task, long delayTicks) {
+        if (delayTicks < 0) {
+            throw new IllegalArgumentException("Negative delay: " + delayTicks);
+        }
+        long dueTick = currentTick + delayTicks;
+        int slot = (int) (dueTick & mask);
+        slots[slot] = new Entry<>(task, delayTicks / slots.length, slots[slot]);
+        size++;
+    }
+
+    /**
+     * Processes the current tick: hands every task due in it to the consumer,
+     * removing it from the wheel, and moves on to the next tick.
+     */
+    void advance(Consumer<T> expired) {
+        int slot = (int) (currentTick & mask);
+        Entry<T> entry = slots[slot];
+        slots[slot] = null;
+        currentTick++;
+        while (entry != null) {
+            Entry<T> next = entry.next;
+            if (entry.rounds == 0) {
+                size--;
+                // A task the consumer reschedules into this slot joins the new list, not this one
+                expired.accept(entry.task);
+            } else {
+                entry.rounds--;
+                entry.next = slots[slot];
+                slots[slot] = entry;
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * Returns the number of ticks processed so far.
+     */
+    long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Returns the number of scheduled tasks.
+     */
+    int size() {
+        return size;
+    }
+
+    private static final class Entry<T> {
+        final T task;
+        long rounds;
+        Entry<T> next;
+
+        Entry(T task, long rounds, Entry<T> next) {
+            this.task = task;
+            this.rounds = rounds;
+            this.next = next;
+        }
+    }
+}
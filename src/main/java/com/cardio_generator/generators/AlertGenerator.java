@@ -1,7 +1,6 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
-
+import com.cardio_generator.SimulationClock;
 import com.cardio_generator.outputs.OutputStrategy;
 import com.data_management.Patient;
 
@@ -10,7 +9,8 @@ import com.data_management.Patient;
  */
 public class AlertGenerator implements PatientDataGenerator {
 
-    public static final Random randomGenerator = new Random();
+    private final PatientRandoms randomGenerator;
+    private final SimulationClock clock;
     // Changed field name to lowerCamelCase
     private boolean[] alertStates; // false = resolved, true = pressed
     /**
@@ -18,6 +18,17 @@ public class AlertGenerator implements PatientDataGenerator {
      * @param patientCount is an int of th number of patients
      */
     public AlertGenerator(int patientCount) {
+        this(patientCount, SimulationClock.system(), PatientRandoms.randomSeed());
+    }
+    /**
+     * This constructor intializes the alertStates array, with reproducible alerts
+     * @param patientCount is an int of th number of patients
+     * @param clock is the SimulationClock the alerts are stamped with
+     * @param seed is a long that fixes the random values of every patient
+     */
+    public AlertGenerator(int patientCount, SimulationClock clock, long seed) {
+        this.randomGenerator = new PatientRandoms(patientCount, seed, 5L);
+        this.clock = clock;
         // Changed field name to lowerCamelCase
         alertStates = new boolean[patientCount + 1];
     }
@@ -31,24 +42,24 @@ public class AlertGenerator implements PatientDataGenerator {
         try {
             // Changed to field name to lowerCamelCase
             if (alertStates[patientId]) {
-                if (randomGenerator.nextDouble() < 0.9) { // 90% chance to resolve
+                if (randomGenerator.nextDouble(patientId) < 0.9) { // 90% chance to resolve
                     // Changed to field name to lowerCamelCase
                     alertStates[patientId] = false;
                     // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "resolved");
+                    outputStrategy.output(patientId, clock.currentTimeMillis(), "Alert", "resolved");
                 }
             } else {
                 // Changed Lambda to lowerCamelCase as it is a variable
                 double lambda = 0.1; // Average rate (alerts per period), adjust based on desired frequency
                 // Changed Lambda to lowerCamelCase as it is a variable
                 double p = -Math.expm1(-lambda); // Probability of at least one alert in the period
-                boolean alertTriggered = randomGenerator.nextDouble() < p;
+                boolean alertTriggered = randomGenerator.nextDouble(patientId) < p;
 
                 if (alertTriggered) {
                     // Changed to field name to lowerCamelCase
                     alertStates[patientId] = true;
                     // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "triggered");
+                    outputStrategy.output(patientId, clock.currentTimeMillis(), "Alert", "triggered");
                 }
             }
         } catch (Exception e) {
@@ -1,16 +1,28 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
-
+import com.cardio_generator.SimulationClock;
 import com.cardio_generator.outputs.OutputStrategy;
 
 public class BloodLevelsDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final PatientRandoms random;
+    private final SimulationClock clock;
     private final double[] baselineCholesterol;
     private final double[] baselineWhiteCells;
     private final double[] baselineRedCells;
 
     public BloodLevelsDataGenerator(int patientCount) {
+        this(patientCount, SimulationClock.system(), PatientRandoms.randomSeed());
+    }
+
+    /**
+     * Creates a generator whose samples are reproducible for a given seed.
+     * @param patientCount which is an int of the number of patients
+     * @param clock which is the SimulationClock the samples are stamped with
+     * @param seed which is a long that fixes the random values of every patient
+     */
+    public BloodLevelsDataGenerator(int patientCount, SimulationClock clock, long seed) {
+        this.random = new PatientRandoms(patientCount, seed, 4L);
+        this.clock = clock;
         // Initialize arrays to store baseline values for each patient
         baselineCholesterol = new double[patientCount + 1];
         baselineWhiteCells = new double[patientCount + 1];
@@ -18,9 +30,9 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
 
         // Generate baseline values for each patient
         for (int i = 1; i <= patientCount; i++) {
-            baselineCholesterol[i] = 150 + random.nextDouble() * 50; // Initial random baseline
-            baselineWhiteCells[i] = 4 + random.nextDouble() * 6; // Initial random baseline
-            baselineRedCells[i] = 4.5 + random.nextDouble() * 1.5; // Initial random baseline
+            baselineCholesterol[i] = 150 + random.nextDouble(i) * 50; // Initial random baseline
+            baselineWhiteCells[i] = 4 + random.nextDouble(i) * 6; // Initial random baseline
+            baselineRedCells[i] = 4.5 + random.nextDouble(i) * 1.5; // Initial random baseline
         }
     }
 
@@ -28,15 +40,16 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
             // Generate values around the baseline for realism
-            double cholesterol = baselineCholesterol[patientId] + (random.nextDouble() - 0.5) * 10; // Small variation
-            double whiteCells = baselineWhiteCells[patientId] + (random.nextDouble() - 0.5) * 1; // Small variation
-            double redCells = baselineRedCells[patientId] + (random.nextDouble() - 0.5) * 0.2; // Small variation
+            double cholesterol = baselineCholesterol[patientId] + (random.nextDouble(patientId) - 0.5) * 10; // Small variation
+            double whiteCells = baselineWhiteCells[patientId] + (random.nextDouble(patientId) - 0.5) * 1; // Small variation
+            double redCells = baselineRedCells[patientId] + (random.nextDouble(patientId) - 0.5) * 0.2; // Small variation
 
             // Output the generated values
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Cholesterol", Double.toString(cholesterol));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "WhiteBloodCells",
+            long now = clock.currentTimeMillis();
+            outputStrategy.output(patientId, now, "Cholesterol", Double.toString(cholesterol));
+            outputStrategy.output(patientId, now, "WhiteBloodCells",
                     Double.toString(whiteCells));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "RedBloodCells", Double.toString(redCells));
+            outputStrategy.output(patientId, now, "RedBloodCells", Double.toString(redCells));
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood levels data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
@@ -1,31 +1,43 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
-
+import com.cardio_generator.SimulationClock;
 import com.cardio_generator.outputs.OutputStrategy;
 
 public class BloodPressureDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final PatientRandoms random;
+    private final SimulationClock clock;
 
     private int[] lastSystolicValues;
     private int[] lastDiastolicValues;
 
     public BloodPressureDataGenerator(int patientCount) {
+        this(patientCount, SimulationClock.system(), PatientRandoms.randomSeed());
+    }
+
+    /**
+     * Creates a generator whose samples are reproducible for a given seed.
+     * @param patientCount which is an int of the number of patients
+     * @param clock which is the SimulationClock the samples are stamped with
+     * @param seed which is a long that fixes the random values of every patient
+     */
+    public BloodPressureDataGenerator(int patientCount, SimulationClock clock, long seed) {
+        this.random = new PatientRandoms(patientCount, seed, 3L);
+        this.clock = clock;
         lastSystolicValues = new int[patientCount + 1];
         lastDiastolicValues = new int[patientCount + 1];
 
         // Initialize with baseline values for each patient
         for (int i = 1; i <= patientCount; i++) {
-            lastSystolicValues[i] = 110 + random.nextInt(20); // Random baseline between 110 and 130
-            lastDiastolicValues[i] = 70 + random.nextInt(15); // Random baseline between 70 and 85
+            lastSystolicValues[i] = 110 + random.nextInt(i, 20); // Random baseline between 110 and 130
+            lastDiastolicValues[i] = 70 + random.nextInt(i, 15); // Random baseline between 70 and 85
         }
     }
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
-            int systolicVariation = random.nextInt(5) - 2; // -2, -1, 0, 1, or 2
-            int diastolicVariation = random.nextInt(5) - 2;
+            int systolicVariation = random.nextInt(patientId, 5) - 2; // -2, -1, 0, 1, or 2
+            int diastolicVariation = random.nextInt(patientId, 5) - 2;
             int newSystolicValue = lastSystolicValues[patientId] + systolicVariation;
             int newDiastolicValue = lastDiastolicValues[patientId] + diastolicVariation;
             // Ensure the blood pressure stays within a realistic and safe range
@@ -34,9 +46,10 @@ public class BloodPressureDataGenerator implements PatientDataGenerator {
             lastSystolicValues[patientId] = newSystolicValue;
             lastDiastolicValues[patientId] = newDiastolicValue;
 
-            outputStrategy.output(patientId, System.currentTimeMillis(), "SystolicPressure",
+            long now = clock.currentTimeMillis();
+            outputStrategy.output(patientId, now, "SystolicPressure",
                     Double.toString(newSystolicValue));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "DiastolicPressure",
+            outputStrategy.output(patientId, now, "DiastolicPressure",
                     Double.toString(newDiastolicValue));
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood pressure data for patient " + patientId);
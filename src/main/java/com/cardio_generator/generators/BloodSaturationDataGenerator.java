@@ -1,24 +1,35 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
-
+import com.cardio_generator.SimulationClock;
 import com.cardio_generator.outputs.OutputStrategy;
 /**
 * This class generates blood saturation data for a patient
 */
 public class BloodSaturationDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final PatientRandoms random;
+    private final SimulationClock clock;
     private int[] lastSaturationValues;
 /**
 * This constructor intializes the lastSaturationValues array
 * @param patientCount which an int of the number of patients
 */
     public BloodSaturationDataGenerator(int patientCount) {
+        this(patientCount, SimulationClock.system(), PatientRandoms.randomSeed());
+    }
+/**
+* This constructor intializes the lastSaturationValues array with reproducible values
+* @param patientCount which an int of the number of patients
+* @param clock which is the SimulationClock the samples are stamped with
+* @param seed which is a long that fixes the random values of every patient
+*/
+    public BloodSaturationDataGenerator(int patientCount, SimulationClock clock, long seed) {
+        this.random = new PatientRandoms(patientCount, seed, 2L);
+        this.clock = clock;
         lastSaturationValues = new int[patientCount + 1];
 
         // Initialize with baseline saturation values for each patient
         for (int i = 1; i <= patientCount; i++) {
-            lastSaturationValues[i] = 95 + random.nextInt(6); // Initializes with a value between 95 and 100
+            lastSaturationValues[i] = 95 + random.nextInt(i, 6); // Initializes with a value between 95 and 100
         }
     }
 /**
@@ -30,13 +41,13 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
             // Simulate blood saturation values
-            int variation = random.nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
+            int variation = random.nextInt(patientId, 3) - 1; // -1, 0, or 1 to simulate small fluctuations
             int newSaturationValue = lastSaturationValues[patientId] + variation;
 
             // Ensure the saturation stays within a realistic and healthy range
             newSaturationValue = Math.min(Math.max(newSaturationValue, 90), 100);
             lastSaturationValues[patientId] = newSaturationValue;
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Saturation",
+            outputStrategy.output(patientId, clock.currentTimeMillis(), "Saturation",
                     Double.toString(newSaturationValue) + "%");
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood saturation data for patient " + patientId);
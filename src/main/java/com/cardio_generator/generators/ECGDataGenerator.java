@@ -1,15 +1,27 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
-
+import com.cardio_generator.SimulationClock;
 import com.cardio_generator.outputs.OutputStrategy;
 
 public class ECGDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final PatientRandoms random;
+    private final SimulationClock clock;
     private double[] lastEcgValues;
     private static final double PI = Math.PI;
 
     public ECGDataGenerator(int patientCount) {
+        this(patientCount, SimulationClock.system(), PatientRandoms.randomSeed());
+    }
+
+    /**
+     * Creates a generator whose samples are reproducible for a given seed.
+     * @param patientCount which is an int of the number of patients
+     * @param clock which is the SimulationClock the samples are stamped with
+     * @param seed which is a long that fixes the random values of every patient
+     */
+    public ECGDataGenerator(int patientCount, SimulationClock clock, long seed) {
+        this.random = new PatientRandoms(patientCount, seed, 1L);
+        this.clock = clock;
         lastEcgValues = new double[patientCount + 1];
         // Initialize the last ECG value for each patient
         for (int i = 1; i <= patientCount; i++) {
@@ -19,10 +31,25 @@ public class ECGDataGenerator implements PatientDataGenerator {
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generate(patientId, clock.currentTimeMillis(), outputStrategy);
+    }
+
+    /**
+     * Generates the ECG values of a range of patients for the same instant.
+     */
+    @Override
+    public void generate(int firstPatientId, int lastPatientId, OutputStrategy outputStrategy) {
+        long now = clock.currentTimeMillis();
+        for (int patientId = firstPatientId; patientId <= lastPatientId; patientId++) {
+            generate(patientId, now, outputStrategy);
+        }
+    }
+
+    private void generate(int patientId, long now, OutputStrategy outputStrategy) {
         // TODO Check how realistic this data is and make it more realistic if necessary
         try {
-            double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId]);
-            outputStrategy.output(patientId, System.currentTimeMillis(), "ECG", Double.toString(ecgValue));
+            double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId], now);
+            outputStrategy.output(patientId, now, "ECG", Double.toString(ecgValue));
             lastEcgValues[patientId] = ecgValue;
         } catch (Exception e) {
             System.err.println("An error occurred while generating ECG data for patient " + patientId);
@@ -30,10 +57,10 @@ public class ECGDataGenerator implements PatientDataGenerator {
         }
     }
 
-    private double simulateEcgWaveform(int patientId, double lastEcgValue) {
+    private double simulateEcgWaveform(int patientId, double lastEcgValue, long now) {
         // Simplified ECG waveform generation based on sinusoids
-        double hr = 60.0 + random.nextDouble() * 20.0; // Simulate heart rate variability between 60 and 80 bpm
-        double t = System.currentTimeMillis() / 1000.0; // Use system time to simulate continuous time
+        double hr = 60.0 + random.nextDouble(patientId) * 20.0; // Simulate heart rate variability between 60 and 80 bpm
+        double t = now / 1000.0; // Use the simulation time to simulate continuous time
         double ecgFrequency = hr / 60.0; // Convert heart rate to Hz
 
         // Simulate different components of the ECG signal
@@ -41,6 +68,6 @@ public class ECGDataGenerator implements PatientDataGenerator {
         double qrsComplex = 0.5 * Math.sin(2 * PI * 3 * ecgFrequency * t); // QRS is higher frequency
         double tWave = 0.2 * Math.sin(2 * PI * 2 * ecgFrequency * t + PI / 4); // T wave is offset
 
-        return pWave + qrsComplex + tWave + random.nextDouble() * 0.05; // Add small noise
+        return pWave + qrsComplex + tWave + random.nextDouble(patientId) * 0.05; // Add small noise
     }
 }
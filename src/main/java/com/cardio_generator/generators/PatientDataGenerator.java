@@ -11,4 +11,18 @@ public interface PatientDataGenerator {
     * @param ouputStrategy which an OutputStrategy that is being used
     */
     void generate(int patientId, OutputStrategy outputStrategy);
+
+    /**
+    * Generates the data of a range of patients with consecutive ids, as one task
+    * of the simulation engine. Generators can override it to share work between
+    * the patients.
+    * @param firstPatientId which is an int of the first patient
+    * @param lastPatientId which is an int of the last patient, inclusive
+    * @param outputStrategy which an OutputStrategy that is being used
+    */
+    default void generate(int firstPatientId, int lastPatientId, OutputStrategy outputStrategy) {
+        for (int patientId = firstPatientId; patientId <= lastPatientId; patientId++) {
+            generate(patientId, outputStrategy);
+        }
+    }
 }
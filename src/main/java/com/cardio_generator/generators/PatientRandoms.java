@@ -0,0 +1,65 @@
+package com.cardio_generator.generators;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One random number stream per patient, for a generator.
+ * <p>
+ * Each stream is a SplitMix64 sequence whose state is derived from the seed,
+ * the generator and the patient ID only. The values a patient gets therefore
+ * do not depend on how many other patients there are, in which order they are
+ * generated or on which thread, so a seeded simulation is reproducible. The
+ * engine never runs the same patient of a generator on two threads at once,
+ * so the streams need no synchronization.
+ */
+final class PatientRandoms {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long[] states;
+
+    /**
+     * Creates the streams of patients 1 to patientCount.
+     *
+     * @param patientCount the number of patients
+     * @param seed         the seed of the simulation
+     * @param stream       a constant that tells the generators apart
+     */
+    PatientRandoms(int patientCount, long seed, long stream) {
+        states = new long[patientCount + 1];
+        long base = mix(seed ^ mix(stream));
+        for (int patientId = 1; patientId <= patientCount; patientId++) {
+            states[patientId] = mix(base + patientId * GOLDEN_GAMMA);
+        }
+    }
+
+    /**
+     * Returns a fresh seed, for a simulation that need not be reproducible.
+     */
+    static long randomSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Returns the next value of a patient's stream, uniform in [0, 1).
+     */
+    double nextDouble(int patientId) {
+        return (next(patientId) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Returns the next value of a patient's stream, uniform in [0, bound).
+     */
+    int nextInt(int patientId, int bound) {
+        return (int) (((next(patientId) >>> 32) * bound) >>> 32);
+    }
+
+    private long next(int patientId) {
+        return mix(states[patientId] += GOLDEN_GAMMA);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,363 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes the health data to one file per label, like {@link FileOutputStrategy}
+ * and in the same text format, without doing any file work on the calling thread.
+ * <p>
+ * {@link #output} only places the sample in the label's ring buffer. Every label
+ * has a writer thread that keeps its file open, formats samples straight into a
+ * large byte buffer and writes the buffer when it is full or when the flush
+ * interval has passed. Files can be rotated by size and by age; a rotated file is
+ * renamed to {@code <label>.<time rotated>.txt} and a new {@code <label>.txt} is started.
+ * <p>
+ * When a writer falls so far behind that its ring buffer is full, producers wait
+ * for room rather than lose data. An idle writer sleeps until a sample arrives or
+ * its buffer is due to be flushed or its file to be rotated.
+ * <p>
+ * Samples given to {@link #output} once {@link #close} has begun are rejected
+ * with an error; every sample accepted before is written.
+ */
+public class AsyncFileOutputStrategy implements OutputStrategy, AutoCloseable {
+    /** Default number of samples that can wait per label. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+    /** Default size of the write buffer per label, in bytes. */
+    public static final int DEFAULT_BUFFER_BYTES = 256 * 1024;
+    /** Default longest time a sample stays in the write buffer. */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200L;
+
+    private static final int DRAIN_BATCH = 1024;
+    private static final long FULL_PARK_NANOS = 50_000L;
+
+    private final Path baseDirectory;
+    private final int queueCapacity;
+    private final int bufferBytes;
+    private final long flushIntervalMillis;
+    private final long maxFileBytes;
+    private final long rotateIntervalMillis;
+    private final ConcurrentMap<String, LabelWriter> writers = new ConcurrentHashMap<>();
+    // Producers hold the read lock while they create writers and queue samples, so
+    // once close takes the write lock no writer is added and no sample is in flight
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+
+    /**
+     * Constructs a sink with the default buffer sizes and flush interval, and no rotation.
+     *
+     * @param baseDirectory the directory the label files are written to
+     */
+    public AsyncFileOutputStrategy(String baseDirectory) {
+        this(baseDirectory, DEFAULT_QUEUE_CAPACITY, DEFAULT_BUFFER_BYTES, DEFAULT_FLUSH_INTERVAL_MILLIS, 0L, 0L);
+    }
+
+    /**
+     * Constructs a sink.
+     *
+     * @param baseDirectory        the directory the label files are written to
+     * @param queueCapacity        the number of samples that can wait per label
+     * @param bufferBytes          the size of the write buffer per label
+     * @param flushIntervalMillis  the longest time a sample stays in the write buffer
+     * @param maxFileBytes         the size at which a file is rotated, or 0 for no size limit
+     * @param rotateIntervalMillis the age at which a file is rotated, or 0 for no age limit
+     */
+    public AsyncFileOutputStrategy(String baseDirectory, int queueCapacity, int bufferBytes, long flushIntervalMillis,
+                                   long maxFileBytes, long rotateIntervalMillis) {
+        this.baseDirectory = Paths.get(baseDirectory);
+        this.queueCapacity = queueCapacity;
+        this.bufferBytes = bufferBytes;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxFileBytes = maxFileBytes;
+        this.rotateIntervalMillis = rotateIntervalMillis;
+    }
+
+    /**
+     * Queues a sample for the writer of its label.
+     *
+     * @param patientId is a int that identifices the patient
+     * @param timestamp is a long that is the recorded time
+     * @param label     is a String that labels the data
+     * @param data      is a String that is the data given
+     */
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                System.err.println("Error writing to file for " + label + ": output is closed");
+                return;
+            }
+            LabelWriter writer = writers.get(label);
+            if (writer == null) {
+                writer = writers.computeIfAbsent(label, LabelWriter::new);
+            }
+            writer.enqueue(patientId, timestamp, data);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes out every queued sample, closes the files and stops the writer threads.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        for (LabelWriter writer : writers.values()) {
+            writer.stop();
+        }
+    }
+
+    /**
+     * Renames a full file to its rotated name. Called on the writer thread of the
+     * label; the file is closed.
+     *
+     * @param source the file of the label
+     * @param target the rotated name
+     * @throws IOException if the file cannot be renamed
+     */
+    protected void moveFile(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Owns the file of one label and the thread that writes it.
+     */
+    private final class LabelWriter implements SampleRingBuffer.SampleConsumer {
+        private final String label;
+        private final Path file;
+        private final SampleRingBuffer queue;
+        private final ByteBuffer buffer;
+        private final byte[] timestampPrefix = ", Timestamp: ".getBytes(StandardCharsets.US_ASCII);
+        private final byte[] labelPart;
+        private final byte[] lineSeparator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+        private final byte[] digits = new byte[20];
+        private final Thread thread;
+        private FileChannel channel;
+        private long fileBytes;
+        private long fileOpenedAt;
+        private long lastFlushAt;
+        private volatile boolean idle;
+
+        LabelWriter(String label) {
+            this.label = label;
+            this.file = baseDirectory.resolve(label + ".txt");
+            this.queue = new SampleRingBuffer(queueCapacity);
+            this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+            this.labelPart = (", Label: " + label + ", Data: ").getBytes(StandardCharsets.UTF_8);
+            this.thread = new Thread(this::run, "file-writer-" + label);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        void enqueue(int patientId, long timestamp, String data) {
+            while (!queue.offer(patientId, timestamp, data)) {
+                if (!thread.isAlive()) {
+                    System.err.println("Error writing to file " + file + ": writer has stopped");
+                    return;
+                }
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+            if (idle) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void stop() {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            try {
+                Files.createDirectories(baseDirectory);
+                open();
+            } catch (IOException e) {
+                System.err.println("Error opening file " + file + ": " + e.getMessage());
+                return;
+            }
+            while (!closed || queue.size() > 0) {
+                int drained = queue.drainTo(this, DRAIN_BATCH);
+                long now = System.currentTimeMillis();
+                if (buffer.position() > 0 && now - lastFlushAt >= flushIntervalMillis) {
+                    flush();
+                }
+                if (rotateIntervalMillis > 0 && now - fileOpenedAt >= rotateIntervalMillis && fileBytes > 0) {
+                    rotate();
+                }
+                if (drained == 0) {
+                    // Producers wake an idle writer, so it only needs a timeout for its deadlines
+                    idle = true;
+                    if (queue.size() == 0 && !closed) {
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(idleMillis(now)));
+                    }
+                    idle = false;
+                }
+            }
+            flush();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing file " + file + ": " + e.getMessage());
+            }
+        }
+
+        /**
+         * Returns how long the writer can sleep before a buffered sample is due to be
+         * written or the file to be rotated, at most one flush interval.
+         */
+        private long idleMillis(long now) {
+            long wait = flushIntervalMillis;
+            if (buffer.position() > 0) {
+                wait = Math.min(wait, lastFlushAt + flushIntervalMillis - now);
+            }
+            if (rotateIntervalMillis > 0 && fileBytes > 0) {
+                wait = Math.min(wait, fileOpenedAt + rotateIntervalMillis - now);
+            }
+            return Math.max(1L, wait);
+        }
+
+        // Formats one sample as "Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n"
+        @Override
+        public void accept(int patientId, long timestamp, String data) {
+            int maxLength = 12 + 11 + timestampPrefix.length + 20 + labelPart.length
+                    + data.length() * 3 + lineSeparator.length;
+            if (buffer.remaining() < maxLength) {
+                flush();
+            }
+            int start = buffer.position();
+            if (buffer.remaining() < maxLength) {
+                // A line larger than the whole buffer is written on its own
+                byte[] line = String.format("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n",
+                        patientId, timestamp, label, data).getBytes(StandardCharsets.UTF_8);
+                write(ByteBuffer.wrap(line));
+                fileBytes += line.length;
+            } else {
+                putAscii("Patient ID: ");
+                putNumber(patientId);
+                buffer.put(timestampPrefix);
+                putNumber(timestamp);
+                buffer.put(labelPart);
+                putText(data);
+                buffer.put(lineSeparator);
+                fileBytes += buffer.position() - start;
+            }
+            if (maxFileBytes > 0 && fileBytes >= maxFileBytes) {
+                rotate();
+            }
+        }
+
+        private void putAscii(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                buffer.put((byte) text.charAt(i));
+            }
+        }
+
+        private void putText(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    buffer.put(text.substring(i).getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                buffer.put((byte) c);
+            }
+        }
+
+        private void putNumber(long value) {
+            if (value == Long.MIN_VALUE) {
+                putAscii(Long.toString(value));
+                return;
+            }
+            if (value < 0) {
+                buffer.put((byte) '-');
+                value = -value;
+            }
+            int length = 0;
+            do {
+                digits[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            while (length > 0) {
+                buffer.put(digits[--length]);
+            }
+        }
+
+        private void flush() {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+            lastFlushAt = System.currentTimeMillis();
+        }
+
+        private void write(ByteBuffer bytes) {
+            try {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + file + ": " + e.getMessage());
+            }
+        }
+
+        private void rotate() {
+            flush();
+            boolean rotated = false;
+            try {
+                channel.close();
+                long now = System.currentTimeMillis();
+                Path target = baseDirectory.resolve(label + "." + now + ".txt");
+                for (int i = 1; Files.exists(target); i++) {
+                    target = baseDirectory.resolve(label + "." + now + "-" + i + ".txt");
+                }
+                moveFile(file, target);
+                rotated = true;
+            } catch (IOException e) {
+                System.err.println("Error rotating file " + file + ": " + e.getMessage());
+            } finally {
+                // Whether or not the file was moved, the label keeps a file to write to
+                try {
+                    open();
+                } catch (IOException e) {
+                    System.err.println("Error opening file " + file + ": " + e.getMessage());
+                }
+            }
+            if (!rotated) {
+                // Keep appending to the old file and try again after another full file
+                fileBytes = 0;
+            }
+        }
+
+        private void open() throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            fileBytes = channel.size();
+            fileOpenedAt = System.currentTimeMillis();
+            lastFlushAt = fileOpenedAt;
+        }
+    }
+}
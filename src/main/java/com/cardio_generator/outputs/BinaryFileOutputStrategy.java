@@ -0,0 +1,102 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.data_management.BinaryDataReader;
+import com.data_management.BinaryRecordWriter;
+import com.data_management.RecordParser;
+import com.data_management.RecordType;
+
+/**
+ * Writes the health data to a file in the compact binary record format, to be
+ * replayed with {@link BinaryDataReader}. Each run writes a new file named
+ * {@code records-<start time>.bin} in the base directory. The data is converted
+ * to a number like the WebSocket client does: a {@code %} suffix is dropped and
+ * the alert payloads {@code triggered} and {@code resolved} become 1 and 0.
+ * <p>
+ * Buffered records are written at least once per flush interval, and when the
+ * strategy is closed.
+ */
+public class BinaryFileOutputStrategy implements OutputStrategy, AutoCloseable {
+    /** Default longest time a record stays in the write buffer. */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000L;
+
+    private final BinaryRecordWriter writer;
+    private final RecordParser parser = new RecordParser();
+    private final long flushIntervalMillis;
+    private long lastFlushAt;
+
+    /**
+     * Creates the output file with delta-encoded timestamps and the default flush interval.
+     *
+     * @param baseDirectory the directory the file is written to
+     * @throws IOException if the file cannot be created
+     */
+    public BinaryFileOutputStrategy(String baseDirectory) throws IOException {
+        this(baseDirectory, true, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Creates the output file.
+     *
+     * @param baseDirectory       the directory the file is written to
+     * @param deltaTimestamps     whether to store each timestamp as the difference to
+     *                            the previous one of the same patient and label
+     * @param flushIntervalMillis the longest time a record stays in the write buffer
+     * @throws IOException if the file cannot be created
+     */
+    public BinaryFileOutputStrategy(String baseDirectory, boolean deltaTimestamps, long flushIntervalMillis)
+            throws IOException {
+        Path directory = Paths.get(baseDirectory);
+        Files.createDirectories(directory);
+        long now = System.currentTimeMillis();
+        Path file = directory.resolve("records-" + now + BinaryDataReader.FILE_EXTENSION);
+        for (int i = 1; Files.exists(file); i++) {
+            file = directory.resolve("records-" + now + "-" + i + BinaryDataReader.FILE_EXTENSION);
+        }
+        this.writer = new BinaryRecordWriter(file, deltaTimestamps);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.lastFlushAt = now;
+    }
+
+    /**
+     * Writes a sample as a binary record.
+     *
+     * @param patientId is a int that identifices the patient
+     * @param timestamp is a long that is the recorded time
+     * @param label     is a String that labels the data
+     * @param data      is a String that is the data given
+     */
+    @Override
+    public synchronized void output(int patientId, long timestamp, String label, String data) {
+        if (!parser.parseData(data)) {
+            System.err.println("Error writing binary record: invalid data '" + data + "' for " + label);
+            return;
+        }
+        try {
+            writer.write(patientId, RecordType.codeOf(label), parser.getMeasurementValue(), timestamp);
+            long now = System.currentTimeMillis();
+            if (now - lastFlushAt >= flushIntervalMillis) {
+                writer.flush();
+                lastFlushAt = now;
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing binary record: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the buffered records and closes the file.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Error closing binary record file: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.cardio_generator.outputs;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue of output samples for many producers and a single
+ * consumer. The patient ID and timestamp are kept in primitive arrays and the
+ * data string is stored by reference, so offering a sample allocates nothing.
+ * Every slot carries a sequence number that tells producers and the consumer
+ * whose turn it is to use the slot (the bounded queue described by Dmitry Vyukov).
+ */
+class SampleRingBuffer {
+    /**
+     * Receives the samples drained from the buffer.
+     */
+    interface SampleConsumer {
+        void accept(int patientId, long timestamp, String data);
+    }
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final int[] patientIds;
+    private final long[] timestamps;
+    private final String[] data;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    SampleRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        patientIds = new int[size];
+        timestamps = new long[size];
+        data = new String[size];
+    }
+
+    /**
+     * Adds a sample if there is room for it. May be called from any thread.
+     *
+     * @return true if the sample was added, false if the buffer is full
+     */
+    boolean offer(int patientId, long timestamp, String value) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // the consumer has not freed this slot yet
+            } else {
+                position = tail.get();
+            }
+        }
+        int slot = (int) position & mask;
+        patientIds[slot] = patientId;
+        timestamps[slot] = timestamp;
+        data[slot] = value;
+        sequences.lazySet(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Hands up to {@code maxSamples} samples, oldest first, to the consumer.
+     * Must only be called from the single consumer thread.
+     *
+     * @return the number of samples drained
+     */
+    int drainTo(SampleConsumer consumer, int maxSamples) {
+        long position = head.get();
+        int drained = 0;
+        while (drained < maxSamples) {
+            int slot = (int) position & mask;
+            if (sequences.get(slot) != position + 1) {
+                break; // empty, or a producer is still writing this slot
+            }
+            consumer.accept(patientIds[slot], timestamps[slot], data[slot]);
+            data[slot] = null;
+            sequences.lazySet(slot, position + mask + 1);
+            position++;
+            drained++;
+        }
+        head.lazySet(position);
+        return drained;
+    }
+
+    /**
+     * Returns the approximate number of samples waiting in the buffer.
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1L));
+    }
+}
@@ -1,54 +1,385 @@
 package com.cardio_generator.outputs;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
-* This class is ouputs health data through a TCP socket
-*/    
-public class TcpOutputStrategy implements OutputStrategy {
+ * Outputs health data to any number of TCP clients, one line
+ * {@code patientId,timestamp,label,data} per sample.
+ * <p>
+ * A single I/O thread runs a non-blocking {@link Selector} that accepts clients
+ * and writes to them. {@link #output} encodes the line once and appends it to
+ * the bounded outbound queue of every client; it never touches a socket. The
+ * I/O thread coalesces the queued lines of a client into one buffer per write,
+ * and only waits for a client to become writable when its socket buffer is full.
+ * <p>
+ * What happens when a client reads too slowly to keep its queue below the
+ * limit is chosen by the {@link OverflowPolicy}.
+ */
+public class TcpOutputStrategy implements OutputStrategy, AutoCloseable {
+    /** Default limit of the outbound queue of each client, in bytes. */
+    public static final int DEFAULT_QUEUE_BYTES = 1024 * 1024;
+    /** Longest time {@link OverflowPolicy#BLOCK} waits for a client to make room. */
+    public static final long BLOCK_TIMEOUT_MILLIS = 1000L;
+
+    private static final int WRITE_BUFFER_BYTES = 32 * 1024;
+
+    /**
+     * What to do with a sample for a client whose outbound queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Drop the oldest queued lines to make room; the client sees a gap. */
+        DROP_OLDEST,
+        /** Disconnect the client; it may reconnect and start from the current data. */
+        DISCONNECT,
+        /**
+         * Make the generator wait until the client has made room, and disconnect it
+         * if it has not done so within {@link TcpOutputStrategy#BLOCK_TIMEOUT_MILLIS}.
+         */
+        BLOCK
+    }
+
+    private final OverflowPolicy overflowPolicy;
+    private final int queueBytes;
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    // Clients that got data while they had nothing queued
+    private final ConcurrentLinkedQueue<Connection> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicLong droppedLines = new AtomicLong();
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private Thread ioThread;
+    private volatile boolean closed;
 
-    private ServerSocket serverSocket;
-    private Socket clientSocket;
-    private PrintWriter out;
     /**
-    *This constructor creates a TcpOutputStrategy with the port given
-    *@param port which an int that tells which TCP serve will look for client connections
-    */
+     * This constructor creates a TcpOutputStrategy with the port given, which
+     * drops the oldest data of clients that fall behind by more than
+     * {@link #DEFAULT_QUEUE_BYTES}.
+     *
+     * @param port the port on which the TCP server listens for client connections
+     */
     public TcpOutputStrategy(int port) {
+        this(port, OverflowPolicy.DROP_OLDEST, DEFAULT_QUEUE_BYTES);
+    }
+
+    /**
+     * Creates a TcpOutputStrategy listening on the given port.
+     *
+     * @param port           the port on which the TCP server listens for client
+     *                       connections, or 0 for any free port
+     * @param overflowPolicy what to do when a client falls behind
+     * @param queueBytes     the limit of the outbound queue of each client, in bytes
+     */
+    public TcpOutputStrategy(int port, OverflowPolicy overflowPolicy, int queueBytes) {
+        this.overflowPolicy = overflowPolicy;
+        this.queueBytes = queueBytes;
         try {
-            serverSocket = new ServerSocket(port);
-            System.out.println("TCP Server started on port " + port);
-
-            // Accept clients in a new thread to not block the main thread
-            Executors.newSingleThreadExecutor().submit(() -> {
-                try {
-                    clientSocket = serverSocket.accept();
-                    out = new PrintWriter(clientSocket.getOutputStream(), true);
-                    System.out.println("Client connected: " + clientSocket.getInetAddress());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            ioThread = new Thread(this::run, "tcp-output-" + getPort());
+            ioThread.setDaemon(true);
+            ioThread.start();
+            System.out.println("TCP Server started on port " + getPort());
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
-     /**
-    *This output method prints the health data through TCP connection that was selected
-    * @param patientId is a int that identifices the patient
-    * @param timestamp is a long that is the recorded time
-    * @param label is a String that labels the data
-    * @param data is a String that is the given data
-    */
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the local port, or -1 if the server could not be started
+     */
+    public int getPort() {
+        return serverChannel != null && serverChannel.socket().isBound() ? serverChannel.socket().getLocalPort() : -1;
+    }
+
+    /**
+     * Returns the number of clients currently connected.
+     *
+     * @return the number of clients
+     */
+    public int getClientCount() {
+        return connections.size();
+    }
+
+    /**
+     * Returns the number of lines dropped for clients that fell behind, summed
+     * over all clients.
+     *
+     * @return the number of dropped lines
+     */
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+
+    /**
+     * Queues the health data for every connected client.
+     *
+     * @param patientId is a int that identifices the patient
+     * @param timestamp is a long that is the recorded time
+     * @param label is a String that labels the data
+     * @param data is a String that is the given data
+     */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        if (out != null) {
-            String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-            out.println(message);
+        if (connections.isEmpty()) {
+            return;
+        }
+        byte[] line = (patientId + "," + timestamp + "," + label + "," + data + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        for (Connection connection : connections) {
+            if (connection.offer(line)) {
+                ready.add(connection);
+                selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting clients and disconnects the connected ones. Lines still
+     * queued are discarded.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (ioThread == null) {
+            return;
+        }
+        selector.wakeup();
+        try {
+            ioThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                Connection connection;
+                while ((connection = ready.poll()) != null) {
+                    flush(connection);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isWritable()) {
+                        flush((Connection) key.attachment());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("TCP output stopped: " + e.getMessage());
+        } finally {
+            for (Connection connection : connections) {
+                disconnect(connection);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, 0, connection);
+        connections.add(connection);
+        System.out.println("Client connected: " + connection.address);
+    }
+
+    // Writes what the client will take; waits for it to become writable if that is not everything
+    private void flush(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        ByteBuffer buffer = connection.writeBuffer;
+        try {
+            while (true) {
+                if (connection.overflowed) {
+                    disconnect(connection);
+                    return;
+                }
+                boolean drained = connection.fill(buffer);
+                buffer.flip();
+                connection.channel.write(buffer);
+                boolean partial = buffer.hasRemaining();
+                buffer.compact();
+                if (partial) {
+                    connection.key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (drained && connection.finishIfEmpty()) {
+                    connection.key.interestOps(0);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        connections.remove(connection);
+        connection.close();
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // The client is gone either way
+        }
+        System.out.println("Client disconnected: " + connection.address
+                + (connection.overflowed ? " (fell behind)" : ""));
+    }
+
+    /**
+     * A client and the lines queued for it. The queue is guarded by the
+     * connection's monitor; only the I/O thread touches the channel and the
+     * write buffer.
+     */
+    private final class Connection {
+        final SocketChannel channel;
+        final String address;
+        final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        SelectionKey key;
+        private final ArrayDeque<byte[]> lines = new ArrayDeque<>();
+        private int queuedBytes;
+        // True while the I/O thread has this client on its list
+        private boolean scheduled;
+        private boolean disconnected;
+        volatile boolean overflowed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.address = String.valueOf(channel.socket().getInetAddress());
+        }
+
+        /**
+         * Queues a line. Returns true if the I/O thread has to be told about
+         * this client.
+         */
+        synchronized boolean offer(byte[] line) {
+            if (disconnected || overflowed) {
+                return false;
+            }
+            if (line.length > Math.min(queueBytes, WRITE_BUFFER_BYTES)) {
+                droppedLines.incrementAndGet();
+                return false;
+            }
+            if (queuedBytes + line.length > queueBytes && !makeRoom(line.length)) {
+                // The I/O thread disconnects the client, even if it is waiting for it to become writable
+                overflowed = true;
+                return true;
+            }
+            lines.addLast(line);
+            queuedBytes += line.length;
+            return schedule();
+        }
+
+        private boolean makeRoom(int length) {
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    while (queuedBytes + length > queueBytes) {
+                        queuedBytes -= lines.pollFirst().length;
+                        droppedLines.incrementAndGet();
+                    }
+                    return true;
+                case BLOCK:
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BLOCK_TIMEOUT_MILLIS);
+                    try {
+                        while (queuedBytes + length > queueBytes && !disconnected) {
+                            long remaining = deadline - System.nanoTime();
+                            if (remaining <= 0) {
+                                return false;
+                            }
+                            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    return !disconnected;
+                default:
+                    return false;
+            }
+        }
+
+        private boolean schedule() {
+            if (scheduled) {
+                return false;
+            }
+            scheduled = true;
+            return true;
+        }
+
+        /**
+         * Moves as many queued lines as fit into the buffer. Returns true if the
+         * queue is now empty.
+         */
+        synchronized boolean fill(ByteBuffer buffer) {
+            byte[] line;
+            while ((line = lines.peekFirst()) != null && line.length <= buffer.remaining()) {
+                buffer.put(line);
+                lines.pollFirst();
+                queuedBytes -= line.length;
+            }
+            if (overflowPolicy == OverflowPolicy.BLOCK) {
+                notifyAll();
+            }
+            return lines.isEmpty();
+        }
+
+        /**
+         * Takes this client off the I/O thread's list if nothing is queued, so
+         * that the next line schedules it again.
+         */
+        synchronized boolean finishIfEmpty() {
+            if (!lines.isEmpty()) {
+                return false;
+            }
+            scheduled = false;
+            return true;
+        }
+
+        synchronized void close() {
+            disconnected = true;
+            lines.clear();
+            queuedBytes = 0;
+            notifyAll();
         }
     }
 }
@@ -3,18 +3,88 @@ package com.cardio_generator.outputs;
 import org.java_websocket.WebSocket;
 import org.java_websocket.server.WebSocketServer;
 
+import com.data_management.BinaryRecordFrame;
+import com.data_management.RecordParser;
+import com.data_management.RecordType;
+
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Outputs health data to every client connected to a WebSocket server.
+ * <p>
+ * Each message is encoded once and handed to the server's broadcast, which
+ * builds the WebSocket frame once for all clients. With a coalescing window,
+ * the samples that arrive within the window are sent together as one frame
+ * per window: in text mode as lines {@code patientId,timestamp,label,data}
+ * separated by {@code \n}, in binary mode as a {@link BinaryRecordFrame}.
+ * <p>
+ * A frame is taken from the batch under a lock but broadcast outside it, so
+ * threads adding samples never wait for the network. Frames taken by different
+ * threads may therefore go out in either order; the receiving storage orders
+ * samples by timestamp.
+ */
 public class WebSocketOutputStrategy implements OutputStrategy {
+    /** A batch larger than this is sent right away instead of at the end of the window. */
+    public static final int MAX_FRAME_BYTES = 64 * 1024;
+
+    /**
+     * How samples are encoded in the WebSocket frames.
+     */
+    public enum FrameMode {
+        /** Text frames with one {@code patientId,timestamp,label,data} line per sample. */
+        TEXT,
+        /**
+         * Binary frames in the binary record format. The data is converted to a
+         * number as the WebSocket client does; samples whose data is not a number
+         * are not sent.
+         */
+        BINARY
+    }
 
     private WebSocketServer server;
+    private final FrameMode frameMode;
+    private final long coalesceMillis;
+    private final StringBuilder textBatch = new StringBuilder();
+    private final BinaryRecordFrame binaryBatch = new BinaryRecordFrame();
+    private final RecordParser parser = new RecordParser();
+    private ScheduledExecutorService batcher;
 
+    /**
+     * Creates a server that sends every sample in its own text frame.
+     *
+     * @param port the port the WebSocket server listens on
+     */
     public WebSocketOutputStrategy(int port) {
+        this(port, 0L, FrameMode.TEXT);
+    }
+
+    /**
+     * Creates a server that sends the samples of each coalescing window together.
+     *
+     * @param port           the port the WebSocket server listens on
+     * @param coalesceMillis the length of the window, or 0 to send every sample at once
+     * @param frameMode      how the samples are encoded
+     */
+    public WebSocketOutputStrategy(int port, long coalesceMillis, FrameMode frameMode) {
+        this.frameMode = frameMode;
+        this.coalesceMillis = coalesceMillis;
         server = new SimpleWebSocketServer(new InetSocketAddress(port));
+        // Lets a restarted server bind while connections of the last one linger in TIME_WAIT
+        server.setReuseAddr(true);
         System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
         server.start();
+        if (coalesceMillis > 0) {
+            batcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "websocket-batcher-" + port);
+                thread.setDaemon(true);
+                return thread;
+            });
+            batcher.scheduleAtFixedRate(this::flush, coalesceMillis, coalesceMillis, TimeUnit.MILLISECONDS);
+        }
     }
     /**
      * Method to stop the WebSocket server.
@@ -23,17 +93,98 @@ public class WebSocketOutputStrategy implements OutputStrategy {
      * @throws InterruptedException if the thread is interrupted while sleeping
      */
     public void stopServer() throws IOException, InterruptedException {
+        if (batcher != null) {
+            batcher.shutdown();
+            batcher.awaitTermination(1, TimeUnit.SECONDS);
+            flush();
+        }
         server.stop();// Server stops
         System.out.println("WebSocket server stopped.");
     }
 
+    /**
+     * Returns the number of clients currently connected.
+     *
+     * @return the number of clients
+     */
+    public int getClientCount() {
+        return server.getConnections().size();
+    }
+
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-        // Broadcast the message to all connected clients
-        for (WebSocket conn : server.getConnections()) {
-            conn.send(message);
+        if (frameMode == FrameMode.BINARY) {
+            byte[] frame;
+            synchronized (this) {
+                if (!parser.parseData(data)) {
+                    System.err.println("Error sending binary record: invalid data '" + data + "' for " + label);
+                    return;
+                }
+                binaryBatch.add(patientId, RecordType.codeOf(label), parser.getMeasurementValue(), timestamp);
+                if (coalesceMillis > 0 && binaryBatch.sizeInBytes() < MAX_FRAME_BYTES) {
+                    return;
+                }
+                frame = takeBinaryFrame();
+            }
+            server.broadcast(frame);
+        } else {
+            String frame;
+            synchronized (this) {
+                if (textBatch.length() > 0) {
+                    textBatch.append('\n');
+                }
+                textBatch.append(patientId).append(',').append(timestamp).append(',').append(label).append(',')
+                        .append(data);
+                if (coalesceMillis > 0 && textBatch.length() < MAX_FRAME_BYTES) {
+                    return;
+                }
+                frame = takeTextFrame();
+            }
+            server.broadcast(frame);
+        }
+    }
+
+    /**
+     * Sends the samples collected so far to every connected client.
+     */
+    public void flush() {
+        if (frameMode == FrameMode.BINARY) {
+            byte[] frame;
+            synchronized (this) {
+                frame = takeBinaryFrame();
+            }
+            if (frame != null) {
+                server.broadcast(frame);
+            }
+        } else {
+            String frame;
+            synchronized (this) {
+                frame = takeTextFrame();
+            }
+            if (frame != null) {
+                server.broadcast(frame);
+            }
+        }
+    }
+
+    // Takes the pending binary frame, or null if there is none; requires the lock
+    private byte[] takeBinaryFrame() {
+        if (binaryBatch.isEmpty()) {
+            return null;
+        }
+        byte[] frame = binaryBatch.toByteArray();
+        binaryBatch.clear();
+        return frame;
+    }
+
+    // Takes the pending text frame, or null if there is none; requires the lock
+    private String takeTextFrame() {
+        if (textBatch.length() == 0) {
+            return null;
         }
+        String frame = textBatch.toString();
+        textBatch.setLength(0);
+        return frame;
     }
 
     private static class SimpleWebSocketServer extends WebSocketServer {
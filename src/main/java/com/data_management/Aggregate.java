@@ -0,0 +1,156 @@
+package com.data_management;
+
+/**
+ * Aggregates of the samples of one record type of one patient within a time
+ * range: their minimum, maximum, sum, mean, count and the latest sample. A
+ * range without samples has a count of zero and NaN for the other values.
+ */
+public class Aggregate {
+    private final int patientId;
+    private final int recordTypeCode;
+    private final long startTime;
+    private final long endTime;
+    private final double min;
+    private final double max;
+    private final double sum;
+    private final long count;
+    private final long lastTimestamp;
+    private final double last;
+
+    /**
+     * Constructs an aggregate.
+     *
+     * @param patientId      the unique identifier of the patient
+     * @param recordTypeCode the record type code, see {@link RecordType}
+     * @param startTime      the start of the range, in milliseconds since UNIX epoch
+     * @param endTime        the end of the range, inclusive, in milliseconds since UNIX epoch
+     * @param min            the smallest measurement value in the range
+     * @param max            the largest measurement value in the range
+     * @param sum            the sum of the measurement values in the range
+     * @param count          the number of samples in the range
+     * @param lastTimestamp  the time of the latest sample in the range
+     * @param last           the measurement value of the latest sample in the range
+     */
+    public Aggregate(int patientId, int recordTypeCode, long startTime, long endTime,
+                     double min, double max, double sum, long count, long lastTimestamp, double last) {
+        this.patientId = patientId;
+        this.recordTypeCode = recordTypeCode;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.count = count;
+        this.lastTimestamp = lastTimestamp;
+        this.last = last;
+    }
+
+    /**
+     * Returns the patient ID.
+     *
+     * @return the patient ID
+     */
+    public int getPatientId() {
+        return patientId;
+    }
+
+    /**
+     * Returns the record type label.
+     *
+     * @return the record type, e.g. "ECG"
+     */
+    public String getRecordType() {
+        return RecordType.labelOf(recordTypeCode);
+    }
+
+    /**
+     * Returns the record type code.
+     *
+     * @return the record type code, see {@link RecordType}
+     */
+    public int getRecordTypeCode() {
+        return recordTypeCode;
+    }
+
+    /**
+     * Returns the start of the aggregated range.
+     *
+     * @return the start time in milliseconds since UNIX epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the end of the aggregated range, inclusive.
+     *
+     * @return the end time in milliseconds since UNIX epoch
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Returns the smallest measurement value in the range.
+     *
+     * @return the minimum, or NaN if the range has no samples
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the largest measurement value in the range.
+     *
+     * @return the maximum, or NaN if the range has no samples
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the sum of the measurement values in the range.
+     *
+     * @return the sum, 0 if the range has no samples
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the mean of the measurement values in the range.
+     *
+     * @return the mean, or NaN if the range has no samples
+     */
+    public double getMean() {
+        return sum / count;
+    }
+
+    /**
+     * Returns the number of samples in the range.
+     *
+     * @return the sample count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the measurement value of the latest sample in the range.
+     *
+     * @return the last value, or NaN if the range has no samples
+     */
+    public double getLast() {
+        return last;
+    }
+
+    /**
+     * Returns the time of the latest sample in the range.
+     *
+     * @return the timestamp in milliseconds since UNIX epoch, or Long.MIN_VALUE
+     *         if the range has no samples
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+}
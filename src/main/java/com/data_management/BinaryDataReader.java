@@ -0,0 +1,155 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the binary record files written by {@link BinaryRecordWriter} from a
+ * directory into a {@link DataStorage}. Files are memory-mapped and decoded in
+ * place, straight into primitive record batches, so loading a file allocates
+ * nothing per record. Files larger than the mapping window are mapped one
+ * window after the other.
+ * <p>
+ * A file that ends in the middle of an entry, as when the writer was stopped
+ * without closing it, is read up to the last complete entry.
+ */
+public class BinaryDataReader implements DataReader {
+    /** File name extension of the binary record files. */
+    public static final String FILE_EXTENSION = ".bin";
+
+    private static final long WINDOW_BYTES = 256L * 1024 * 1024;
+    private static final int BATCH_SIZE = 8192;
+
+    private final Path directoryPath;
+
+    /**
+     * Constructor to initialize the directory path where the binary files are located.
+     *
+     * @param directoryPath the path of the directory containing {@code .bin} files
+     */
+    public BinaryDataReader(Path directoryPath) {
+        this.directoryPath = directoryPath;
+    }
+
+    /**
+     * Reads every binary record file of the directory, in file name order, and
+     * stores the records into the provided DataStorage instance.
+     *
+     * @param dataStorage the DataStorage instance where the records will be stored
+     * @throws IOException if a file cannot be read or is not a binary record file
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        if (!Files.isDirectory(directoryPath)) {
+            throw new IllegalArgumentException("Specified directory does not exist or is not a directory.");
+        }
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directoryPath)) {
+            files = list.filter(path -> path.getFileName().toString().endsWith(FILE_EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            readFile(file, dataStorage);
+        }
+    }
+
+    /**
+     * Reads one binary record file into the storage.
+     *
+     * @param file        the file to read
+     * @param dataStorage the DataStorage instance where the records will be stored
+     * @return the number of records read
+     * @throws IOException if the file cannot be read or is not a binary record file
+     */
+    public long readFile(Path file, DataStorage dataStorage) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < BinaryRecordFormat.HEADER_BYTES) {
+                throw new IOException("Not a binary record file: " + file);
+            }
+            long windowStart = 0;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, WINDOW_BYTES));
+            if (buffer.getInt() != BinaryRecordFormat.MAGIC) {
+                throw new IOException("Not a binary record file: " + file);
+            }
+            byte version = buffer.get();
+            if (version != BinaryRecordFormat.VERSION) {
+                throw new IOException("Unsupported binary record file version " + version + ": " + file);
+            }
+            boolean deltaTimestamps = (buffer.get() & BinaryRecordFormat.FLAG_DELTA_TIMESTAMPS) != 0;
+            buffer.getShort();
+
+            BinaryRecordFormat.StreamTimestamps lastTimestamps = new BinaryRecordFormat.StreamTimestamps();
+            int[] recordTypeCodes = new int[16];
+            Arrays.fill(recordTypeCodes, -1);
+            RecordBatch batch = new RecordBatch(BATCH_SIZE);
+            long records = 0;
+            while (true) {
+                if (buffer.remaining() < BinaryRecordFormat.MAX_ENTRY_BYTES && windowStart + buffer.limit() < size) {
+                    // Continue in a new window that starts at the next entry
+                    windowStart += buffer.position();
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                            Math.min(size - windowStart, WINDOW_BYTES));
+                }
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+                int entryStart = buffer.position();
+                try {
+                    int fileCode = buffer.getShort();
+                    if (fileCode == BinaryRecordFormat.TYPE_DEFINITION) {
+                        int definedCode = buffer.getShort();
+                        byte[] label = new byte[buffer.getShort() & 0xFFFF];
+                        buffer.get(label);
+                        if (definedCode < 0) {
+                            throw new IOException("Invalid record type code " + definedCode + " in " + file);
+                        }
+                        if (definedCode >= recordTypeCodes.length) {
+                            int oldLength = recordTypeCodes.length;
+                            recordTypeCodes = Arrays.copyOf(recordTypeCodes, Math.max(definedCode + 1, oldLength * 2));
+                            Arrays.fill(recordTypeCodes, oldLength, recordTypeCodes.length, -1);
+                        }
+                        recordTypeCodes[definedCode] = RecordType.codeOf(new String(label, StandardCharsets.UTF_8));
+                        continue;
+                    }
+                    int recordTypeCode = fileCode >= 0 && fileCode < recordTypeCodes.length
+                            ? recordTypeCodes[fileCode] : -1;
+                    if (recordTypeCode < 0) {
+                        throw new IOException("Undefined record type code " + fileCode + " in " + file);
+                    }
+                    int patientId = buffer.getInt();
+                    long timestamp = deltaTimestamps ? BinaryRecordFormat.getVarLong(buffer) : buffer.getLong();
+                    double measurementValue = buffer.getDouble();
+                    if (deltaTimestamps) {
+                        timestamp = lastTimestamps.advance(patientId, fileCode, timestamp);
+                    }
+                    batch.add(patientId, recordTypeCode, measurementValue, timestamp);
+                    records++;
+                } catch (BufferUnderflowException e) {
+                    System.err.println("Skipped truncated entry at byte " + (windowStart + entryStart)
+                            + " of file: " + file.getFileName());
+                    break;
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    dataStorage.addPatientData(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                dataStorage.addPatientData(batch);
+            }
+            return records;
+        }
+    }
+}
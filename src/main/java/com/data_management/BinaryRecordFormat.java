@@ -0,0 +1,154 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Layout of the binary record files written by {@link BinaryRecordWriter} and
+ * read by {@link BinaryDataReader}.
+ * <p>
+ * A file starts with an 8-byte header: the magic {@code "CDBR"}, a version byte,
+ * a flags byte and two reserved bytes. Entries follow, each starting with a
+ * 2-byte record type code:
+ * <ul>
+ * <li>code {@link #TYPE_DEFINITION}: defines a code used by the file, followed by
+ * the 2-byte code and the label as a 2-byte length and UTF-8 bytes. A code is
+ * defined before its first record.</li>
+ * <li>any other code: a record, followed by the 4-byte patient ID, the timestamp
+ * and the 8-byte measurement value. The timestamp is 8 bytes, or, when the file
+ * has {@link #FLAG_DELTA_TIMESTAMPS}, the difference to the previous timestamp
+ * of the same patient and record type as a zigzag variable-length integer.</li>
+ * </ul>
+ * All numbers are big-endian. Record type codes are local to the file, so a
+ * reader maps them to its own {@link RecordType} codes through the definitions.
+ * <p>
+ * A {@link BinaryRecordFrame} uses the same layout for a message that is sent
+ * over the network instead of written to a file.
+ */
+final class BinaryRecordFormat {
+    static final int MAGIC = 0x43444252; // "CDBR"
+    static final byte VERSION = 1;
+    static final byte FLAG_DELTA_TIMESTAMPS = 1;
+    static final int HEADER_BYTES = 8;
+    static final short TYPE_DEFINITION = -1;
+    static final int MAX_LABEL_BYTES = 1024;
+    /** Upper bound of the size of a record entry. */
+    static final int MAX_RECORD_BYTES = 2 + 4 + 10 + 8;
+    /** Upper bound of the size of any entry. */
+    static final int MAX_ENTRY_BYTES = 2 + 2 + 2 + MAX_LABEL_BYTES;
+
+    private BinaryRecordFormat() {}
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long zigzag = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+            if (shift >= 63) {
+                throw new IllegalArgumentException("Malformed variable-length timestamp");
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * The last timestamp of every stream, a stream being one record type of one
+     * patient. An open-addressing hash map from the stream key to the timestamp,
+     * so updating it allocates nothing.
+     */
+    static final class StreamTimestamps {
+        private long[] keys = new long[64];
+        private long[] timestamps = new long[64];
+        private boolean[] used = new boolean[64];
+        private int size;
+
+        /**
+         * Stores the timestamp of a stream and returns the one stored before, or 0.
+         */
+        long swap(int patientId, int recordTypeCode, long timestamp) {
+            int slot = slotOf(patientId, recordTypeCode);
+            long previous = timestamps[slot];
+            timestamps[slot] = timestamp;
+            return previous;
+        }
+
+        /**
+         * Adds a difference to the timestamp of a stream, 0 for a new stream, and returns the result.
+         */
+        long advance(int patientId, int recordTypeCode, long difference) {
+            int slot = slotOf(patientId, recordTypeCode);
+            timestamps[slot] += difference;
+            return timestamps[slot];
+        }
+
+        /**
+         * Forgets every stream.
+         */
+        void clear() {
+            if (size > 0) {
+                Arrays.fill(used, false);
+                size = 0;
+            }
+        }
+
+        // Slot of the stream, added with timestamp 0 if it is new
+        private int slotOf(int patientId, int recordTypeCode) {
+            long key = ((long) patientId << 32) | (recordTypeCode & 0xFFFFFFFFL);
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (used[slot]) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                return slotOf(patientId, recordTypeCode);
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            timestamps[slot] = 0L;
+            size++;
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldTimestamps = timestamps;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            timestamps = new long[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (used[slot]) {
+                        slot = (slot + 1) & mask;
+                    }
+                    used[slot] = true;
+                    keys[slot] = oldKeys[i];
+                    timestamps[slot] = oldTimestamps[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
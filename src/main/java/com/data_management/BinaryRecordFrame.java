@@ -0,0 +1,179 @@
+package com.data_management;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A batch of records encoded for a single network message, in the layout of
+ * the binary record files described by {@link BinaryRecordFormat}: a header,
+ * the definitions of the record types used, and the records with delta-encoded
+ * timestamps. A frame is self-contained, so it can be decoded without any
+ * earlier frame, and its bytes are a valid binary record file.
+ * <p>
+ * A frame is filled with {@link #add}, taken with {@link #toByteArray()} and
+ * reused after {@link #clear()}. It is not thread-safe.
+ */
+public class BinaryRecordFrame {
+    private static final int INITIAL_BYTES = 4096;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BYTES);
+    private final BitSet definedTypes = new BitSet();
+    private final BinaryRecordFormat.StreamTimestamps lastTimestamps = new BinaryRecordFormat.StreamTimestamps();
+    private int recordCount;
+
+    /**
+     * Creates an empty frame.
+     */
+    public BinaryRecordFrame() {
+        clear();
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordTypeCode   the record type code, see {@link RecordType}
+     * @param measurementValue the value of the health metric being recorded
+     * @param timestamp        the time of the measurement, in milliseconds since epoch
+     */
+    public void add(int patientId, int recordTypeCode, double measurementValue, long timestamp) {
+        if (recordTypeCode < 0 || recordTypeCode >= Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Record type code out of range: " + recordTypeCode);
+        }
+        if (!definedTypes.get(recordTypeCode)) {
+            byte[] label = RecordType.labelOf(recordTypeCode).getBytes(StandardCharsets.UTF_8);
+            if (label.length > BinaryRecordFormat.MAX_LABEL_BYTES) {
+                throw new IllegalArgumentException("Record type label too long: " + RecordType.labelOf(recordTypeCode));
+            }
+            ensureRemaining(6 + label.length);
+            buffer.putShort(BinaryRecordFormat.TYPE_DEFINITION);
+            buffer.putShort((short) recordTypeCode);
+            buffer.putShort((short) label.length);
+            buffer.put(label);
+            definedTypes.set(recordTypeCode);
+        }
+        ensureRemaining(BinaryRecordFormat.MAX_RECORD_BYTES);
+        buffer.putShort((short) recordTypeCode);
+        buffer.putInt(patientId);
+        BinaryRecordFormat.putVarLong(buffer, timestamp - lastTimestamps.swap(patientId, recordTypeCode, timestamp));
+        buffer.putDouble(measurementValue);
+        recordCount++;
+    }
+
+    /**
+     * Returns the number of records in this frame.
+     *
+     * @return the record count
+     */
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Returns whether this frame holds no records.
+     *
+     * @return true if no record has been added since the frame was cleared
+     */
+    public boolean isEmpty() {
+        return recordCount == 0;
+    }
+
+    /**
+     * Returns the number of bytes the encoded frame takes.
+     *
+     * @return the encoded size
+     */
+    public int sizeInBytes() {
+        return buffer.position();
+    }
+
+    /**
+     * Returns a copy of the encoded frame.
+     *
+     * @return the encoded bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Removes every record, so the frame can be filled again.
+     */
+    public void clear() {
+        buffer.clear();
+        buffer.putInt(BinaryRecordFormat.MAGIC);
+        buffer.put(BinaryRecordFormat.VERSION);
+        buffer.put(BinaryRecordFormat.FLAG_DELTA_TIMESTAMPS);
+        buffer.putShort((short) 0);
+        definedTypes.clear();
+        lastTimestamps.clear();
+        recordCount = 0;
+    }
+
+    /**
+     * Decodes a frame into a batch. The record types of the frame are mapped to
+     * the {@link RecordType} codes of this process.
+     *
+     * @param frame the encoded frame, from its position to its limit
+     * @param batch the batch the records are added to
+     * @return the number of records decoded
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public static int decode(ByteBuffer frame, RecordBatch batch) {
+        try {
+            if (frame.getInt() != BinaryRecordFormat.MAGIC || frame.get() != BinaryRecordFormat.VERSION) {
+                throw new IllegalArgumentException("Not a binary record frame");
+            }
+            boolean deltaTimestamps = (frame.get() & BinaryRecordFormat.FLAG_DELTA_TIMESTAMPS) != 0;
+            frame.getShort();
+
+            BinaryRecordFormat.StreamTimestamps lastTimestamps = new BinaryRecordFormat.StreamTimestamps();
+            int[] recordTypeCodes = new int[0];
+            int records = 0;
+            while (frame.hasRemaining()) {
+                int frameCode = frame.getShort();
+                if (frameCode == BinaryRecordFormat.TYPE_DEFINITION) {
+                    int definedCode = frame.getShort();
+                    byte[] label = new byte[frame.getShort() & 0xFFFF];
+                    frame.get(label);
+                    if (definedCode < 0) {
+                        throw new IllegalArgumentException("Invalid record type code " + definedCode);
+                    }
+                    if (definedCode >= recordTypeCodes.length) {
+                        int oldLength = recordTypeCodes.length;
+                        recordTypeCodes = Arrays.copyOf(recordTypeCodes, Math.max(definedCode + 1, 16));
+                        Arrays.fill(recordTypeCodes, oldLength, recordTypeCodes.length, -1);
+                    }
+                    recordTypeCodes[definedCode] = RecordType.codeOf(new String(label, StandardCharsets.UTF_8));
+                    continue;
+                }
+                int recordTypeCode = frameCode >= 0 && frameCode < recordTypeCodes.length
+                        ? recordTypeCodes[frameCode] : -1;
+                if (recordTypeCode < 0) {
+                    throw new IllegalArgumentException("Undefined record type code " + frameCode);
+                }
+                int patientId = frame.getInt();
+                long timestamp = deltaTimestamps
+                        ? lastTimestamps.advance(patientId, frameCode, BinaryRecordFormat.getVarLong(frame))
+                        : frame.getLong();
+                batch.add(patientId, recordTypeCode, frame.getDouble(), timestamp);
+                records++;
+            }
+            return records;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary record frame", e);
+        }
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * An immutable block of time-ordered samples compressed the way Facebook's
+ * Gorilla compresses time series. Timestamps are stored as delta-of-deltas,
+ * which takes a single bit for samples arriving at a steady rate, and each
+ * value as the XOR with the value before it, of which only the bits that
+ * differ are stored.
+ * <p>
+ * The samples are decoded on the fly, front to back; a block is never
+ * modified after it has been encoded.
+ */
+final class CompressedBlock {
+    private final long[] bits;
+    private final int count;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+
+    private CompressedBlock(long[] bits, int count, long firstTimestamp, long lastTimestamp) {
+        this.bits = bits;
+        this.count = count;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    /**
+     * Compresses a time-ordered range of samples.
+     *
+     * @param timestamps the timestamps, in non-decreasing order
+     * @param values     the values
+     * @param from       the index of the first sample to compress
+     * @param to         the index after the last sample to compress; must be greater than from
+     * @return the compressed block
+     */
+    static CompressedBlock encode(long[] timestamps, double[] values, int from, int to) {
+        BitWriter writer = new BitWriter(Math.max(4, (to - from) * 3 / 2));
+        long previousTimestamp = timestamps[from];
+        long previousDelta = 0;
+        long previousBits = Double.doubleToRawLongBits(values[from]);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        writer.write(previousTimestamp, 64);
+        writer.write(previousBits, 64);
+        for (int i = from + 1; i < to; i++) {
+            long delta = timestamps[i] - previousTimestamp;
+            long deltaOfDelta = delta - previousDelta;
+            if (deltaOfDelta == 0) {
+                writer.write(0b0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                writer.write(0b10, 2);
+                writer.write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                writer.write(0b110, 3);
+                writer.write(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                writer.write(0b1110, 4);
+                writer.write(deltaOfDelta + 2047, 12);
+            } else {
+                writer.write(0b1111, 4);
+                writer.write(deltaOfDelta, 64);
+            }
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+
+            long valueBits = Double.doubleToRawLongBits(values[i]);
+            long xor = valueBits ^ previousBits;
+            if (xor == 0) {
+                writer.write(0b0, 1);
+            } else {
+                int leading = Long.numberOfLeadingZeros(xor);
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                    // The changed bits fit in the window of the previous value
+                    writer.write(0b10, 2);
+                    writer.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                } else {
+                    int meaningful = 64 - leading - trailing;
+                    writer.write(0b11, 2);
+                    writer.write(leading, 6);
+                    writer.write(meaningful - 1, 6);
+                    writer.write(xor >>> trailing, meaningful);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+            previousBits = valueBits;
+        }
+        return new CompressedBlock(writer.toArray(), to - from, timestamps[from], timestamps[to - 1]);
+    }
+
+    /**
+     * Returns the number of samples in this block.
+     */
+    int count() {
+        return count;
+    }
+
+    long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns the approximate number of heap bytes this block occupies.
+     */
+    long sizeInBytes() {
+        return 16L + 8L * bits.length + 32L;
+    }
+
+    /**
+     * Decodes the samples within a time range, both bounds inclusive, into arrays.
+     * Decoding stops at the first sample past the range.
+     *
+     * @return the index after the last sample written
+     */
+    int decode(long startTime, long endTime, long[] timestamps, double[] values, int at) {
+        Decoder decoder = decoder();
+        while (decoder.next()) {
+            long timestamp = decoder.timestamp();
+            if (timestamp > endTime) {
+                break;
+            }
+            if (timestamp >= startTime) {
+                timestamps[at] = timestamp;
+                values[at] = decoder.value();
+                at++;
+            }
+        }
+        return at;
+    }
+
+    /**
+     * Decodes every sample of this block into a view.
+     */
+    SeriesView toView(int patientId, int recordTypeCode) {
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        decode(Long.MIN_VALUE, Long.MAX_VALUE, timestamps, values, 0);
+        return new SeriesView(patientId, recordTypeCode, timestamps, values, 0, count);
+    }
+
+    Decoder decoder() {
+        return new Decoder(bits, count);
+    }
+
+    /**
+     * Reads the samples of a block one after the other.
+     */
+    static final class Decoder {
+        private final long[] bits;
+        private final int count;
+        private int position;
+        private int index = -1;
+        private long timestamp;
+        private long delta;
+        private long valueBits;
+        private int leading;
+        private int trailing;
+
+        private Decoder(long[] bits, int count) {
+            this.bits = bits;
+            this.count = count;
+        }
+
+        /**
+         * Moves to the next sample.
+         *
+         * @return false if there are no more samples
+         */
+        boolean next() {
+            if (index + 1 >= count) {
+                return false;
+            }
+            index++;
+            if (index == 0) {
+                timestamp = read(64);
+                valueBits = read(64);
+                return true;
+            }
+            long deltaOfDelta;
+            if (read(1) == 0) {
+                deltaOfDelta = 0;
+            } else if (read(1) == 0) {
+                deltaOfDelta = read(7) - 63;
+            } else if (read(1) == 0) {
+                deltaOfDelta = read(9) - 255;
+            } else if (read(1) == 0) {
+                deltaOfDelta = read(12) - 2047;
+            } else {
+                deltaOfDelta = read(64);
+            }
+            delta += deltaOfDelta;
+            timestamp += delta;
+
+            if (read(1) != 0) {
+                if (read(1) != 0) {
+                    leading = (int) read(6);
+                    int meaningful = (int) read(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                valueBits ^= read(64 - leading - trailing) << trailing;
+            }
+            return true;
+        }
+
+        long timestamp() {
+            return timestamp;
+        }
+
+        double value() {
+            return Double.longBitsToDouble(valueBits);
+        }
+
+        private long read(int length) {
+            int word = position >>> 6;
+            int used = position & 63;
+            int available = 64 - used;
+            position += length;
+            long high = (bits[word] << used) >>> (64 - length);
+            if (length <= available) {
+                return high;
+            }
+            return high | (bits[word + 1] >>> (64 - (length - available)));
+        }
+    }
+
+    /**
+     * Appends bit strings, most significant bit first, to a growing array of words.
+     */
+    private static final class BitWriter {
+        private long[] words;
+        private int position;
+
+        BitWriter(int initialWords) {
+            words = new long[initialWords];
+        }
+
+        void write(long value, int length) {
+            if (length < 64) {
+                value &= (1L << length) - 1;
+            }
+            int word = position >>> 6;
+            if (word + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            int available = 64 - (position & 63);
+            if (length <= available) {
+                words[word] |= value << (available - length);
+            } else {
+                words[word] |= value >>> (length - available);
+                words[word + 1] |= value << (64 - (length - available));
+            }
+            position += length;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(words, (position + 63) >>> 6);
+        }
+    }
+}
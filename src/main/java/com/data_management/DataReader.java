@@ -1,8 +1,12 @@
 package com.data_management;
 
 import java.io.IOException;
-import java.net.URI;
 
+/**
+ * A source that loads records into a {@link DataStorage}, such as a directory
+ * of files. Sources that stream from a server implement
+ * {@link StreamingDataReader}.
+ */
 public interface DataReader {
     /**
      * Reads data from a specified source and stores it in the data storage.
@@ -11,19 +15,4 @@ public interface DataReader {
      * @throws IOException if there is an error reading the data
      */
     void readData(DataStorage dataStorage) throws IOException;
-
-    /**
-     * Connects to the specified URI to start reading data.
-     *
-     * @param serverUri the URI of the server to connect to
-     * @throws IOException if there is an error connecting to the server
-     */
-    void connect(URI serverUri) throws IOException;
-
-    /**
-     * Handles incoming messages.
-     *
-     * @param message the message received
-     */
-    void onMessage(String message);
 }
@@ -1,18 +1,28 @@
 package com.data_management;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * This class implements the DataReader interface to read data from files in a specified directory.
  * It parses the data and stores it into a DataStorage instance for further processing.
  */
-public class DataReaderImplementation implements DataReader {
+public class DataReaderImplementation implements DataReader, StreamingDataReader {
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
     private final Path directoryPath;
 
     /**
@@ -32,6 +42,57 @@ public class DataReaderImplementation implements DataReader {
      */
     @Override
     public void readData(DataStorage dataStorage) throws IOException {
+        for (File file : listDataFiles()) {
+            parseFile(file, dataStorage);
+        }
+    }
+
+    /**
+     * Reads all files in the specified directory in parallel and stores their
+     * data into the provided DataStorage instance. Files are parsed on a
+     * fork-join pool; files larger than a chunk are memory-mapped and split into
+     * line-aligned chunks that are parsed concurrently. Parsed records are added
+     * in batches, in file order, so each series still receives its samples in
+     * time order.
+     *
+     * @param dataStorage the DataStorage instance where parsed data will be stored
+     * @param parallelism the number of worker threads
+     * @throws IOException if an I/O error occurs reading from the directory or its files
+     */
+    public void readDataParallel(DataStorage dataStorage, int parallelism) throws IOException {
+        readDataParallel(dataStorage, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Reads all files in the specified directory in parallel, using chunks of the
+     * given size.
+     *
+     * @param dataStorage the DataStorage instance where parsed data will be stored
+     * @param parallelism the number of worker threads
+     * @param chunkSize   the approximate number of bytes parsed by one task
+     * @throws IOException if an I/O error occurs reading from the directory or its files
+     */
+    public void readDataParallel(DataStorage dataStorage, int parallelism, int chunkSize) throws IOException {
+        List<FileLoadTask> tasks = new ArrayList<>();
+        for (File file : listDataFiles()) {
+            tasks.add(new FileLoadTask(file, dataStorage, chunkSize));
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private File[] listDataFiles() {
         File directory = directoryPath.toFile();
 
         // Check if the specified directory exists and is a directory
@@ -39,16 +100,9 @@ public class DataReaderImplementation implements DataReader {
             throw new IllegalArgumentException("Specified directory does not exist or is not a directory.");
         }
 
-        // Iterate through files in the directory
-        File[] files = directory.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                // Only process regular files
-                if (file.isFile()) {
-                    parseFile(file, dataStorage);
-                }
-            }
-        }
+        // Only process regular files
+        File[] files = directory.listFiles(File::isFile);
+        return files != null ? files : new File[0];
     }
     /**
      * Connects to a WebSocket server at the specified URI.
@@ -85,23 +139,15 @@ public class DataReaderImplementation implements DataReader {
      * @throws IOException if an I/O error occurs reading from the file
      */
     private void parseFile(File file, DataStorage dataStorage) throws IOException {
+        RecordParser parser = new RecordParser();
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
             while ((line = reader.readLine()) != null) {
-                // Assuming data is formatted as: patientId, measurementValue, measurementType, timestamp
-                String[] parts = line.split(",");
-                if (parts.length == 4) {
-                    try {
-                        int patientId = Integer.parseInt(parts[0]);
-                        double measurementValue = Double.parseDouble(parts[1]);
-                        String measurementType = parts[2];
-                        long timestamp = Long.parseLong(parts[3]);
-                        // Add parsed data to DataStorage
-                        dataStorage.addPatientData(patientId, measurementValue, measurementType, timestamp);
-                    } catch (NumberFormatException e) {
-                        // Handle parsing errors by logging or printing an error message
-                        System.err.println("Error parsing data from file: " + e.getMessage());
-                    }
+                // Data is formatted as: patientId, measurementValue, measurementType, timestamp
+                if (parser.parseFileRecord(line)) {
+                    // Add parsed data to DataStorage
+                    dataStorage.addPatientData(parser.getPatientId(), parser.getMeasurementValue(),
+                            parser.getRecordTypeCode(), parser.getTimestamp());
                 } else {
                     // Handle invalid data format by logging or printing an error message
                     System.err.println("Invalid data format in file: " + file.getName());
@@ -109,4 +155,137 @@ public class DataReaderImplementation implements DataReader {
             }
         }
     }
+
+    /**
+     * Loads one file: splits it into line-aligned chunks, parses a wave of chunks
+     * in parallel and then adds their records to the storage in file order.
+     */
+    @SuppressWarnings("serial") // Never serialized; holds files and the storage
+    private static class FileLoadTask extends RecursiveAction {
+        private final File file;
+        private final DataStorage dataStorage;
+        private final int chunkSize;
+
+        FileLoadTask(File file, DataStorage dataStorage, int chunkSize) {
+            this.file = file;
+            this.dataStorage = dataStorage;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = channel.size();
+                List<ChunkParseTask> chunks = new ArrayList<>();
+                if (size <= chunkSize) {
+                    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                    while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                        // keep reading until the whole file is buffered
+                    }
+                    buffer.flip();
+                    chunks.add(new ChunkParseTask(buffer));
+                } else {
+                    List<Long> bounds = lineAlignedBounds(channel, size);
+                    for (int i = 0; i + 1 < bounds.size(); i++) {
+                        long start = bounds.get(i);
+                        chunks.add(new ChunkParseTask(
+                                channel.map(FileChannel.MapMode.READ_ONLY, start, bounds.get(i + 1) - start)));
+                    }
+                }
+
+                int waveSize = Math.max(1, getPool().getParallelism());
+                int invalidLines = 0;
+                for (int wave = 0; wave < chunks.size(); wave += waveSize) {
+                    List<ChunkParseTask> tasks = chunks.subList(wave, Math.min(chunks.size(), wave + waveSize));
+                    ForkJoinTask.invokeAll(tasks);
+                    for (ChunkParseTask task : tasks) {
+                        dataStorage.addPatientData(task.batch);
+                        invalidLines += task.invalidLines;
+                        task.release();
+                    }
+                }
+                if (invalidLines > 0) {
+                    System.err.println("Skipped " + invalidLines + " invalid lines in file: " + file.getName());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Chunk boundaries, each placed just after a line break
+        private List<Long> lineAlignedBounds(FileChannel channel, long size) throws IOException {
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+            ByteBuffer probe = ByteBuffer.allocate(4096);
+            long next = chunkSize;
+            while (next < size) {
+                long boundary = size;
+                long position = next;
+                search:
+                while (position < size) {
+                    probe.clear();
+                    int read = channel.read(probe, position);
+                    if (read <= 0) {
+                        break;
+                    }
+                    for (int i = 0; i < read; i++) {
+                        if (probe.get(i) == '\n') {
+                            boundary = position + i + 1;
+                            break search;
+                        }
+                    }
+                    position += read;
+                }
+                if (boundary >= size) {
+                    break;
+                }
+                bounds.add(boundary);
+                next = boundary + chunkSize;
+            }
+            bounds.add(size);
+            return bounds;
+        }
+    }
+
+    /**
+     * Parses the lines of one chunk of a file into a batch of records.
+     */
+    @SuppressWarnings("serial") // Never serialized; holds a mapped buffer
+    private static class ChunkParseTask extends RecursiveAction {
+        private ByteBuffer buffer;
+        private RecordBatch batch;
+        private int invalidLines;
+
+        ChunkParseTask(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        protected void compute() {
+            RecordParser parser = new RecordParser();
+            int limit = buffer.limit();
+            batch = new RecordBatch(Math.max(16, limit / 32));
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                if (lineEnd > lineStart && !(lineEnd == lineStart + 1 && buffer.get(lineStart) == '\r')) {
+                    if (parser.parseFileRecord(buffer, lineStart, lineEnd)) {
+                        batch.add(parser.getPatientId(), parser.getRecordTypeCode(),
+                                parser.getMeasurementValue(), parser.getTimestamp());
+                    } else {
+                        invalidLines++;
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+
+        void release() {
+            buffer = null;
+            batch = null;
+        }
+    }
 }
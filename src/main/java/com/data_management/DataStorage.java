@@ -1,11 +1,15 @@
 package com.data_management;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.alerts.AlertGenerator;
 
@@ -14,18 +18,37 @@ import com.alerts.AlertGenerator;
  * system.
  * This class serves as a repository for all patient records, organized by
  * patient IDs.
+ * It is safe to use from several ingestion threads at once: patients are looked
+ * up in a concurrent map and each record series is locked on its own, so
+ * writers only contend when they target the same patient and record type.
+ * <p>
+ * History can be bounded with {@link RetentionPolicy retention policies}: a
+ * background compactor folds samples older than the raw window into minute and
+ * hour rollups, which are read with {@link #getRollups}.
  */
 public class DataStorage {
-    private Map<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private static final Logger logger = Logger.getLogger(DataStorage.class.getName());
+
+    private final ConcurrentMap<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private final List<RecordListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<RecordSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile RetentionPolicy defaultRetentionPolicy;
+    private final ConcurrentMap<Integer, RetentionPolicy> retentionPolicies = new ConcurrentHashMap<>();
+    private ScheduledExecutorService compactor;
+    private final StorageBackend backend;
 
     // Static variable to hold the single instance of DataStorage
     private static volatile DataStorage instance;
+    // Backend for instances created from now on, or null to read the system property
+    private static volatile StorageBackend configuredBackend;
     /**
      * Constructs a new instance of DataStorage, initializing the underlying storage
      * structure.
      */
     private DataStorage() {
-        this.patientMap = new HashMap<>();
+        this.patientMap = new ConcurrentHashMap<>();
+        StorageBackend selected = configuredBackend;
+        this.backend = selected != null ? selected : StorageBackend.fromSystemProperty();
     }
     // Public method to provide access to the instance
     public static DataStorage getInstance() {
@@ -38,7 +61,41 @@ public class DataStorage {
         }
         return instance;
     }
-   public static void resetInstance() {
+    /**
+     * Selects the backend of the storage instances created from now on, that is
+     * the next one returned by {@link #getInstance()} after start-up or after
+     * {@link #resetInstance()}. Without a selected backend, the
+     * {@value StorageBackend#PROPERTY} system property decides.
+     *
+     * @param backend the backend, or null to use the system property
+     */
+    public static void setBackend(StorageBackend backend) {
+        configuredBackend = backend;
+    }
+
+    /**
+     * Returns the backend that keeps the samples of this storage.
+     *
+     * @return the backend
+     */
+    public StorageBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Discards the shared instance, so that the next {@link #getInstance()}
+     * creates a new one. The compactor of the old instance is stopped and its
+     * subscriptions are closed, which ends their delivery threads once the
+     * records already queued are delivered.
+     */
+    public static void resetInstance() {
+        DataStorage current = instance;
+        if (current != null) {
+            current.stopCompaction();
+            for (RecordSubscription subscription : current.subscriptions) {
+                subscription.close();
+            }
+        }
         instance = null;
     }
 
@@ -51,17 +108,124 @@ public class DataStorage {
      * @param patientId        the unique identifier of the patient
      * @param measurementValue the value of the health metric being recorded
      * @param recordType       the type of record, e.g., "HeartRate",
-     *                         "BloodPressure"
+     *                         "BloodPressure"; unknown types are registered
+     *                         in {@link RecordType}
      * @param timestamp        the time at which the measurement was taken, in
      *                         milliseconds since the Unix epoch
      */
     public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        addPatientData(patientId, measurementValue, RecordType.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds patient data whose record type has already been interned, avoiding
+     * the label lookup of {@link #addPatientData(int, double, String, long)}.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordTypeCode   the record type code, see {@link RecordType}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     */
+    public void addPatientData(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        getOrCreatePatient(patientId).addRecord(measurementValue, recordTypeCode, timestamp);
+        for (RecordListener listener : listeners) {
+            listener.onRecord(patientId, recordTypeCode, measurementValue, timestamp);
+        }
+        for (RecordSubscription subscription : subscriptions) {
+            subscription.publish(patientId, recordTypeCode, measurementValue, timestamp);
+        }
+    }
+
+    // Returns the patient with the given ID, creating it on first use
+    Patient getOrCreatePatient(int patientId) {
         Patient patient = patientMap.get(patientId);
         if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+            patient = patientMap.computeIfAbsent(patientId, id -> new Patient(id, backend));
+        }
+        return patient;
+    }
+
+    /**
+     * Adds all records of a batch. Consecutive records of the same patient share
+     * a single patient lookup, which makes this the preferred path for bulk
+     * loads.
+     *
+     * @param batch the records to add; the batch is not modified
+     */
+    public void addPatientData(RecordBatch batch) {
+        Patient patient = null;
+        for (int i = 0; i < batch.size(); i++) {
+            int patientId = batch.getPatientId(i);
+            if (patient == null || patient.getPatientId() != patientId) {
+                patient = getOrCreatePatient(patientId);
+            }
+            int recordTypeCode = batch.getRecordTypeCode(i);
+            double measurementValue = batch.getMeasurementValue(i);
+            long timestamp = batch.getTimestamp(i);
+            patient.addRecord(measurementValue, recordTypeCode, timestamp);
+            for (RecordListener listener : listeners) {
+                listener.onRecord(patientId, recordTypeCode, measurementValue, timestamp);
+            }
+            for (RecordSubscription subscription : subscriptions) {
+                subscription.publish(patientId, recordTypeCode, measurementValue, timestamp);
+            }
         }
-        patient.addRecord(measurementValue, recordType, timestamp);
+    }
+
+    /**
+     * Registers a listener that is called, on the ingesting thread, for every
+     * record added to this storage.
+     *
+     * @param listener the listener to register
+     */
+    public void addRecordListener(RecordListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Subscribes to the records added to this storage. Matching records are
+     * delivered in batches on a dedicated thread; records that arrive while the
+     * buffer is full are dropped, so ingestion never waits for the listener.
+     *
+     * @param filter   selects the records to deliver
+     * @param listener receives the records in batches
+     * @return the subscription, to be closed when no longer needed
+     */
+    public RecordSubscription subscribe(RecordFilter filter, RecordBatchListener listener) {
+        return subscribe(filter, listener, 8192, 512, RecordSubscription.OverflowPolicy.DROP);
+    }
+
+    /**
+     * Subscribes to the records added to this storage.
+     *
+     * @param filter         selects the records to deliver
+     * @param listener       receives the records in batches
+     * @param capacity       the number of records that may wait for delivery
+     * @param maxBatchSize   the maximum number of records per batch
+     * @param overflowPolicy what to do with records arriving while the buffer is full
+     * @return the subscription, to be closed when no longer needed
+     */
+    public RecordSubscription subscribe(RecordFilter filter, RecordBatchListener listener, int capacity,
+                                        int maxBatchSize, RecordSubscription.OverflowPolicy overflowPolicy) {
+        RecordSubscription subscription =
+                new RecordSubscription(this, filter, listener, capacity, maxBatchSize, overflowPolicy);
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+
+    void unsubscribe(RecordSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addRecordListener(RecordListener)}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeRecordListener(RecordListener listener) {
+        listeners.remove(listener);
     }
 
 
@@ -87,6 +251,194 @@ public class DataStorage {
         return new ArrayList<>(); // return an empty list if no patient is found
     }
 
+    /**
+     * Opens a cursor over the records of one type of a patient within a time
+     * range. The samples are read where they are stored, without creating
+     * {@link PatientRecord} objects, which suits scans over long histories.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "ECG"
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return a cursor over the matching samples, in timestamp order
+     */
+    public SampleCursor cursor(int patientId, String recordType, long startTime, long endTime) {
+        int recordTypeCode = RecordType.codeOf(recordType);
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.cursor(recordTypeCode, startTime, endTime);
+        }
+        return SeriesView.empty(patientId, recordTypeCode).cursor();
+    }
+
+    /**
+     * Retrieves the rollups of one record type of a patient that overlap a time
+     * range. Rollups summarize the samples that retention has removed from the
+     * raw history returned by {@link #getRecords}.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "ECG"
+     * @param resolution the rollup resolution
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return the matching rollups, in time order
+     */
+    public List<Rollup> getRollups(int patientId, String recordType, RollupResolution resolution,
+                                   long startTime, long endTime) {
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.getRollups(RecordType.codeOf(recordType), resolution, startTime, endTime);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Computes the minimum, maximum, sum, mean, count and latest value of one
+     * record type of a patient within a time range, both bounds inclusive. The
+     * result combines precomputed summaries, so it costs about the logarithm of
+     * the number of samples however long the range.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "ECG"
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return the aggregates of the matching samples, with a count of zero if none
+     */
+    public Aggregate aggregate(int patientId, String recordType, long startTime, long endTime) {
+        return patientOrEmpty(patientId).aggregate(RecordType.codeOf(recordType), startTime, endTime);
+    }
+
+    /**
+     * Computes the aggregates of one record type of a patient over tumbling
+     * windows: consecutive, non-overlapping windows of the given length from
+     * the start of the range, the last one cut off at its end.
+     *
+     * @param patientId    the unique identifier of the patient
+     * @param recordType   the type of record, e.g., "ECG"
+     * @param startTime    the start of the time range, in milliseconds since the Unix
+     *                     epoch
+     * @param endTime      the end of the time range, in milliseconds since the Unix
+     *                     epoch
+     * @param windowMillis the length of each window
+     * @return the aggregates of the windows, in time order
+     * @throws IllegalArgumentException if the window is not positive
+     */
+    public List<Aggregate> aggregate(int patientId, String recordType, long startTime, long endTime,
+                                     long windowMillis) {
+        return aggregate(patientId, recordType, startTime, endTime, windowMillis, windowMillis);
+    }
+
+    /**
+     * Computes the aggregates of one record type of a patient over sliding
+     * windows of the given length, one starting every step from the start of
+     * the range. Windows overlap when the step is shorter than the window.
+     *
+     * @param patientId    the unique identifier of the patient
+     * @param recordType   the type of record, e.g., "ECG"
+     * @param startTime    the start of the time range, in milliseconds since the Unix
+     *                     epoch
+     * @param endTime      the end of the time range, in milliseconds since the Unix
+     *                     epoch
+     * @param windowMillis the length of each window
+     * @param stepMillis   the time from the start of one window to the start of the next
+     * @return the aggregates of the windows, in time order
+     * @throws IllegalArgumentException if the window or the step is not positive
+     */
+    public List<Aggregate> aggregate(int patientId, String recordType, long startTime, long endTime,
+                                     long windowMillis, long stepMillis) {
+        return patientOrEmpty(patientId).aggregate(RecordType.codeOf(recordType), startTime, endTime,
+                windowMillis, stepMillis);
+    }
+
+    // Returns a patient, or one without records if it is not stored
+    private Patient patientOrEmpty(int patientId) {
+        Patient patient = patientMap.get(patientId);
+        return patient != null ? patient : new Patient(patientId);
+    }
+
+    /**
+     * Sets the retention policy for every record type without a policy of its
+     * own. Without any policy, history is kept in full.
+     *
+     * @param policy the policy, or null to keep such record types in full
+     */
+    public void setRetentionPolicy(RetentionPolicy policy) {
+        defaultRetentionPolicy = policy;
+    }
+
+    /**
+     * Sets the retention policy of one record type, e.g. a short raw window for
+     * high-rate ECG data.
+     *
+     * @param recordType the type of record, e.g., "ECG"
+     * @param policy     the policy, or null to fall back to the default policy
+     */
+    public void setRetentionPolicy(String recordType, RetentionPolicy policy) {
+        int code = RecordType.codeOf(recordType);
+        if (policy == null) {
+            retentionPolicies.remove(code);
+        } else {
+            retentionPolicies.put(code, policy);
+        }
+    }
+
+    private RetentionPolicy retentionPolicyFor(int recordTypeCode) {
+        RetentionPolicy policy = retentionPolicies.get(recordTypeCode);
+        return policy != null ? policy : defaultRetentionPolicy;
+    }
+
+    /**
+     * Applies the retention policies to all stored data once, measuring the
+     * windows back from the given time. Each series is only locked while its
+     * expired samples are cut off, so ingestion continues during compaction.
+     *
+     * @param now the current time, in milliseconds since the Unix epoch
+     */
+    public void compact(long now) {
+        for (Patient patient : patientMap.values()) {
+            patient.compact(this::retentionPolicyFor, now);
+        }
+    }
+
+    /**
+     * Starts compacting in the background at a fixed interval. Short intervals
+     * keep every run small, since each run only handles the samples that aged
+     * out of the raw window since the previous one.
+     *
+     * @param intervalMillis the time between two compaction runs, in milliseconds
+     */
+    public synchronized void startCompaction(long intervalMillis) {
+        stopCompaction();
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "retention-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                compact(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Retention compaction failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background compaction started by {@link #startCompaction(long)}.
+     */
+    public synchronized void stopCompaction() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+            compactor = null;
+        }
+    }
+
     /**
      * Retrieves a collection of all patients stored in the data storage.
      *
@@ -119,9 +471,7 @@ public class DataStorage {
         // Initialize the AlertGenerator with the storage
         AlertGenerator alertGenerator = new AlertGenerator(storage);
 
-        // Evaluate all patients' data to check for conditions that may trigger alerts
-        for (Patient patient : storage.getAllPatients()) {
-            alertGenerator.evaluateData(patient);
-        }
+        // Evaluate all patients' data to check for conditions that may trigger alerts, on all cores
+        alertGenerator.evaluateAll(storage.getAllPatients());
     }
 }
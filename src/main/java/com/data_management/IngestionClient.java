@@ -0,0 +1,392 @@
+package com.data_management;
+
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streams records from a WebSocket server into a {@link DataStorage}, for
+ * long-running ingestion rather than the debugging output of
+ * {@link WebSocketClient}.
+ * <p>
+ * The socket thread only places each received message in a bounded queue; when
+ * the queue is full it waits, which slows the server down through TCP instead
+ * of dropping data. A parser thread drains the queue, parses text messages of
+ * one or more {@code patientId,timestamp,label,data} lines and binary
+ * {@link BinaryRecordFrame}s, and adds the records to the storage in batches.
+ * <p>
+ * A lost or refused connection is retried after a random delay of up to the
+ * backoff, which starts at the initial backoff and doubles with every failed
+ * attempt up to the maximum, so that many clients do not reconnect in lockstep.
+ * <p>
+ * The client counts messages, records, parse errors and reconnects, and
+ * reports the message rate, the queue depth and the lag between the newest
+ * stored record's timestamp and the time it was stored.
+ */
+public class IngestionClient implements StreamingDataReader, AutoCloseable {
+    /** Default number of messages that can wait for the parser. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    /** Default delay before the first reconnect attempt, before jitter. */
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100L;
+    /** Default longest delay between reconnect attempts. */
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30_000L;
+
+    private static final Logger logger = Logger.getLogger(IngestionClient.class.getName());
+    private static final int BATCH_SIZE = 4096;
+    private static final int DRAIN_BATCH = 256;
+
+    private final DataStorage storage;
+    private final BlockingQueue<Object> queue;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final RecordParser parser = new RecordParser();
+    private final RecordBatch batch = new RecordBatch(BATCH_SIZE);
+    private final AtomicLong messageCount = new AtomicLong();
+    private final AtomicLong recordCount = new AtomicLong();
+    private final AtomicLong parseErrors = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+    private Thread parserThread;
+    private URI serverUri;
+    private Connection connection;
+    private int failedAttempts;
+    private long lastMessageCount;
+    private volatile double messagesPerSecond;
+    private volatile long lagMillis;
+    private volatile boolean connected;
+    private volatile boolean closed;
+
+    /**
+     * Creates a client with the default queue capacity and backoff.
+     *
+     * @param storage the storage the records are added to
+     */
+    public IngestionClient(DataStorage storage) {
+        this(storage, DEFAULT_QUEUE_CAPACITY, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Creates a client.
+     *
+     * @param storage              the storage the records are added to
+     * @param queueCapacity        the number of messages that can wait for the parser
+     * @param initialBackoffMillis the delay before the first reconnect attempt, before jitter
+     * @param maxBackoffMillis     the longest delay between reconnect attempts
+     */
+    public IngestionClient(DataStorage storage, int queueCapacity, long initialBackoffMillis, long maxBackoffMillis) {
+        this.storage = storage;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Starts streaming from a server. Returns at once; the client connects in
+     * the background and keeps reconnecting until it is closed.
+     *
+     * @param serverUri the URI of the WebSocket server
+     * @throws IllegalStateException if the client was already started or is closed
+     */
+    @Override
+    public synchronized void connect(URI serverUri) {
+        if (this.serverUri != null || closed) {
+            throw new IllegalStateException("IngestionClient can only be connected once");
+        }
+        this.serverUri = serverUri;
+        parserThread = new Thread(this::parseLoop, "ingestion-parser");
+        parserThread.setDaemon(true);
+        parserThread.start();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ingestion-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::sampleRate, 1, 1, TimeUnit.SECONDS);
+        openConnection();
+    }
+
+    /**
+     * Queues a text message for the parser, waiting while the queue is full.
+     *
+     * @param message the message received
+     */
+    @Override
+    public void onMessage(String message) {
+        enqueue(message);
+    }
+
+    /**
+     * Stops reconnecting, closes the connection and stores the records still
+     * queued.
+     */
+    @Override
+    public void close() {
+        Connection last;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            last = connection;
+        }
+        if (last != null) {
+            last.close();
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (parserThread != null) {
+            try {
+                parserThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the client is connected to the server.
+     *
+     * @return true while a connection is open
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Returns the number of messages received.
+     *
+     * @return the message count
+     */
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+
+    /**
+     * Returns the number of messages received during the last full second.
+     *
+     * @return the message rate
+     */
+    public double getMessagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    /**
+     * Returns the number of records added to the storage.
+     *
+     * @return the record count
+     */
+    public long getRecordCount() {
+        return recordCount.get();
+    }
+
+    /**
+     * Returns the number of lines and frames that could not be parsed.
+     *
+     * @return the parse error count
+     */
+    public long getParseErrors() {
+        return parseErrors.get();
+    }
+
+    /**
+     * Returns the number of messages waiting for the parser.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the end-to-end lag of the last stored batch: the time between the
+     * timestamp of its newest record and the moment the batch was stored.
+     *
+     * @return the lag in milliseconds
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * Returns the number of reconnect attempts made.
+     *
+     * @return the reconnect count
+     */
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    private synchronized void openConnection() {
+        if (closed) {
+            return;
+        }
+        connection = new Connection(serverUri);
+        connection.connect();
+    }
+
+    private synchronized void scheduleReconnect() {
+        if (closed) {
+            return;
+        }
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(failedAttempts, 30));
+        long delay = ThreadLocalRandom.current().nextLong(backoff + 1);
+        failedAttempts++;
+        reconnects.incrementAndGet();
+        scheduler.schedule(this::openConnection, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void onConnected() {
+        failedAttempts = 0;
+        connected = true;
+    }
+
+    private void sampleRate() {
+        long count = messageCount.get();
+        messagesPerSecond = count - lastMessageCount;
+        lastMessageCount = count;
+    }
+
+    private void enqueue(Object message) {
+        messageCount.incrementAndGet();
+        try {
+            queue.put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void parseLoop() {
+        List<Object> messages = new ArrayList<>(DRAIN_BATCH);
+        long newestTimestamp = Long.MIN_VALUE;
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Object first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                messages.add(first);
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(messages, DRAIN_BATCH - 1);
+            for (Object message : messages) {
+                if (message instanceof String) {
+                    newestTimestamp = Math.max(newestTimestamp, parseText((String) message));
+                } else {
+                    newestTimestamp = Math.max(newestTimestamp, parseFrame((byte[]) message));
+                }
+                if (batch.size() >= BATCH_SIZE) {
+                    store(newestTimestamp);
+                    newestTimestamp = Long.MIN_VALUE;
+                }
+            }
+            messages.clear();
+            store(newestTimestamp);
+            newestTimestamp = Long.MIN_VALUE;
+        }
+    }
+
+    // Adds the lines of a message to the batch and returns the newest timestamp among them
+    private long parseText(String message) {
+        long newestTimestamp = Long.MIN_VALUE;
+        int start = 0;
+        while (start < message.length()) {
+            int end = message.indexOf('\n', start);
+            if (end < 0) {
+                end = message.length();
+            }
+            if (parser.parseWireRecord(message, start, end)) {
+                batch.add(parser.getPatientId(), parser.getRecordTypeCode(), parser.getMeasurementValue(),
+                        parser.getTimestamp());
+                newestTimestamp = Math.max(newestTimestamp, parser.getTimestamp());
+            } else if (end > start) {
+                parseErrors.incrementAndGet();
+            }
+            start = end + 1;
+        }
+        return newestTimestamp;
+    }
+
+    // Adds the records of a binary frame to the batch and returns the newest timestamp among them
+    private long parseFrame(byte[] frame) {
+        int from = batch.size();
+        try {
+            BinaryRecordFrame.decode(ByteBuffer.wrap(frame), batch);
+        } catch (IllegalArgumentException e) {
+            parseErrors.incrementAndGet();
+        }
+        long newestTimestamp = Long.MIN_VALUE;
+        for (int i = from; i < batch.size(); i++) {
+            newestTimestamp = Math.max(newestTimestamp, batch.getTimestamp(i));
+        }
+        return newestTimestamp;
+    }
+
+    private void store(long newestTimestamp) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            storage.addPatientData(batch);
+            recordCount.addAndGet(batch.size());
+            lagMillis = System.currentTimeMillis() - newestTimestamp;
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Storing a batch of " + batch.size() + " records failed", e);
+        }
+        batch.clear();
+    }
+
+    /**
+     * One connection attempt. A new one is made for every reconnect.
+     */
+    private final class Connection extends org.java_websocket.client.WebSocketClient {
+        Connection(URI serverUri) {
+            super(serverUri);
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+            onConnected();
+            logger.info("Connected to " + getURI());
+        }
+
+        @Override
+        public void onMessage(String message) {
+            enqueue(message);
+        }
+
+        @Override
+        public void onMessage(ByteBuffer bytes) {
+            byte[] frame = new byte[bytes.remaining()];
+            bytes.get(frame);
+            enqueue(frame);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            if (connected) {
+                logger.warning("Disconnected from " + getURI() + ": " + reason);
+            }
+            connected = false;
+            scheduleReconnect();
+        }
+
+        @Override
+        public void onError(Exception ex) {
+            logger.fine("WebSocket error on " + getURI() + ": " + ex.getMessage());
+        }
+    }
+}
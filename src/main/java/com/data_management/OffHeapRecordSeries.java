@@ -0,0 +1,294 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * A {@link RecordSeries} that keeps its samples outside the Java heap, in
+ * chunks of {@link OffHeapSlabs}. Only the chunk table and the rollups live on
+ * the heap, so millions of samples add no work for the garbage collector.
+ * <p>
+ * Samples are numbered by position: sample {@code p} is slot
+ * {@code p % CHUNK_SAMPLES} of chunk {@code p / CHUNK_SAMPLES}, and every chunk
+ * but the last is full. Appends write past the end of the samples any reader
+ * has seen. A late sample, and retention, replace chunks instead of changing
+ * them, so readers work on a snapshot of the chunk table without holding the
+ * lock. The first chunk may start with expired samples that are skipped.
+ * <p>
+ * While the series fits in one chunk, that chunk is sized to its samples and
+ * replaced by one twice as large when it fills, so a short series takes a
+ * fraction of a full chunk.
+ * <p>
+ * Since every chunk but the last is full, a late sample shifts every sample
+ * after it: it rewrites the chunks from its own to the last, which costs time
+ * in proportion to the samples behind it. Late samples that fall into the
+ * last chunk, as those delayed by the network do, rewrite only that chunk;
+ * a sample far back in a long history is costly.
+ * <p>
+ * {@link #range} copies the samples into the heap arrays of a view; use
+ * {@link #cursor} to read them in place.
+ */
+class OffHeapRecordSeries extends RecordSeries {
+    private static final int CHUNK_SAMPLES = OffHeapSlabs.CHUNK_SAMPLES;
+    private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(CHUNK_SAMPLES);
+    private static final int SLOT_MASK = CHUNK_SAMPLES - 1;
+    private static final OffHeapSlabs.Chunk[] NO_CHUNKS = new OffHeapSlabs.Chunk[0];
+
+    private final OffHeapSlabs slabs;
+    private OffHeapSlabs.Chunk[] chunks = NO_CHUNKS;
+    private int chunkCount;
+    // Live samples are at positions first to end - 1
+    private int first;
+    private int end;
+
+    OffHeapRecordSeries(int patientId, int recordTypeCode, OffHeapSlabs slabs) {
+        super(patientId, recordTypeCode, 0);
+        this.slabs = slabs;
+    }
+
+    @Override
+    public synchronized void append(long timestamp, double value) {
+        summary().add(timestamp, value);
+        if (end == first || timestamp >= timestampAt(chunks, end - 1)) {
+            if ((end & SLOT_MASK) == 0) {
+                if (chunkCount == chunks.length) {
+                    chunks = Arrays.copyOf(chunks, Math.max(4, chunkCount * 2));
+                }
+                OffHeapSlabs.Chunk chunk = slabs.allocate(chunkCount == 0 ? end + 1 : CHUNK_SAMPLES);
+                chunks[chunkCount++] = chunk;
+            } else if (end == chunks[0].capacity()) {
+                // The only chunk is full but smaller than a whole chunk; readers may
+                // still hold the table, so it is replaced rather than changed
+                OffHeapSlabs.Chunk[] updated = chunks.clone();
+                updated[0] = grown(chunks[0], end + 1);
+                chunks = updated;
+            }
+            chunks[end >>> CHUNK_SHIFT].put(end & SLOT_MASK, timestamp, value);
+            end++;
+        } else {
+            insert(upperBound(chunks, first, end, timestamp), timestamp, value);
+        }
+    }
+
+    // Returns a copy of the only chunk, large enough for the given number of samples
+    private OffHeapSlabs.Chunk grown(OffHeapSlabs.Chunk chunk, int samples) {
+        OffHeapSlabs.Chunk larger = slabs.allocate(samples);
+        for (int p = first; p < end; p++) {
+            larger.put(p, chunk.timestamp(p), chunk.value(p));
+        }
+        return larger;
+    }
+
+    // Rewrites the chunks from the one holding the position onwards, with the sample
+    // inserted; the cost grows with the number of samples after the position
+    private void insert(int position, long timestamp, double value) {
+        int firstChanged = position >>> CHUNK_SHIFT;
+        int newEnd = end + 1;
+        int newChunkCount = ((newEnd - 1) >>> CHUNK_SHIFT) + 1;
+        OffHeapSlabs.Chunk[] updated = Arrays.copyOf(chunks, Math.max(chunks.length, newChunkCount));
+        for (int c = firstChanged; c < newChunkCount; c++) {
+            updated[c] = slabs.allocate(newChunkCount == 1 ? newEnd : CHUNK_SAMPLES);
+        }
+        for (int source = firstChanged << CHUNK_SHIFT, target = source; target < newEnd; target++) {
+            OffHeapSlabs.Chunk chunk = updated[target >>> CHUNK_SHIFT];
+            if (target == position) {
+                chunk.put(target & SLOT_MASK, timestamp, value);
+            } else {
+                chunk.put(target & SLOT_MASK, timestampAt(chunks, source), valueAt(chunks, source));
+                source++;
+            }
+        }
+        chunks = updated;
+        chunkCount = newChunkCount;
+        end = newEnd;
+    }
+
+    @Override
+    public SeriesView range(long startTime, long endTime) {
+        OffHeapSlabs.Chunk[] table;
+        int from;
+        int to;
+        synchronized (this) {
+            table = chunks;
+            from = first;
+            to = end;
+        }
+        int rangeFrom = lowerBound(table, from, to, startTime);
+        int rangeTo = upperBound(table, rangeFrom, to, endTime);
+        if (rangeFrom >= rangeTo) {
+            return SeriesView.empty(getPatientId(), getRecordTypeCode());
+        }
+        return copy(table, rangeFrom, rangeTo);
+    }
+
+    @Override
+    public SampleCursor cursor(long startTime, long endTime) {
+        OffHeapSlabs.Chunk[] table;
+        int from;
+        int to;
+        synchronized (this) {
+            table = chunks;
+            from = first;
+            to = end;
+        }
+        int rangeFrom = lowerBound(table, from, to, startTime);
+        return new Cursor(table, rangeFrom, upperBound(table, rangeFrom, to, endTime));
+    }
+
+    /**
+     * Reads the samples of a range straight from the chunks.
+     */
+    private static final class Cursor implements SampleCursor {
+        private final OffHeapSlabs.Chunk[] table;
+        private final int to;
+        private int position;
+        private long timestamp;
+        private double value;
+
+        Cursor(OffHeapSlabs.Chunk[] table, int from, int to) {
+            this.table = table;
+            this.position = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean next() {
+            if (position >= to) {
+                return false;
+            }
+            OffHeapSlabs.Chunk chunk = table[position >>> CHUNK_SHIFT];
+            int slot = position & SLOT_MASK;
+            timestamp = chunk.timestamp(slot);
+            value = chunk.value(slot);
+            position++;
+            return true;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public double getValue() {
+            return value;
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return end - first;
+    }
+
+    @Override
+    public synchronized long estimateBytes() {
+        // The chunk table plus a chunk object and its buffer object per chunk
+        return 16L + 8L * chunks.length + 80L * chunkCount + summary().estimateBytes();
+    }
+
+    @Override
+    public synchronized long estimateOffHeapBytes() {
+        if (chunkCount == 1) {
+            return (long) chunks[0].capacity() * OffHeapSlabs.SAMPLE_BYTES;
+        }
+        return (long) chunkCount * OffHeapSlabs.CHUNK_BYTES;
+    }
+
+    @Override
+    public void compact(RetentionPolicy policy, long now) {
+        long cutoff = policy.rawCutoff(now);
+        OffHeapSlabs.Chunk[] table;
+        int from;
+        int to;
+        synchronized (this) {
+            table = chunks;
+            from = first;
+            to = lowerBound(chunks, first, end, cutoff);
+            removeBefore(to);
+            summary().removeBefore(cutoff, this);
+        }
+        // The old table keeps the removed chunks alive until they are copied
+        if (to > from) {
+            addToRollups(copy(table, from, to));
+        }
+        expireRollups(policy, now);
+    }
+
+    // Drops the samples before the position, releasing the chunks that only held those
+    private void removeBefore(int position) {
+        if (position == end) {
+            chunks = NO_CHUNKS;
+            chunkCount = 0;
+            first = 0;
+            end = 0;
+            return;
+        }
+        int removedChunks = position >>> CHUNK_SHIFT;
+        if (removedChunks > 0) {
+            OffHeapSlabs.Chunk[] remaining = new OffHeapSlabs.Chunk[Math.max(4, chunks.length)];
+            System.arraycopy(chunks, removedChunks, remaining, 0, chunkCount - removedChunks);
+            chunks = remaining;
+            chunkCount -= removedChunks;
+            position -= removedChunks << CHUNK_SHIFT;
+            end -= removedChunks << CHUNK_SHIFT;
+        }
+        first = position;
+    }
+
+    @Override
+    public synchronized boolean contains(long timestamp, double value) {
+        for (int p = lowerBound(chunks, first, end, timestamp); p < end && timestampAt(chunks, p) == timestamp; p++) {
+            if (Double.compare(valueAt(chunks, p), value) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private SeriesView copy(OffHeapSlabs.Chunk[] table, int from, int to) {
+        long[] rangeTimestamps = new long[to - from];
+        double[] rangeValues = new double[to - from];
+        for (int p = from; p < to; p++) {
+            rangeTimestamps[p - from] = timestampAt(table, p);
+            rangeValues[p - from] = valueAt(table, p);
+        }
+        return new SeriesView(getPatientId(), getRecordTypeCode(), rangeTimestamps, rangeValues, 0, to - from);
+    }
+
+    private static long timestampAt(OffHeapSlabs.Chunk[] table, int position) {
+        return table[position >>> CHUNK_SHIFT].timestamp(position & SLOT_MASK);
+    }
+
+    private static double valueAt(OffHeapSlabs.Chunk[] table, int position) {
+        return table[position >>> CHUNK_SHIFT].value(position & SLOT_MASK);
+    }
+
+    // Position of the first sample in [from, to) with a timestamp >= time
+    private static int lowerBound(OffHeapSlabs.Chunk[] table, int from, int to, long time) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(table, mid) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Position of the first sample in [from, to) with a timestamp > time
+    private static int upperBound(OffHeapSlabs.Chunk[] table, int from, int to, long time) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(table, mid) <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
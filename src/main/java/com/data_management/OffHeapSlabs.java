@@ -0,0 +1,168 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out chunks of memory outside the Java heap, carved from large slabs
+ * that are either direct buffers or memory-mapped files. The garbage collector
+ * sees one small object per chunk instead of the samples in it.
+ * <p>
+ * Chunks hold {@link #CHUNK_SAMPLES} samples, or a smaller power of two down to
+ * {@link #MIN_CHUNK_SAMPLES} for a series that has only a few, so that many
+ * short series do not each reserve a full chunk.
+ * <p>
+ * A chunk is recycled once nothing references its {@link Chunk} any more, so a
+ * cursor that still walks a chunk the series has let go of keeps reading valid
+ * data. Mapped slab files are deleted as soon as they are mapped; the memory
+ * stays available to the process and can be paged out by the operating system.
+ */
+final class OffHeapSlabs {
+    /** Bytes taken by one sample: the timestamp and the value. */
+    static final int SAMPLE_BYTES = 16;
+    /** Number of samples in one chunk. */
+    static final int CHUNK_SAMPLES = 4096;
+    static final int CHUNK_BYTES = CHUNK_SAMPLES * SAMPLE_BYTES;
+    /** Number of samples in the smallest chunk. */
+    static final int MIN_CHUNK_SAMPLES = 64;
+    private static final int MIN_CHUNK_SHIFT = Integer.numberOfTrailingZeros(MIN_CHUNK_SAMPLES);
+
+    // One cleaner thread serves every allocator
+    private static final Cleaner cleaner = Cleaner.create();
+
+    private final int slabBytes;
+    private final Path directory;
+    // Recycled chunks per size, from MIN_CHUNK_SAMPLES samples up to CHUNK_SAMPLES
+    private final List<ConcurrentLinkedQueue<ByteBuffer>> freeChunks = new ArrayList<>();
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private ByteBuffer slab;
+    private int slabCount;
+
+    /**
+     * Constructs an allocator.
+     *
+     * @param slabBytes the size of one slab, rounded down to whole chunks
+     * @param directory the directory for memory-mapped slab files, or null for direct buffers
+     */
+    OffHeapSlabs(long slabBytes, Path directory) {
+        long chunks = Math.max(1, Math.min(slabBytes, Integer.MAX_VALUE) / CHUNK_BYTES);
+        this.slabBytes = (int) (chunks * CHUNK_BYTES);
+        this.directory = directory;
+        for (int samples = MIN_CHUNK_SAMPLES; samples <= CHUNK_SAMPLES; samples *= 2) {
+            freeChunks.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    /**
+     * Returns a chunk of {@link #CHUNK_SAMPLES} samples. Its contents are undefined.
+     */
+    Chunk allocate() {
+        return allocate(CHUNK_SAMPLES);
+    }
+
+    /**
+     * Returns a chunk of at least the given number of samples, and at most
+     * {@link #CHUNK_SAMPLES}. Its contents are undefined.
+     *
+     * @param samples the number of samples the chunk must hold
+     */
+    Chunk allocate(int samples) {
+        int capacity = capacityFor(samples);
+        ConcurrentLinkedQueue<ByteBuffer> free =
+                freeChunks.get(Integer.numberOfTrailingZeros(capacity) - MIN_CHUNK_SHIFT);
+        ByteBuffer memory = free.poll();
+        if (memory == null) {
+            memory = carve(capacity * SAMPLE_BYTES);
+        }
+        Chunk chunk = new Chunk(memory);
+        ByteBuffer recycled = memory;
+        cleaner.register(chunk, () -> free.add(recycled));
+        return chunk;
+    }
+
+    /**
+     * Returns the capacity of the chunk that {@link #allocate(int)} hands out for
+     * the given number of samples: the next power of two, within the chunk sizes.
+     */
+    static int capacityFor(int samples) {
+        if (samples >= CHUNK_SAMPLES) {
+            return CHUNK_SAMPLES;
+        }
+        return Math.max(MIN_CHUNK_SAMPLES, Integer.highestOneBit(Math.max(1, samples) * 2 - 1));
+    }
+
+    /**
+     * Returns the number of bytes reserved outside the heap, in use or free.
+     */
+    long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    private synchronized ByteBuffer carve(int bytes) {
+        if (slab == null || slab.remaining() < bytes) {
+            slab = newSlab();
+            reservedBytes.addAndGet(slabBytes);
+        }
+        ByteBuffer memory = slab.slice();
+        memory.limit(bytes);
+        memory = memory.slice().order(ByteOrder.nativeOrder());
+        slab.position(slab.position() + bytes);
+        return memory;
+    }
+
+    private ByteBuffer newSlab() {
+        if (directory == null) {
+            return ByteBuffer.allocateDirect(slabBytes);
+        }
+        try {
+            Files.createDirectories(directory);
+            Path file = directory.resolve("slab-" + ProcessHandle.current().pid() + "-" + slabCount++ + ".mem");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, slabBytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map a storage slab in " + directory, e);
+        }
+    }
+
+    /**
+     * A chunk of off-heap memory holding up to {@link #capacity()} samples,
+     * each as a timestamp followed by a value.
+     */
+    static final class Chunk {
+        private final ByteBuffer memory;
+
+        private Chunk(ByteBuffer memory) {
+            this.memory = memory;
+        }
+
+        int capacity() {
+            return memory.capacity() / SAMPLE_BYTES;
+        }
+
+        long timestamp(int index) {
+            return memory.getLong(index * SAMPLE_BYTES);
+        }
+
+        double value(int index) {
+            return memory.getDouble(index * SAMPLE_BYTES + 8);
+        }
+
+        void put(int index, long timestamp, double value) {
+            memory.putLong(index * SAMPLE_BYTES, timestamp);
+            memory.putDouble(index * SAMPLE_BYTES + 8, value);
+        }
+    }
+}
@@ -1,33 +1,52 @@
 package com.data_management;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.IntFunction;
 
 /**
  * Represents a patient and manages their medical records.
  * This class stores patient-specific data, allowing for the addition and
  * retrieval
  * of medical records based on specified criteria.
+ * Records are kept in one time-ordered {@link RecordSeries} per record type.
+ * Records may be added and read concurrently; each series is locked on its own.
  */
 public class Patient {
+    private static final RecordSeries[] NO_SERIES = new RecordSeries[0];
+
     private int patientId;
-    private List<PatientRecord> patientRecords;
+    private final StorageBackend backend;
+    // Series indexed by record type code, replaced as a whole when a type is added
+    private volatile RecordSeries[] seriesByType;
 
     /**
      * Constructs a new Patient with a specified ID.
-     * Initializes an empty list of patient records.
+     * Initializes an empty set of record series.
      *
      * @param patientId the unique identifier for the patient
      */
     public Patient(int patientId) {
+        this(patientId, StorageBackend.heap());
+    }
+
+    /**
+     * Constructs a new Patient whose series are kept by the given backend.
+     *
+     * @param patientId the unique identifier for the patient
+     * @param backend   the backend that stores the samples
+     */
+    Patient(int patientId, StorageBackend backend) {
         this.patientId = patientId;
-        this.patientRecords = new ArrayList<>();
+        this.backend = backend;
+        this.seriesByType = NO_SERIES;
     }
 
     /**
-     * Adds a new record to this patient's list of medical records.
-     * The record is created with the specified measurement value, record type, and
-     * timestamp.
+     * Adds a new record to this patient's medical records.
+     * The measurement is stored in the series of its record type, at the position
+     * given by its timestamp.
      *
      * @param measurementValue the measurement value to store in the record
      * @param recordType       the type of record, e.g., "HeartRate",
@@ -36,14 +55,45 @@ public class Patient {
      *                         milliseconds since UNIX epoch
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        addRecord(measurementValue, RecordType.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds a new record whose record type has already been interned.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param recordTypeCode   the record type code, see {@link RecordType}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since UNIX epoch
+     */
+    public void addRecord(double measurementValue, int recordTypeCode, long timestamp) {
+        RecordSeries series = seriesFor(recordTypeCode);
+        if (series == null) {
+            series = createSeries(recordTypeCode);
+        }
+        series.append(timestamp, measurementValue);
+    }
+
+    private RecordSeries seriesFor(int recordTypeCode) {
+        RecordSeries[] current = seriesByType;
+        return recordTypeCode < current.length ? current[recordTypeCode] : null;
+    }
+
+    private synchronized RecordSeries createSeries(int recordTypeCode) {
+        RecordSeries series = seriesFor(recordTypeCode);
+        if (series == null) {
+            series = backend.createSeries(this.patientId, recordTypeCode);
+            RecordSeries[] updated = Arrays.copyOf(seriesByType, Math.max(seriesByType.length, recordTypeCode + 1));
+            updated[recordTypeCode] = series;
+            seriesByType = updated;
+        }
+        return series;
     }
 
     /**
      * Retrieves a list of PatientRecord objects for this patient that fall within a
      * specified time range.
-     * The method filters records based on the start and end times provided.
+     * The records of all types are merged in timestamp order.
      *
      * @param startTime the start of the time range, in milliseconds since UNIX
      *                  epoch
@@ -52,14 +102,193 @@ public class Patient {
      *         range
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
+        List<SeriesView> views = new ArrayList<>();
+        int total = 0;
+        for (RecordSeries series : seriesByType) {
+            if (series == null) {
+                continue;
+            }
+            SeriesView view = series.range(startTime, endTime);
+            if (!view.isEmpty()) {
+                views.add(view);
+                total += view.size();
+            }
+        }
+        if (views.size() == 1) {
+            return views.get(0);
+        }
 
-        List<PatientRecord> recordsInRange = new ArrayList<>();
-        for (PatientRecord record : patientRecords) {
-            if (record.getTimestamp() >= startTime && record.getTimestamp() <= endTime) {
-                recordsInRange.add(record);
+        // Merge the per-type views; ties go to the lower record type code, so the
+        // order does not depend on which type a concurrent load happened to store first
+        List<PatientRecord> recordsInRange = new ArrayList<>(total);
+        int[] positions = new int[views.size()];
+        for (int n = 0; n < total; n++) {
+            int next = -1;
+            long nextTimestamp = Long.MAX_VALUE;
+            for (int i = 0; i < positions.length; i++) {
+                SeriesView view = views.get(i);
+                if (positions[i] < view.size() && (next < 0 || view.getTimestamp(positions[i]) < nextTimestamp)) {
+                    next = i;
+                    nextTimestamp = view.getTimestamp(positions[i]);
+                }
             }
+            recordsInRange.add(views.get(next).get(positions[next]++));
         }
         return recordsInRange;
     }
+
+    /**
+     * Retrieves the records of a single type that fall within a specified time
+     * range. The returned view reads directly from the stored series without
+     * copying it.
+     *
+     * @param recordType the type of record, e.g., "ECG"
+     * @param startTime  the start of the time range, in milliseconds since UNIX
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return a view of the matching records, in timestamp order
+     */
+    public SeriesView getRecords(String recordType, long startTime, long endTime) {
+        return getRecords(RecordType.codeOf(recordType), startTime, endTime);
     }
 
+    /**
+     * Retrieves the records of a single type, given by its code, that fall within
+     * a specified time range.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordType}
+     * @param startTime      the start of the time range, in milliseconds since UNIX
+     *                       epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX epoch
+     * @return a view of the matching records, in timestamp order
+     */
+    public SeriesView getRecords(int recordTypeCode, long startTime, long endTime) {
+        RecordSeries series = seriesFor(recordTypeCode);
+        if (series == null) {
+            return SeriesView.empty(patientId, recordTypeCode);
+        }
+        return series.range(startTime, endTime);
+    }
+
+    /**
+     * Opens a cursor over the records of a single type, given by its code, that
+     * fall within a specified time range. Unlike {@link #getRecords(int, long, long)},
+     * no record objects are created and nothing is copied.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordType}
+     * @param startTime      the start of the time range, in milliseconds since UNIX
+     *                       epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX epoch
+     * @return a cursor over the matching samples, in timestamp order
+     */
+    public SampleCursor cursor(int recordTypeCode, long startTime, long endTime) {
+        RecordSeries series = seriesFor(recordTypeCode);
+        if (series == null) {
+            return SeriesView.empty(patientId, recordTypeCode).cursor();
+        }
+        return series.cursor(startTime, endTime);
+    }
+
+    /**
+     * Retrieves the rollups of a single type and resolution that overlap a
+     * specified time range. Rollups cover the history that has been compacted
+     * under a {@link RetentionPolicy}.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordType}
+     * @param resolution     the rollup resolution
+     * @param startTime      the start of the time range, in milliseconds since UNIX
+     *                       epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX epoch
+     * @return the matching rollups, in time order
+     */
+    public List<Rollup> getRollups(int recordTypeCode, RollupResolution resolution, long startTime, long endTime) {
+        RecordSeries series = seriesFor(recordTypeCode);
+        if (series == null) {
+            return new ArrayList<>();
+        }
+        return series.rollups(resolution, startTime, endTime);
+    }
+
+    /**
+     * Computes the minimum, maximum, sum, mean, count and latest sample of a
+     * single type within a time range, both bounds inclusive, from the precomputed
+     * summaries of its series rather than a scan.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordType}
+     * @param startTime      the start of the time range, in milliseconds since UNIX
+     *                       epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX epoch
+     * @return the aggregates of the matching samples
+     */
+    public Aggregate aggregate(int recordTypeCode, long startTime, long endTime) {
+        return seriesOrEmpty(recordTypeCode).aggregate(startTime, endTime);
+    }
+
+    /**
+     * Computes the aggregates of a single type over consecutive windows of a time
+     * range, see {@link RecordSeries#aggregate(long, long, long, long)}.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordType}
+     * @param startTime      the start of the time range, in milliseconds since UNIX
+     *                       epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX epoch
+     * @param windowMillis   the length of each window
+     * @param stepMillis     the time from the start of one window to the start of the next
+     * @return the aggregates of the windows, in time order
+     * @throws IllegalArgumentException if the window or the step is not positive
+     */
+    public List<Aggregate> aggregate(int recordTypeCode, long startTime, long endTime,
+                                     long windowMillis, long stepMillis) {
+        return seriesOrEmpty(recordTypeCode).aggregate(startTime, endTime, windowMillis, stepMillis);
+    }
+
+    // Returns the series of a record type, or an empty one not kept by this patient
+    private RecordSeries seriesOrEmpty(int recordTypeCode) {
+        RecordSeries series = seriesFor(recordTypeCode);
+        return series != null ? series : new RecordSeries(patientId, recordTypeCode);
+    }
+
+    // Returns the series of this patient, in record type code order
+    List<RecordSeries> series() {
+        List<RecordSeries> series = new ArrayList<>();
+        for (RecordSeries candidate : seriesByType) {
+            if (candidate != null) {
+                series.add(candidate);
+            }
+        }
+        return series;
+    }
+
+    // Returns the series of a record type, creating it on first use
+    RecordSeries seriesOf(int recordTypeCode) {
+        RecordSeries series = seriesFor(recordTypeCode);
+        return series != null ? series : createSeries(recordTypeCode);
+    }
+
+    /**
+     * Applies retention to every series of this patient.
+     *
+     * @param policies the policy for each record type code, or null to keep a type in full
+     * @param now      the current time, in milliseconds since UNIX epoch
+     */
+    void compact(IntFunction<RetentionPolicy> policies, long now) {
+        for (RecordSeries series : seriesByType) {
+            if (series == null) {
+                continue;
+            }
+            RetentionPolicy policy = policies.apply(series.getRecordTypeCode());
+            if (policy != null) {
+                series.compact(policy, now);
+            }
+        }
+    }
+
+    /**
+     * Returns the unique identifier of this patient.
+     *
+     * @return the patient ID
+     */
+    public int getPatientId() {
+        return patientId;
+    }
+}
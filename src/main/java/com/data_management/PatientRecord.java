@@ -8,16 +8,17 @@ package com.data_management;
  * pressure),
  * the measurement value, and the exact timestamp when the measurement was
  * taken.
+ * The record type is stored as a code from {@link RecordType}.
  */
 public class PatientRecord {
     private int patientId;
-    private String recordType; // Example: ECG, blood pressure, etc.
+    private int recordTypeCode; // Example: ECG, blood pressure, etc.
     private double measurementValue; // Example: heart rate
     private long timestamp;
 
     /**
      * Constructs a new patient record with specified details.
-     * 
+     *
      * @param patientId        the unique identifier for the patient
      * @param measurementValue the numerical value of the recorded measurement
      * @param recordType       the type of measurement (e.g., "ECG", "Blood
@@ -26,15 +27,28 @@ public class PatientRecord {
      *                         milliseconds since epoch
      */
     public PatientRecord(int patientId, double measurementValue, String recordType, long timestamp) {
+        this(patientId, measurementValue, RecordType.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Constructs a new patient record with an already interned record type.
+     *
+     * @param patientId        the unique identifier for the patient
+     * @param measurementValue the numerical value of the recorded measurement
+     * @param recordTypeCode   the record type code, see {@link RecordType}
+     * @param timestamp        the time at which the measurement was recorded, in
+     *                         milliseconds since epoch
+     */
+    public PatientRecord(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
         this.patientId = patientId;
         this.measurementValue = measurementValue;
-        this.recordType = recordType;
+        this.recordTypeCode = recordTypeCode;
         this.timestamp = timestamp;
     }
 
     /**
      * Returns the patient ID associated with this record.
-     * 
+     *
      * @return the patient ID
      */
     public int getPatientId() {
@@ -43,7 +57,7 @@ public class PatientRecord {
 
     /**
      * Returns the measurement value of this record.
-     * 
+     *
      * @return the measurement value
      */
     public double getMeasurementValue() {
@@ -52,7 +66,7 @@ public class PatientRecord {
 
     /**
      * Returns the timestamp when this record was taken.
-     * 
+     *
      * @return the timestamp in milliseconds since epoch
      */
     public long getTimestamp() {
@@ -61,10 +75,19 @@ public class PatientRecord {
 
     /**
      * Returns the type of record (e.g., "ECG", "Blood Pressure").
-     * 
+     *
      * @return the record type
      */
     public String getRecordType() {
-        return recordType;
+        return RecordType.labelOf(recordTypeCode);
+    }
+
+    /**
+     * Returns the interned code of the record type.
+     *
+     * @return the record type code, see {@link RecordType}
+     */
+    public int getRecordTypeCode() {
+        return recordTypeCode;
     }
 }
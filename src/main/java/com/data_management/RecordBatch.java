@@ -0,0 +1,135 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * A reusable, growable batch of records stored column by column in primitive
+ * arrays. Batches are used to hand many records to a consumer at once without
+ * creating an object per record.
+ */
+public class RecordBatch {
+    private int[] patientIds;
+    private int[] recordTypeCodes;
+    private double[] measurementValues;
+    private long[] timestamps;
+    private int size;
+
+    /**
+     * Constructs an empty batch.
+     *
+     * @param initialCapacity the number of records the batch holds before growing
+     */
+    public RecordBatch(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        patientIds = new int[capacity];
+        recordTypeCodes = new int[capacity];
+        measurementValues = new double[capacity];
+        timestamps = new long[capacity];
+    }
+
+    /**
+     * Appends a record to the batch.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordTypeCode   the record type code, see {@link RecordType}
+     * @param measurementValue the value of the health metric being recorded
+     * @param timestamp        the time of the measurement, in milliseconds since epoch
+     */
+    public void add(int patientId, int recordTypeCode, double measurementValue, long timestamp) {
+        if (size == patientIds.length) {
+            int capacity = size * 2;
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            recordTypeCodes = Arrays.copyOf(recordTypeCodes, capacity);
+            measurementValues = Arrays.copyOf(measurementValues, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+        }
+        patientIds[size] = patientId;
+        recordTypeCodes[size] = recordTypeCode;
+        measurementValues[size] = measurementValue;
+        timestamps[size] = timestamp;
+        size++;
+    }
+
+    /**
+     * Passes every record of the batch, in order, to a listener.
+     *
+     * @param listener the listener receiving the records
+     */
+    public void forEach(RecordListener listener) {
+        for (int i = 0; i < size; i++) {
+            listener.onRecord(patientIds[i], recordTypeCodes[i], measurementValues[i], timestamps[i]);
+        }
+    }
+
+    /**
+     * Removes all records while keeping the allocated arrays.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the number of records in the batch.
+     *
+     * @return the record count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the batch holds no records.
+     *
+     * @return true if the batch is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the patient ID of the record at the given position.
+     *
+     * @param index the position within the batch
+     * @return the unique identifier of the patient
+     */
+    public int getPatientId(int index) {
+        return patientIds[checkIndex(index)];
+    }
+
+    /**
+     * Returns the record type code of the record at the given position.
+     *
+     * @param index the position within the batch
+     * @return the record type code, see {@link RecordType}
+     */
+    public int getRecordTypeCode(int index) {
+        return recordTypeCodes[checkIndex(index)];
+    }
+
+    /**
+     * Returns the measurement value of the record at the given position.
+     *
+     * @param index the position within the batch
+     * @return the measurement value
+     */
+    public double getMeasurementValue(int index) {
+        return measurementValues[checkIndex(index)];
+    }
+
+    /**
+     * Returns the timestamp of the record at the given position.
+     *
+     * @param index the position within the batch
+     * @return the timestamp in milliseconds since epoch
+     */
+    public long getTimestamp(int index) {
+        return timestamps[checkIndex(index)];
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,15 @@
+package com.data_management;
+
+/**
+ * Receives records from a {@link RecordSubscription} in batches, on the
+ * subscription's own delivery thread.
+ */
+public interface RecordBatchListener {
+    /**
+     * Called with the next batch of records. The batch is reused for the next
+     * delivery, so it must not be kept after this method returns.
+     *
+     * @param batch the records, in the order they were stored
+     */
+    void onRecords(RecordBatch batch);
+}
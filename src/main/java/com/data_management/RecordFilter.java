@@ -0,0 +1,74 @@
+package com.data_management;
+
+/**
+ * Selects the records a {@link RecordSubscription} receives, by patient and/or
+ * record type.
+ */
+public final class RecordFilter {
+    private static final RecordFilter ALL = new RecordFilter(false, 0, false, 0);
+
+    // Each criterion applies only if its flag is set, so every patient ID and code can be selected
+    private final boolean byPatient;
+    private final int patientId;
+    private final boolean byRecordType;
+    private final int recordTypeCode;
+
+    private RecordFilter(boolean byPatient, int patientId, boolean byRecordType, int recordTypeCode) {
+        this.byPatient = byPatient;
+        this.patientId = patientId;
+        this.byRecordType = byRecordType;
+        this.recordTypeCode = recordTypeCode;
+    }
+
+    /**
+     * Returns a filter accepting every record.
+     *
+     * @return the filter
+     */
+    public static RecordFilter all() {
+        return ALL;
+    }
+
+    /**
+     * Returns a filter accepting every record of one patient.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the filter
+     */
+    public static RecordFilter patient(int patientId) {
+        return new RecordFilter(true, patientId, false, 0);
+    }
+
+    /**
+     * Returns a filter accepting the records of one type, for every patient.
+     *
+     * @param recordType the record type label, e.g. "ECG"
+     * @return the filter
+     */
+    public static RecordFilter recordType(String recordType) {
+        return new RecordFilter(false, 0, true, RecordType.codeOf(recordType));
+    }
+
+    /**
+     * Returns a filter accepting the records of one type for one patient.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the record type label, e.g. "ECG"
+     * @return the filter
+     */
+    public static RecordFilter of(int patientId, String recordType) {
+        return new RecordFilter(true, patientId, true, RecordType.codeOf(recordType));
+    }
+
+    /**
+     * Returns whether a record passes this filter.
+     *
+     * @param patientId      the unique identifier of the patient
+     * @param recordTypeCode the record type code, see {@link RecordType}
+     * @return true if the record is selected
+     */
+    public boolean matches(int patientId, int recordTypeCode) {
+        return (!byPatient || this.patientId == patientId)
+                && (!byRecordType || this.recordTypeCode == recordTypeCode);
+    }
+}
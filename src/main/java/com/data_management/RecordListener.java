@@ -0,0 +1,17 @@
+package com.data_management;
+
+/**
+ * Receives every record added to a {@link DataStorage}, on the thread that added it.
+ */
+public interface RecordListener {
+    /**
+     * Called after a record has been stored.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordTypeCode   the record type code, see {@link RecordType}
+     * @param measurementValue the value of the health metric being recorded
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     */
+    void onRecord(int patientId, int recordTypeCode, double measurementValue, long timestamp);
+}
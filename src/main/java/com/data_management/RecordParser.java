@@ -0,0 +1,418 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes the simulator's text records into primitive fields, from either a
+ * {@link CharSequence} or a {@link ByteBuffer}. Two formats are understood:
+ * <ul>
+ * <li>the file format {@code patientId,measurementValue,recordType,timestamp}</li>
+ * <li>the wire format {@code patientId,timestamp,label,data} sent by the TCP and
+ * WebSocket outputs, where data may carry a {@code %} suffix or be one of the
+ * alert payloads {@code triggered} and {@code resolved}</li>
+ * </ul>
+ * A parser is reused for many records and creates no objects per record, apart
+ * from the rare values that need the slow path of {@link Double#parseDouble(String)}.
+ * A parser instance is not thread-safe; use one per thread.
+ */
+public class RecordParser {
+    /** Measurement value stored for a {@code triggered} alert payload. */
+    public static final double ALERT_TRIGGERED = 1.0;
+    /** Measurement value stored for a {@code resolved} alert payload. */
+    public static final double ALERT_RESOLVED = 0.0;
+
+    private static final String TRIGGERED = "triggered";
+    private static final String RESOLVED = "resolved";
+    // Powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    // Up to this many significant digits the mantissa converts to a double exactly
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private int patientId;
+    private int recordTypeCode;
+    private double measurementValue;
+    private long timestamp;
+    // Position reached by the last field parser, or -1 if the field was malformed
+    private int position;
+    // The input being parsed; exactly one of them is set during a parse
+    private ByteBuffer bytes;
+    private CharSequence chars;
+
+    /**
+     * Parses a line of the file format {@code patientId,measurementValue,recordType,timestamp}.
+     *
+     * @param bytes the buffer holding the line
+     * @param start the index of the first byte of the line
+     * @param end   the index after the last byte of the line, excluding the line break
+     * @return true if the line was well formed; the fields are then available
+     *         through the getters
+     */
+    public boolean parseFileRecord(ByteBuffer bytes, int start, int end) {
+        this.bytes = bytes;
+        try {
+            return parseFileRecord(start, end);
+        } finally {
+            this.bytes = null;
+        }
+    }
+
+    /**
+     * Parses a line of the file format {@code patientId,measurementValue,recordType,timestamp}.
+     *
+     * @param line the line, without its line break
+     * @return true if the line was well formed
+     */
+    public boolean parseFileRecord(CharSequence line) {
+        this.chars = line;
+        try {
+            return parseFileRecord(0, line.length());
+        } finally {
+            this.chars = null;
+        }
+    }
+
+    /**
+     * Parses a message of the wire format {@code patientId,timestamp,label,data}.
+     *
+     * @param bytes the buffer holding the message
+     * @param start the index of the first byte of the message
+     * @param end   the index after the last byte of the message
+     * @return true if the message was well formed
+     */
+    public boolean parseWireRecord(ByteBuffer bytes, int start, int end) {
+        this.bytes = bytes;
+        try {
+            return parseWireRecord(start, end);
+        } finally {
+            this.bytes = null;
+        }
+    }
+
+    /**
+     * Parses a message of the wire format {@code patientId,timestamp,label,data}.
+     *
+     * @param message the message
+     * @return true if the message was well formed
+     */
+    public boolean parseWireRecord(CharSequence message) {
+        this.chars = message;
+        try {
+            return parseWireRecord(0, message.length());
+        } finally {
+            this.chars = null;
+        }
+    }
+
+    /**
+     * Parses a message of the wire format {@code patientId,timestamp,label,data}
+     * that is a part of a longer text, such as one line of several.
+     *
+     * @param text  the text holding the message
+     * @param start the index of the first character of the message
+     * @param end   the index after the last character of the message
+     * @return true if the message was well formed
+     */
+    public boolean parseWireRecord(CharSequence text, int start, int end) {
+        this.chars = text;
+        try {
+            return parseWireRecord(start, end);
+        } finally {
+            this.chars = null;
+        }
+    }
+
+    /**
+     * Parses only the data field of the wire format, as the simulator's outputs
+     * receive it: a number, optionally with a {@code %} suffix, or one of the
+     * alert payloads. Only the measurement value is set.
+     *
+     * @param data the data field
+     * @return true if the data was well formed
+     */
+    public boolean parseData(CharSequence data) {
+        this.chars = data;
+        try {
+            return parseData(0, data.length());
+        } finally {
+            this.chars = null;
+        }
+    }
+
+    /**
+     * Returns the patient ID of the last parsed record.
+     *
+     * @return the patient ID
+     */
+    public int getPatientId() {
+        return patientId;
+    }
+
+    /**
+     * Returns the record type code of the last parsed record.
+     *
+     * @return the record type code, see {@link RecordType}
+     */
+    public int getRecordTypeCode() {
+        return recordTypeCode;
+    }
+
+    /**
+     * Returns the measurement value of the last parsed record.
+     *
+     * @return the measurement value
+     */
+    public double getMeasurementValue() {
+        return measurementValue;
+    }
+
+    /**
+     * Returns the timestamp of the last parsed record.
+     *
+     * @return the timestamp in milliseconds since epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    private boolean parseFileRecord(int start, int end) {
+        end = trimLineEnd(start, end);
+        patientId = (int) parseLong(start, end, true);
+        if (!expectComma(end)) {
+            return false;
+        }
+        measurementValue = parseDouble(position, end);
+        if (!expectComma(end)) {
+            return false;
+        }
+        int typeStart = position;
+        int typeEnd = indexOf(',', typeStart, end);
+        if (typeEnd <= typeStart) {
+            return false;
+        }
+        recordTypeCode = recordTypeCode(typeStart, typeEnd);
+        timestamp = parseLong(typeEnd + 1, end, false);
+        return position == end;
+    }
+
+    private boolean parseWireRecord(int start, int end) {
+        end = trimLineEnd(start, end);
+        patientId = (int) parseLong(start, end, true);
+        if (!expectComma(end)) {
+            return false;
+        }
+        timestamp = parseLong(position, end, false);
+        if (!expectComma(end)) {
+            return false;
+        }
+        int labelStart = position;
+        int labelEnd = indexOf(',', labelStart, end);
+        if (labelEnd <= labelStart) {
+            return false;
+        }
+        if (!parseData(labelEnd + 1, end)) {
+            return false;
+        }
+        recordTypeCode = recordTypeCode(labelStart, labelEnd);
+        return true;
+    }
+
+    private boolean parseData(int start, int end) {
+        if (regionEquals(TRIGGERED, start, end)) {
+            measurementValue = ALERT_TRIGGERED;
+        } else if (regionEquals(RESOLVED, start, end)) {
+            measurementValue = ALERT_RESOLVED;
+        } else {
+            int dataEnd = end > start && at(end - 1) == '%' ? end - 1 : end;
+            measurementValue = parseDouble(start, dataEnd);
+            if (position != dataEnd) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int at(int index) {
+        return bytes != null ? bytes.get(index) : chars.charAt(index);
+    }
+
+    private int recordTypeCode(int start, int end) {
+        return bytes != null ? RecordType.codeOf(bytes, start, end) : RecordType.codeOf(chars, start, end);
+    }
+
+    private int trimLineEnd(int start, int end) {
+        while (end > start && (at(end - 1) == '\r' || at(end - 1) == '\n')) {
+            end--;
+        }
+        return end;
+    }
+
+    private boolean regionEquals(String expected, int start, int end) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (at(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean expectComma(int end) {
+        if (position < 0 || position >= end || at(position) != ',') {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    private int indexOf(char character, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (at(i) == character) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Parses a decimal integer, stopping at the first non-digit
+    private long parseLong(int start, int end, boolean intRange) {
+        int i = start;
+        boolean negative = i < end && at(i) == '-';
+        if (negative) {
+            i++;
+        }
+        int digitsStart = i;
+        long value = 0;
+        while (i < end) {
+            int digit = at(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                position = -1;
+                return 0;
+            }
+            value = value * 10 + digit;
+            i++;
+        }
+        if (i == digitsStart || (intRange && value > Integer.MAX_VALUE)) {
+            position = -1;
+            return 0;
+        }
+        position = i;
+        return negative ? -value : value;
+    }
+
+    // Parses a decimal floating point number, stopping at the first character that cannot belong to it
+    private double parseDouble(int start, int end) {
+        if (position < 0) {
+            return 0;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (at(i) == '-' || at(i) == '+')) {
+            negative = at(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            int c = at(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa == 0 && c == '0') {
+                    if (fraction) {
+                        exponent--;
+                    }
+                    continue; // leading zeros are not significant
+                }
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    significantDigits++;
+                    if (fraction) {
+                        exponent--;
+                    }
+                } else {
+                    significantDigits++;
+                    if (!fraction) {
+                        exponent++;
+                    }
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return slowParseDouble(start, end);
+        }
+        if (i < end && (at(i) == 'e' || at(i) == 'E')) {
+            int exponentStart = i + 1;
+            boolean negativeExponent = exponentStart < end && at(exponentStart) == '-';
+            if (exponentStart < end && (at(exponentStart) == '-' || at(exponentStart) == '+')) {
+                exponentStart++;
+            }
+            int explicitExponent = 0;
+            int j = exponentStart;
+            while (j < end && at(j) >= '0' && at(j) <= '9' && explicitExponent < 10000) {
+                explicitExponent = explicitExponent * 10 + (at(j) - '0');
+                j++;
+            }
+            if (j == exponentStart) {
+                position = -1;
+                return 0;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+            i = j;
+        }
+        position = i;
+
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (significantDigits <= MAX_EXACT_DIGITS && exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (significantDigits <= MAX_EXACT_DIGITS && exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            // Too many digits to round correctly with one multiplication
+            value = slowParseDouble(start, i);
+            position = i;
+            return value;
+        }
+        return negative ? -value : value;
+    }
+
+    private double slowParseDouble(int start, int end) {
+        int fieldEnd = indexOf(',', start, end);
+        if (fieldEnd < 0) {
+            fieldEnd = end;
+        }
+        String field;
+        if (bytes != null) {
+            byte[] copy = new byte[fieldEnd - start];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = bytes.get(start + i);
+            }
+            field = new String(copy, StandardCharsets.ISO_8859_1);
+        } else {
+            field = chars.subSequence(start, fieldEnd).toString();
+        }
+        try {
+            double value = Double.parseDouble(field);
+            position = fieldEnd;
+            return value;
+        } catch (NumberFormatException e) {
+            position = -1;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.data_management;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue of records for many producers and a single
+ * consumer. Records are stored in preallocated primitive arrays, so offering a
+ * record allocates nothing and never waits for the consumer: when the buffer is
+ * full, {@link #offer} simply returns false.
+ * <p>
+ * Every slot carries a sequence number that tells producers and the consumer
+ * whose turn it is to use the slot (the bounded queue described by Dmitry Vyukov).
+ */
+public class RecordRingBuffer {
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final int[] patientIds;
+    private final int[] recordTypeCodes;
+    private final double[] measurementValues;
+    private final long[] timestamps;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Constructs an empty buffer.
+     *
+     * @param capacity the minimum number of records the buffer holds; rounded up
+     *                 to a power of two
+     */
+    public RecordRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        patientIds = new int[size];
+        recordTypeCodes = new int[size];
+        measurementValues = new double[size];
+        timestamps = new long[size];
+    }
+
+    /**
+     * Adds a record if there is room for it. May be called from any thread.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordTypeCode   the record type code, see {@link RecordType}
+     * @param measurementValue the value of the health metric being recorded
+     * @param timestamp        the time of the measurement, in milliseconds since epoch
+     * @return true if the record was added, false if the buffer is full
+     */
+    public boolean offer(int patientId, int recordTypeCode, double measurementValue, long timestamp) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // the consumer has not freed this slot yet
+            } else {
+                position = tail.get();
+            }
+        }
+        int slot = (int) position & mask;
+        patientIds[slot] = patientId;
+        recordTypeCodes[slot] = recordTypeCode;
+        measurementValues[slot] = measurementValue;
+        timestamps[slot] = timestamp;
+        sequences.lazySet(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Moves up to {@code maxRecords} records, oldest first, into a batch. Must
+     * only be called from the single consumer thread.
+     *
+     * @param batch      the batch receiving the records
+     * @param maxRecords the maximum number of records to move
+     * @return the number of records moved
+     */
+    public int drainTo(RecordBatch batch, int maxRecords) {
+        long position = head.get();
+        int drained = 0;
+        while (drained < maxRecords) {
+            int slot = (int) position & mask;
+            if (sequences.get(slot) != position + 1) {
+                break; // empty, or a producer is still writing this slot
+            }
+            batch.add(patientIds[slot], recordTypeCodes[slot], measurementValues[slot], timestamps[slot]);
+            sequences.lazySet(slot, position + mask + 1);
+            position++;
+            drained++;
+        }
+        head.lazySet(position);
+        return drained;
+    }
+
+    /**
+     * Returns the approximate number of records waiting in the buffer.
+     *
+     * @return the number of queued records
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * Returns the number of records the buffer can hold.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,624 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar storage for the measurements of one record type of one patient.
+ * Timestamps and values are kept in parallel primitive arrays sorted by
+ * timestamp, so range lookups are a binary search and never touch samples
+ * outside the requested range.
+ * <p>
+ * Every series is guarded by its own lock, held only for the append or the
+ * binary search. Views are read after the lock is released, which is safe
+ * because samples covered by a view are never overwritten in place.
+ * <p>
+ * Under a {@link RetentionPolicy}, samples older than the raw window are
+ * removed from the front of the series and folded into per-minute and per-hour
+ * {@link RollupSeries}. Removed samples are only skipped over; their space is
+ * reclaimed the next time the arrays are reallocated.
+ * <p>
+ * Only the most recent samples are kept in the arrays. Once enough have
+ * accumulated, the oldest are sealed into an immutable {@link CompressedBlock},
+ * which needs a fraction of the memory and is decoded on the fly when a range
+ * reaches back into it. A late sample that belongs to a sealed block replaces
+ * that block with a re-encoded one.
+ * <p>
+ * Every sample is also added to a {@link SeriesSummary}, whose precomputed
+ * bucket summaries answer {@link #aggregate} queries without a scan.
+ */
+public class RecordSeries {
+    private static final int INITIAL_CAPACITY = 16;
+    /** Number of samples sealed into one compressed block. */
+    static final int BLOCK_SIZE = 1024;
+    // Samples are sealed once the arrays hold this many, so that the newest
+    // BLOCK_SIZE samples always stay uncompressed for late arrivals
+    private static final int SEAL_THRESHOLD = 2 * BLOCK_SIZE;
+    private static final CompressedBlock[] NO_BLOCKS = new CompressedBlock[0];
+
+    private final int patientId;
+    private final int recordTypeCode;
+    private long[] timestamps;
+    private double[] values;
+    // Live samples are stored at indices offset to size - 1
+    private int offset;
+    private int size;
+    // Upper bound of the indices handed out through views on the current arrays.
+    // Samples below this index must never be moved in place.
+    private int viewLimit;
+    // Sealed samples, older than those in the arrays, in time order. Replaced as
+    // a whole on change so that readers can decode them after releasing the lock.
+    private CompressedBlock[] blocks = NO_BLOCKS;
+    private int sealedCount;
+    private final RollupSeries minuteRollups;
+    private final RollupSeries hourRollups;
+    private final SeriesSummary summary = new SeriesSummary();
+
+    /**
+     * Constructs an empty series for the given patient and record type.
+     *
+     * @param patientId      the unique identifier of the patient
+     * @param recordTypeCode the type of record stored in this series, see {@link RecordType}
+     */
+    public RecordSeries(int patientId, int recordTypeCode) {
+        this(patientId, recordTypeCode, INITIAL_CAPACITY);
+    }
+
+    // For series that keep their samples elsewhere and leave the arrays unused
+    RecordSeries(int patientId, int recordTypeCode, int initialCapacity) {
+        this.patientId = patientId;
+        this.recordTypeCode = recordTypeCode;
+        this.timestamps = new long[initialCapacity];
+        this.values = new double[initialCapacity];
+        this.minuteRollups = new RollupSeries(patientId, recordTypeCode, RollupResolution.MINUTE);
+        this.hourRollups = new RollupSeries(patientId, recordTypeCode, RollupResolution.HOUR);
+    }
+
+    /**
+     * Adds a sample to the series. Samples arriving in time order are appended
+     * in amortized constant time; a late sample is inserted at its sorted
+     * position, which only shifts the samples that are newer than it.
+     *
+     * @param timestamp the time of the measurement, in milliseconds since UNIX epoch
+     * @param value     the measurement value
+     */
+    public synchronized void append(long timestamp, double value) {
+        summary.add(timestamp, value);
+        if (blocks.length > 0 && timestamp < blocks[blocks.length - 1].getLastTimestamp()) {
+            insertSealed(timestamp, value);
+        } else if (size == offset || timestamp >= timestamps[size - 1]) {
+            if (size == timestamps.length) {
+                reallocate(newCapacity());
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+            if (size - offset >= SEAL_THRESHOLD) {
+                seal();
+            }
+        } else {
+            insert(upperBound(timestamp), timestamp, value);
+        }
+    }
+
+    /**
+     * Returns a view of the samples whose timestamps fall within the given
+     * range, both bounds inclusive. The view shares the arrays of this series
+     * and is not affected by samples added afterwards. When the range reaches
+     * into sealed samples, the blocks it overlaps are decoded, after the lock
+     * is released, into arrays of the view's own.
+     *
+     * @param startTime the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime   the end of the time range, in milliseconds since UNIX epoch
+     * @return a view of the samples in the range, in timestamp order
+     */
+    public SeriesView range(long startTime, long endTime) {
+        CompressedBlock[] sealed;
+        SeriesView recent;
+        synchronized (this) {
+            sealed = blocks;
+            recent = recentRange(startTime, endTime);
+        }
+        int first = firstBlockEndingAtOrAfter(sealed, startTime);
+        if (first == sealed.length || sealed[first].getFirstTimestamp() > endTime || startTime > endTime) {
+            return recent;
+        }
+        int capacity = recent.size();
+        int last = first;
+        for (; last < sealed.length && sealed[last].getFirstTimestamp() <= endTime; last++) {
+            capacity += sealed[last].count();
+        }
+        long[] rangeTimestamps = new long[capacity];
+        double[] rangeValues = new double[capacity];
+        int count = 0;
+        for (int b = first; b < last; b++) {
+            count = sealed[b].decode(startTime, endTime, rangeTimestamps, rangeValues, count);
+        }
+        recent.copyTo(rangeTimestamps, rangeValues, count);
+        count += recent.size();
+        return new SeriesView(patientId, recordTypeCode, rangeTimestamps, rangeValues, 0, count);
+    }
+
+    /**
+     * Opens a cursor over the samples within a time range, both bounds
+     * inclusive. Sealed blocks are decoded one sample at a time as the cursor
+     * advances, so no sample is copied.
+     *
+     * @param startTime the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime   the end of the time range, in milliseconds since UNIX epoch
+     * @return a cursor positioned before the first sample in the range
+     */
+    public SampleCursor cursor(long startTime, long endTime) {
+        CompressedBlock[] sealed;
+        SeriesView recent;
+        synchronized (this) {
+            sealed = blocks;
+            recent = recentRange(startTime, endTime);
+        }
+        return new Cursor(sealed, firstBlockEndingAtOrAfter(sealed, startTime), recent, startTime, endTime);
+    }
+
+    /**
+     * Walks the sealed blocks of a range, then the view of the arrays.
+     */
+    private static final class Cursor implements SampleCursor {
+        private final CompressedBlock[] sealed;
+        private final SeriesView recent;
+        private final long startTime;
+        private final long endTime;
+        private int nextBlock;
+        private CompressedBlock.Decoder decoder;
+        private int recentIndex = -1;
+        private long timestamp;
+        private double value;
+
+        Cursor(CompressedBlock[] sealed, int firstBlock, SeriesView recent, long startTime, long endTime) {
+            this.sealed = sealed;
+            this.nextBlock = firstBlock;
+            this.recent = recent;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        @Override
+        public boolean next() {
+            while (recentIndex < 0) {
+                if (decoder == null) {
+                    if (nextBlock == sealed.length || sealed[nextBlock].getFirstTimestamp() > endTime) {
+                        recentIndex = 0;
+                        break;
+                    }
+                    decoder = sealed[nextBlock++].decoder();
+                }
+                while (decoder.next()) {
+                    long candidate = decoder.timestamp();
+                    if (candidate > endTime) {
+                        // Everything after this sample is later still
+                        nextBlock = sealed.length;
+                        recentIndex = recent.size();
+                        decoder = null;
+                        return false;
+                    }
+                    if (candidate >= startTime) {
+                        timestamp = candidate;
+                        value = decoder.value();
+                        return true;
+                    }
+                }
+                decoder = null;
+            }
+            if (recentIndex >= recent.size()) {
+                return false;
+            }
+            timestamp = recent.getTimestamp(recentIndex);
+            value = recent.getValue(recentIndex);
+            recentIndex++;
+            return true;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public double getValue() {
+            return value;
+        }
+    }
+
+    // Range over the samples held in the arrays; the caller holds the lock
+    private SeriesView recentRange(long startTime, long endTime) {
+        int from = lowerBound(startTime);
+        int to = upperBound(endTime);
+        if (from >= to) {
+            return SeriesView.empty(patientId, recordTypeCode);
+        }
+        viewLimit = Math.max(viewLimit, to);
+        return new SeriesView(patientId, recordTypeCode, timestamps, values, from, to);
+    }
+
+    /**
+     * Returns the number of samples in this series.
+     *
+     * @return the sample count
+     */
+    public synchronized int size() {
+        return size - offset + sealedCount;
+    }
+
+    /**
+     * Returns the approximate number of heap bytes taken by the samples of this
+     * series, sealed and not.
+     *
+     * @return the estimated size in bytes
+     */
+    public synchronized long estimateBytes() {
+        long bytes = 16L * timestamps.length + summary.estimateBytes();
+        for (CompressedBlock block : blocks) {
+            bytes += block.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the number of bytes taken by the samples of this series outside
+     * the heap, which is zero unless the storage uses an off-heap backend.
+     *
+     * @return the off-heap size in bytes
+     */
+    public long estimateOffHeapBytes() {
+        return 0L;
+    }
+
+    /**
+     * Returns the rollups of the given resolution that overlap a time range.
+     * Rollups only exist for samples that have been compacted.
+     *
+     * @param resolution the rollup resolution
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return the matching rollups, in time order
+     */
+    public List<Rollup> rollups(RollupResolution resolution, long startTime, long endTime) {
+        return rollupsOf(resolution).range(startTime, endTime);
+    }
+
+    /**
+     * Returns the minimum, maximum, sum, mean, count and latest sample within a
+     * time range, both bounds inclusive. Whole buckets of the {@link SeriesSummary}
+     * are combined from its segment tree; only the samples of the buckets the
+     * range covers in part are read, so the cost grows with the logarithm of
+     * the number of samples rather than with the samples in the range.
+     *
+     * @param startTime the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime   the end of the time range, in milliseconds since UNIX epoch
+     * @return the aggregates of the samples in the range
+     */
+    public Aggregate aggregate(long startTime, long endTime) {
+        SeriesSummary.Accumulator accumulator = new SeriesSummary.Accumulator();
+        synchronized (this) {
+            summary.addCovered(startTime, endTime, accumulator);
+        }
+        if (accumulator.coveredStart > accumulator.coveredEnd) {
+            addSamples(startTime, endTime, accumulator);
+        } else {
+            if (accumulator.coveredStart > startTime) {
+                addSamples(startTime, accumulator.coveredStart - 1, accumulator);
+            }
+            if (accumulator.coveredEnd < endTime) {
+                addSamples(accumulator.coveredEnd + 1, endTime, accumulator);
+            }
+        }
+        return accumulator.toAggregate(patientId, recordTypeCode, startTime, endTime);
+    }
+
+    /**
+     * Returns the aggregates of consecutive windows of a time range. Windows
+     * start at startTime and then every stepMillis, each covering windowMillis
+     * but never past endTime: a step equal to the window gives tumbling
+     * windows, a shorter one sliding windows.
+     *
+     * @param startTime    the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime      the end of the time range, in milliseconds since UNIX epoch
+     * @param windowMillis the length of each window
+     * @param stepMillis   the time from the start of one window to the start of the next
+     * @return the aggregates of the windows, in time order
+     * @throws IllegalArgumentException if the window or the step is not positive
+     */
+    public List<Aggregate> aggregate(long startTime, long endTime, long windowMillis, long stepMillis) {
+        if (windowMillis <= 0 || stepMillis <= 0) {
+            throw new IllegalArgumentException("Window and step must be positive: " + windowMillis + ", " + stepMillis);
+        }
+        List<Aggregate> windows = new ArrayList<>();
+        for (long windowStart = startTime; windowStart <= endTime; windowStart += stepMillis) {
+            long windowEnd = endTime - windowStart < windowMillis ? endTime : windowStart + windowMillis - 1;
+            windows.add(aggregate(windowStart, windowEnd));
+            if (endTime - windowStart < stepMillis) {
+                break;
+            }
+        }
+        return windows;
+    }
+
+    private void addSamples(long startTime, long endTime, SeriesSummary.Accumulator accumulator) {
+        SampleCursor samples = cursor(startTime, endTime);
+        while (samples.next()) {
+            accumulator.add(samples.getTimestamp(), samples.getValue());
+        }
+    }
+
+    /**
+     * Applies a retention policy: raw samples older than the raw window are
+     * folded into the minute and hour rollups and removed, and rollups past
+     * their own retention are dropped. The series lock is only held while the
+     * expired samples are cut off; they are aggregated after it is released, so
+     * appends are never held up by the aggregation.
+     *
+     * @param policy the retention policy to apply
+     * @param now    the current time, in milliseconds since UNIX epoch
+     */
+    public void compact(RetentionPolicy policy, long now) {
+        Expired expired = removeBefore(policy.rawCutoff(now));
+        for (CompressedBlock block : expired.blocks) {
+            addToRollups(block.toView(patientId, recordTypeCode));
+        }
+        addToRollups(expired.partialBlock);
+        addToRollups(expired.recent);
+        expireRollups(policy, now);
+    }
+
+    // Drops the rollups that are past their own retention
+    void expireRollups(RetentionPolicy policy, long now) {
+        minuteRollups.removeBefore(policy.minuteCutoff(now));
+        hourRollups.removeBefore(policy.hourCutoff(now));
+    }
+
+    // Folds samples removed from the raw history into the rollups
+    void addToRollups(SeriesView samples) {
+        if (!samples.isEmpty()) {
+            minuteRollups.add(samples);
+            hourRollups.add(samples);
+        }
+    }
+
+    /**
+     * Samples cut off by {@link #removeBefore}, in time order: whole blocks,
+     * the expired front of the block that straddled the cutoff, and the
+     * samples from the arrays.
+     */
+    private static final class Expired {
+        final CompressedBlock[] blocks;
+        final SeriesView partialBlock;
+        final SeriesView recent;
+
+        Expired(CompressedBlock[] blocks, SeriesView partialBlock, SeriesView recent) {
+            this.blocks = blocks;
+            this.partialBlock = partialBlock;
+            this.recent = recent;
+        }
+    }
+
+    // Cuts off the samples older than the cutoff. Whole expired blocks are
+    // returned still compressed, to be decoded after the lock is released.
+    private synchronized Expired removeBefore(long cutoff) {
+        int expiredBlocks = firstBlockEndingAtOrAfter(blocks, cutoff);
+        CompressedBlock[] removed = Arrays.copyOf(blocks, expiredBlocks);
+        for (CompressedBlock block : removed) {
+            sealedCount -= block.count();
+        }
+        CompressedBlock[] kept = Arrays.copyOfRange(blocks, expiredBlocks, blocks.length);
+        SeriesView partialBlock = SeriesView.empty(patientId, recordTypeCode);
+        if (kept.length > 0 && kept[0].getFirstTimestamp() < cutoff) {
+            CompressedBlock straddling = kept[0];
+            long[] blockTimestamps = new long[straddling.count()];
+            double[] blockValues = new double[straddling.count()];
+            straddling.decode(Long.MIN_VALUE, Long.MAX_VALUE, blockTimestamps, blockValues, 0);
+            int split = 0;
+            while (blockTimestamps[split] < cutoff) {
+                split++;
+            }
+            partialBlock = new SeriesView(patientId, recordTypeCode, blockTimestamps, blockValues, 0, split);
+            kept[0] = CompressedBlock.encode(blockTimestamps, blockValues, split, straddling.count());
+            sealedCount -= split;
+        }
+        if (kept.length != blocks.length || partialBlock.size() > 0) {
+            blocks = kept.length > 0 ? kept : NO_BLOCKS;
+        }
+
+        int to = lowerBound(cutoff);
+        SeriesView recent = SeriesView.empty(patientId, recordTypeCode);
+        if (to > offset) {
+            recent = new SeriesView(patientId, recordTypeCode, timestamps, values, offset, to);
+            viewLimit = Math.max(viewLimit, to);
+            offset = to;
+        }
+        summary.removeBefore(cutoff, this);
+        return new Expired(removed, partialBlock, recent);
+    }
+
+    // The bucket summaries, which subclasses keeping their samples elsewhere update under the lock
+    SeriesSummary summary() {
+        return summary;
+    }
+
+    RollupSeries rollupsOf(RollupResolution resolution) {
+        return resolution == RollupResolution.MINUTE ? minuteRollups : hourRollups;
+    }
+
+    /**
+     * Returns whether the series holds a sample with exactly this timestamp and
+     * value. Used to skip records that are replayed more than once.
+     *
+     * @param timestamp the time of the measurement, in milliseconds since UNIX epoch
+     * @param value     the measurement value
+     * @return true if such a sample is stored
+     */
+    public synchronized boolean contains(long timestamp, double value) {
+        for (int b = firstBlockEndingAtOrAfter(blocks, timestamp);
+             b < blocks.length && blocks[b].getFirstTimestamp() <= timestamp; b++) {
+            CompressedBlock.Decoder decoder = blocks[b].decoder();
+            while (decoder.next() && decoder.timestamp() <= timestamp) {
+                if (decoder.timestamp() == timestamp && Double.compare(decoder.value(), value) == 0) {
+                    return true;
+                }
+            }
+        }
+        for (int i = lowerBound(timestamp); i < size && timestamps[i] == timestamp; i++) {
+            if (Double.compare(values[i], value) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the ID of the patient this series belongs to.
+     *
+     * @return the patient ID
+     */
+    public int getPatientId() {
+        return patientId;
+    }
+
+    /**
+     * Returns the code of the record type stored in this series.
+     *
+     * @return the record type code, see {@link RecordType}
+     */
+    public int getRecordTypeCode() {
+        return recordTypeCode;
+    }
+
+    // Compresses the oldest BLOCK_SIZE samples of the arrays into a new block
+    private void seal() {
+        CompressedBlock block = CompressedBlock.encode(timestamps, values, offset, offset + BLOCK_SIZE);
+        CompressedBlock[] sealed = Arrays.copyOf(blocks, blocks.length + 1);
+        sealed[blocks.length] = block;
+        blocks = sealed;
+        sealedCount += BLOCK_SIZE;
+        offset += BLOCK_SIZE;
+    }
+
+    // Inserts a late sample into the sealed block it belongs to, by re-encoding the block
+    private void insertSealed(long timestamp, double value) {
+        // The last block starting at or before the timestamp, or the first block
+        int low = 1;
+        int high = blocks.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blocks[mid].getFirstTimestamp() <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int b = low - 1;
+        CompressedBlock block = blocks[b];
+        long[] blockTimestamps = new long[block.count() + 1];
+        double[] blockValues = new double[block.count() + 1];
+        block.decode(Long.MIN_VALUE, Long.MAX_VALUE, blockTimestamps, blockValues, 0);
+        int index = block.count();
+        while (index > 0 && blockTimestamps[index - 1] > timestamp) {
+            blockTimestamps[index] = blockTimestamps[index - 1];
+            blockValues[index] = blockValues[index - 1];
+            index--;
+        }
+        blockTimestamps[index] = timestamp;
+        blockValues[index] = value;
+        CompressedBlock[] sealed = blocks.clone();
+        sealed[b] = CompressedBlock.encode(blockTimestamps, blockValues, 0, blockTimestamps.length);
+        blocks = sealed;
+        sealedCount++;
+    }
+
+    // Index of the first block whose last timestamp is >= time
+    private static int firstBlockEndingAtOrAfter(CompressedBlock[] sealed, long time) {
+        int low = 0;
+        int high = sealed.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sealed[mid].getLastTimestamp() < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void insert(int index, long timestamp, double value) {
+        if (size == timestamps.length || index < viewLimit) {
+            // Build fresh arrays so that views handed out earlier keep their contents
+            int capacity = size == timestamps.length ? newCapacity() : timestamps.length;
+            long[] newTimestamps = new long[capacity];
+            double[] newValues = new double[capacity];
+            int before = index - offset;
+            System.arraycopy(timestamps, offset, newTimestamps, 0, before);
+            System.arraycopy(values, offset, newValues, 0, before);
+            System.arraycopy(timestamps, index, newTimestamps, before + 1, size - index);
+            System.arraycopy(values, index, newValues, before + 1, size - index);
+            timestamps = newTimestamps;
+            values = newValues;
+            size -= offset;
+            offset = 0;
+            viewLimit = 0;
+            index = before;
+        } else {
+            System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+        }
+        timestamps[index] = timestamp;
+        values[index] = value;
+        size++;
+    }
+
+    private int newCapacity() {
+        int live = size - offset;
+        return Math.max(INITIAL_CAPACITY, live + (live >> 1) + 1);
+    }
+
+    // Moves the live samples to the front of new arrays of the given capacity
+    private void reallocate(int capacity) {
+        long[] newTimestamps = new long[capacity];
+        double[] newValues = new double[capacity];
+        System.arraycopy(timestamps, offset, newTimestamps, 0, size - offset);
+        System.arraycopy(values, offset, newValues, 0, size - offset);
+        timestamps = newTimestamps;
+        values = newValues;
+        size -= offset;
+        offset = 0;
+        viewLimit = 0;
+    }
+
+    // Index of the first sample with a timestamp >= time
+    private int lowerBound(long time) {
+        int low = offset;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index of the first sample with a timestamp > time
+    private int upperBound(long time) {
+        int low = offset;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
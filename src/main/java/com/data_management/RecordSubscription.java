@@ -0,0 +1,181 @@
+package com.data_management;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A registration for records arriving in a {@link DataStorage}. Matching
+ * records are queued in a bounded {@link RecordRingBuffer} by the ingesting
+ * thread and delivered in batches to the listener on a dedicated thread, so a
+ * slow consumer never runs on, or waits for, the thread that stores the data.
+ * <p>
+ * What happens when the consumer falls behind and the buffer fills up is set by
+ * the {@link OverflowPolicy}.
+ */
+public final class RecordSubscription implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(RecordSubscription.class.getName());
+    private static final AtomicInteger threadIds = new AtomicInteger();
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+    private static final long FULL_PARK_NANOS = 50_000L;
+    /** Longest time {@link OverflowPolicy#BLOCK_THEN_DROP} waits for the consumer to make room. */
+    public static final long BLOCK_TIMEOUT_MILLIS = 100L;
+
+    /**
+     * Decides what a producer does with a record when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Drop the record and count it; the producer never waits. */
+        DROP,
+        /** Wait until the consumer makes room; suited to bulk loads that can be slowed down. */
+        BLOCK,
+        /**
+         * Wait until the consumer makes room, but drop the record and count it if it
+         * has not done so within {@link RecordSubscription#BLOCK_TIMEOUT_MILLIS}.
+         * Until the consumer makes room again, later records are dropped without
+         * waiting, so a stuck consumer stalls ingestion only once.
+         */
+        BLOCK_THEN_DROP
+    }
+
+    private final DataStorage storage;
+    private final RecordFilter filter;
+    private final RecordBatchListener listener;
+    private final OverflowPolicy overflowPolicy;
+    private final RecordRingBuffer buffer;
+    private final RecordBatch batch;
+    private final int maxBatchSize;
+    private final Thread dispatcher;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+    private volatile boolean idle;
+    // Set when a BLOCK_THEN_DROP wait timed out, until a record fits again
+    private volatile boolean stalled;
+
+    RecordSubscription(DataStorage storage, RecordFilter filter, RecordBatchListener listener,
+                       int capacity, int maxBatchSize, OverflowPolicy overflowPolicy) {
+        this.storage = storage;
+        this.filter = filter;
+        this.listener = listener;
+        this.overflowPolicy = overflowPolicy;
+        this.buffer = new RecordRingBuffer(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.batch = new RecordBatch(maxBatchSize);
+        this.dispatcher = new Thread(this::dispatch, "record-subscription-" + threadIds.incrementAndGet());
+        this.dispatcher.setDaemon(true);
+    }
+
+    void start() {
+        dispatcher.start();
+    }
+
+    /**
+     * Queues a record for delivery if it passes the filter. Called by the storage
+     * on the ingesting thread.
+     */
+    void publish(int patientId, int recordTypeCode, double measurementValue, long timestamp) {
+        if (!filter.matches(patientId, recordTypeCode)) {
+            return;
+        }
+        long deadline = 0L;
+        while (!buffer.offer(patientId, recordTypeCode, measurementValue, timestamp)) {
+            if (overflowPolicy == OverflowPolicy.BLOCK_THEN_DROP && !stalled) {
+                if (deadline == 0L) {
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BLOCK_TIMEOUT_MILLIS);
+                } else if (System.nanoTime() - deadline > 0) {
+                    stalled = true;
+                }
+            }
+            if (overflowPolicy == OverflowPolicy.DROP || stalled || closed) {
+                if (dropped.getAndIncrement() == 0) {
+                    logger.warning(dispatcher.getName() + " is dropping records: its consumer cannot keep up");
+                }
+                return;
+            }
+            LockSupport.unpark(dispatcher);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        if (stalled) {
+            stalled = false;
+        }
+        if (idle) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    private void dispatch() {
+        while (!closed || buffer.size() > 0) {
+            if (buffer.drainTo(batch, maxBatchSize) == 0) {
+                idle = true;
+                if (buffer.size() == 0 && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+                continue;
+            }
+            try {
+                listener.onRecords(batch);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Record listener failed on a batch of " + batch.size() + " records", e);
+            }
+            delivered.addAndGet(batch.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * Returns the number of records handed to the listener so far.
+     *
+     * @return the delivered record count
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * Returns the number of records dropped because the buffer was full.
+     *
+     * @return the dropped record count
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of records waiting to be delivered. Producers that can
+     * afford to wait may use this to slow down before records are dropped.
+     *
+     * @return the queued record count
+     */
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    /**
+     * Stops receiving new records. Records already queued are still delivered
+     * before the delivery thread ends.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            storage.unsubscribe(this);
+            closed = true;
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * Closes the subscription and waits for the queued records to be delivered.
+     *
+     * @param timeoutMillis the maximum time to wait, in milliseconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void closeAndAwait(long timeoutMillis) throws InterruptedException {
+        close();
+        dispatcher.join(timeoutMillis);
+    }
+}
@@ -0,0 +1,152 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry that interns record type labels, such as "ECG" or "Saturation", as
+ * small integer codes. Records and series store the code, so comparing record
+ * types is an int comparison. Labels that are not known in advance are
+ * registered the first time they are seen.
+ */
+public final class RecordType {
+    private static final ConcurrentMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private static volatile String[] labels = new String[0];
+
+    public static final int ECG = register("ECG");
+    public static final int SATURATION = register("Saturation");
+    public static final int SYSTOLIC_PRESSURE = register("SystolicPressure");
+    public static final int DIASTOLIC_PRESSURE = register("DiastolicPressure");
+    public static final int HEART_RATE = register("HeartRate");
+    public static final int ALERT = register("Alert");
+    public static final int CHOLESTEROL = register("Cholesterol");
+    public static final int WHITE_BLOOD_CELLS = register("WhiteBloodCells");
+    public static final int RED_BLOOD_CELLS = register("RedBloodCells");
+
+    private RecordType() {}
+
+    /**
+     * Returns the code of a record type label, registering the label if it has
+     * not been seen before.
+     *
+     * @param label the record type label, e.g. "SystolicPressure"
+     * @return the code of the label
+     * @throws IllegalArgumentException if the label is null
+     */
+    public static int codeOf(String label) {
+        if (label == null) {
+            throw new IllegalArgumentException("Record type label is null");
+        }
+        Integer code = codes.get(label);
+        return code != null ? code : register(label);
+    }
+
+    /**
+     * Returns the code of a record type label stored as bytes, registering the
+     * label if it has not been seen before. Known ASCII labels are matched
+     * without creating a String.
+     *
+     * @param bytes the buffer holding the label
+     * @param start the index of the first byte of the label
+     * @param end   the index after the last byte of the label
+     * @return the code of the label
+     */
+    public static int codeOf(ByteBuffer bytes, int start, int end) {
+        String[] current = labels;
+        int length = end - start;
+        for (int code = 0; code < current.length; code++) {
+            String label = current[code];
+            if (label.length() == length && matches(label, bytes, start)) {
+                return code;
+            }
+        }
+        byte[] copy = new byte[length];
+        for (int i = 0; i < length; i++) {
+            copy[i] = bytes.get(start + i);
+        }
+        return codeOf(new String(copy, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the code of a record type label held in a region of a character
+     * sequence, registering the label if it has not been seen before. Known
+     * labels are matched without creating a String.
+     *
+     * @param chars the characters holding the label
+     * @param start the index of the first character of the label
+     * @param end   the index after the last character of the label
+     * @return the code of the label
+     */
+    public static int codeOf(CharSequence chars, int start, int end) {
+        String[] current = labels;
+        int length = end - start;
+        for (int code = 0; code < current.length; code++) {
+            String label = current[code];
+            if (label.length() == length && matches(label, chars, start)) {
+                return code;
+            }
+        }
+        return codeOf(chars.subSequence(start, end).toString());
+    }
+
+    private static boolean matches(String label, CharSequence chars, int start) {
+        for (int i = 0; i < label.length(); i++) {
+            if (chars.charAt(start + i) != label.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String label, ByteBuffer bytes, int start) {
+        for (int i = 0; i < label.length(); i++) {
+            if (bytes.get(start + i) != label.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the label registered for a record type code.
+     *
+     * @param code a code returned by {@link #codeOf(String)}
+     * @return the record type label
+     * @throws IllegalArgumentException if no label is registered for the code
+     */
+    public static String labelOf(int code) {
+        String[] current = labels;
+        if (code < 0 || code >= current.length) {
+            throw new IllegalArgumentException("Unknown record type code: " + code);
+        }
+        return current[code];
+    }
+
+    /**
+     * Returns the number of registered record types. Codes are assigned
+     * densely, so every code is smaller than this count.
+     *
+     * @return the number of registered record types
+     */
+    public static int count() {
+        return labels.length;
+    }
+
+    private static synchronized int register(String label) {
+        Integer existing = codes.get(label);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = labels;
+        int code = current.length;
+        String[] updated = Arrays.copyOf(current, code + 1);
+        updated[code] = label;
+        // Publish the label before the code so labelOf never sees a missing entry
+        labels = updated;
+        codes.put(label, code);
+        return code;
+    }
+}
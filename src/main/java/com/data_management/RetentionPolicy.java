@@ -0,0 +1,82 @@
+package com.data_management;
+
+/**
+ * Decides how long patient history is kept at each resolution. Raw samples are
+ * kept for the raw window; older samples are summarized into per-minute and
+ * per-hour {@link Rollup}s, which are in turn kept for their own windows.
+ * Windows are measured back from the time compaction runs.
+ */
+public class RetentionPolicy {
+    /** Retention value meaning "never expire". */
+    public static final long FOREVER = Long.MAX_VALUE;
+
+    private final long rawRetentionMillis;
+    private final long minuteRetentionMillis;
+    private final long hourRetentionMillis;
+
+    /**
+     * Constructs a retention policy.
+     *
+     * @param rawRetentionMillis    how long raw samples are kept, in milliseconds
+     * @param minuteRetentionMillis how long minute rollups are kept, in milliseconds
+     * @param hourRetentionMillis   how long hour rollups are kept, in milliseconds,
+     *                              or {@link #FOREVER}
+     * @throws IllegalArgumentException if a window is negative, or a coarser
+     *                                  resolution is kept for less time than a finer one
+     */
+    public RetentionPolicy(long rawRetentionMillis, long minuteRetentionMillis, long hourRetentionMillis) {
+        if (rawRetentionMillis < 0 || minuteRetentionMillis < rawRetentionMillis
+                || hourRetentionMillis < minuteRetentionMillis) {
+            throw new IllegalArgumentException("Retention windows must satisfy 0 <= raw <= minute <= hour, got "
+                    + rawRetentionMillis + ", " + minuteRetentionMillis + ", " + hourRetentionMillis);
+        }
+        this.rawRetentionMillis = rawRetentionMillis;
+        this.minuteRetentionMillis = minuteRetentionMillis;
+        this.hourRetentionMillis = hourRetentionMillis;
+    }
+
+    /**
+     * Returns how long raw samples are kept.
+     *
+     * @return the raw window in milliseconds
+     */
+    public long getRawRetentionMillis() {
+        return rawRetentionMillis;
+    }
+
+    /**
+     * Returns how long minute rollups are kept.
+     *
+     * @return the minute rollup window in milliseconds
+     */
+    public long getMinuteRetentionMillis() {
+        return minuteRetentionMillis;
+    }
+
+    /**
+     * Returns how long hour rollups are kept.
+     *
+     * @return the hour rollup window in milliseconds, or {@link #FOREVER}
+     */
+    public long getHourRetentionMillis() {
+        return hourRetentionMillis;
+    }
+
+    long rawCutoff(long now) {
+        return cutoff(now, rawRetentionMillis);
+    }
+
+    long minuteCutoff(long now) {
+        return cutoff(now, minuteRetentionMillis);
+    }
+
+    long hourCutoff(long now) {
+        return cutoff(now, hourRetentionMillis);
+    }
+
+    // Oldest time still inside a window ending now, without overflowing for long windows
+    private static long cutoff(long now, long retentionMillis) {
+        long cutoff = now - retentionMillis;
+        return cutoff > now ? Long.MIN_VALUE : cutoff;
+    }
+}
@@ -0,0 +1,122 @@
+package com.data_management;
+
+/**
+ * Summary of the samples of one record type of one patient within a fixed
+ * time interval: their minimum, maximum, mean and count. Rollups replace raw
+ * samples once those fall outside the raw window of a {@link RetentionPolicy}.
+ */
+public class Rollup {
+    private final int patientId;
+    private final int recordTypeCode;
+    private final RollupResolution resolution;
+    private final long startTime;
+    private final double min;
+    private final double max;
+    private final double mean;
+    private final long count;
+
+    /**
+     * Constructs a rollup.
+     *
+     * @param patientId      the unique identifier of the patient
+     * @param recordTypeCode the record type code, see {@link RecordType}
+     * @param resolution     the length of the summarized interval
+     * @param startTime      the start of the interval, in milliseconds since UNIX epoch
+     * @param min            the smallest measurement value in the interval
+     * @param max            the largest measurement value in the interval
+     * @param mean           the mean of the measurement values in the interval
+     * @param count          the number of samples in the interval
+     */
+    public Rollup(int patientId, int recordTypeCode, RollupResolution resolution, long startTime,
+                  double min, double max, double mean, long count) {
+        this.patientId = patientId;
+        this.recordTypeCode = recordTypeCode;
+        this.resolution = resolution;
+        this.startTime = startTime;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.count = count;
+    }
+
+    /**
+     * Returns the patient ID.
+     *
+     * @return the patient ID
+     */
+    public int getPatientId() {
+        return patientId;
+    }
+
+    /**
+     * Returns the record type label.
+     *
+     * @return the record type, e.g. "ECG"
+     */
+    public String getRecordType() {
+        return RecordType.labelOf(recordTypeCode);
+    }
+
+    /**
+     * Returns the record type code.
+     *
+     * @return the record type code, see {@link RecordType}
+     */
+    public int getRecordTypeCode() {
+        return recordTypeCode;
+    }
+
+    /**
+     * Returns the length of the summarized interval.
+     *
+     * @return the resolution
+     */
+    public RollupResolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Returns the start of the summarized interval.
+     *
+     * @return the start time in milliseconds since UNIX epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the smallest measurement value in the interval.
+     *
+     * @return the minimum
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the largest measurement value in the interval.
+     *
+     * @return the maximum
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the measurement values in the interval.
+     *
+     * @return the mean
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the number of samples summarized.
+     *
+     * @return the sample count
+     */
+    public long getCount() {
+        return count;
+    }
+}
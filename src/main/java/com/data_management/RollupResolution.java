@@ -0,0 +1,36 @@
+package com.data_management;
+
+/**
+ * The time resolutions at which compacted samples are summarized.
+ */
+public enum RollupResolution {
+    /** One rollup per minute. */
+    MINUTE(60_000L),
+    /** One rollup per hour. */
+    HOUR(3_600_000L);
+
+    private final long millis;
+
+    RollupResolution(long millis) {
+        this.millis = millis;
+    }
+
+    /**
+     * Returns the length of one rollup interval.
+     *
+     * @return the interval length in milliseconds
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Returns the start of the interval that contains a timestamp.
+     *
+     * @param timestamp a time in milliseconds since UNIX epoch
+     * @return the start of its interval, in milliseconds since UNIX epoch
+     */
+    public long intervalStart(long timestamp) {
+        return Math.floorDiv(timestamp, millis) * millis;
+    }
+}
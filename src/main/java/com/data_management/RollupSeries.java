@@ -0,0 +1,178 @@
+package com.data_management;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The rollups of one record type of one patient at one resolution, kept in
+ * parallel primitive arrays ordered by interval start. Samples are merged into
+ * the rollup of their interval, so an interval compacted in several passes, or
+ * receiving a late sample, still ends up as a single rollup.
+ */
+public class RollupSeries {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final int patientId;
+    private final int recordTypeCode;
+    private final RollupResolution resolution;
+    private long[] startTimes = new long[0];
+    private double[] mins = new double[0];
+    private double[] maxs = new double[0];
+    private double[] sums = new double[0];
+    private long[] counts = new long[0];
+    private int size;
+
+    /**
+     * Constructs an empty rollup series.
+     *
+     * @param patientId      the unique identifier of the patient
+     * @param recordTypeCode the record type code, see {@link RecordType}
+     * @param resolution     the length of each rollup interval
+     */
+    public RollupSeries(int patientId, int recordTypeCode, RollupResolution resolution) {
+        this.patientId = patientId;
+        this.recordTypeCode = recordTypeCode;
+        this.resolution = resolution;
+    }
+
+    /**
+     * Folds time-ordered samples into the rollups of their intervals.
+     *
+     * @param samples the samples to add, in timestamp order
+     */
+    public synchronized void add(SeriesView samples) {
+        int i = 0;
+        while (i < samples.size()) {
+            long startTime = resolution.intervalStart(samples.getTimestamp(i));
+            long endTime = startTime + resolution.getMillis();
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            long count = 0;
+            for (; i < samples.size() && samples.getTimestamp(i) < endTime; i++) {
+                double value = samples.getValue(i);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+                count++;
+            }
+            merge(startTime, min, max, sum, count);
+        }
+    }
+
+    /**
+     * Removes the rollups whose interval ends at or before the cutoff.
+     *
+     * @param cutoff the oldest time to keep, in milliseconds since UNIX epoch
+     */
+    public synchronized void removeBefore(long cutoff) {
+        int removed = 0;
+        while (removed < size && startTimes[removed] + resolution.getMillis() <= cutoff) {
+            removed++;
+        }
+        if (removed > 0) {
+            int remaining = size - removed;
+            System.arraycopy(startTimes, removed, startTimes, 0, remaining);
+            System.arraycopy(mins, removed, mins, 0, remaining);
+            System.arraycopy(maxs, removed, maxs, 0, remaining);
+            System.arraycopy(sums, removed, sums, 0, remaining);
+            System.arraycopy(counts, removed, counts, 0, remaining);
+            size = remaining;
+        }
+    }
+
+    /**
+     * Returns the rollups whose interval overlaps a time range.
+     *
+     * @param startTime the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime   the end of the time range, in milliseconds since UNIX epoch
+     * @return the matching rollups, in time order
+     */
+    public synchronized List<Rollup> range(long startTime, long endTime) {
+        List<Rollup> rollups = new ArrayList<>();
+        for (int i = search(resolution.intervalStart(startTime)); i < size && startTimes[i] <= endTime; i++) {
+            rollups.add(new Rollup(patientId, recordTypeCode, resolution, startTimes[i],
+                    mins[i], maxs[i], sums[i] / counts[i], counts[i]));
+        }
+        return rollups;
+    }
+
+    /**
+     * Returns the number of rollups.
+     *
+     * @return the rollup count
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    // Writes the rollups in the snapshot format read by readFrom
+    synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(startTimes[i]);
+            out.writeDouble(mins[i]);
+            out.writeDouble(maxs[i]);
+            out.writeDouble(sums[i]);
+            out.writeLong(counts[i]);
+        }
+    }
+
+    // Merges rollups written by writeTo into this series
+    synchronized void readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            merge(in.readLong(), in.readDouble(), in.readDouble(), in.readDouble(), in.readLong());
+        }
+    }
+
+    private void merge(long startTime, double min, double max, double sum, long count) {
+        int index = size > 0 && startTimes[size - 1] < startTime ? size : search(startTime);
+        if (index < size && startTimes[index] == startTime) {
+            mins[index] = Math.min(mins[index], min);
+            maxs[index] = Math.max(maxs[index], max);
+            sums[index] += sum;
+            counts[index] += count;
+            return;
+        }
+        if (size == startTimes.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+            startTimes = Arrays.copyOf(startTimes, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxs = Arrays.copyOf(maxs, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        int moved = size - index;
+        System.arraycopy(startTimes, index, startTimes, index + 1, moved);
+        System.arraycopy(mins, index, mins, index + 1, moved);
+        System.arraycopy(maxs, index, maxs, index + 1, moved);
+        System.arraycopy(sums, index, sums, index + 1, moved);
+        System.arraycopy(counts, index, counts, index + 1, moved);
+        startTimes[index] = startTime;
+        mins[index] = min;
+        maxs[index] = max;
+        sums[index] = sum;
+        counts[index] = count;
+        size++;
+    }
+
+    // Index of the first rollup starting at or after the given time
+    private int search(long startTime) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (startTimes[mid] < startTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
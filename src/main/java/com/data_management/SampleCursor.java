@@ -0,0 +1,32 @@
+package com.data_management;
+
+/**
+ * Iterates over the samples of one record type of one patient, in timestamp
+ * order, without creating a {@link PatientRecord} or copying the samples. A
+ * cursor sees the samples that were stored when it was opened. It starts
+ * before the first sample; call {@link #next()} to move to it.
+ * <p>
+ * A cursor is used by a single thread.
+ */
+public interface SampleCursor {
+    /**
+     * Moves to the next sample.
+     *
+     * @return true if there is a next sample, false if the cursor is exhausted
+     */
+    boolean next();
+
+    /**
+     * Returns the timestamp of the current sample.
+     *
+     * @return the timestamp in milliseconds since UNIX epoch
+     */
+    long getTimestamp();
+
+    /**
+     * Returns the measurement value of the current sample.
+     *
+     * @return the measurement value
+     */
+    double getValue();
+}
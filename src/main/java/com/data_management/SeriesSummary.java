@@ -0,0 +1,287 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed summaries of the samples of one series, for aggregate queries
+ * that cost O(log n) instead of a scan.
+ * <p>
+ * Samples are grouped into buckets of consecutive samples, {@link #BUCKET_SIZE}
+ * each as they are appended. A bucket covers the time from its first to its
+ * last sample, and no sample of another bucket lies within it, so a late
+ * sample joins the bucket whose time it falls into. The minimum, maximum, sum
+ * and count of each bucket are the leaves of a segment tree, whose inner nodes
+ * summarize the buckets below them; any run of buckets then combines from
+ * O(log n) nodes. Only the samples of the buckets at either end of a time
+ * range, which the range covers in part, are read one by one.
+ * <p>
+ * The newest bucket, which every in-order append changes, is kept out of its
+ * parent nodes until it is full, so an append only updates its leaf.
+ * <p>
+ * Not thread-safe: the owning {@link RecordSeries} calls it under its lock.
+ */
+final class SeriesSummary {
+    /** Number of appended samples per bucket. */
+    static final int BUCKET_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 4;
+
+    // Per bucket, at indexes first to size - 1
+    private long[] firstTimestamps = new long[INITIAL_CAPACITY];
+    private long[] lastTimestamps = new long[INITIAL_CAPACITY];
+    private double[] lastValues = new double[INITIAL_CAPACITY];
+    private int first;
+    private int size;
+    // The segment tree: node 1 is the root, node n has children 2n and 2n + 1,
+    // and bucket b is the leaf capacity + b
+    private int capacity = INITIAL_CAPACITY;
+    private double[] mins = new double[2 * INITIAL_CAPACITY];
+    private double[] maxs = new double[2 * INITIAL_CAPACITY];
+    private double[] sums = new double[2 * INITIAL_CAPACITY];
+    private long[] counts = new long[2 * INITIAL_CAPACITY];
+
+    SeriesSummary() {
+        clear(1, 2 * capacity);
+    }
+
+    /**
+     * Adds a sample to the bucket it belongs to.
+     *
+     * @param timestamp the time of the sample, in milliseconds since UNIX epoch
+     * @param value     the measurement value
+     */
+    void add(long timestamp, double value) {
+        int last = size - 1;
+        if (size == first || (timestamp > lastTimestamps[last] && counts[capacity + last] >= BUCKET_SIZE)) {
+            if (size > first) {
+                // The newest bucket is full: from now on its parents include it
+                propagate(last);
+            }
+            openBucket(timestamp);
+            last = size - 1;
+        }
+        int b = timestamp >= firstTimestamps[last] ? last : bucketOf(timestamp);
+        int leaf = capacity + b;
+        mins[leaf] = Math.min(mins[leaf], value);
+        maxs[leaf] = Math.max(maxs[leaf], value);
+        sums[leaf] += value;
+        counts[leaf]++;
+        firstTimestamps[b] = Math.min(firstTimestamps[b], timestamp);
+        if (timestamp >= lastTimestamps[b]) {
+            lastTimestamps[b] = timestamp;
+            lastValues[b] = value;
+        }
+        if (b != last) {
+            propagate(b);
+        }
+    }
+
+    /**
+     * Drops the samples before the cutoff, once the series has removed them.
+     *
+     * @param cutoff the oldest time kept, in milliseconds since UNIX epoch
+     * @param series the series, to read the kept samples of a bucket the cutoff splits
+     */
+    void removeBefore(long cutoff, RecordSeries series) {
+        while (first < size && lastTimestamps[first] < cutoff) {
+            first++;
+        }
+        if (first == size) {
+            first = 0;
+            size = 0;
+            clear(1, 2 * capacity);
+            return;
+        }
+        if (firstTimestamps[first] < cutoff) {
+            int leaf = capacity + first;
+            clear(leaf, leaf + 1);
+            firstTimestamps[first] = Long.MAX_VALUE;
+            lastTimestamps[first] = Long.MIN_VALUE;
+            SampleCursor kept = series.cursor(cutoff, Long.MAX_VALUE);
+            // The bucket's samples come first among those kept
+            while (kept.next() && (first == size - 1 || kept.getTimestamp() < firstTimestamps[first + 1])) {
+                double value = kept.getValue();
+                mins[leaf] = Math.min(mins[leaf], value);
+                maxs[leaf] = Math.max(maxs[leaf], value);
+                sums[leaf] += value;
+                counts[leaf]++;
+                firstTimestamps[first] = Math.min(firstTimestamps[first], kept.getTimestamp());
+                lastTimestamps[first] = kept.getTimestamp();
+                lastValues[first] = value;
+            }
+            if (first != size - 1) {
+                propagate(first);
+            }
+        }
+    }
+
+    /**
+     * Adds the buckets that a time range covers in full to an accumulator, and
+     * records the time they span in it.
+     *
+     * @param startTime   the start of the range, in milliseconds since UNIX epoch
+     * @param endTime     the end of the range, inclusive
+     * @param accumulator receives the summaries of the covered buckets
+     */
+    void addCovered(long startTime, long endTime, Accumulator accumulator) {
+        // Both timestamp arrays increase from bucket to bucket
+        int from = search(firstTimestamps, startTime);
+        int to = endTime == Long.MAX_VALUE ? size : search(lastTimestamps, endTime + 1);
+        if (from >= to) {
+            return;
+        }
+        int last = size - 1;
+        int treeTo = to == size ? last : to;
+        for (int l = capacity + from, r = capacity + treeTo; l < r; l >>>= 1, r >>>= 1) {
+            if ((l & 1) == 1) {
+                accumulator.add(mins[l], maxs[l], sums[l], counts[l]);
+                l++;
+            }
+            if ((r & 1) == 1) {
+                r--;
+                accumulator.add(mins[r], maxs[r], sums[r], counts[r]);
+            }
+        }
+        if (to == size) {
+            int leaf = capacity + last;
+            accumulator.add(mins[leaf], maxs[leaf], sums[leaf], counts[leaf]);
+        }
+        accumulator.addLast(lastTimestamps[to - 1], lastValues[to - 1]);
+        accumulator.coveredStart = firstTimestamps[from];
+        accumulator.coveredEnd = lastTimestamps[to - 1];
+    }
+
+    /**
+     * Returns the approximate number of heap bytes taken by the summaries.
+     */
+    long estimateBytes() {
+        return 24L * firstTimestamps.length + 64L * capacity;
+    }
+
+    // Index of the first live bucket whose timestamp in the array is >= time
+    private int search(long[] timestamps, long time) {
+        int low = first;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // The bucket a late sample falls into: the last one starting at or before it, or the first
+    private int bucketOf(long timestamp) {
+        return Math.max(first, search(firstTimestamps, timestamp + 1) - 1);
+    }
+
+    private void openBucket(long timestamp) {
+        if (size == capacity) {
+            rebuild();
+        }
+        firstTimestamps[size] = timestamp;
+        lastTimestamps[size] = timestamp;
+        size++;
+    }
+
+    // Moves the live buckets to the front, doubling the capacity if that frees no room
+    private void rebuild() {
+        int live = size - first;
+        int newCapacity = live < capacity / 2 ? capacity : capacity * 2;
+        double[] newMins = new double[2 * newCapacity];
+        double[] newMaxs = new double[2 * newCapacity];
+        double[] newSums = new double[2 * newCapacity];
+        long[] newCounts = new long[2 * newCapacity];
+        System.arraycopy(mins, capacity + first, newMins, newCapacity, live);
+        System.arraycopy(maxs, capacity + first, newMaxs, newCapacity, live);
+        System.arraycopy(sums, capacity + first, newSums, newCapacity, live);
+        System.arraycopy(counts, capacity + first, newCounts, newCapacity, live);
+        firstTimestamps = Arrays.copyOf(Arrays.copyOfRange(firstTimestamps, first, size), newCapacity);
+        lastTimestamps = Arrays.copyOf(Arrays.copyOfRange(lastTimestamps, first, size), newCapacity);
+        lastValues = Arrays.copyOf(Arrays.copyOfRange(lastValues, first, size), newCapacity);
+        mins = newMins;
+        maxs = newMaxs;
+        sums = newSums;
+        counts = newCounts;
+        capacity = newCapacity;
+        first = 0;
+        size = live;
+        clear(capacity + size, 2 * capacity);
+        // Every inner node, the newest bucket's parents included, which it only
+        // affects once it is full
+        for (int node = capacity - 1; node >= 1; node--) {
+            combine(node);
+        }
+    }
+
+    // Recomputes the parents of a bucket
+    private void propagate(int bucket) {
+        for (int node = (capacity + bucket) >>> 1; node >= 1; node >>>= 1) {
+            combine(node);
+        }
+    }
+
+    private void combine(int node) {
+        int left = 2 * node;
+        int right = left + 1;
+        mins[node] = Math.min(mins[left], mins[right]);
+        maxs[node] = Math.max(maxs[left], maxs[right]);
+        sums[node] = sums[left] + sums[right];
+        counts[node] = counts[left] + counts[right];
+    }
+
+    private void clear(int from, int to) {
+        Arrays.fill(mins, from, to, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxs, from, to, Double.NEGATIVE_INFINITY);
+        Arrays.fill(sums, from, to, 0);
+        Arrays.fill(counts, from, to, 0);
+    }
+
+    /**
+     * Combines samples and bucket summaries into an {@link Aggregate}.
+     */
+    static final class Accumulator {
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double sum;
+        private long count;
+        private long lastTimestamp = Long.MIN_VALUE;
+        private double last = Double.NaN;
+        // The time spanned by the buckets added whole, if any
+        long coveredStart = Long.MAX_VALUE;
+        long coveredEnd = Long.MIN_VALUE;
+
+        void add(long timestamp, double value) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            count++;
+            addLast(timestamp, value);
+        }
+
+        void add(double min, double max, double sum, long count) {
+            this.min = Math.min(this.min, min);
+            this.max = Math.max(this.max, max);
+            this.sum += sum;
+            this.count += count;
+        }
+
+        void addLast(long timestamp, double value) {
+            // Of samples with the same timestamp, the one added later is later
+            if (timestamp >= lastTimestamp) {
+                lastTimestamp = timestamp;
+                last = value;
+            }
+        }
+
+        Aggregate toAggregate(int patientId, int recordTypeCode, long startTime, long endTime) {
+            if (count == 0) {
+                return new Aggregate(patientId, recordTypeCode, startTime, endTime,
+                        Double.NaN, Double.NaN, 0, 0, Long.MIN_VALUE, Double.NaN);
+            }
+            return new Aggregate(patientId, recordTypeCode, startTime, endTime, min, max, sum, count, lastTimestamp, last);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.data_management;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only window over a contiguous, time-ordered range of a
+ * {@link RecordSeries}. The samples are read straight from the series arrays;
+ * {@link PatientRecord} objects are only created when the view is used as a list.
+ */
+public final class SeriesView extends AbstractList<PatientRecord> implements RandomAccess {
+    private static final long[] NO_TIMESTAMPS = new long[0];
+    private static final double[] NO_VALUES = new double[0];
+
+    private final int patientId;
+    private final int recordTypeCode;
+    private final long[] timestamps;
+    private final double[] values;
+    private final int from;
+    private final int to;
+
+    SeriesView(int patientId, int recordTypeCode, long[] timestamps, double[] values, int from, int to) {
+        this.patientId = patientId;
+        this.recordTypeCode = recordTypeCode;
+        this.timestamps = timestamps;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    static SeriesView empty(int patientId, int recordTypeCode) {
+        return new SeriesView(patientId, recordTypeCode, NO_TIMESTAMPS, NO_VALUES, 0, 0);
+    }
+
+    /**
+     * Returns the timestamp of the sample at the given position in this view.
+     *
+     * @param index the position within the view
+     * @return the timestamp in milliseconds since UNIX epoch
+     */
+    public long getTimestamp(int index) {
+        return timestamps[from + checkIndex(index)];
+    }
+
+    /**
+     * Returns the measurement value of the sample at the given position in this view.
+     *
+     * @param index the position within the view
+     * @return the measurement value
+     */
+    public double getValue(int index) {
+        return values[from + checkIndex(index)];
+    }
+
+    /**
+     * Returns the record type of the samples in this view.
+     *
+     * @return the record type code, see {@link RecordType}
+     */
+    public int getRecordTypeCode() {
+        return recordTypeCode;
+    }
+
+    /**
+     * Returns a cursor over the samples of this view.
+     *
+     * @return a cursor positioned before the first sample
+     */
+    public SampleCursor cursor() {
+        return new SampleCursor() {
+            private int index = from - 1;
+
+            @Override
+            public boolean next() {
+                if (index + 1 >= to) {
+                    return false;
+                }
+                index++;
+                return true;
+            }
+
+            @Override
+            public long getTimestamp() {
+                return timestamps[index];
+            }
+
+            @Override
+            public double getValue() {
+                return values[index];
+            }
+        };
+    }
+
+    // Copies the samples of this view into arrays, starting at the given index
+    void copyTo(long[] targetTimestamps, double[] targetValues, int at) {
+        System.arraycopy(timestamps, from, targetTimestamps, at, to - from);
+        System.arraycopy(values, from, targetValues, at, to - from);
+    }
+
+    @Override
+    public PatientRecord get(int index) {
+        int position = from + checkIndex(index);
+        return new PatientRecord(patientId, values[position], recordTypeCode, timestamps[position]);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= to - from) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+        }
+        return index;
+    }
+}
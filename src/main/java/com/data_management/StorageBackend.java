@@ -0,0 +1,112 @@
+package com.data_management;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Selects where a {@link DataStorage} keeps its samples:
+ * <ul>
+ * <li>{@link #heap()}: in Java arrays, with older samples in compressed blocks (the default)</li>
+ * <li>{@link #offHeap(long)}: in direct buffers outside the heap, invisible to the garbage collector</li>
+ * <li>{@link #memoryMapped(Path, long)}: in memory-mapped files, which the operating
+ * system may page out under memory pressure</li>
+ * </ul>
+ * All backends return the same records; reads from the off-heap backends
+ * either copy the samples into a view or read them in place through a
+ * {@link SampleCursor}.
+ * <p>
+ * The backend is chosen before the storage is created, with
+ * {@link DataStorage#setBackend(StorageBackend)} or with the system property
+ * {@code cardio.storage}, set to {@code heap}, {@code offheap} or
+ * {@code mapped:<directory>}.
+ */
+public final class StorageBackend {
+    /** Name of the system property that selects the backend at startup. */
+    public static final String PROPERTY = "cardio.storage";
+    /** Default size of the slabs the off-heap backends reserve at a time. */
+    public static final long DEFAULT_SLAB_BYTES = 64L * 1024 * 1024;
+
+    private static final StorageBackend HEAP = new StorageBackend("heap", null);
+
+    private final String name;
+    private final OffHeapSlabs slabs;
+
+    private StorageBackend(String name, OffHeapSlabs slabs) {
+        this.name = name;
+        this.slabs = slabs;
+    }
+
+    /**
+     * Returns the backend that keeps samples on the Java heap.
+     *
+     * @return the heap backend
+     */
+    public static StorageBackend heap() {
+        return HEAP;
+    }
+
+    /**
+     * Returns a new backend that keeps samples in direct buffers.
+     *
+     * @param slabBytes the size of the buffers reserved at a time
+     * @return the off-heap backend
+     */
+    public static StorageBackend offHeap(long slabBytes) {
+        return new StorageBackend("offheap", new OffHeapSlabs(slabBytes, null));
+    }
+
+    /**
+     * Returns a new backend that keeps samples in memory-mapped files. The files
+     * are deleted as soon as they are mapped, so nothing is left behind; they
+     * are not a persistent store.
+     *
+     * @param directory the directory to create the mapped files in
+     * @param slabBytes the size of the files mapped at a time
+     * @return the memory-mapped backend
+     */
+    public static StorageBackend memoryMapped(Path directory, long slabBytes) {
+        return new StorageBackend("mapped:" + directory, new OffHeapSlabs(slabBytes, directory));
+    }
+
+    /**
+     * Returns the backend named by the {@value #PROPERTY} system property, or the
+     * heap backend if the property is not set.
+     *
+     * @return the configured backend
+     * @throws IllegalArgumentException if the property names no backend
+     */
+    public static StorageBackend fromSystemProperty() {
+        String value = System.getProperty(PROPERTY, "heap").trim();
+        if (value.equals("heap")) {
+            return heap();
+        }
+        if (value.equals("offheap")) {
+            return offHeap(DEFAULT_SLAB_BYTES);
+        }
+        if (value.startsWith("mapped:") && value.length() > 7) {
+            return memoryMapped(Paths.get(value.substring(7)), DEFAULT_SLAB_BYTES);
+        }
+        throw new IllegalArgumentException("Unknown storage backend '" + value
+                + "'; use heap, offheap or mapped:<directory>");
+    }
+
+    /**
+     * Returns the number of bytes this backend has reserved outside the heap.
+     *
+     * @return the reserved off-heap bytes, zero for the heap backend
+     */
+    public long getReservedOffHeapBytes() {
+        return slabs == null ? 0L : slabs.getReservedBytes();
+    }
+
+    RecordSeries createSeries(int patientId, int recordTypeCode) {
+        return slabs == null
+                ? new RecordSeries(patientId, recordTypeCode)
+                : new OffHeapRecordSeries(patientId, recordTypeCode, slabs);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,229 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Makes a {@link DataStorage} durable. Opening it recovers the storage from the
+ * directory, by loading the latest {@link StorageSnapshot} and replaying the
+ * {@link WriteAheadLog} segments written after it, and then logs every new
+ * record. Snapshots are taken periodically; once a snapshot is on disk, the log
+ * segments it covers are deleted.
+ * <p>
+ * A snapshot is taken while ingestion continues, so it may also contain some
+ * records of the segments replayed after it. Replay skips records that are
+ * already stored with the same timestamp and value, which makes recovery
+ * idempotent at the cost of dropping exact duplicates that arrived in that
+ * window.
+ */
+public class StoragePersistence implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(StoragePersistence.class.getName());
+
+    /** Default size after which the log continues in a new segment. */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    /** Default longest time a record waits to be synced to disk. */
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 10L;
+    /** Default time between two snapshots. */
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 5L * 60 * 1000;
+
+    private final DataStorage storage;
+    private final Path directory;
+    private final WriteAheadLog log;
+    private final ScheduledExecutorService snapshotter;
+    private final long recoveryMillis;
+    private final long recoveredRecords;
+    private final long replayedRecords;
+
+    private StoragePersistence(DataStorage storage, Path directory, long segmentBytes, long commitIntervalMillis,
+                               long snapshotIntervalMillis) throws IOException {
+        this.storage = storage;
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        long start = System.nanoTime();
+        long firstSegment = 0;
+        Path snapshot = latestSnapshot();
+        if (snapshot != null) {
+            firstSegment = StorageSnapshot.read(storage, snapshot);
+        }
+        long[] skipped = new long[1];
+        this.replayedRecords = WriteAheadLog.replay(directory, firstSegment,
+                (patientId, recordTypeCode, measurementValue, timestamp) -> {
+                    RecordSeries series = storage.getOrCreatePatient(patientId).seriesOf(recordTypeCode);
+                    if (series.contains(timestamp, measurementValue)) {
+                        skipped[0]++;
+                    } else {
+                        series.append(timestamp, measurementValue);
+                    }
+                });
+        this.recoveredRecords = countRecords(storage);
+        this.recoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (skipped[0] > 0) {
+            logger.info("Skipped " + skipped[0] + " replayed records already contained in the snapshot");
+        }
+
+        this.log = new WriteAheadLog(directory, segmentBytes, commitIntervalMillis);
+        storage.addRecordListener(log);
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Storage snapshot failed", e);
+            }
+        }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Recovers the storage from a directory and keeps it durable from then on,
+     * with the default segment size, commit interval and snapshot interval.
+     *
+     * @param storage   the storage to recover into and to persist
+     * @param directory the directory holding snapshots and log segments
+     * @return the open persistence, to be closed on shutdown
+     * @throws IOException if recovery fails or the log cannot be opened
+     */
+    public static StoragePersistence open(DataStorage storage, Path directory) throws IOException {
+        return open(storage, directory, DEFAULT_SEGMENT_BYTES, DEFAULT_COMMIT_INTERVAL_MILLIS,
+                DEFAULT_SNAPSHOT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Recovers the storage from a directory and keeps it durable from then on.
+     *
+     * @param storage                the storage to recover into and to persist
+     * @param directory              the directory holding snapshots and log segments
+     * @param segmentBytes           the size after which the log continues in a new segment
+     * @param commitIntervalMillis   the longest time a record waits to be synced to disk
+     * @param snapshotIntervalMillis the time between two snapshots
+     * @return the open persistence, to be closed on shutdown
+     * @throws IOException if recovery fails or the log cannot be opened
+     */
+    public static StoragePersistence open(DataStorage storage, Path directory, long segmentBytes,
+                                          long commitIntervalMillis, long snapshotIntervalMillis) throws IOException {
+        return new StoragePersistence(storage, directory, segmentBytes, commitIntervalMillis, snapshotIntervalMillis);
+    }
+
+    /**
+     * Takes a snapshot now, then deletes the older snapshots and the log
+     * segments the new one covers.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void snapshot() throws IOException {
+        // Every record in the segments below firstSegment was stored before the roll,
+        // so the snapshot taken after it contains them
+        long firstSegment = log.roll();
+        StorageSnapshot.write(storage, snapshotPath(firstSegment), firstSegment);
+        for (Path older : snapshots()) {
+            if (!older.equals(snapshotPath(firstSegment))) {
+                Files.deleteIfExists(older);
+            }
+        }
+        log.deleteSegmentsBefore(firstSegment);
+    }
+
+    /**
+     * Syncs every record added so far to disk.
+     *
+     * @throws IOException if the log cannot be synced
+     */
+    public void flush() throws IOException {
+        log.flush();
+    }
+
+    /**
+     * Returns how long recovery took when this persistence was opened.
+     *
+     * @return the recovery time in milliseconds
+     */
+    public long getRecoveryMillis() {
+        return recoveryMillis;
+    }
+
+    /**
+     * Returns the number of records in the storage after recovery.
+     *
+     * @return the recovered record count
+     */
+    public long getRecoveredRecordCount() {
+        return recoveredRecords;
+    }
+
+    /**
+     * Returns the number of log records read during recovery, including those
+     * skipped because the snapshot already contained them.
+     *
+     * @return the replayed record count
+     */
+    public long getReplayedRecordCount() {
+        return replayedRecords;
+    }
+
+    /**
+     * Returns the write-ahead log, for its commit statistics.
+     *
+     * @return the write-ahead log
+     */
+    public WriteAheadLog getLog() {
+        return log;
+    }
+
+    /**
+     * Stops logging and taking snapshots, after syncing the records logged so far.
+     *
+     * @throws IOException if the final commit fails
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        snapshotter.shutdownNow();
+        storage.removeRecordListener(log);
+        log.close();
+    }
+
+    private static long countRecords(DataStorage storage) {
+        long count = 0;
+        for (Patient patient : storage.getAllPatients()) {
+            for (RecordSeries series : patient.series()) {
+                count += series.size();
+            }
+        }
+        return count;
+    }
+
+    private Path snapshotPath(long firstSegment) {
+        return directory.resolve(String.format("snapshot-%016d.snap", firstSegment));
+    }
+
+    private Path latestSnapshot() throws IOException {
+        List<Path> snapshots = snapshots();
+        return snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+    }
+
+    // Snapshot files ordered by the segment they start replay from
+    private List<Path> snapshots() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().matches("snapshot-\\d{16}\\.snap"))
+                    .sorted()
+                    .forEach(snapshots::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,118 @@
+package com.data_management;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary snapshots of the contents of a {@link DataStorage}. Every
+ * series is written as its columns, timestamps then values, followed by its
+ * minute and hour rollups. Record types are written by label, so a snapshot can
+ * be loaded by a process that assigns different codes.
+ * <pre>
+ * snapshot: magic:int version:int firstSegment:long seriesCount:int series*
+ * series:   patientId:int label:utf count:int timestamp:long*count value:double*count
+ *           minuteRollups hourRollups
+ * </pre>
+ * The snapshot records the first write-ahead log segment that is not covered by
+ * it, from which replay starts.
+ */
+public final class StorageSnapshot {
+    static final int MAGIC = 0x43445353; // "CDSS"
+    static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private StorageSnapshot() {}
+
+    /**
+     * Writes a snapshot of the storage. The file is written under a temporary
+     * name, synced and then renamed, and the directory synced after the rename,
+     * so a crash never leaves a partial snapshot under the final name.
+     *
+     * @param storage      the storage to write
+     * @param file         the snapshot file
+     * @param firstSegment the first write-ahead log segment to replay after loading it
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(DataStorage storage, Path file, long firstSegment) throws IOException {
+        List<RecordSeries> series = new ArrayList<>();
+        for (Patient patient : storage.getAllPatients()) {
+            series.addAll(patient.series());
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(firstSegment);
+            out.writeInt(series.size());
+            for (RecordSeries recordSeries : series) {
+                SeriesView samples = recordSeries.range(Long.MIN_VALUE, Long.MAX_VALUE);
+                out.writeInt(recordSeries.getPatientId());
+                out.writeUTF(RecordType.labelOf(recordSeries.getRecordTypeCode()));
+                out.writeInt(samples.size());
+                for (int i = 0; i < samples.size(); i++) {
+                    out.writeLong(samples.getTimestamp(i));
+                }
+                for (int i = 0; i < samples.size(); i++) {
+                    out.writeDouble(samples.getValue(i));
+                }
+                recordSeries.rollupsOf(RollupResolution.MINUTE).writeTo(out);
+                recordSeries.rollupsOf(RollupResolution.HOUR).writeTo(out);
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The rename itself is only durable once the directory is synced
+        WriteAheadLog.syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Loads a snapshot into the storage. The records are stored directly,
+     * without notifying the storage's listeners.
+     *
+     * @param storage the storage to load into
+     * @param file    the snapshot file
+     * @return the first write-ahead log segment to replay after the snapshot
+     * @throws IOException if the snapshot cannot be read or is not a snapshot
+     */
+    public static long read(DataStorage storage, Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream, BUFFER_BYTES))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a storage snapshot: " + file);
+            }
+            long firstSegment = in.readLong();
+            int seriesCount = in.readInt();
+            long[] timestamps = new long[0];
+            for (int s = 0; s < seriesCount; s++) {
+                int patientId = in.readInt();
+                int recordTypeCode = RecordType.codeOf(in.readUTF());
+                RecordSeries series = storage.getOrCreatePatient(patientId).seriesOf(recordTypeCode);
+                int count = in.readInt();
+                if (timestamps.length < count) {
+                    timestamps = new long[count];
+                }
+                for (int i = 0; i < count; i++) {
+                    timestamps[i] = in.readLong();
+                }
+                for (int i = 0; i < count; i++) {
+                    series.append(timestamps[i], in.readDouble());
+                }
+                series.rollupsOf(RollupResolution.MINUTE).readFrom(in);
+                series.rollupsOf(RollupResolution.HOUR).readFrom(in);
+            }
+            return firstSegment;
+        }
+    }
+}
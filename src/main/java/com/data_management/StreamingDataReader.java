@@ -0,0 +1,25 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * A source that streams records from a server into a {@link DataStorage} as
+ * they arrive, as opposed to a {@link DataReader}, which loads a source once.
+ */
+public interface StreamingDataReader {
+    /**
+     * Connects to the specified URI to start reading data.
+     *
+     * @param serverUri the URI of the server to connect to
+     * @throws IOException if there is an error connecting to the server
+     */
+    void connect(URI serverUri) throws IOException;
+
+    /**
+     * Handles incoming messages.
+     *
+     * @param message the message received
+     */
+    void onMessage(String message);
+}
@@ -2,14 +2,21 @@ package com.data_management;
 
 import org.java_websocket.handshake.ServerHandshake;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.net.URISyntaxException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * WebSocketClient is a client for connecting to a WebSocket server.
  * It handles connection, message reception, and error handling.
  */
 public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
+    private static final Logger logger = Logger.getLogger(WebSocketClient.class.getName());
+
     private final DataStorage storage;
+    // Only used on the client's read thread
+    private final RecordParser parser = new RecordParser();
 
     /**
      * Constructor to initialize the WebSocket client with the server URI and data storage.
@@ -36,35 +43,50 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
     }
 
     /**
-     * Called when a message is received from the server.
+     * Called when a message is received from the server. A message holds one
+     * record, or several on separate lines when the server coalesces them.
      *
      * @param message the received message
      */
     @Override
     public void onMessage(String message) {
-        System.out.println("Received message: " + message);
-        try {
-            // Parse the message and store the data
-            String[] parts = message.split(",");
-            int patientId = Integer.parseInt(parts[0]);
-            long timestamp = Long.parseLong(parts[1]);
-            String recordType = parts[2];
-            double measurementValue;
-
-            // Check if the value contains a percentage sign
-            if (parts[3].contains("%")) {
-                measurementValue = Double.parseDouble(parts[3].substring(0, parts[3].length() - 1));
-            } else {
-                measurementValue = Double.parseDouble(parts[3]);
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Received message: " + message);
+        }
+        int start = 0;
+        while (start < message.length()) {
+            int end = message.indexOf('\n', start);
+            if (end < 0) {
+                end = message.length();
+            }
+            // Parse the line and store the data
+            if (parser.parseWireRecord(message, start, end)) {
+                storage.addPatientData(parser.getPatientId(), parser.getMeasurementValue(),
+                        parser.getRecordTypeCode(), parser.getTimestamp());
+            } else if (end > start) {
+                // Handle lines that do not follow the patientId,timestamp,label,data format
+                System.err.println("Error processing message: " + message.substring(start, end));
             }
+            start = end + 1;
+        }
+    }
 
-            // Use the dataStorage instance to store the data
-            storage.addPatientData(patientId, measurementValue, recordType, timestamp);
-        } catch (Exception e) {
-            // Handle any errors that occur during message processing
-            System.err.println("Error processing message: " + message);
-            e.printStackTrace();
+    /**
+     * Called when a binary message is received from the server, which holds a
+     * {@link BinaryRecordFrame}.
+     *
+     * @param bytes the received message
+     */
+    @Override
+    public void onMessage(ByteBuffer bytes) {
+        RecordBatch batch = new RecordBatch(256);
+        try {
+            BinaryRecordFrame.decode(bytes, batch);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error processing binary message: " + e.getMessage());
+            return;
         }
+        storage.addPatientData(batch);
     }
 
     /**
@@ -0,0 +1,519 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A segmented, binary write-ahead log of the records added to a
+ * {@link DataStorage}. Registered as a {@link RecordListener}, it sees every
+ * record after it has been stored.
+ * <p>
+ * Records are encoded into an in-memory buffer by the ingesting threads and
+ * written by a single commit thread, which writes everything gathered since the
+ * previous commit as one checksummed block followed by one fsync (group commit).
+ * A record is therefore durable at most one commit interval after it was added;
+ * {@link #flush()} forces a commit immediately.
+ * <p>
+ * A commit that fails puts the log in a failed state rather than blocking
+ * ingestion: the records of the failed block and every record appended after
+ * it are dropped and counted, see {@link #getDroppedCount()}, and
+ * {@link #flush()} reports the failure. The next {@link #roll()}, which
+ * {@link StoragePersistence} performs before each snapshot, continues the log
+ * in a new segment; the snapshot taken after it holds the dropped records.
+ * Records appended after {@link #close()} are dropped the same way.
+ * <p>
+ * Segment files are named {@code wal-<number>.log}. Record type codes are only
+ * meaningful within one process, so every segment defines the labels of the
+ * codes it uses before their first record, and can be replayed on its own.
+ * <pre>
+ * segment: magic:int version:int block*
+ * block:   length:int crc32:int entry*
+ * entry:   TYPE code:int labelLength:short label:utf8
+ *        | RECORD patientId:int code:int timestamp:long value:double
+ * </pre>
+ */
+public class WriteAheadLog implements RecordListener, AutoCloseable {
+    private static final Logger logger = Logger.getLogger(WriteAheadLog.class.getName());
+
+    static final int MAGIC = 0x4344574C; // "CDWL"
+    static final int VERSION = 1;
+    static final byte TYPE_ENTRY = 1;
+    static final byte RECORD_ENTRY = 2;
+    static final int RECORD_BYTES = 1 + 4 + 4 + 8 + 8;
+    private static final int HEADER_BYTES = 8;
+    private static final int BLOCK_HEADER_BYTES = 8;
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+    // Pending bytes that trigger a commit before the interval has passed
+    private static final int COMMIT_BYTES = 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long commitIntervalMillis;
+    private final int maxPendingBytes;
+    private final Thread committer;
+
+    // Guards the buffer that ingesting threads append to
+    private final Object bufferLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private BitSet pendingTypes = new BitSet();
+    private boolean commitRequested;
+    private volatile boolean closed;
+
+    // Guards the segment file; only held by the committing thread or a segment roll
+    private final Object fileLock = new Object();
+    private ByteBuffer committing = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private BitSet committingTypes = new BitSet();
+    private FileChannel channel;
+    private long segmentNumber;
+    private long segmentSize;
+    private final BitSet segmentTypes = new BitSet();
+    private final CRC32 crc = new CRC32();
+    // Set under both locks when a commit fails, cleared by a roll
+    private volatile IOException failure;
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong committedBytes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Opens a log that starts a new segment after the existing ones in the
+     * directory. Existing segments are never appended to, so a segment torn by a
+     * crash stays as it was written.
+     *
+     * @param directory            the directory holding the segments; created if missing
+     * @param segmentBytes         the size after which the log continues in a new segment
+     * @param commitIntervalMillis the longest time a record waits for its commit
+     * @throws IOException if the directory or the first segment cannot be created
+     */
+    public WriteAheadLog(Path directory, long segmentBytes, long commitIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.maxPendingBytes = (int) Math.min(Math.max(segmentBytes, INITIAL_BUFFER_BYTES), 64L * 1024 * 1024);
+        Files.createDirectories(directory);
+        List<Long> existing = segmentNumbers(directory);
+        openSegment(existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1);
+        this.committer = new Thread(this::commitLoop, "wal-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Appends a record to the log. Called by the storage after the record has
+     * been stored; waits only if the commit thread has fallen far behind. The
+     * record is dropped if the log has failed or is closed.
+     */
+    @Override
+    public void onRecord(int patientId, int recordTypeCode, double measurementValue, long timestamp) {
+        synchronized (bufferLock) {
+            while (pending.position() >= maxPendingBytes && !closed && failure == null) {
+                commitRequested = true;
+                bufferLock.notifyAll();
+                try {
+                    bufferLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (closed || failure != null) {
+                dropped.incrementAndGet();
+                return;
+            }
+            if (pending.remaining() < RECORD_BYTES) {
+                ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            pending.put(RECORD_ENTRY);
+            pending.putInt(patientId);
+            pending.putInt(recordTypeCode);
+            pending.putLong(timestamp);
+            pending.putDouble(measurementValue);
+            pendingTypes.set(recordTypeCode);
+            if (pending.position() >= COMMIT_BYTES && !commitRequested) {
+                commitRequested = true;
+                bufferLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Commits all records appended so far and waits until they are on disk.
+     *
+     * @throws IOException if writing or syncing the segment fails, now or in an
+     *                     earlier commit since the last roll
+     */
+    public void flush() throws IOException {
+        synchronized (fileLock) {
+            commit();
+        }
+    }
+
+    /**
+     * Commits all records appended so far and continues the log in a new
+     * segment. Every record appended before this call is in a segment numbered
+     * below the returned one, unless it was dropped after a failed commit.
+     * Rolling a failed log gives up the failed segment and clears the failure.
+     *
+     * @return the number of the new segment
+     * @throws IOException if the current segment cannot be committed or the new one created
+     */
+    public long roll() throws IOException {
+        synchronized (fileLock) {
+            if (failure == null) {
+                commit();
+                channel.close();
+                openSegment(segmentNumber + 1);
+            } else {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.log(Level.FINE, "Closing the failed write-ahead log segment failed", e);
+                }
+                // A failed attempt may have left a file under the next number
+                List<Long> existing = segmentNumbers(directory);
+                openSegment(Math.max(segmentNumber, existing.isEmpty() ? 0 : existing.get(existing.size() - 1)) + 1);
+                synchronized (bufferLock) {
+                    failure = null;
+                }
+                logger.info("Write-ahead log continues in segment " + segmentNumber + " after "
+                        + dropped.get() + " dropped records");
+            }
+            return segmentNumber;
+        }
+    }
+
+    /**
+     * Deletes the segments numbered below the given one, once their records are
+     * covered by a snapshot.
+     *
+     * @param segmentNumber the first segment to keep
+     * @throws IOException if a segment cannot be deleted
+     */
+    public void deleteSegmentsBefore(long segmentNumber) throws IOException {
+        for (long number : segmentNumbers(directory)) {
+            if (number < segmentNumber) {
+                Files.deleteIfExists(segmentPath(directory, number));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of group commits, each ending with one fsync.
+     *
+     * @return the commit count
+     */
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    /**
+     * Returns the number of bytes written and synced so far.
+     *
+     * @return the committed byte count
+     */
+    public long getCommittedBytes() {
+        return committedBytes.get();
+    }
+
+    /**
+     * Returns the number of records dropped because a commit failed or the log
+     * was closed.
+     *
+     * @return the dropped record count
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Commits the remaining records and closes the log.
+     *
+     * @throws IOException if the final commit fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (bufferLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            bufferLock.notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (fileLock) {
+            try {
+                commit();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            synchronized (bufferLock) {
+                if (!commitRequested && !closed) {
+                    try {
+                        bufferLock.wait(commitIntervalMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                commitRequested = false;
+                if (closed) {
+                    return;
+                }
+            }
+            synchronized (fileLock) {
+                if (failure != null) {
+                    // Nothing to write until a roll starts a new segment
+                    continue;
+                }
+                try {
+                    commit();
+                    if (segmentSize >= segmentBytes) {
+                        channel.close();
+                        openSegment(segmentNumber + 1);
+                    }
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Write-ahead log commit failed; records are dropped until the log is rolled", e);
+                }
+            }
+        }
+    }
+
+    // Writes the pending records as one block and syncs it; requires fileLock
+    private void commit() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        synchronized (bufferLock) {
+            ByteBuffer full = pending;
+            pending = committing;
+            committing = full;
+            BitSet types = pendingTypes;
+            pendingTypes = committingTypes;
+            committingTypes = types;
+            bufferLock.notifyAll();
+        }
+        committing.flip();
+        try {
+            if (committing.hasRemaining()) {
+                writeBlock(typeDefinitions(committingTypes), committing);
+            }
+        } catch (IOException e) {
+            synchronized (bufferLock) {
+                // Give up the failed block and the records behind it, and release waiting writers
+                failure = e;
+                dropped.addAndGet((committing.limit() + pending.position()) / RECORD_BYTES);
+                pending.clear();
+                pendingTypes.clear();
+                bufferLock.notifyAll();
+            }
+            throw e;
+        } finally {
+            committing.clear();
+            committingTypes.clear();
+        }
+    }
+
+    // Labels of the codes in the block that the segment has not defined yet
+    private ByteBuffer typeDefinitions(BitSet types) {
+        List<byte[]> labels = new ArrayList<>();
+        List<Integer> codes = new ArrayList<>();
+        for (int code = types.nextSetBit(0); code >= 0; code = types.nextSetBit(code + 1)) {
+            if (!segmentTypes.get(code)) {
+                codes.add(code);
+                labels.add(RecordType.labelOf(code).getBytes(StandardCharsets.UTF_8));
+                segmentTypes.set(code);
+            }
+        }
+        int size = 0;
+        for (byte[] label : labels) {
+            size += 1 + 4 + 2 + label.length;
+        }
+        ByteBuffer definitions = ByteBuffer.allocate(size);
+        for (int i = 0; i < labels.size(); i++) {
+            definitions.put(TYPE_ENTRY);
+            definitions.putInt(codes.get(i));
+            definitions.putShort((short) labels.get(i).length);
+            definitions.put(labels.get(i));
+        }
+        definitions.flip();
+        return definitions;
+    }
+
+    private void writeBlock(ByteBuffer definitions, ByteBuffer records) throws IOException {
+        crc.reset();
+        crc.update(definitions.duplicate());
+        crc.update(records.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        header.putInt(definitions.remaining() + records.remaining());
+        header.putInt((int) crc.getValue());
+        header.flip();
+        long length = header.remaining() + definitions.remaining() + records.remaining();
+        ByteBuffer[] block = {header, definitions, records};
+        while (records.hasRemaining()) {
+            channel.write(block);
+        }
+        channel.force(false);
+        segmentSize += length;
+        commits.incrementAndGet();
+        committedBytes.addAndGet(length);
+    }
+
+    private void openSegment(long number) throws IOException {
+        Path path = segmentPath(directory, number);
+        channel = openChannel(path);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(false);
+        syncDirectory(directory);
+        segmentNumber = number;
+        segmentSize = HEADER_BYTES;
+        segmentTypes.clear();
+    }
+
+    /**
+     * Creates and opens a new segment file for writing.
+     *
+     * @param path the segment file
+     * @return the channel the segment is written through
+     * @throws IOException if the file exists or cannot be created
+     */
+    protected FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Syncs a directory, so that files created or renamed in it survive a crash.
+     * Does nothing where a directory cannot be opened, as on Windows.
+     */
+    static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Replays the records of the segments numbered from {@code firstSegment} on,
+     * in order. A block that is truncated or fails its checksum ends the replay
+     * of its segment, as happens to the last block written before a crash.
+     *
+     * @param directory    the directory holding the segments
+     * @param firstSegment the number of the first segment to replay
+     * @param listener     receives the records, with codes of the current process
+     * @return the number of records replayed
+     * @throws IOException if a segment cannot be read
+     */
+    public static long replay(Path directory, long firstSegment, RecordListener listener) throws IOException {
+        long replayed = 0;
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        for (long number : segmentNumbers(directory)) {
+            if (number >= firstSegment) {
+                replayed += replaySegment(segmentPath(directory, number), listener);
+            }
+        }
+        return replayed;
+    }
+
+    private static long replaySegment(Path path, RecordListener listener) throws IOException {
+        ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (segment.remaining() < HEADER_BYTES || segment.getInt() != MAGIC || segment.getInt() != VERSION) {
+            logger.warning("Skipping write-ahead log segment without a valid header: " + path);
+            return 0;
+        }
+        int[] codes = new int[0];
+        long replayed = 0;
+        CRC32 crc = new CRC32();
+        while (segment.remaining() >= BLOCK_HEADER_BYTES) {
+            int length = segment.getInt();
+            int checksum = segment.getInt();
+            if (length < 0 || length > segment.remaining()) {
+                logger.warning("Write-ahead log segment ends with a truncated block: " + path);
+                break;
+            }
+            ByteBuffer block = segment.slice();
+            block.limit(length);
+            crc.reset();
+            crc.update(block.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                logger.warning("Write-ahead log segment ends with a corrupt block: " + path);
+                break;
+            }
+            segment.position(segment.position() + length);
+            while (block.hasRemaining()) {
+                if (block.get() == TYPE_ENTRY) {
+                    int code = block.getInt();
+                    byte[] label = new byte[block.getShort() & 0xFFFF];
+                    block.get(label);
+                    if (code >= codes.length) {
+                        codes = Arrays.copyOf(codes, code + 1);
+                    }
+                    codes[code] = RecordType.codeOf(new String(label, StandardCharsets.UTF_8));
+                } else {
+                    int patientId = block.getInt();
+                    int recordTypeCode = codes[block.getInt()];
+                    long timestamp = block.getLong();
+                    double value = block.getDouble();
+                    listener.onRecord(patientId, recordTypeCode, value, timestamp);
+                    replayed++;
+                }
+            }
+        }
+        return replayed;
+    }
+
+    static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("wal-%016d.log", number));
+    }
+
+    static List<Long> segmentNumbers(Path directory) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.matches("wal-\\d{16}\\.log"))
+                    .map(name -> Long.parseLong(name.substring(4, 20)))
+                    .sorted()
+                    .forEach(numbers::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return numbers;
+    }
+}
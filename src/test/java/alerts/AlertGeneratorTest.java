@@ -1,5 +1,6 @@
 package alerts;
 
+import com.alerts.Alert;
 import com.alerts.AlertGenerator;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
@@ -8,7 +9,12 @@ import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class AlertGeneratorTest {
@@ -31,14 +37,13 @@ class AlertGeneratorTest {
         // Create a sample patient with test data
         Patient patient = new Patient(1);
         patient.addRecord(190, "SystolicPressure", 1700000000001L); // High systolic pressure
-        patient.addRecord(49, "HeartRate", 1700000000002L); // Low heart rate
         patient.addRecord(85, "Saturation", 1700000000003L); // Low saturation
 
-        // Adding ECG records to simulate a low heart rate
-        patient.addRecord(-0.5, "ECG", 1700000000004L); // Simulated ECG data
-        patient.addRecord(0.7, "ECG", 1700000002004L); // Simulated ECG data crossing zero indicating a beat (2 seconds interval)
-        patient.addRecord(-0.5, "ECG", 1700000004004L); // Simulated ECG data
-        patient.addRecord(0.8, "ECG", 1700000006004L); // Simulated ECG data crossing zero indicating a beat (2 seconds interval)
+        // Adding ECG records to simulate a low heart rate: one peak every two seconds, 30 beats per minute
+        for (int beat = 0; beat < 5; beat++) {
+            patient.addRecord(-0.5, "ECG", 1700000000004L + beat * 2000L); // Simulated ECG data
+            patient.addRecord(0.7, "ECG", 1700000001004L + beat * 2000L); // Simulated ECG data peaking at a beat
+        }
 
         // Call the evaluateData method
         alertGenerator.evaluateData(patient);
@@ -57,5 +62,56 @@ class AlertGeneratorTest {
         assertTrue(output.contains("triggered Saturation level lower than 92.0%"));
     }
 
+    /**
+     * Tests that evaluating all patients in parallel triggers the same alerts, in
+     * the same order, as evaluating them one by one in ascending ID order.
+     */
+    @Test
+    void testEvaluateAllInParallel() {
+        for (int patientId = 300; patientId >= 1; patientId--) {
+            long time = 1700000000000L;
+            for (int i = 0; i < 20; i++) {
+                dataStorage.addPatientData(patientId, 100 + (patientId * 7 + i * 13) % 100, "SystolicPressure", time + i);
+                dataStorage.addPatientData(patientId, 85 + (patientId + i) % 15, "Saturation", time + i);
+            }
+        }
+        List<Patient> patients = dataStorage.getAllPatients();
+
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        PrintStream originalOut = System.out;
+        System.setOut(new PrintStream(outContent));
+        ForkJoinPool wide = new ForkJoinPool(4);
+        ForkJoinPool narrow = new ForkJoinPool(1);
+        List<Alert> parallel;
+        List<Alert> single;
+        try {
+            List<Patient> sorted = new ArrayList<>(patients);
+            sorted.sort((a, b) -> Integer.compare(a.getPatientId(), b.getPatientId()));
+            for (Patient patient : sorted) {
+                alertGenerator.evaluateData(patient);
+            }
+            String sequential = outContent.toString();
+            outContent.reset();
+
+            parallel = alertGenerator.evaluateAll(patients, wide);
+            assertEquals(withoutTimes(sequential), withoutTimes(outContent.toString()));
+            single = alertGenerator.evaluateAll(patients, narrow);
+        } finally {
+            System.setOut(originalOut);
+            wide.shutdown();
+            narrow.shutdown();
+        }
 
+        assertTrue(parallel.size() > 300);
+        assertEquals(describe(single), describe(parallel));
+    }
+
+    private static String withoutTimes(String output) {
+        return output.replaceAll(", at \\d+", "");
+    }
+
+    private static List<String> describe(List<Alert> alerts) {
+        return alerts.stream().map(alert -> alert.getPatientId() + ": " + alert.getCondition())
+                .collect(Collectors.toList());
+    }
 }
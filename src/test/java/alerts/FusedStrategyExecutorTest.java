@@ -0,0 +1,78 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.alerts.strategies.BloodPressureStrategy;
+import com.alerts.strategies.FusedStrategyExecutor;
+import com.alerts.strategies.HeartRateStrategy;
+import com.alerts.strategies.OxygenSaturationStrategy;
+import com.alerts.strategies.RecordAlertStrategy;
+import com.data_management.Patient;
+import com.data_management.RecordType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for the fused evaluation of the alert strategies.
+ */
+class FusedStrategyExecutorTest {
+    private static final long START = 1_700_000_000_000L;
+
+    private final List<RecordAlertStrategy> strategies = Arrays.asList(
+            new BloodPressureStrategy(), new HeartRateStrategy(), new OxygenSaturationStrategy());
+    private final FusedStrategyExecutor executor = new FusedStrategyExecutor(strategies);
+
+    /**
+     * Tests that the fused pass agrees with each strategy checked on its own, on
+     * patients with interleaved records of all types.
+     */
+    @Test
+    void testSameResultsAsSeparateChecks() {
+        Random random = new Random(42);
+        int alerts = 0;
+        for (int id = 1; id <= 200; id++) {
+            Patient patient = new Patient(id);
+            for (int i = 0; i < 20; i++) {
+                long timestamp = START + i * 60_000L;
+                patient.addRecord(110 + random.nextInt(76), RecordType.SYSTOLIC_PRESSURE, timestamp);
+                patient.addRecord(65 + random.nextInt(57), RecordType.DIASTOLIC_PRESSURE, timestamp + 1);
+                patient.addRecord(52 + random.nextInt(50), RecordType.HEART_RATE, timestamp + 2);
+                patient.addRecord(93 + random.nextInt(7), RecordType.SATURATION, timestamp + 3);
+                patient.addRecord(random.nextGaussian(), RecordType.ECG, timestamp + 4);
+            }
+            boolean[] fused = executor.evaluate(patient);
+            for (int s = 0; s < strategies.size(); s++) {
+                assertEquals(strategies.get(s).checkAlert(patient), fused[s], "patient " + id + ", strategy " + s);
+                alerts += fused[s] ? 1 : 0;
+            }
+        }
+        // Both outcomes occur, so the comparison covers both
+        assertTrue(alerts > 0 && alerts < 600);
+    }
+
+    /**
+     * Tests that each strategy judges only the records of its own types.
+     */
+    @Test
+    void testStrategiesReadOnlyTheirTypes() {
+        Patient patient = new Patient(1);
+        patient.addRecord(70, RecordType.HEART_RATE, START);
+        patient.addRecord(85, RecordType.SATURATION, START + 1);
+        patient.addRecord(75, RecordType.HEART_RATE, START + 2);
+
+        assertArrayEquals(new boolean[]{false, false, true}, executor.evaluate(patient));
+        assertTrue(executor.anyAlert(patient));
+    }
+
+    /**
+     * Tests that a patient without records raises no alert.
+     */
+    @Test
+    void testNoRecords() {
+        assertArrayEquals(new boolean[3], executor.evaluate(new Patient(1)));
+        assertFalse(executor.anyAlert(new Patient(1)));
+    }
+}
@@ -0,0 +1,96 @@
+package alerts;
+
+import com.alerts.Alert;
+import com.alerts.incremental.IncrementalAlertEngine;
+import com.data_management.DataStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the incremental alert engine.
+ */
+class IncrementalAlertEngineTest {
+    private DataStorage dataStorage;
+    private List<Alert> alerts;
+
+    @BeforeEach
+    void setUp() {
+        DataStorage.resetInstance();
+        dataStorage = DataStorage.getInstance();
+        alerts = new ArrayList<>();
+        dataStorage.addRecordListener(new IncrementalAlertEngine(IncrementalAlertEngine.defaultRules(), alerts::add));
+    }
+
+    /**
+     * Tests that an alert fires once per episode, at the record that starts it.
+     */
+    @Test
+    void testAlertFiresOncePerEpisode() {
+        dataStorage.addPatientData(1, 95, "Saturation", 1000L);
+        dataStorage.addPatientData(1, 91, "Saturation", 2000L);
+        dataStorage.addPatientData(1, 90, "Saturation", 3000L);
+        dataStorage.addPatientData(1, 91, "Saturation", 4000L);
+        assertEquals(1, count("triggered Saturation level lower than 92.0%"));
+        assertEquals(2000L, alerts.get(0).getTimestamp());
+
+        dataStorage.addPatientData(1, 96, "Saturation", 5000L);
+        dataStorage.addPatientData(1, 91, "Saturation", 6000L);
+        assertEquals(2, count("triggered Saturation level lower than 92.0%"));
+        assertEquals(1, count("triggered Rapid Saturation Drop Alert"));
+    }
+
+    /**
+     * Tests the blood pressure thresholds and the three reading trend.
+     */
+    @Test
+    void testBloodPressure() {
+        dataStorage.addPatientData(2, 100, "SystolicPressure", 1000L);
+        dataStorage.addPatientData(2, 80, "DiastolicPressure", 1000L);
+        dataStorage.addPatientData(2, 115, "SystolicPressure", 2000L);
+        dataStorage.addPatientData(2, 130, "SystolicPressure", 3000L);
+        dataStorage.addPatientData(2, 185, "SystolicPressure", 4000L);
+        dataStorage.addPatientData(2, 55, "DiastolicPressure", 4000L);
+
+        assertEquals(1, count("triggered Increasing Blood Pressure Trend Problem"));
+        assertEquals(1, count("triggered Systolic Pressure higher than 180"));
+        assertEquals(1, count("triggered Diastolic Pressure lower than 60"));
+        assertEquals(0, count("triggered Decreasing Blood Pressure Trend Problem"));
+    }
+
+    /**
+     * Tests the combined low saturation and low systolic pressure condition.
+     */
+    @Test
+    void testHypotensiveHypoxemia() {
+        dataStorage.addPatientData(3, 85, "SystolicPressure", 1000L);
+        assertEquals(0, count("triggered Hypotensive Hypoxemia Alert"));
+        dataStorage.addPatientData(3, 90, "Saturation", 2000L);
+        dataStorage.addPatientData(3, 89, "Saturation", 3000L);
+        assertEquals(1, count("triggered Hypotensive Hypoxemia Alert"));
+    }
+
+    /**
+     * Tests that a slow rhythm is detected from the running RR interval mean.
+     */
+    @Test
+    void testSlowHeartRate() {
+        // One upward zero crossing every two seconds: 30 beats per minute
+        for (int beat = 0; beat < 5; beat++) {
+            dataStorage.addPatientData(4, -0.5, "ECG", beat * 2000L);
+            dataStorage.addPatientData(4, 0.7, "ECG", beat * 2000L + 1000L);
+        }
+        assertEquals(1, count("triggered Abnormal Heart Rate Lower Than 50"));
+        assertEquals(0, count("triggered Irregular Beat Detected"));
+        assertTrue(alerts.stream().allMatch(alert -> alert.getPatientId().equals("4")));
+    }
+
+    private long count(String condition) {
+        return alerts.stream().filter(alert -> alert.getCondition().equals(condition)).count();
+    }
+}
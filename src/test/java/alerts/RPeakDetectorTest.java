@@ -0,0 +1,158 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.alerts.Alert;
+import com.alerts.incremental.EcgRhythmRule;
+import com.alerts.incremental.RPeakDetector;
+import com.data_management.RecordType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for the streaming R-peak detector, on a synthetic ECG sampled at
+ * 250 Hz with P, QRS and T waves, baseline wander and noise.
+ */
+class RPeakDetectorTest {
+    private static final int RATE = 250;
+
+    /**
+     * Receives the samples of a synthetic ECG.
+     */
+    private interface Samples {
+        void accept(double value, long timestamp);
+    }
+
+    /**
+     * Feeds the detector an ECG with beats at the given intervals, cycled, for a
+     * number of seconds, and returns the detector.
+     */
+    private static RPeakDetector detect(double seconds, double[] intervals, double smallBeatAmplitude) {
+        RPeakDetector detector = new RPeakDetector();
+        ecg(seconds, beats(0.5, seconds + 1, intervals), smallBeatAmplitude, detector::update);
+        return detector;
+    }
+
+    /**
+     * Returns the times of beats from a first one at the given intervals, cycled,
+     * up to an end time, in seconds.
+     */
+    private static double[] beats(double from, double to, double[] intervals) {
+        int beatCount = 0;
+        double[] beats = new double[(int) ((to - from) / 0.3) + 2];
+        for (double t = from; t < to; t += intervals[beatCount % intervals.length]) {
+            beats[beatCount++] = t;
+        }
+        return Arrays.copyOf(beats, beatCount);
+    }
+
+    /**
+     * Generates a number of seconds of ECG with R peaks at the given times.
+     */
+    private static void ecg(double seconds, double[] beats, double smallBeatAmplitude, Samples samples) {
+        Random noise = new Random(7);
+        int nearest = 0;
+        for (int i = 0; i < seconds * RATE; i++) {
+            double t = (double) i / RATE;
+            while (nearest + 1 < beats.length && beats[nearest + 1] - t < t - beats[nearest]) {
+                nearest++;
+            }
+            double d = t - beats[nearest];
+            // Every eighth beat is much smaller, so only an adaptive threshold finds it
+            double scale = nearest % 8 == 7 ? smallBeatAmplitude : 1.0;
+            double value = 0.15 * wave(d + 0.2, 0.025)
+                    + scale * (-0.1 * wave(d + 0.025, 0.01) + wave(d, 0.012) - 0.25 * wave(d - 0.03, 0.01))
+                    + 0.3 * wave(d - 0.25, 0.05)
+                    + 0.2 * Math.sin(2 * Math.PI * 0.3 * t)
+                    + 0.02 * noise.nextGaussian();
+            samples.accept(value, 1_700_000_000_000L + i * 1000L / RATE);
+        }
+    }
+
+    private static double wave(double t, double width) {
+        return Math.exp(-t * t / (2 * width * width));
+    }
+
+    /**
+     * Tests that a regular rhythm of 75 beats per minute is counted beat by beat,
+     * after the two seconds in which the detector learns the signal level.
+     */
+    @Test
+    void testRegularRhythm() {
+        RPeakDetector detector = detect(60, new double[]{0.8}, 1.0);
+        assertEquals(73, detector.getBeatCount());
+        assertEquals(75.0, detector.getHeartRate(), 1.0);
+        assertTrue(detector.getIntervalStandardDeviation() < 0.02);
+    }
+
+    /**
+     * Tests that beats of a much smaller amplitude are still found.
+     */
+    @Test
+    void testSmallBeats() {
+        RPeakDetector detector = detect(60, new double[]{0.8}, 0.4);
+        assertEquals(73, detector.getBeatCount());
+        assertTrue(detector.getIntervalStandardDeviation() < 0.02);
+    }
+
+    /**
+     * Tests that alternating short and long intervals show as a large deviation
+     * around the same mean rate.
+     */
+    @Test
+    void testIrregularRhythm() {
+        RPeakDetector detector = detect(60, new double[]{0.6, 1.0}, 1.0);
+        assertEquals(75.0, detector.getHeartRate(), 1.5);
+        assertEquals(0.2, detector.getIntervalStandardDeviation(), 0.02);
+    }
+
+    /**
+     * Tests that the rate follows a change from a normal rhythm of 75 to a fast
+     * one of 120 beats per minute, and that the rhythm rule raises its alert
+     * within a few beats of the change, long before the rate since the first
+     * beat would cross 100.
+     */
+    @Test
+    void testRhythmChange() {
+        double[] normal = beats(0.5, 60, new double[]{0.8});
+        double[] fast = beats(normal[normal.length - 1] + 0.5, 91, new double[]{0.5});
+        double[] beats = Arrays.copyOf(normal, normal.length + fast.length);
+        System.arraycopy(fast, 0, beats, normal.length, fast.length);
+        long change = 1_700_000_000_000L + Math.round(fast[0] * 1000);
+
+        RPeakDetector detector = new RPeakDetector();
+        EcgRhythmRule rule = new EcgRhythmRule();
+        List<Alert> alerts = new ArrayList<>();
+        ecg(90, beats, 1.0, (value, timestamp) -> {
+            detector.update(value, timestamp);
+            rule.update(1, RecordType.ECG, value, timestamp, alerts::add);
+        });
+
+        assertEquals(120.0, detector.getHeartRate(), 1.5);
+        assertTrue(detector.getIntervalStandardDeviation() < 0.02);
+        List<Alert> fastAlerts = alerts.stream()
+                .filter(alert -> alert.getCondition().equals("triggered Abnormal Heart Rate Higher Than 100"))
+                .collect(Collectors.toList());
+        assertEquals(1, fastAlerts.size());
+        assertTrue(fastAlerts.get(0).getTimestamp() > change);
+        assertTrue(fastAlerts.get(0).getTimestamp() < change + 5_000L);
+        assertTrue(alerts.stream().allMatch(alert -> alert.getTimestamp() > change));
+    }
+
+    /**
+     * Tests that nothing is reported before two beats.
+     */
+    @Test
+    void testNoBeats() {
+        RPeakDetector detector = new RPeakDetector();
+        assertFalse(detector.update(0.0, 0L));
+        assertEquals(0, detector.getIntervalCount());
+        assertTrue(Double.isNaN(detector.getHeartRate()));
+        assertEquals(-1, detector.getLastBeatTimestamp());
+    }
+}
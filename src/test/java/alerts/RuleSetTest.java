@@ -0,0 +1,273 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.alerts.Alert;
+import com.alerts.incremental.BloodPressureRule;
+import com.alerts.incremental.HypotensiveHypoxemiaRule;
+import com.alerts.incremental.IncrementalAlertEngine;
+import com.alerts.incremental.IncrementalRule;
+import com.alerts.incremental.SaturationRule;
+import com.alerts.rules.RuleSet;
+import com.alerts.strategies.FusedStrategyExecutor;
+import com.data_management.Patient;
+import com.data_management.RecordType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for alert rules loaded from rule definitions.
+ */
+class RuleSetTest {
+
+    private static RuleSet rules(String... lines) throws IOException {
+        return RuleSet.parse(new StringReader(String.join("\n", lines)), "test");
+    }
+
+    private static List<Alert> run(List<Supplier<? extends IncrementalRule>> rules, double[][] records) {
+        List<Alert> alerts = new ArrayList<>();
+        IncrementalAlertEngine engine = new IncrementalAlertEngine(rules, alerts::add);
+        for (double[] record : records) {
+            engine.onRecord((int) record[0], (int) record[1], record[2], (long) record[3]);
+        }
+        return alerts;
+    }
+
+    private static List<String> describe(List<Alert> alerts) {
+        return alerts.stream()
+                .map(alert -> alert.getClass().getSimpleName() + " " + alert.getPatientId() + " "
+                        + alert.getCondition() + " " + alert.getTimestamp())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Tests that the default rule file raises exactly the alerts of the
+     * hand-written blood pressure, saturation and hypotensive hypoxemia rules.
+     */
+    @Test
+    void testDefaultRulesMatchHandWrittenRules() throws IOException {
+        Random random = new Random(11);
+        int[] types = {RecordType.SYSTOLIC_PRESSURE, RecordType.DIASTOLIC_PRESSURE, RecordType.SATURATION};
+        double[][] records = new double[20_000][];
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < records.length; i++) {
+            int type = types[random.nextInt(types.length)];
+            double value = type == RecordType.SATURATION ? 86 + random.nextInt(15)
+                    : type == RecordType.SYSTOLIC_PRESSURE ? 70 + random.nextInt(130) : 50 + random.nextInt(80);
+            timestamp += random.nextInt(240_000);
+            records[i] = new double[]{1 + random.nextInt(20), type, value, timestamp};
+        }
+
+        List<Supplier<? extends IncrementalRule>> handWritten = Arrays.asList(
+                BloodPressureRule::new, SaturationRule::new, HypotensiveHypoxemiaRule::new);
+        List<String> expected = describe(run(handWritten, records));
+        List<String> actual = describe(run(RuleSet.loadDefault().ruleFactories(), records));
+
+        assertTrue(expected.size() > 1000);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Tests the delta of several samples, with and without a maximum age.
+     */
+    @Test
+    void testDelta() throws IOException {
+        RuleSet ruleSet = rules(
+                "BloodPressure \"rise\" when delta(SystolicPressure, 2) >= 20",
+                "BloodPressure \"quick rise\" when delta(SystolicPressure, 2, 1m) >= 20");
+        double systolic = RecordType.SYSTOLIC_PRESSURE;
+        List<Alert> alerts = run(ruleSet.ruleFactories(), new double[][]{
+                {1, systolic, 100, 0}, {1, systolic, 110, 30_000}, {1, systolic, 120, 90_000},
+                {1, systolic, 120, 100_000}, {1, systolic, 130, 110_000}, {1, systolic, 140, 120_000}});
+        assertEquals(Arrays.asList("BloodPressureAlert 1 rise 90000", "BloodPressureAlert 1 rise 120000",
+                "BloodPressureAlert 1 quick rise 120000"), describe(alerts));
+    }
+
+    /**
+     * Tests the change and the rate of change over a time window.
+     */
+    @Test
+    void testChangeOverTimeWindow() throws IOException {
+        RuleSet ruleSet = rules(
+                "BloodOxygen \"drop\" when change(Saturation, 5m) <= -4",
+                "BloodOxygen \"fast drop\" when rate(Saturation, 5m) <= -2");
+        double saturation = RecordType.SATURATION;
+        List<Alert> alerts = run(ruleSet.ruleFactories(), new double[][]{
+                {1, saturation, 98, 0}, {1, saturation, 97, 60_000}, {1, saturation, 96, 120_000},
+                {1, saturation, 95, 180_000}, {1, saturation, 94, 240_000},
+                // The window has moved past 98: 97 to 91 in 4 minutes is still a drop, but slow
+                {1, saturation, 91, 300_000},
+                // 95 to 80 in under 5 minutes
+                {1, saturation, 91, 400_000}, {1, saturation, 80, 460_000}});
+        assertEquals(Arrays.asList("BloodOxygenAlert 1 drop 240000", "BloodOxygenAlert 1 fast drop 460000"),
+                describe(alerts));
+    }
+
+    /**
+     * Tests that readings sharing a timestamp do not make an infinite rate.
+     */
+    @Test
+    void testRateOfReadingsAtTheSameTime() throws IOException {
+        RuleSet ruleSet = rules(
+                "BloodOxygen \"fast drop\" when rate(Saturation, 5m) <= -2",
+                "BloodOxygen \"fast rise\" when rate(Saturation, 5m) >= 2");
+        double saturation = RecordType.SATURATION;
+        List<Alert> alerts = run(ruleSet.ruleFactories(), new double[][]{
+                {1, saturation, 98, 0}, {1, saturation, 90, 0}, {1, saturation, 99, 0},
+                // 98 to 88 in a minute
+                {1, saturation, 88, 60_000}});
+        assertEquals(Collections.singletonList("BloodOxygenAlert 1 fast drop 60000"), describe(alerts));
+    }
+
+    /**
+     * Tests that a time window keeps every reading inside it, however many, and
+     * that the readings of other record types survive the window growing.
+     */
+    @Test
+    void testTimeWindowKeepsEveryReading() throws IOException {
+        RuleSet ruleSet = rules(
+                "BloodOxygen \"drop\" when change(Saturation, 10m) <= -5",
+                "BloodPressure \"fall\" when delta(SystolicPressure, 3) < -20");
+        double saturation = RecordType.SATURATION;
+        double systolic = RecordType.SYSTOLIC_PRESSURE;
+        List<double[]> records = new ArrayList<>();
+        // Sixty readings of each type in ten minutes, all inside the saturation window
+        for (int i = 0; i < 60; i++) {
+            records.add(new double[]{1, saturation, 98 - i * 0.05, i * 10_000});
+            records.add(new double[]{1, systolic, 120, i * 10_000 + 5_000});
+        }
+        records.add(new double[]{1, saturation, 92, 600_000});
+        records.add(new double[]{1, systolic, 110, 605_000});
+        records.add(new double[]{1, systolic, 100, 610_000});
+        records.add(new double[]{1, systolic, 95, 615_000});
+        List<Alert> alerts = run(ruleSet.ruleFactories(), records.toArray(new double[0][]));
+        assertEquals(Arrays.asList("BloodOxygenAlert 1 drop 600000", "BloodPressureAlert 1 fall 615000"),
+                describe(alerts));
+    }
+
+    /**
+     * Tests that a conjunction across record types holds on the latest reading
+     * of each, and fires once per episode.
+     */
+    @Test
+    void testConjunctionAcrossVitals() throws IOException {
+        RuleSet ruleSet = rules(
+                "# Comment line",
+                "",
+                "ECG \"tachycardia with low saturation\" when HeartRate > 120 and Saturation < 90  # trailing comment");
+        double heartRate = RecordType.HEART_RATE;
+        double saturation = RecordType.SATURATION;
+        List<Alert> alerts = run(ruleSet.ruleFactories(), new double[][]{
+                {1, heartRate, 130, 0}, {1, saturation, 88, 1000}, {1, heartRate, 135, 2000},
+                {1, heartRate, 100, 3000}, {1, heartRate, 125, 4000}});
+        assertEquals(Arrays.asList("ECGAlert 1 tachycardia with low saturation 1000",
+                "ECGAlert 1 tachycardia with low saturation 4000"), describe(alerts));
+        assertEquals(1, ruleSet.size());
+    }
+
+    /**
+     * Tests a rule with several conditions on one record type and one on another.
+     */
+    @Test
+    void testSeveralConditionsOnOneVital() throws IOException {
+        RuleSet ruleSet = rules(
+                "ECG \"fast, rising heart rate with low saturation\" "
+                        + "when HeartRate > 120 and delta(HeartRate, 1) > 5 and Saturation < 90");
+        double heartRate = RecordType.HEART_RATE;
+        double saturation = RecordType.SATURATION;
+        List<Alert> alerts = run(ruleSet.ruleFactories(), new double[][]{
+                {1, heartRate, 100, 0}, {1, heartRate, 130, 1000}, {1, saturation, 88, 2000},
+                // Rising no more: one condition on the heart rate fails, the other still holds
+                {1, heartRate, 132, 3000}, {1, heartRate, 140, 4000}, {1, saturation, 95, 5000},
+                {1, heartRate, 150, 6000}});
+        assertEquals(Arrays.asList("ECGAlert 1 fast, rising heart rate with low saturation 2000",
+                "ECGAlert 1 fast, rising heart rate with low saturation 4000"), describe(alerts));
+    }
+
+    /**
+     * Tests many conditions on one signal, with repeated thresholds and every
+     * operator, against testing each condition on every reading.
+     */
+    @Test
+    void testManyThresholdsOnOneSignal() throws IOException {
+        String[] operators = {"<", "<=", ">", ">="};
+        Random random = new Random(5);
+        List<String> lines = new ArrayList<>();
+        int[] thresholds = new int[120];
+        for (int r = 0; r < thresholds.length; r++) {
+            thresholds[r] = 85 + random.nextInt(15);
+            lines.add("BloodOxygen \"" + r + "\" when Saturation " + operators[r % 4] + " " + thresholds[r]);
+        }
+        RuleSet ruleSet = rules(lines.toArray(new String[0]));
+
+        double[][] records = new double[5_000][];
+        List<String> expected = new ArrayList<>();
+        boolean[] holding = new boolean[thresholds.length];
+        for (int i = 0; i < records.length; i++) {
+            // Mostly small moves, now and then a jump over many thresholds
+            double value = i == 0 || random.nextInt(10) == 0 ? 80 + random.nextInt(25)
+                    : Math.max(80, Math.min(104, records[i - 1][2] + random.nextInt(3) - 1));
+            records[i] = new double[]{1, RecordType.SATURATION, value, i * 1000L};
+            for (int r = 0; r < thresholds.length; r++) {
+                int threshold = thresholds[r];
+                boolean holds = r % 4 == 0 ? value < threshold : r % 4 == 1 ? value <= threshold
+                        : r % 4 == 2 ? value > threshold : value >= threshold;
+                if (holds && !holding[r]) {
+                    expected.add("BloodOxygenAlert 1 " + r + " " + i * 1000L);
+                }
+                holding[r] = holds;
+            }
+        }
+
+        assertEquals(expected, describe(run(ruleSet.ruleFactories(), records)));
+    }
+
+    /**
+     * Tests that a rule set works as a strategy in a fused executor.
+     */
+    @Test
+    void testAsStrategy() throws IOException {
+        FusedStrategyExecutor executor = new FusedStrategyExecutor(Collections.singletonList(
+                rules("BloodOxygen \"low\" when Saturation < 92").asStrategy()));
+        Patient patient = new Patient(1);
+        patient.addRecord(95, RecordType.SATURATION, 1_700_000_000_000L);
+        assertFalse(executor.anyAlert(patient));
+        patient.addRecord(91, RecordType.SATURATION, 1_700_000_001_000L);
+        assertTrue(executor.anyAlert(patient));
+    }
+
+    /**
+     * Tests that rules are loaded from a file and that invalid lines are
+     * reported with their line number.
+     */
+    @Test
+    void testLoadAndErrors() throws IOException {
+        Path file = Files.createTempFile("rules", ".txt");
+        try {
+            Files.write(file, Arrays.asList("BloodOxygen \"low\" when Saturation < 92",
+                    "BloodOxygen \"bad\" when delta(Saturation) < 92"));
+            IOException error = assertThrows(IOException.class, () -> RuleSet.load(file));
+            assertTrue(error.getMessage().contains("line 2: delta takes"), error.getMessage());
+        } finally {
+            Files.delete(file);
+        }
+
+        assertThrows(IOException.class, () -> rules("Unknown \"x\" when Saturation < 92"));
+        assertThrows(IOException.class, () -> rules("BloodOxygen \"x\" when Saturation = 92"));
+        assertThrows(IOException.class, () -> rules("BloodOxygen \"x\" when change(Saturation, 10q) < 1"));
+        assertThrows(IOException.class, () -> rules("BloodOxygen \"x\" when steps(Saturation, 0) < 1"));
+        assertThrows(IOException.class, () -> rules("BloodOxygen \"x\" when Saturation < 92 or HeartRate > 1"));
+        assertThrows(IOException.class, () -> rules("BloodOxygen \"x when Saturation < 92"));
+    }
+}
@@ -0,0 +1,172 @@
+package cardio_generator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.cardio_generator.outputs.AsyncFileOutputStrategy;
+import com.cardio_generator.outputs.FileOutputStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for the asynchronous file output.
+ */
+class AsyncFileOutputStrategyTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that the files written match those of FileOutputStrategy line for line.
+     */
+    @Test
+    void testSameContentAsFileOutputStrategy() throws IOException {
+        Path expected = directory.resolve("expected");
+        Path actual = directory.resolve("actual");
+        FileOutputStrategy fileOutput = new FileOutputStrategy(expected.toString());
+        try (AsyncFileOutputStrategy asyncOutput = new AsyncFileOutputStrategy(actual.toString())) {
+            for (int i = 0; i < 1000; i++) {
+                String label = i % 3 == 0 ? "Saturation" : "ECG";
+                String data = i % 3 == 0 ? (90 + i % 10) + "%" : Double.toString(Math.sin(i) * -0.25);
+                fileOutput.output(i % 7, 1714376789050L + i, label, data);
+                asyncOutput.output(i % 7, 1714376789050L + i, label, data);
+            }
+            asyncOutput.output(-1, 0L, "Alert", "triggered");
+            fileOutput.output(-1, 0L, "Alert", "triggered");
+        }
+
+        for (String file : new String[] {"ECG.txt", "Saturation.txt", "Alert.txt"}) {
+            assertEquals(Files.readAllLines(expected.resolve(file)), Files.readAllLines(actual.resolve(file)));
+        }
+    }
+
+    /**
+     * Tests that a file is rotated once it reaches the size limit and no line is lost.
+     */
+    @Test
+    void testRotationBySize() throws IOException {
+        try (AsyncFileOutputStrategy output = new AsyncFileOutputStrategy(directory.toString(), 1024, 4096, 10,
+                2048, 0)) {
+            for (int i = 0; i < 500; i++) {
+                output.output(1, 1000L + i, "ECG", Integer.toString(i));
+            }
+        }
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().startsWith("ECG")).collect(Collectors.toList());
+        }
+        assertTrue(files.size() > 1);
+        long lines = 0;
+        for (Path file : files) {
+            assertTrue(Files.size(file) < 2048 + 100);
+            lines += Files.readAllLines(file).size();
+        }
+        assertEquals(500, lines);
+    }
+
+    /**
+     * Tests that a file whose rotation fails is reopened and written on, and
+     * rotated on a later attempt, without losing a line.
+     */
+    @Test
+    void testFailedRotationKeepsWriting() throws IOException {
+        AtomicInteger moves = new AtomicInteger();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream originalErr = System.err;
+        System.setErr(new PrintStream(errors));
+        try (AsyncFileOutputStrategy output = new AsyncFileOutputStrategy(directory.toString(), 1024, 4096, 10,
+                2048, 0) {
+            @Override
+            protected void moveFile(Path source, Path target) throws IOException {
+                if (moves.getAndIncrement() == 0) {
+                    throw new IOException("rename refused");
+                }
+                super.moveFile(source, target);
+            }
+        }) {
+            for (int i = 0; i < 500; i++) {
+                output.output(1, 1000L + i, "ECG", Integer.toString(i));
+            }
+        } finally {
+            System.setErr(originalErr);
+        }
+
+        assertTrue(errors.toString().contains("rename refused"));
+        assertFalse(errors.toString().contains("Error writing"));
+        assertTrue(moves.get() > 1);
+        assertEquals(500, countLines("ECG"));
+    }
+
+    /**
+     * Tests that samples given while the output closes are either written or
+     * rejected with an error, never dropped silently, and that no writer is
+     * started after it has closed.
+     */
+    @Test
+    void testSamplesDuringCloseAreWrittenOrRejected() throws Exception {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream originalErr = System.err;
+        System.setErr(new PrintStream(errors, true));
+        int producers = 4;
+        int samples = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            AsyncFileOutputStrategy output = new AsyncFileOutputStrategy(directory.toString());
+            CountDownLatch started = new CountDownLatch(producers);
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                String label = "Label" + p;
+                tasks.add(executor.submit(() -> {
+                    started.countDown();
+                    for (int i = 0; i < samples; i++) {
+                        output.output(1, i, label, Integer.toString(i));
+                    }
+                }));
+            }
+            started.await();
+            output.close();
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            output.output(1, 0L, "Late", "0");
+        } finally {
+            executor.shutdown();
+            System.setErr(originalErr);
+        }
+
+        long rejected = errors.toString().lines().filter(line -> line.endsWith("output is closed")).count();
+        long written = 0;
+        for (int p = 0; p < producers; p++) {
+            written += countLines("Label" + p);
+        }
+        assertEquals((long) producers * samples + 1, written + rejected);
+        assertFalse(Files.exists(directory.resolve("Late.txt")));
+    }
+
+    private long countLines(String label) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().startsWith(label + "."))
+                    .collect(Collectors.toList());
+        }
+        long lines = 0;
+        for (Path file : files) {
+            lines += Files.readAllLines(file).size();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,243 @@
+package cardio_generator;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.cardio_generator.SimulationClock;
+import com.cardio_generator.SimulationEngine;
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Unit tests for the tick-based simulation engine.
+ */
+class SimulationEngineTest {
+    private static final OutputStrategy NO_OUTPUT = (patientId, timestamp, label, data) -> { };
+
+    /**
+     * Counts the runs of every patient and the threads they ran on.
+     */
+    private static final class CountingGenerator implements PatientDataGenerator {
+        final AtomicIntegerArray runs;
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        CountingGenerator(int patientCount) {
+            runs = new AtomicIntegerArray(patientCount + 1);
+        }
+
+        @Override
+        public void generate(int patientId, OutputStrategy outputStrategy) {
+            runs.incrementAndGet(patientId);
+            threads.add(Thread.currentThread().getName());
+        }
+    }
+
+    /**
+     * Tests that every patient of a generator runs once per period, after a
+     * start offset of less than five ticks, on no more threads than the pool has.
+     */
+    @Test
+    void testPeriods() throws Exception {
+        CountingGenerator everyTick = new CountingGenerator(1000);
+        CountingGenerator everyTwentyTicks = new CountingGenerator(1000);
+        try (SimulationEngine engine = new SimulationEngine(NO_OUTPUT, 2, 1000L, 64)) {
+            engine.schedule(everyTick, 1, 1000, 1);
+            engine.schedule(everyTwentyTicks, 1, 1000, 20);
+            assertEquals(32, engine.getBatchCount());
+            for (int i = 0; i < 100; i++) {
+                engine.tick();
+            }
+            assertEquals(100, engine.getTickCount());
+        }
+
+        assertEquals(0, everyTick.runs.get(0));
+        for (int patientId = 1; patientId <= 1000; patientId++) {
+            assertTrue(everyTick.runs.get(patientId) >= 96 && everyTick.runs.get(patientId) <= 100);
+            assertEquals(5, everyTwentyTicks.runs.get(patientId));
+        }
+        assertTrue(everyTick.threads.size() <= 2);
+    }
+
+    /**
+     * Tests that a period longer than one revolution of the timing wheel is kept.
+     */
+    @Test
+    void testPeriodLongerThanWheel() throws Exception {
+        CountingGenerator generator = new CountingGenerator(10);
+        try (SimulationEngine engine = new SimulationEngine(NO_OUTPUT, 1, 1000L, 64)) {
+            engine.schedule(generator, 1, 10, 1000);
+            for (int i = 0; i < 2100; i++) {
+                engine.tick();
+            }
+        }
+        assertEquals(3, generator.runs.get(1));
+        assertEquals(3, generator.runs.get(10));
+    }
+
+    /**
+     * Tests that the engine ticks on its own in real time once started.
+     */
+    @Test
+    void testRealTimeTicks() throws Exception {
+        CountingGenerator generator = new CountingGenerator(100);
+        try (SimulationEngine engine = new SimulationEngine(NO_OUTPUT, 2, 10L, 16)) {
+            engine.schedule(generator, 1, 100, 1);
+            engine.start();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (engine.getTickCount() < 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(engine.getTickCount() >= 10);
+        }
+        assertTrue(generator.runs.get(50) >= 5);
+    }
+
+    /**
+     * Tests that, once the thread that started the engine has returned, as
+     * the simulator's main method does, a thread that keeps the process alive
+     * goes on ticking until the engine is closed.
+     */
+    @Test
+    void testStartedEngineKeepsProcessAlive() throws Exception {
+        CountingGenerator generator = new CountingGenerator(10);
+        SimulationEngine engine = new SimulationEngine(NO_OUTPUT, 1, 10L, 16);
+        Thread ticker;
+        try {
+            engine.schedule(generator, 1, 10, 1);
+            Thread starter = new Thread(engine::start);
+            starter.start();
+            starter.join();
+
+            ticker = tickers().get(0);
+            assertFalse(ticker.isDaemon());
+            long ticks = engine.getTickCount();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (engine.getTickCount() < ticks + 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(engine.getTickCount() >= ticks + 5);
+        } finally {
+            engine.close();
+        }
+        ticker.join(5000);
+        assertFalse(ticker.isAlive());
+    }
+
+    private static List<Thread> tickers() {
+        List<Thread> tickers = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("simulation-ticker") && thread.isAlive()) {
+                tickers.add(thread);
+            }
+        }
+        return tickers;
+    }
+
+    /**
+     * Tests that a simulated clock moves by one tick length per tick, and that
+     * the samples are stamped with it however fast the ticks run.
+     */
+    @Test
+    void testSimulatedClock() throws Exception {
+        long start = 1_700_000_000_000L;
+        SimulationClock clock = SimulationClock.simulated(start);
+        Queue<Long> timestamps = new ConcurrentLinkedQueue<>();
+        OutputStrategy output = (patientId, timestamp, label, data) -> {
+            if (patientId == 1) {
+                timestamps.add(timestamp);
+            }
+        };
+        try (SimulationEngine engine = new SimulationEngine(output, 2, 1000L, 16, clock, 1L)) {
+            engine.schedule(new ECGDataGenerator(10, clock, 1L), 1, 10, 1);
+            engine.run(3600, Double.POSITIVE_INFINITY);
+            assertEquals(start + 3_600_000L, clock.currentTimeMillis());
+
+            long began = System.nanoTime();
+            engine.run(20, 100.0);
+            assertTrue(System.nanoTime() - began >= 190_000_000L);
+        }
+
+        List<Long> stamped = new ArrayList<>(timestamps);
+        assertTrue(stamped.size() >= 3616);
+        assertTrue(stamped.get(0) >= start && stamped.get(0) < start + 5000L);
+        for (int i = 1; i < stamped.size(); i++) {
+            assertEquals(1000L, stamped.get(i) - stamped.get(i - 1));
+        }
+    }
+
+    /**
+     * Tests that two runs with the same seed generate the same samples, on
+     * several threads, and that another seed generates other samples.
+     */
+    @Test
+    void testSeededRunsAreReproducible() throws Exception {
+        List<String> first = simulate(42L);
+        assertTrue(first.size() > 2 * 300 * 100);
+        assertEquals(first, simulate(42L));
+        assertNotEquals(first, simulate(43L));
+    }
+
+    private static List<String> simulate(long seed) throws InterruptedException {
+        int patients = 100;
+        SimulationClock clock = SimulationClock.simulated(1_700_000_000_000L);
+        Queue<String> lines = new ConcurrentLinkedQueue<>();
+        OutputStrategy output = (patientId, timestamp, label, data) ->
+                lines.add(patientId + "," + timestamp + "," + label + "," + data);
+        try (SimulationEngine engine = new SimulationEngine(output, 3, 1000L, 16, clock, seed)) {
+            engine.schedule(new ECGDataGenerator(patients, clock, seed), 1, patients, 1);
+            engine.schedule(new BloodSaturationDataGenerator(patients, clock, seed), 1, patients, 1);
+            engine.schedule(new BloodPressureDataGenerator(patients, clock, seed), 1, patients, 60);
+            engine.schedule(new BloodLevelsDataGenerator(patients, clock, seed), 1, patients, 120);
+            engine.schedule(new AlertGenerator(patients, clock, seed), 1, patients, 20);
+            engine.run(300, Double.POSITIVE_INFINITY);
+        }
+        List<String> sorted = new ArrayList<>(lines);
+        sorted.sort(null);
+        return sorted;
+    }
+
+    /**
+     * Tests that every patient runs on a virtual thread of its own with a batch
+     * size of one, on Java 21 and later.
+     */
+    @Test
+    void testVirtualThreadPerPatient() throws Exception {
+        assumeTrue(SimulationEngine.ThreadMode.VIRTUAL.isSupported());
+        CountingGenerator generator = new CountingGenerator(1000);
+        try (SimulationEngine engine = new SimulationEngine(NO_OUTPUT, 1, 1000L, 1,
+                SimulationClock.system(), 1L, SimulationEngine.ThreadMode.VIRTUAL)) {
+            engine.schedule(generator, 1, 1000, 1);
+            assertEquals(1000, engine.getBatchCount());
+            engine.run(10, Double.POSITIVE_INFINITY);
+        }
+        for (int patientId = 1; patientId <= 1000; patientId++) {
+            assertTrue(generator.runs.get(patientId) >= 6);
+        }
+        assertTrue(generator.threads.size() > 1000);
+    }
+
+    /**
+     * Tests that the virtual thread mode is refused before Java 21.
+     */
+    @Test
+    void testVirtualThreadsUnsupported() {
+        assumeFalse(SimulationEngine.ThreadMode.VIRTUAL.isSupported());
+        assertThrows(UnsupportedOperationException.class, () -> new SimulationEngine(NO_OUTPUT, 1, 1000L, 1,
+                SimulationClock.system(), 1L, SimulationEngine.ThreadMode.VIRTUAL));
+    }
+}
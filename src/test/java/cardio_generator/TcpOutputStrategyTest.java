@@ -0,0 +1,103 @@
+package cardio_generator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.cardio_generator.outputs.TcpOutputStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for the TCP output and its handling of slow clients.
+ */
+class TcpOutputStrategyTest {
+
+    private static void awaitClients(TcpOutputStrategy output, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (output.getClientCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, output.getClientCount());
+    }
+
+    private static BufferedReader reader(Socket socket) throws Exception {
+        socket.setSoTimeout(5000);
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that every connected client receives every line, in order.
+     */
+    @Test
+    void testBroadcastToSeveralClients() throws Exception {
+        try (TcpOutputStrategy output = new TcpOutputStrategy(0);
+             Socket first = new Socket("localhost", output.getPort());
+             Socket second = new Socket("localhost", output.getPort())) {
+            awaitClients(output, 2);
+            for (int i = 0; i < 10_000; i++) {
+                output.output(i % 5, 1714376789050L + i, "ECG", Double.toString(i * 0.5));
+            }
+
+            for (BufferedReader in : new BufferedReader[] {reader(first), reader(second)}) {
+                for (int i = 0; i < 10_000; i++) {
+                    assertEquals((i % 5) + "," + (1714376789050L + i) + ",ECG," + (i * 0.5), in.readLine());
+                }
+            }
+            assertEquals(0, output.getDroppedLines());
+        }
+    }
+
+    /**
+     * Tests that a client that does not read loses its oldest lines instead of
+     * holding up the generator, and still receives the latest line.
+     */
+    @Test
+    void testDropOldestKeepsGeneratorRunning() throws Exception {
+        try (TcpOutputStrategy output = new TcpOutputStrategy(0, TcpOutputStrategy.OverflowPolicy.DROP_OLDEST, 4096);
+             Socket client = new Socket("localhost", output.getPort())) {
+            awaitClients(output, 1);
+            long start = System.nanoTime();
+            for (int i = 0; i < 500_000; i++) {
+                output.output(1, i, "ECG", "0.125");
+            }
+            output.output(1, -1L, "Alert", "last");
+            assertTrue(System.nanoTime() - start < 10_000_000_000L);
+            assertTrue(output.getDroppedLines() > 0);
+
+            BufferedReader in = reader(client);
+            String line;
+            String last = null;
+            while (!"1,-1,Alert,last".equals(line = in.readLine())) {
+                assertNotNull(line);
+                last = line;
+            }
+            // The newest samples are kept
+            assertEquals("1,499999,ECG,0.125", last);
+            assertEquals(1, output.getClientCount());
+        }
+    }
+
+    /**
+     * Tests that a client that does not read is disconnected under the
+     * disconnect policy.
+     */
+    @Test
+    void testDisconnectSlowClient() throws Exception {
+        try (TcpOutputStrategy output = new TcpOutputStrategy(0, TcpOutputStrategy.OverflowPolicy.DISCONNECT, 4096);
+             Socket client = new Socket("localhost", output.getPort())) {
+            awaitClients(output, 1);
+            for (int i = 0; i < 500_000 && output.getClientCount() > 0; i++) {
+                output.output(1, i, "ECG", "0.125");
+            }
+            awaitClients(output, 0);
+
+            BufferedReader in = reader(client);
+            while (in.readLine() != null) {
+                // Reads what was sent before the connection was closed
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package cardio_generator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import com.data_management.BinaryRecordFrame;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RecordBatch;
+import com.data_management.RecordType;
+import com.data_management.WebSocketClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Unit tests for the coalescing WebSocket output and the frames it sends.
+ */
+class WebSocketOutputStrategyTest {
+    private static final long START = 1714376789050L;
+
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        DataStorage.resetInstance();
+        storage = DataStorage.getInstance();
+    }
+
+    private void sendAndReceive(int port, WebSocketOutputStrategy.FrameMode frameMode) throws Exception {
+        WebSocketOutputStrategy output = new WebSocketOutputStrategy(port, 10L, frameMode);
+        Thread.sleep(500); // Wait for the server to start
+        WebSocketClient first = new WebSocketClient(new URI("ws://localhost:" + port), storage);
+        WebSocketClient second = new WebSocketClient(new URI("ws://localhost:" + port), storage);
+        try {
+            assertTrue(first.connectBlocking());
+            assertTrue(second.connectBlocking());
+            // The server registers a connection shortly after the client sees it open
+            long connectDeadline = System.currentTimeMillis() + 5000;
+            while (output.getClientCount() < 2 && System.currentTimeMillis() < connectDeadline) {
+                Thread.sleep(10);
+            }
+            for (int i = 0; i < 500; i++) {
+                output.output(i % 5, START + i, "ECG", Double.toString(i * 0.25));
+            }
+            output.output(1, START, "Saturation", "97%");
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (storage.getRecords(1, 0L, Long.MAX_VALUE).size() < 202 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+        } finally {
+            first.close();
+            second.close();
+            output.stopServer();
+        }
+
+        // Both clients store every record into the same storage
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(202, records.size());
+        assertEquals("Saturation", records.get(1).getRecordType());
+        assertEquals(97.0, records.get(1).getMeasurementValue());
+        assertEquals(START + 496, records.get(201).getTimestamp());
+        assertEquals(496 * 0.25, records.get(201).getMeasurementValue());
+        assertEquals(1000, storage.getAllPatients().stream()
+                .mapToInt(patient -> patient.getRecords("ECG", 0L, Long.MAX_VALUE).size()).sum());
+    }
+
+    /**
+     * Tests that coalesced text frames of several lines reach every client intact.
+     */
+    @Test
+    void testCoalescedTextFrames() throws Exception {
+        sendAndReceive(8891, WebSocketOutputStrategy.FrameMode.TEXT);
+    }
+
+    /**
+     * Tests that binary frames reach every client intact.
+     */
+    @Test
+    void testBinaryFrames() throws Exception {
+        sendAndReceive(8892, WebSocketOutputStrategy.FrameMode.BINARY);
+    }
+
+    /**
+     * Tests that a binary frame decodes to the records added to it, with the
+     * record types of the decoding process.
+     */
+    @Test
+    void testBinaryFrameRoundTrip() {
+        BinaryRecordFrame frame = new BinaryRecordFrame();
+        frame.add(3, RecordType.codeOf("ECG"), -0.125, START);
+        frame.add(3, RecordType.codeOf("ECG"), 0.5, START + 4);
+        frame.add(7, RecordType.codeOf("Alert"), 1.0, START - 1000);
+        assertEquals(3, frame.size());
+
+        RecordBatch batch = new RecordBatch(4);
+        assertEquals(3, BinaryRecordFrame.decode(ByteBuffer.wrap(frame.toByteArray()), batch));
+        assertEquals(START + 4, batch.getTimestamp(1));
+        assertEquals(0.5, batch.getMeasurementValue(1));
+        assertEquals(RecordType.codeOf("Alert"), batch.getRecordTypeCode(2));
+        assertEquals(START - 1000, batch.getTimestamp(2));
+
+        frame.clear();
+        assertTrue(frame.isEmpty());
+        byte[] truncated = new byte[10];
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryRecordFrame.decode(ByteBuffer.wrap(truncated), new RecordBatch(1)));
+    }
+}
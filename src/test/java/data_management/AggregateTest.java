@@ -0,0 +1,159 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.data_management.Aggregate;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RetentionPolicy;
+import com.data_management.StorageBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for aggregate queries over time ranges and windows.
+ */
+class AggregateTest {
+    private static final long START = 1714377600000L;
+
+    @AfterEach
+    void tearDown() {
+        DataStorage.setBackend(null);
+        DataStorage.resetInstance();
+    }
+
+    private static DataStorage storageWith(StorageBackend backend) {
+        DataStorage.setBackend(backend);
+        DataStorage.resetInstance();
+        return DataStorage.getInstance();
+    }
+
+    // Whole values, so that sums are exact in any order, with some samples late and some sharing a timestamp
+    private static long fill(DataStorage storage, Random random, long from, int count) {
+        long timestamp = from;
+        for (int i = 0; i < count; i++) {
+            timestamp += random.nextInt(20);
+            long sampleTime = random.nextInt(10) == 0 ? timestamp - random.nextInt(5_000) : timestamp;
+            storage.addPatientData(1, random.nextInt(1000) - 500, "ECG", sampleTime);
+        }
+        return timestamp;
+    }
+
+    // Compares an aggregate with a scan of the records of the range
+    private static void assertMatchesScan(DataStorage storage, long startTime, long endTime) {
+        List<PatientRecord> records = storage.getRecords(1, startTime, endTime);
+        Aggregate aggregate = storage.aggregate(1, "ECG", startTime, endTime);
+        assertEquals(records.size(), aggregate.getCount(), "count of " + startTime + " to " + endTime);
+        if (records.isEmpty()) {
+            assertTrue(Double.isNaN(aggregate.getMin()));
+            assertTrue(Double.isNaN(aggregate.getMean()));
+            return;
+        }
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (PatientRecord record : records) {
+            min = Math.min(min, record.getMeasurementValue());
+            max = Math.max(max, record.getMeasurementValue());
+            sum += record.getMeasurementValue();
+        }
+        PatientRecord last = records.get(records.size() - 1);
+        assertEquals(min, aggregate.getMin());
+        assertEquals(max, aggregate.getMax());
+        assertEquals(sum, aggregate.getSum());
+        assertEquals(sum / records.size(), aggregate.getMean(), 1e-9);
+        assertEquals(last.getTimestamp(), aggregate.getLastTimestamp());
+        assertEquals(last.getMeasurementValue(), aggregate.getLast());
+    }
+
+    private static void assertRandomRangesMatchScan(DataStorage storage, Random random, long from, long to) {
+        assertMatchesScan(storage, 0L, Long.MAX_VALUE);
+        assertMatchesScan(storage, from, to);
+        for (int i = 0; i < 300; i++) {
+            long a = from - 1_000 + (long) (random.nextDouble() * (to - from + 2_000));
+            long b = random.nextInt(4) == 0 ? a + random.nextInt(100) : from + (long) (random.nextDouble() * (to - from));
+            assertMatchesScan(storage, Math.min(a, b), Math.max(a, b));
+        }
+    }
+
+    /**
+     * Tests that aggregates over random ranges match a scan of the samples, on
+     * the heap and off it, with late samples, sealed blocks and compaction.
+     */
+    @Test
+    void testMatchesScan() {
+        for (StorageBackend backend : new StorageBackend[] { StorageBackend.heap(), StorageBackend.offHeap(1 << 20) }) {
+            Random random = new Random(5);
+            DataStorage storage = storageWith(backend);
+            long end = fill(storage, random, START, 20_000);
+            assertRandomRangesMatchScan(storage, random, START, end);
+
+            // Drop about the oldest third, cutting through a bucket, then keep appending
+            long now = START + (end - START) / 3 + 60_000;
+            storage.setRetentionPolicy(new RetentionPolicy(60_000L, RetentionPolicy.FOREVER, RetentionPolicy.FOREVER));
+            storage.compact(now);
+            assertRandomRangesMatchScan(storage, random, START, end);
+            end = fill(storage, random, end, 5_000);
+            assertRandomRangesMatchScan(storage, random, START, end);
+
+            // Everything expires, then the series starts over
+            storage.compact(end + 120_000);
+            assertEquals(0, storage.aggregate(1, "ECG", 0L, Long.MAX_VALUE).getCount());
+            storage.addPatientData(1, 7.0, "ECG", end + 200_000);
+            assertEquals(7.0, storage.aggregate(1, "ECG", 0L, Long.MAX_VALUE).getMean());
+        }
+    }
+
+    /**
+     * Tests tumbling and sliding windows, including a last window cut off at
+     * the end of the range.
+     */
+    @Test
+    void testWindows() {
+        DataStorage storage = storageWith(StorageBackend.heap());
+        for (int i = 0; i < 10; i++) {
+            storage.addPatientData(1, i, "HeartRate", START + i * 1000L);
+        }
+
+        List<Aggregate> tumbling = storage.aggregate(1, "HeartRate", START, START + 9_999L, 4000L);
+        assertEquals(3, tumbling.size());
+        assertEquals(1.5, tumbling.get(0).getMean());
+        assertEquals(4, tumbling.get(1).getCount());
+        assertEquals(START + 8_000L, tumbling.get(2).getStartTime());
+        assertEquals(START + 9_999L, tumbling.get(2).getEndTime());
+        assertEquals(17.0, tumbling.get(2).getSum());
+
+        List<Aggregate> sliding = storage.aggregate(1, "HeartRate", START, START + 9_999L, 3000L, 1000L);
+        assertEquals(10, sliding.size());
+        for (int i = 0; i < 10; i++) {
+            Aggregate window = sliding.get(i);
+            assertEquals(START + i * 1000L, window.getStartTime());
+            assertEquals(Math.min(i + 2, 9), window.getMax());
+            assertEquals(Math.min(i + 2, 9), window.getLast());
+            assertEquals(Math.min(3, 10 - i), window.getCount());
+        }
+    }
+
+    /**
+     * Tests aggregates of a range without samples and invalid windows.
+     */
+    @Test
+    void testEmptyAndInvalid() {
+        DataStorage storage = storageWith(StorageBackend.heap());
+        Aggregate none = storage.aggregate(2, "ECG", START, START + 1000L);
+        assertEquals(0, none.getCount());
+        assertTrue(Double.isNaN(none.getMean()));
+        assertTrue(Double.isNaN(none.getLast()));
+        assertEquals(Long.MIN_VALUE, none.getLastTimestamp());
+        assertEquals(2, storage.aggregate(2, "ECG", START, START + 1999L, 1000L).size());
+
+        storage.addPatientData(1, 80.0, "HeartRate", START);
+        assertEquals(0, storage.aggregate(1, "HeartRate", START + 1, START + 1000L).getCount());
+        assertThrows(IllegalArgumentException.class, () -> storage.aggregate(1, "HeartRate", START, START + 1000L, 0L));
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.aggregate(1, "HeartRate", START, START + 1000L, 100L, -1L));
+    }
+}
@@ -0,0 +1,106 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.cardio_generator.outputs.BinaryFileOutputStrategy;
+import com.data_management.BinaryDataReader;
+import com.data_management.BinaryRecordWriter;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RecordParser;
+import com.data_management.RecordType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for the binary record format: BinaryRecordWriter,
+ * BinaryDataReader and BinaryFileOutputStrategy.
+ */
+class BinaryFormatTest {
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        DataStorage.resetInstance();
+    }
+
+    /**
+     * Tests that records read back equal those written, with and without
+     * delta-encoded timestamps, including out-of-order timestamps.
+     */
+    @Test
+    void testRoundTrip() throws IOException {
+        for (boolean delta : new boolean[] {false, true}) {
+            DataStorage.resetInstance();
+            Path file = directory.resolve("records-" + delta + ".bin");
+            int custom = RecordType.codeOf("BinaryFormatTestLabel");
+            try (BinaryRecordWriter writer = new BinaryRecordWriter(file, delta)) {
+                for (int i = 0; i < 20000; i++) {
+                    writer.write(i % 10, i % 3 == 0 ? RecordType.ECG : custom, i * 0.25, 1714376789050L + i * 7L);
+                }
+                writer.write(3, RecordType.ECG, -1.5, 1000L);
+            }
+
+            DataStorage storage = DataStorage.getInstance();
+            assertEquals(20001, new BinaryDataReader(directory).readFile(file, storage));
+            List<PatientRecord> records = storage.getRecords(3, 0L, Long.MAX_VALUE);
+            assertEquals(2001, records.size());
+            assertEquals(1000L, records.get(0).getTimestamp());
+            assertEquals(-1.5, records.get(0).getMeasurementValue());
+            assertEquals(1714376789050L + 3 * 7L, records.get(1).getTimestamp());
+            assertEquals("BinaryFormatTestLabel", records.get(2).getRecordType());
+            assertEquals(13 * 0.25, records.get(2).getMeasurementValue());
+        }
+    }
+
+    /**
+     * Tests that a file cut off in the middle of a record is read up to the last
+     * complete record.
+     */
+    @Test
+    void testTruncatedFile() throws IOException {
+        Path file = directory.resolve("records.bin");
+        try (BinaryRecordWriter writer = new BinaryRecordWriter(file, true)) {
+            for (int i = 0; i < 100; i++) {
+                writer.write(1, RecordType.SATURATION, 95, 1000L + i);
+            }
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        DataStorage storage = DataStorage.getInstance();
+        new BinaryDataReader(directory).readData(storage);
+        assertEquals(99, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+    }
+
+    /**
+     * Tests that the output strategy converts the simulator's data the way the
+     * text formats are parsed.
+     */
+    @Test
+    void testOutputStrategy() throws IOException {
+        try (BinaryFileOutputStrategy output = new BinaryFileOutputStrategy(directory.toString())) {
+            output.output(5, 1000L, "Saturation", "97%");
+            output.output(5, 2000L, "Alert", "triggered");
+            output.output(5, 3000L, "ECG", "0.125");
+            output.output(5, 4000L, "ECG", "not a number");
+        }
+
+        DataStorage storage = DataStorage.getInstance();
+        new BinaryDataReader(directory).readData(storage);
+        List<PatientRecord> records = storage.getRecords(5, 0L, Long.MAX_VALUE);
+        assertEquals(3, records.size());
+        assertEquals(97.0, records.get(0).getMeasurementValue());
+        assertEquals(RecordParser.ALERT_TRIGGERED, records.get(1).getMeasurementValue());
+        assertEquals("ECG", records.get(2).getRecordType());
+        assertEquals(0.125, records.get(2).getMeasurementValue());
+    }
+}
@@ -11,6 +11,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Unit tests for the DataReaderImplementation class.
@@ -152,4 +153,42 @@ class DataReaderTest {
         // Ensure no data is stored in DataStorage
         assertTrue(dataStorage.getRecords(0, 0L, Long.MAX_VALUE).isEmpty());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that the parallel bulk load, split into many memory-mapped chunks,
+     * stores exactly the same records as the sequential reader.
+     */
+    @Test
+    void testParallelReadMatchesSequentialRead() throws IOException {
+        Path testDataDirectory = Files.createTempDirectory("parallelData");
+        Random random = new Random(42);
+        StringBuilder ecg = new StringBuilder();
+        StringBuilder saturation = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            long timestamp = 1714376789050L + i;
+            ecg.append(i % 10).append(',').append(random.nextGaussian() * 1e-3).append(",ECG,").append(timestamp).append('\n');
+            saturation.append(i % 10).append(',').append(90 + random.nextInt(10)).append(".0,Saturation,").append(timestamp).append("\r\n");
+        }
+        ecg.append("not,a,valid,line\n");
+        Files.write(Paths.get(testDataDirectory.toString(), "ECG.txt"), ecg.toString().getBytes());
+        Files.write(Paths.get(testDataDirectory.toString(), "Saturation.txt"), saturation.toString().getBytes());
+
+        DataReaderImplementation reader = new DataReaderImplementation(testDataDirectory);
+        DataStorage sequential = DataStorage.getInstance();
+        reader.readData(sequential);
+        DataStorage.resetInstance();
+        DataStorage parallel = DataStorage.getInstance();
+        reader.readDataParallel(parallel, 4, 4096);
+
+        for (int patientId = 0; patientId < 10; patientId++) {
+            List<PatientRecord> expected = sequential.getRecords(patientId, 0L, Long.MAX_VALUE);
+            List<PatientRecord> actual = parallel.getRecords(patientId, 0L, Long.MAX_VALUE);
+            assertEquals(1000, actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+                assertEquals(expected.get(i).getRecordType(), actual.get(i).getRecordType());
+                assertEquals(expected.get(i).getMeasurementValue(), actual.get(i).getMeasurementValue());
+            }
+        }
+    }
+}
@@ -10,7 +10,13 @@ import com.data_management.DataStorage;
 import com.data_management.PatientRecord;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Unit tests for the DataStorage class.
@@ -39,5 +45,62 @@ class DataStorageTest {
         assertEquals(100.0, records.get(0).getMeasurementValue()); // Validate first record
         assertEquals(200.0, records.get(1).getMeasurementValue()); // Validate second record
     }
-}
 
+    /**
+     * Tests that concurrent writers and readers neither lose nor corrupt records.
+     */
+    @Test
+    void testConcurrentAddPatientData() throws Exception {
+        DataStorage storage = DataStorage.getInstance();
+        int threads = 8;
+        int recordsPerThread = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int writer = t;
+            tasks.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < recordsPerThread; i++) {
+                    // Two patients shared by all writers, timestamps interleaved across threads
+                    storage.addPatientData(i % 2, i, "ECG", (long) i * threads + writer);
+                }
+                return null;
+            }));
+        }
+        tasks.add(executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < 200; i++) {
+                List<PatientRecord> records = storage.getRecords(0, 0L, Long.MAX_VALUE);
+                for (int r = 1; r < records.size(); r++) {
+                    assertTrue(records.get(r - 1).getTimestamp() <= records.get(r).getTimestamp());
+                }
+            }
+            return null;
+        }));
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        // Rethrows a failed assertion of any writer or reader
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+
+        int total = storage.getRecords(0, 0L, Long.MAX_VALUE).size()
+                + storage.getRecords(1, 0L, Long.MAX_VALUE).size();
+        assertEquals(threads * recordsPerThread, total);
+        assertEquals(2, storage.getAllPatients().size());
+    }
+
+    /**
+     * Tests that a record without a type label is rejected with a clear error.
+     */
+    @Test
+    void testNullRecordTypeIsRejected() {
+        DataStorage storage = DataStorage.getInstance();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> storage.addPatientData(1, 1.0, (String) null, 1000L));
+        assertTrue(e.getMessage().contains("null"));
+    }
+}
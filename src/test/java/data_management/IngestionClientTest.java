@@ -0,0 +1,88 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.IngestionClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Unit tests for the reconnecting, batching ingestion client.
+ */
+class IngestionClientTest {
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        DataStorage.resetInstance();
+        storage = DataStorage.getInstance();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * Tests that coalesced messages are stored in full and counted, and that a
+     * malformed line is counted as a parse error without losing its neighbours.
+     */
+    @Test
+    void testIngestsAndCounts() throws Exception {
+        WebSocketOutputStrategy server = new WebSocketOutputStrategy(8893, 10L, WebSocketOutputStrategy.FrameMode.TEXT);
+        try (IngestionClient client = new IngestionClient(storage)) {
+            client.connect(new URI("ws://localhost:8893"));
+            await(() -> client.isConnected() && server.getClientCount() == 1);
+
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 1000; i++) {
+                server.output(i % 4, now - 1000 + i, "ECG", Double.toString(i));
+            }
+            server.output(1, now, "ECG", "not a number");
+            await(() -> client.getRecordCount() == 1000 && client.getParseErrors() == 1);
+
+            assertEquals(250, storage.getRecords(3, 0L, Long.MAX_VALUE).size());
+            assertEquals(999.0, storage.getRecords(3, 0L, Long.MAX_VALUE).get(249).getMeasurementValue());
+            assertTrue(client.getMessageCount() > 0);
+            assertEquals(0, client.getQueueDepth());
+            assertTrue(client.getLagMillis() >= 0 && client.getLagMillis() < 10_000);
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    /**
+     * Tests that the client keeps retrying while the server is down and resumes
+     * ingestion from a restarted server.
+     */
+    @Test
+    void testReconnectsWithBackoff() throws Exception {
+        try (IngestionClient client = new IngestionClient(storage, 64, 20L, 200L)) {
+            client.connect(new URI("ws://localhost:8894"));
+            await(() -> client.getReconnects() >= 2);
+            assertFalse(client.isConnected());
+
+            for (int run = 0; run < 2; run++) {
+                WebSocketOutputStrategy server = new WebSocketOutputStrategy(8894);
+                try {
+                    await(() -> client.isConnected() && server.getClientCount() == 1);
+                    server.output(1, 1000L + run, "Saturation", "97%");
+                    int expected = run + 1;
+                    await(() -> client.getRecordCount() == expected);
+                } finally {
+                    server.stopServer();
+                }
+                await(() -> !client.isConnected());
+            }
+            assertEquals(2, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RetentionPolicy;
+import com.data_management.Rollup;
+import com.data_management.RollupResolution;
+import com.data_management.SampleCursor;
+import com.data_management.StorageBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for the off-heap storage backends and the sample cursor.
+ */
+class OffHeapStorageTest {
+    private static final long START = 1714377600000L;
+    private static final long MINUTE = 60_000L;
+
+    @AfterEach
+    void tearDown() {
+        DataStorage.setBackend(null);
+        DataStorage.resetInstance();
+    }
+
+    private static DataStorage storageWith(StorageBackend backend) {
+        DataStorage.setBackend(backend);
+        DataStorage.resetInstance();
+        return DataStorage.getInstance();
+    }
+
+    // Enough samples for several chunks, with every tenth one arriving late
+    private static void fill(DataStorage storage) {
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 10 != 5) {
+                storage.addPatientData(1, i * 0.5, "ECG", START + i * 4L);
+            }
+        }
+        for (int i = 5; i < 10_000; i += 10) {
+            storage.addPatientData(1, i * 0.5, "ECG", START + i * 4L);
+        }
+        storage.addPatientData(1, 97.0, "Saturation", START);
+    }
+
+    /**
+     * Tests that the off-heap backend returns the same records as the heap
+     * backend, including samples inserted late into earlier chunks.
+     */
+    @Test
+    void testOffHeapMatchesHeap() {
+        DataStorage heap = storageWith(StorageBackend.heap());
+        fill(heap);
+        List<PatientRecord> expected = heap.getRecords(1, START + 100L, START + 30_000L);
+
+        DataStorage offHeap = storageWith(StorageBackend.offHeap(1 << 20));
+        fill(offHeap);
+        List<PatientRecord> actual = offHeap.getRecords(1, START + 100L, START + 30_000L);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+            assertEquals(expected.get(i).getMeasurementValue(), actual.get(i).getMeasurementValue());
+            assertEquals(expected.get(i).getRecordType(), actual.get(i).getRecordType());
+        }
+        assertEquals(10_001, offHeap.getRecords(1, 0L, Long.MAX_VALUE).size());
+        assertEquals(1, offHeap.getAllPatients().size());
+        assertTrue(offHeap.getBackend().getReservedOffHeapBytes() > 0);
+    }
+
+    /**
+     * Tests that a cursor walks the same samples as the records of a range, on
+     * both backends, and that an unknown series gives an empty cursor.
+     */
+    @Test
+    void testCursorMatchesRecords() {
+        for (StorageBackend backend : new StorageBackend[] { StorageBackend.heap(), StorageBackend.offHeap(1 << 20) }) {
+            DataStorage storage = storageWith(backend);
+            fill(storage);
+            List<PatientRecord> records = storage.getAllPatients().get(0).getRecords("ECG", START + 2_000L, START + 38_000L);
+
+            SampleCursor cursor = storage.cursor(1, "ECG", START + 2_000L, START + 38_000L);
+            for (PatientRecord record : records) {
+                assertTrue(cursor.next(), backend.toString());
+                assertEquals(record.getTimestamp(), cursor.getTimestamp());
+                assertEquals(record.getMeasurementValue(), cursor.getValue());
+            }
+            assertFalse(cursor.next(), backend.toString());
+            assertFalse(storage.cursor(1, "BloodPressure", 0L, Long.MAX_VALUE).next());
+            assertFalse(storage.cursor(2, "ECG", 0L, Long.MAX_VALUE).next());
+        }
+    }
+
+    /**
+     * Tests that compaction of an off-heap series drops expired samples and
+     * rolls them up as on the heap.
+     */
+    @Test
+    void testCompactionOffHeap() {
+        DataStorage storage = storageWith(StorageBackend.offHeap(1 << 20));
+        // One sample every 10 ms for three minutes
+        for (int i = 0; i < 18_000; i++) {
+            storage.addPatientData(1, i % 100, "ECG", START + i * 10L);
+        }
+        storage.setRetentionPolicy(new RetentionPolicy(MINUTE, RetentionPolicy.FOREVER, RetentionPolicy.FOREVER));
+        storage.compact(START + 3 * MINUTE);
+
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(6_000, records.size());
+        assertEquals(START + 2 * MINUTE, records.get(0).getTimestamp());
+
+        List<Rollup> minutes = storage.getRollups(1, "ECG", RollupResolution.MINUTE, 0L, Long.MAX_VALUE);
+        assertEquals(2, minutes.size());
+        assertEquals(6_000, minutes.get(0).getCount());
+        assertEquals(99.0, minutes.get(1).getMax());
+
+        // Everything expires, then the series starts over
+        storage.compact(START + 10 * MINUTE);
+        assertTrue(storage.getRecords(1, 0L, Long.MAX_VALUE).isEmpty());
+        storage.addPatientData(1, 42.0, "ECG", START + 11 * MINUTE);
+        assertEquals(42.0, storage.getRecords(1, 0L, Long.MAX_VALUE).get(0).getMeasurementValue());
+    }
+
+    /**
+     * Tests that short series reserve memory for their samples rather than a
+     * whole chunk each, and keep late samples in order while their chunk grows.
+     */
+    @Test
+    void testShortSeriesReserveLittleMemory() {
+        DataStorage storage = storageWith(StorageBackend.offHeap(1 << 20));
+        for (int patientId = 0; patientId < 1000; patientId++) {
+            for (int i = 0; i < 10; i++) {
+                storage.addPatientData(patientId, i, "ECG", START + i * 1000L);
+            }
+        }
+        // A full chunk each would take 64 MB
+        assertTrue(storage.getBackend().getReservedOffHeapBytes() <= 2 << 20);
+
+        // Grows through every chunk size, with every fifth sample late
+        for (int i = 10; i < 5000; i++) {
+            long timestamp = i % 5 == 0 ? START + i * 1000L - 2500L : START + i * 1000L;
+            storage.addPatientData(0, i, "ECG", timestamp);
+        }
+        List<PatientRecord> records = storage.getRecords(0, 0L, Long.MAX_VALUE);
+        assertEquals(5000, records.size());
+        for (int i = 1; i < records.size(); i++) {
+            assertTrue(records.get(i - 1).getTimestamp() <= records.get(i).getTimestamp());
+        }
+        assertEquals(4999.0, records.get(records.size() - 1).getMeasurementValue());
+    }
+
+    /**
+     * Tests that the memory-mapped backend stores samples in its directory
+     * without leaving files behind once mapped.
+     */
+    @Test
+    void testMemoryMappedBackend(@TempDir Path directory) throws Exception {
+        DataStorage storage = storageWith(StorageBackend.memoryMapped(directory, 1 << 20));
+        fill(storage);
+
+        assertEquals(10_001, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+        assertEquals(START + 4L, storage.getAllPatients().get(0).getRecords("ECG", START + 1L, START + 4L).get(0).getTimestamp());
+        assertTrue(storage.getBackend().toString().startsWith("mapped:"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
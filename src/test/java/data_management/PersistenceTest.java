@@ -0,0 +1,291 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RecordType;
+import com.data_management.StoragePersistence;
+import com.data_management.WriteAheadLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for the write-ahead log and snapshots behind StoragePersistence.
+ */
+class PersistenceTest {
+    private static final long HOUR = 3_600_000L;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        DataStorage.resetInstance();
+    }
+
+    private static DataStorage freshStorage() {
+        DataStorage.resetInstance();
+        return DataStorage.getInstance();
+    }
+
+    /**
+     * Tests that records logged before a shutdown are recovered from the log.
+     */
+    @Test
+    void testRecoverFromLog() throws IOException {
+        DataStorage storage = freshStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(storage, directory, 1024, 5, HOUR)) {
+            assertEquals(0, persistence.getRecoveredRecordCount());
+            for (int i = 0; i < 500; i++) {
+                storage.addPatientData(i % 5, i * 0.5, i % 2 == 0 ? "ECG" : "BodyTemperature", 1000L + i);
+            }
+        }
+
+        DataStorage recovered = freshStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(recovered, directory, 1024, 5, HOUR)) {
+            assertEquals(500, persistence.getRecoveredRecordCount());
+            for (int patientId = 0; patientId < 5; patientId++) {
+                assertRecordsEqual(storage.getRecords(patientId, 0L, Long.MAX_VALUE),
+                        recovered.getRecords(patientId, 0L, Long.MAX_VALUE));
+            }
+        }
+    }
+
+    /**
+     * Tests that a snapshot plus the log tail restores every record exactly once,
+     * and that the segments covered by the snapshot are deleted.
+     */
+    @Test
+    void testRecoverFromSnapshotAndLogTail() throws IOException {
+        DataStorage storage = freshStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(storage, directory, 1024, 5, HOUR)) {
+            for (int i = 0; i < 300; i++) {
+                storage.addPatientData(1, i, "Saturation", 1000L + i);
+            }
+            persistence.snapshot();
+            for (int i = 300; i < 400; i++) {
+                storage.addPatientData(1, i, "Saturation", 1000L + i);
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<String> names = files.map(path -> path.getFileName().toString()).collect(Collectors.toList());
+            assertEquals(1, names.stream().filter(name -> name.startsWith("snapshot-")).count());
+            assertFalse(names.contains("wal-0000000000000001.log"));
+        }
+
+        DataStorage recovered = freshStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(recovered, directory, 1024, 5, HOUR)) {
+            assertEquals(100, persistence.getReplayedRecordCount());
+            assertRecordsEqual(storage.getRecords(1, 0L, Long.MAX_VALUE), recovered.getRecords(1, 0L, Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Tests that a torn block at the end of a segment loses only that block.
+     */
+    @Test
+    void testTornTailIsIgnored() throws IOException {
+        DataStorage storage = freshStorage();
+        StoragePersistence persistence = StoragePersistence.open(storage, directory, 1 << 20, 5, HOUR);
+        for (int i = 0; i < 50; i++) {
+            storage.addPatientData(1, i, "ECG", 1000L + i);
+        }
+        persistence.close();
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.getFileName().toString().startsWith("wal-")).findFirst().get();
+        }
+        Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        DataStorage recovered = freshStorage();
+        try (StoragePersistence reopened = StoragePersistence.open(recovered, directory, 1 << 20, 5, HOUR)) {
+            assertEquals(50, reopened.getRecoveredRecordCount());
+            assertEquals(50, recovered.getRecords(1, 0L, Long.MAX_VALUE).size());
+            // New records go to a new segment rather than after the torn block
+            recovered.addPatientData(1, 99, "ECG", 2000L);
+        }
+        DataStorage again = freshStorage();
+        try (StoragePersistence reopened = StoragePersistence.open(again, directory, 1 << 20, 5, HOUR)) {
+            assertEquals(51, reopened.getRecoveredRecordCount());
+            assertEquals(51, again.getRecords(1, 0L, Long.MAX_VALUE).size());
+        }
+    }
+
+    /**
+     * Tests that a failing disk neither blocks nor breaks ingestion: the log
+     * drops and counts records until it is rolled into a new segment, and
+     * drops those appended after it is closed.
+     */
+    @Test
+    void testFailedCommitDropsRecordsUntilRoll() throws IOException {
+        AtomicBoolean failing = new AtomicBoolean();
+        Path logDirectory = directory.resolve("wal");
+        WriteAheadLog log = new WriteAheadLog(logDirectory, 1 << 20, HOUR) {
+            @Override
+            protected FileChannel openChannel(Path path) throws IOException {
+                return new FailingChannel(super.openChannel(path), failing);
+            }
+        };
+        try {
+            log.onRecord(1, RecordType.ECG, 1.0, 1000L);
+            log.flush();
+            failing.set(true);
+            log.onRecord(1, RecordType.ECG, 2.0, 2000L);
+            assertThrows(IOException.class, log::flush);
+            // More than the log may hold pending, which would block writers of a log still committing
+            for (int i = 0; i < 100_000; i++) {
+                log.onRecord(1, RecordType.ECG, i, 3000L + i);
+            }
+            assertThrows(IOException.class, log::flush);
+            assertEquals(100_001, log.getDroppedCount());
+
+            failing.set(false);
+            log.roll();
+            log.onRecord(1, RecordType.ECG, 4.0, 200_000L);
+            log.flush();
+        } finally {
+            log.close();
+        }
+        log.onRecord(1, RecordType.ECG, 5.0, 300_000L);
+        assertEquals(100_002, log.getDroppedCount());
+
+        List<Long> timestamps = new ArrayList<>();
+        WriteAheadLog.replay(logDirectory, 0, (patientId, recordTypeCode, value, timestamp) -> timestamps.add(timestamp));
+        assertEquals(List.of(1000L, 200_000L), timestamps);
+    }
+
+    private static void assertRecordsEqual(List<PatientRecord> expected, List<PatientRecord> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+            assertEquals(expected.get(i).getRecordType(), actual.get(i).getRecordType());
+            assertEquals(expected.get(i).getMeasurementValue(), actual.get(i).getMeasurementValue());
+        }
+    }
+
+    // A segment channel whose block writes fail while the flag is set, as on a full disk
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel channel;
+        private final AtomicBoolean failing;
+
+        FailingChannel(FileChannel channel, AtomicBoolean failing) {
+            this.channel = channel;
+            this.failing = failing;
+        }
+
+        private void check() throws IOException {
+            if (failing.get()) {
+                throw new IOException("No space left on device");
+            }
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            check();
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            check();
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            check();
+            return channel.write(src, position);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            check();
+            channel.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
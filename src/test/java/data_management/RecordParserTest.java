@@ -0,0 +1,98 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.data_management.RecordParser;
+import com.data_management.RecordType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for the RecordParser class.
+ */
+class RecordParserTest {
+    private final RecordParser parser = new RecordParser();
+
+    /**
+     * Tests parsing a wire message whose data carries a percent sign.
+     */
+    @Test
+    void testWireRecordWithPercentage() {
+        assertTrue(parser.parseWireRecord("7,1714376789050,Saturation,95.5%"));
+        assertEquals(7, parser.getPatientId());
+        assertEquals(1714376789050L, parser.getTimestamp());
+        assertEquals(RecordType.SATURATION, parser.getRecordTypeCode());
+        assertEquals(95.5, parser.getMeasurementValue());
+    }
+
+    /**
+     * Tests that the alert payloads are mapped to their measurement values.
+     */
+    @Test
+    void testWireRecordAlertPayloads() {
+        assertTrue(parser.parseWireRecord("3,1000,Alert,triggered"));
+        assertEquals(RecordType.ALERT, parser.getRecordTypeCode());
+        assertEquals(RecordParser.ALERT_TRIGGERED, parser.getMeasurementValue());
+
+        assertTrue(parser.parseWireRecord("3,1001,Alert,resolved"));
+        assertEquals(RecordParser.ALERT_RESOLVED, parser.getMeasurementValue());
+    }
+
+    /**
+     * Tests that malformed messages are rejected.
+     */
+    @Test
+    void testInvalidRecordsAreRejected() {
+        assertFalse(parser.parseWireRecord("1,1000,ECG,abc"));
+        assertFalse(parser.parseWireRecord("1,1000,ECG"));
+        assertFalse(parser.parseWireRecord("x,1000,ECG,0.5"));
+        assertFalse(parser.parseWireRecord(""));
+        assertFalse(parser.parseFileRecord("1,0.5,ECG,12ab"));
+        assertFalse(parser.parseFileRecord("1,,ECG,1000"));
+    }
+
+    /**
+     * Tests that the file format parses the same from characters and from bytes.
+     */
+    @Test
+    void testFileRecordFromCharsAndBytes() {
+        String line = "12,-0.123456789,ECG,1714376789050";
+        assertTrue(parser.parseFileRecord(line));
+        assertEquals(12, parser.getPatientId());
+        assertEquals(-0.123456789, parser.getMeasurementValue());
+        assertEquals(RecordType.ECG, parser.getRecordTypeCode());
+        assertEquals(1714376789050L, parser.getTimestamp());
+
+        ByteBuffer buffer = ByteBuffer.wrap(("xx" + line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        assertTrue(parser.parseFileRecord(buffer, 2, buffer.limit()));
+        assertEquals(12, parser.getPatientId());
+        assertEquals(-0.123456789, parser.getMeasurementValue());
+        assertEquals(RecordType.ECG, parser.getRecordTypeCode());
+        assertEquals(1714376789050L, parser.getTimestamp());
+    }
+
+    /**
+     * Tests that values beyond the exact fast path still parse like Double.parseDouble.
+     */
+    @Test
+    void testLongAndExponentValues() {
+        assertTrue(parser.parseFileRecord("1,0.12345678901234567890,ECG,1"));
+        assertEquals(Double.parseDouble("0.12345678901234567890"), parser.getMeasurementValue());
+        assertTrue(parser.parseFileRecord("1,1.5e-30,ECG,1"));
+        assertEquals(1.5e-30, parser.getMeasurementValue());
+    }
+
+    /**
+     * Tests that an unknown label is registered and resolves to the same code again.
+     */
+    @Test
+    void testUnknownLabelIsRegistered() {
+        assertTrue(parser.parseWireRecord("1,1000,BodyTemperature,36.6"));
+        int code = parser.getRecordTypeCode();
+        assertEquals("BodyTemperature", RecordType.labelOf(code));
+        assertTrue(parser.parseFileRecord("1,36.7,BodyTemperature,1001"));
+        assertEquals(code, parser.getRecordTypeCode());
+    }
+}
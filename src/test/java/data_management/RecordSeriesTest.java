@@ -0,0 +1,207 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import com.data_management.RecordSeries;
+import com.data_management.RecordType;
+import com.data_management.RetentionPolicy;
+import com.data_management.Rollup;
+import com.data_management.RollupResolution;
+import com.data_management.SeriesView;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for the RecordSeries class and the views it hands out.
+ */
+class RecordSeriesTest {
+
+    /**
+     * Tests that samples arriving out of order are kept sorted by timestamp.
+     */
+    @Test
+    void testOutOfOrderAppend() {
+        RecordSeries series = new RecordSeries(1, RecordType.ECG);
+        series.append(1000L, 1.0);
+        series.append(3000L, 3.0);
+        series.append(2000L, 2.0);
+        series.append(500L, 0.5);
+
+        SeriesView view = series.range(0L, Long.MAX_VALUE);
+        assertEquals(4, view.size());
+        assertEquals(500L, view.getTimestamp(0));
+        assertEquals(1000L, view.getTimestamp(1));
+        assertEquals(2000L, view.getTimestamp(2));
+        assertEquals(3000L, view.getTimestamp(3));
+        assertEquals(2.0, view.getValue(2));
+    }
+
+    /**
+     * Tests that range bounds are inclusive and found by timestamp.
+     */
+    @Test
+    void testRangeBounds() {
+        RecordSeries series = new RecordSeries(1, RecordType.ECG);
+        for (int i = 0; i < 100; i++) {
+            series.append(i * 10L, i);
+        }
+
+        SeriesView view = series.range(200L, 300L);
+        assertEquals(11, view.size());
+        assertEquals(20.0, view.getValue(0));
+        assertEquals(30.0, view.getValue(10));
+        assertTrue(series.range(1001L, 2000L).isEmpty());
+        assertThrows(IndexOutOfBoundsException.class, () -> view.getValue(11));
+    }
+
+    /**
+     * Tests that a view keeps its contents when later samples are inserted before it.
+     */
+    @Test
+    void testViewIsStableAfterLateInsert() {
+        RecordSeries series = new RecordSeries(1, RecordType.SATURATION);
+        for (int i = 0; i < 10; i++) {
+            series.append(i * 1000L, 90 + i);
+        }
+
+        SeriesView view = series.range(0L, 9000L);
+        series.append(4500L, 50.0);
+        series.append(10000L, 100.0);
+
+        assertEquals(10, view.size());
+        assertEquals(94.0, view.getValue(4));
+        assertEquals(95.0, view.getValue(5));
+        assertEquals(12, series.range(0L, Long.MAX_VALUE).size());
+    }
+
+    /**
+     * Tests that records of different types are merged in timestamp order.
+     */
+    @Test
+    void testPatientMergesTypes() {
+        Patient patient = new Patient(7);
+        patient.addRecord(120, "SystolicPressure", 3000L);
+        patient.addRecord(80, "DiastolicPressure", 2000L);
+        patient.addRecord(95, "Saturation", 1000L);
+        patient.addRecord(125, "SystolicPressure", 4000L);
+
+        List<PatientRecord> records = patient.getRecords(0L, Long.MAX_VALUE);
+        assertEquals(4, records.size());
+        assertEquals("Saturation", records.get(0).getRecordType());
+        assertEquals("DiastolicPressure", records.get(1).getRecordType());
+        assertEquals("SystolicPressure", records.get(2).getRecordType());
+        assertEquals(7, records.get(3).getPatientId());
+
+        SeriesView systolic = patient.getRecords("SystolicPressure", 0L, 3500L);
+        assertEquals(1, systolic.size());
+        assertEquals(120.0, systolic.getValue(0));
+    }
+
+    /**
+     * Tests that unknown record type labels are registered on first use.
+     */
+    @Test
+    void testUnknownRecordTypeIsRegistered() {
+        Patient patient = new Patient(3);
+        patient.addRecord(1.5, "Lactate", 1000L);
+
+        int code = RecordType.codeOf("Lactate");
+        assertEquals(code, RecordType.codeOf("Lactate"));
+        assertEquals("Lactate", RecordType.labelOf(code));
+        assertNotEquals(RecordType.ECG, code);
+
+        PatientRecord record = patient.getRecords(0L, Long.MAX_VALUE).get(0);
+        assertEquals(code, record.getRecordTypeCode());
+        assertEquals("Lactate", record.getRecordType());
+    }
+
+    /**
+     * Tests that samples sealed into compressed blocks read back exactly, across
+     * block boundaries, and take less memory than the raw arrays would.
+     */
+    @Test
+    void testCompressedHistoryRoundTrip() {
+        RecordSeries series = new RecordSeries(1, RecordType.ECG);
+        int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            // Mostly steady intervals with some jitter, and a few special values
+            long timestamp = 1714376789050L + i * 1000L + (i % 7 == 0 ? i % 13 : 0);
+            series.append(timestamp, ecgValue(i));
+        }
+
+        assertEquals(count, series.size());
+        SeriesView all = series.range(0L, Long.MAX_VALUE);
+        assertEquals(count, all.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(1714376789050L + i * 1000L + (i % 7 == 0 ? i % 13 : 0), all.getTimestamp(i));
+            assertEquals(ecgValue(i), all.getValue(i));
+        }
+        SeriesView middle = series.range(1714376789050L + 1000_000L, 1714376789050L + 3000_000L);
+        assertEquals(2001, middle.size());
+        assertEquals(ecgValue(1000), middle.getValue(0));
+        assertTrue(series.contains(all.getTimestamp(5), ecgValue(5)));
+        assertFalse(series.contains(all.getTimestamp(5), 42.0));
+        assertTrue(series.estimateBytes() < 16L * count);
+    }
+
+    /**
+     * Tests that a late sample belonging to a sealed block is inserted in order
+     * without changing views taken before.
+     */
+    @Test
+    void testLateSampleIntoCompressedHistory() {
+        RecordSeries series = new RecordSeries(1, RecordType.SATURATION);
+        for (int i = 0; i < 5000; i++) {
+            series.append(i * 10L, 90 + i % 10);
+        }
+        SeriesView before = series.range(0L, 100L);
+        series.append(55L, 50.0);
+        series.append(-5L, 40.0);
+
+        assertEquals(11, before.size());
+        assertEquals(5002, series.size());
+        SeriesView after = series.range(-10L, 100L);
+        assertEquals(13, after.size());
+        assertEquals(40.0, after.getValue(0));
+        assertEquals(50.0, after.getValue(7));
+        assertEquals(60L, after.getTimestamp(8));
+    }
+
+    /**
+     * Tests that compaction rolls up and removes samples from sealed blocks,
+     * including the block that straddles the cutoff.
+     */
+    @Test
+    void testCompactionOfCompressedHistory() {
+        RecordSeries series = new RecordSeries(1, RecordType.ECG);
+        long start = 1714377600000L;
+        for (int i = 0; i < 6000; i++) {
+            series.append(start + i * 1000L, i % 60);
+        }
+        // Keep the last 1500 seconds raw
+        long now = start + 6000 * 1000L;
+        series.compact(new RetentionPolicy(1500_000L, RetentionPolicy.FOREVER, RetentionPolicy.FOREVER), now);
+
+        assertEquals(1500, series.size());
+        assertEquals(start + 4500_000L, series.range(0L, Long.MAX_VALUE).getTimestamp(0));
+        List<Rollup> minutes = series.rollups(RollupResolution.MINUTE, 0L, Long.MAX_VALUE);
+        assertEquals(75, minutes.size());
+        for (Rollup minute : minutes) {
+            assertEquals(60, minute.getCount());
+            assertEquals(29.5, minute.getMean());
+        }
+    }
+
+    private static double ecgValue(int i) {
+        if (i == 17) {
+            return Double.NaN;
+        }
+        if (i == 18) {
+            return -0.0;
+        }
+        return i % 100 == 0 ? 1e300 : Math.sin(i / 10.0) * 0.5 + (i % 3) * 0.01;
+    }
+}
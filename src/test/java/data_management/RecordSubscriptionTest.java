@@ -0,0 +1,173 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.data_management.DataStorage;
+import com.data_management.RecordBatch;
+import com.data_management.RecordFilter;
+import com.data_management.RecordSubscription;
+import com.data_management.RecordType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for record subscriptions on the DataStorage class.
+ */
+class RecordSubscriptionTest {
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        DataStorage.resetInstance();
+        storage = DataStorage.getInstance();
+    }
+
+    /**
+     * Tests that only records passing the filter are delivered, in order.
+     */
+    @Test
+    void testFilteredDelivery() throws InterruptedException {
+        List<Long> timestamps = new ArrayList<>();
+        CountDownLatch received = new CountDownLatch(3);
+        RecordSubscription subscription = storage.subscribe(RecordFilter.of(1, "ECG"), batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                assertEquals(1, batch.getPatientId(i));
+                assertEquals(RecordType.ECG, batch.getRecordTypeCode(i));
+                timestamps.add(batch.getTimestamp(i));
+                received.countDown();
+            }
+        });
+
+        storage.addPatientData(1, 0.1, "ECG", 1000L);
+        storage.addPatientData(2, 0.2, "ECG", 1001L);
+        storage.addPatientData(1, 97, "Saturation", 1002L);
+        storage.addPatientData(1, 0.3, "ECG", 1003L);
+        storage.addPatientData(1, 0.4, "ECG", 1004L);
+
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        subscription.closeAndAwait(5000);
+        assertEquals(List.of(1000L, 1003L, 1004L), timestamps);
+        assertEquals(3, subscription.getDeliveredCount());
+    }
+
+    /**
+     * Tests that a filter selects a negative patient ID like any other.
+     */
+    @Test
+    void testFilterOnNegativePatientId() {
+        RecordFilter filter = RecordFilter.patient(-1);
+        assertTrue(filter.matches(-1, RecordType.ECG));
+        assertFalse(filter.matches(1, RecordType.ECG));
+        assertTrue(RecordFilter.all().matches(-1, RecordType.ECG));
+    }
+
+    /**
+     * Tests that a stalled consumer makes records drop instead of blocking ingestion.
+     */
+    @Test
+    void testSlowConsumerDoesNotBlockIngestion() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordSubscription subscription = storage.subscribe(RecordFilter.all(), (RecordBatch batch) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 16, 4, RecordSubscription.OverflowPolicy.DROP);
+
+        for (int i = 0; i < 1000; i++) {
+            storage.addPatientData(1, i, "ECG", i);
+        }
+        assertTrue(subscription.getDroppedCount() > 0);
+        assertEquals(1000, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+
+        release.countDown();
+        subscription.closeAndAwait(5000);
+        assertEquals(1000, subscription.getDeliveredCount() + subscription.getDroppedCount());
+    }
+
+    /**
+     * Tests that a slow consumer under the BLOCK policy holds back ingestion
+     * and receives every record, in order.
+     */
+    @Test
+    void testBlockingPolicyLosesNothing() throws InterruptedException {
+        List<Long> timestamps = new ArrayList<>();
+        RecordSubscription subscription = storage.subscribe(RecordFilter.all(), (RecordBatch batch) -> {
+            for (int i = 0; i < batch.size(); i++) {
+                timestamps.add(batch.getTimestamp(i));
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 16, 4, RecordSubscription.OverflowPolicy.BLOCK);
+
+        for (int i = 0; i < 1000; i++) {
+            storage.addPatientData(1, i, "ECG", i);
+            assertTrue(subscription.getPendingCount() <= 16);
+        }
+        subscription.closeAndAwait(5000);
+        assertEquals(0, subscription.getDroppedCount());
+        assertEquals(1000, subscription.getDeliveredCount());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals((long) i, timestamps.get(i).longValue());
+        }
+    }
+
+    /**
+     * Tests that a stuck consumer under the BLOCK_THEN_DROP policy holds back
+     * ingestion once, for the timeout, and then lets records drop.
+     */
+    @Test
+    void testBoundedBlockingPolicyGivesUpOnStuckConsumer() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordSubscription subscription = storage.subscribe(RecordFilter.all(), (RecordBatch batch) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 16, 4, RecordSubscription.OverflowPolicy.BLOCK_THEN_DROP);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            storage.addPatientData(1, i, "ECG", i);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= RecordSubscription.BLOCK_TIMEOUT_MILLIS);
+        assertTrue(elapsedMillis < 10 * RecordSubscription.BLOCK_TIMEOUT_MILLIS);
+        assertTrue(subscription.getDroppedCount() > 0);
+
+        release.countDown();
+        subscription.closeAndAwait(5000);
+        assertEquals(1000, subscription.getDeliveredCount() + subscription.getDroppedCount());
+    }
+
+    /**
+     * Tests that resetting the shared storage closes its subscriptions, so their
+     * delivery threads end.
+     */
+    @Test
+    void testResetInstanceEndsDeliveryThreads() throws InterruptedException {
+        AtomicReference<Thread> dispatcher = new AtomicReference<>();
+        CountDownLatch received = new CountDownLatch(1);
+        storage.subscribe(RecordFilter.all(), batch -> {
+            dispatcher.set(Thread.currentThread());
+            received.countDown();
+        });
+        storage.addPatientData(1, 0.1, "ECG", 1000L);
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+
+        DataStorage.resetInstance();
+        dispatcher.get().join(5000);
+        assertFalse(dispatcher.get().isAlive());
+    }
+}
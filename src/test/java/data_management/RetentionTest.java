@@ -0,0 +1,141 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.data_management.DataStorage;
+import com.data_management.RecordSeries;
+import com.data_management.RecordType;
+import com.data_management.RetentionPolicy;
+import com.data_management.Rollup;
+import com.data_management.RollupResolution;
+import com.data_management.SeriesView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for retention policies and the rollups produced by compaction.
+ */
+class RetentionTest {
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 3_600_000L;
+    private static final long START = 1714377600000L; // on an hour boundary
+
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        DataStorage.resetInstance();
+        storage = DataStorage.getInstance();
+    }
+
+    /**
+     * Tests that samples outside the raw window are replaced by exact minute
+     * and hour rollups, while recent samples stay raw.
+     */
+    @Test
+    void testCompactionBuildsRollups() {
+        // One sample per second for three minutes: values 0..179
+        for (int i = 0; i < 180; i++) {
+            storage.addPatientData(1, i, "ECG", START + i * 1000L);
+        }
+        storage.setRetentionPolicy(new RetentionPolicy(MINUTE, HOUR, RetentionPolicy.FOREVER));
+        storage.compact(START + 3 * MINUTE);
+
+        assertEquals(60, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+        assertEquals(START + 2 * MINUTE, storage.getRecords(1, 0L, Long.MAX_VALUE).get(0).getTimestamp());
+
+        List<Rollup> minutes = storage.getRollups(1, "ECG", RollupResolution.MINUTE, 0L, Long.MAX_VALUE);
+        assertEquals(2, minutes.size());
+        assertEquals(START, minutes.get(0).getStartTime());
+        assertEquals(0.0, minutes.get(0).getMin());
+        assertEquals(59.0, minutes.get(0).getMax());
+        assertEquals(29.5, minutes.get(0).getMean());
+        assertEquals(60, minutes.get(0).getCount());
+        assertEquals(START + MINUTE, minutes.get(1).getStartTime());
+
+        List<Rollup> hours = storage.getRollups(1, "ECG", RollupResolution.HOUR, 0L, Long.MAX_VALUE);
+        assertEquals(1, hours.size());
+        assertEquals(120, hours.get(0).getCount());
+        assertEquals(119.0, hours.get(0).getMax());
+    }
+
+    /**
+     * Tests that an interval compacted over several runs, including a late
+     * sample, ends up as a single rollup.
+     */
+    @Test
+    void testIncrementalCompactionMergesIntervals() {
+        RecordSeries series = new RecordSeries(1, RecordType.SATURATION);
+        RetentionPolicy policy = new RetentionPolicy(0L, HOUR, RetentionPolicy.FOREVER);
+        series.append(START, 95.0);
+        series.append(START + 10_000L, 97.0);
+        series.compact(policy, START + 20_000L);
+        series.append(START + 30_000L, 91.0);
+        series.append(START + 5_000L, 99.0); // late
+        series.compact(policy, START + 40_000L);
+
+        assertEquals(0, series.size());
+        List<Rollup> minutes = series.rollups(RollupResolution.MINUTE, START, START);
+        assertEquals(1, minutes.size());
+        assertEquals(4, minutes.get(0).getCount());
+        assertEquals(91.0, minutes.get(0).getMin());
+        assertEquals(99.0, minutes.get(0).getMax());
+        assertEquals(95.5, minutes.get(0).getMean());
+    }
+
+    /**
+     * Tests that minute rollups expire before hour rollups, and that a policy
+     * for one record type leaves the other types untouched.
+     */
+    @Test
+    void testRollupExpiryAndPerTypePolicy() {
+        for (int i = 0; i < 120; i++) {
+            storage.addPatientData(1, i, "ECG", START + i * MINUTE);
+            storage.addPatientData(1, 95, "Saturation", START + i * MINUTE);
+        }
+        storage.setRetentionPolicy("ECG", new RetentionPolicy(MINUTE, 30 * MINUTE, RetentionPolicy.FOREVER));
+        storage.compact(START + 120 * MINUTE);
+
+        assertEquals(1, storage.getRecords(1, 0L, Long.MAX_VALUE).stream()
+                .filter(record -> record.getRecordTypeCode() == RecordType.ECG).count());
+        assertEquals(120, storage.getRecords(1, 0L, Long.MAX_VALUE).stream()
+                .filter(record -> record.getRecordTypeCode() == RecordType.SATURATION).count());
+        // Only minute rollups of the last 30 minutes remain; hour rollups are kept forever
+        assertEquals(29, storage.getRollups(1, "ECG", RollupResolution.MINUTE, 0L, Long.MAX_VALUE).size());
+        assertEquals(2, storage.getRollups(1, "ECG", RollupResolution.HOUR, 0L, Long.MAX_VALUE).size());
+        assertTrue(storage.getRollups(1, "Saturation", RollupResolution.HOUR, 0L, Long.MAX_VALUE).isEmpty());
+    }
+
+    /**
+     * Tests that views handed out before compaction keep their samples, and
+     * that no sample is lost when ingestion and compaction run at once.
+     */
+    @Test
+    void testCompactionDuringIngestion() throws InterruptedException {
+        RecordSeries series = new RecordSeries(1, RecordType.ECG);
+        for (int i = 0; i < 1000; i++) {
+            series.append(START + i, i);
+        }
+        SeriesView before = series.range(0L, Long.MAX_VALUE);
+
+        Thread writer = new Thread(() -> {
+            for (int i = 1000; i < 100_000; i++) {
+                series.append(START + i, i);
+            }
+        });
+        writer.start();
+        RetentionPolicy policy = new RetentionPolicy(100L, HOUR, RetentionPolicy.FOREVER);
+        for (long now = START; writer.isAlive(); now += 50) {
+            series.compact(policy, Math.min(now, START + 50_000L));
+        }
+        writer.join();
+
+        assertEquals(1000, before.size());
+        assertEquals(999.0, before.getValue(999));
+        long rolledUp = series.rollups(RollupResolution.MINUTE, 0L, Long.MAX_VALUE).stream()
+                .mapToLong(Rollup::getCount).sum();
+        assertEquals(100_000, rolledUp + series.size());
+    }
+}
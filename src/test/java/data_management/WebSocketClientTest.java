@@ -2,6 +2,7 @@ package data_management;
 
 import com.cardio_generator.outputs.WebSocketOutputStrategy;
 import com.data_management.DataStorage;
+import com.data_management.RecordType;
 import com.data_management.WebSocketClient;
 
 import org.junit.jupiter.api.AfterEach;
@@ -65,7 +66,7 @@ class WebSocketClientTest {
     public void testOnMessageWithInvalidData() throws Exception {
         server.output(123, 1609459200L, "XYZ", "abc");
         Thread.sleep(1000);
-        verify(mockDataStorage, never()).addPatientData(anyInt(), anyDouble(), anyString(), anyLong());
+        verify(mockDataStorage, never()).addPatientData(anyInt(), anyDouble(), anyInt(), anyLong());
     }
 
     /**
@@ -76,7 +77,7 @@ class WebSocketClientTest {
     void testOnMessageWithInvalidPercentage() {
         String invalidMessage = "123,1609459200,XYZ,45";
         webSocketClient.onMessage(invalidMessage);
-        verify(mockDataStorage).addPatientData(123, 45.0, "XYZ", 1609459200L);
+        verify(mockDataStorage).addPatientData(123, 45.0, RecordType.codeOf("XYZ"), 1609459200L);
     }
 
     /**
@@ -89,7 +90,7 @@ class WebSocketClientTest {
     void testOnMessageWithInvalidDataLength() throws InterruptedException {
         server.output(123, 1609459200L, "XYZ", "abc");
         Thread.sleep(1000);
-        verify(mockDataStorage, never()).addPatientData(anyInt(), anyDouble(), anyString(), anyLong());
+        verify(mockDataStorage, never()).addPatientData(anyInt(), anyDouble(), anyInt(), anyLong());
     }
 
     /**
@@ -99,7 +100,7 @@ class WebSocketClientTest {
     @DisplayName("Handle normal closure")
     void testOnClose() {
         webSocketClient.onClose(1000, "Normal closure", true);
-        verify(mockDataStorage, never()).addPatientData(anyInt(), anyDouble(), anyString(), anyLong());
+        verify(mockDataStorage, never()).addPatientData(anyInt(), anyDouble(), anyInt(), anyLong());
     }
 
     /**
@@ -109,7 +110,7 @@ class WebSocketClientTest {
     @DisplayName("Handle error correctly")
     void testOnError() {
         webSocketClient.onError(new Exception("Test exception"));
-        verify(mockDataStorage, never()).addPatientData(anyInt(), anyDouble(), anyString(), anyLong());
+        verify(mockDataStorage, never()).addPatientData(anyInt(), anyDouble(), anyInt(), anyLong());
     }
 
     /**
@@ -136,7 +137,7 @@ class WebSocketClientTest {
     void testOnMessageWithValidData() throws InterruptedException {
         server.output(123, 1609459200L, "HeartRate", "75");
         Thread.sleep(1000);
-        verify(mockDataStorage).addPatientData(123, 75.0, "HeartRate", 1609459200L);
+        verify(mockDataStorage).addPatientData(123, 75.0, RecordType.codeOf("HeartRate"), 1609459200L);
     }
 
     /**
@@ -167,8 +168,8 @@ class WebSocketClientTest {
         server.output(123, 1609459200L, "HeartRate", "75");
         server.output(124, 1609459300L, "BloodPressure", "80.5");
         Thread.sleep(1000);
-        verify(mockDataStorage).addPatientData(123, 75.0, "HeartRate", 1609459200L);
-        verify(mockDataStorage).addPatientData(124, 80.5, "BloodPressure", 1609459300L);
+        verify(mockDataStorage).addPatientData(123, 75.0, RecordType.codeOf("HeartRate"), 1609459200L);
+        verify(mockDataStorage).addPatientData(124, 80.5, RecordType.codeOf("BloodPressure"), 1609459300L);
     }
 
     /**
@@ -186,7 +187,7 @@ class WebSocketClientTest {
         server.output(123, 1609459200L, "HeartRate", "75");
         Thread.sleep(1000);
         // Each client should receive the message
-        verify(mockDataStorage, times(2)).addPatientData(123, 75.0, "HeartRate", 1609459200L);
+        verify(mockDataStorage, times(2)).addPatientData(123, 75.0, RecordType.codeOf("HeartRate"), 1609459200L);
         client2.close();
     }
 }